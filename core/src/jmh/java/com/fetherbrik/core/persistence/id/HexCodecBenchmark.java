@@ -0,0 +1,86 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+package com.fetherbrik.core.persistence.id;
+
+import org.apache.commons.codec.binary.Hex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigInteger;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hex encode and decode cost per id width, for the HexCodec paths and the BigInteger / commons-codec paths they
+ * replaced. Run with -prof gc to see the allocation difference.
+ * <p>
+ * ./gradlew :core:jmh -Pjmh.include=HexCodecBenchmark
+ *
+ * @author ggranum
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class HexCodecBenchmark {
+
+  @Param({"8", "12", "16"})
+  public int byteWidth;
+
+  private TypedId<?> id;
+  private BigInteger value;
+  private String hex;
+  private char[] chars;
+
+  @Setup
+  public void setUp() {
+    value = new BigInteger(byteWidth * 8 - 1, new Random(byteWidth));
+    id = new TypedId<>(value);
+    hex = id.toHex(byteWidth);
+    chars = new char[byteWidth * 2];
+  }
+
+  @Benchmark
+  public String encodeToString() {
+    return id.toHex(byteWidth);
+  }
+
+  @Benchmark
+  public char[] encodeIntoCharArray() {
+    id.writeHex(chars, 0, chars.length);
+    return chars;
+  }
+
+  @Benchmark
+  public String encodeLegacyBigIntegerToBytes() {
+    byte[] in = value.toByteArray();
+    byte[] allBytes = new byte[byteWidth];
+    int startAt = byteWidth - in.length;
+    System.arraycopy(in, 0, allBytes, startAt, in.length);
+    return Hex.encodeHexString(allBytes);
+  }
+
+  @Benchmark
+  public TypedId<?> decode() {
+    return new TypedId<>(hex);
+  }
+
+  @Benchmark
+  public BigInteger decodeLegacyBigInteger() {
+    return new BigInteger(hex, 16);
+  }
+}
@@ -0,0 +1,89 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+package com.fetherbrik.core.persistence.id;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigInteger;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the lock-free DefaultIdGenerator against the previous synchronized implementation, from a single thread up
+ * to 64 contending threads.
+ * <p>
+ * ./gradlew :core:jmh -Pjmh.include=IdGeneratorBenchmark
+ *
+ * @author ggranum
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IdGeneratorBenchmark {
+
+  @Param({"lockFree", "synchronized"})
+  public String generator;
+
+  private IdGenerator idGen;
+
+  @Setup
+  public void setUp() {
+    idGen = generator.equals("lockFree") ? new DefaultIdGenerator() : new SynchronizedIdGenerator();
+  }
+
+  @Benchmark
+  @Threads(1)
+  public BigInteger next_01Thread() {
+    return idGen.next();
+  }
+
+  @Benchmark
+  @Threads(4)
+  public BigInteger next_04Threads() {
+    return idGen.next();
+  }
+
+  @Benchmark
+  @Threads(16)
+  public BigInteger next_16Threads() {
+    return idGen.next();
+  }
+
+  @Benchmark
+  @Threads(64)
+  public BigInteger next_64Threads() {
+    return idGen.next();
+  }
+
+  @Benchmark
+  @Threads(64)
+  public String nextHex_64Threads() {
+    return idGen.nextHex();
+  }
+
+  /**
+   * The synchronized generator uses the interface default, which calls next() once per id.
+   */
+  @Benchmark
+  @Threads(16)
+  public List<BigInteger> nextBatchOf100_16Threads() {
+    return idGen.nextBatch(100);
+  }
+}
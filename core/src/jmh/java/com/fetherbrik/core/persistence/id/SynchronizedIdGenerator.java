@@ -0,0 +1,84 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+package com.fetherbrik.core.persistence.id;
+
+import org.apache.commons.codec.binary.Hex;
+
+import javax.annotation.Nonnull;
+import java.math.BigInteger;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The monitor-guarded DefaultIdGenerator, as it was before the switch to a compare-and-set clock. Kept only as a
+ * baseline for {@link IdGeneratorBenchmark}. The machine and process bytes are fixed, as they do not affect the cost
+ * of generating an id.
+ */
+final class SynchronizedIdGenerator implements IdGenerator {
+
+  private static final int ThreeByteIntMaxValue = 1677216;
+  private static final byte[] processIdHash = {0x0A, 0x0B};
+  private static final byte[] machineIdHash = {0x01, 0x02, 0x03};
+  private final AtomicInteger autoInc = new AtomicInteger((int) (Math.random() * ThreeByteIntMaxValue));
+
+  private static void checkForOverflow(AtomicInteger autoInc) {
+    if (autoInc.get() >= ThreeByteIntMaxValue) {
+      autoInc.set(0);
+    }
+  }
+
+  private static void insertAsBytes(long v, byte[] into) {
+    into[0] = (byte) (v >>> 56);
+    into[1] = (byte) (v >>> 48);
+    into[2] = (byte) (v >>> 40);
+    into[3] = (byte) (v >>> 32);
+    into[4] = (byte) (v >>> 24);
+    into[5] = (byte) (v >>> 16);
+    into[6] = (byte) (v >>> 8);
+    into[7] = (byte) (v);
+  }
+
+  private static void insertAsBytes(int v, int srcPos, byte[] into, int destPos, int length) {
+    for (int i = srcPos; i < length; i++) {
+      into[destPos + i] = (byte) (v >>> (24 - 8 * (srcPos + i)));
+    }
+  }
+
+  @Nonnull
+  @Override
+  public String nextHex() {
+    byte[] bytes;
+    synchronized (autoInc) {
+      bytes = nextBytes();
+    }
+    return Hex.encodeHexString(bytes);
+  }
+
+  @Override public int idByteLength() {
+    return DefaultIdGenerator.DefaultIdByteCount;
+  }
+
+  @Override
+  @Nonnull
+  public BigInteger next() {
+    byte[] bytes;
+    synchronized (autoInc) {
+      bytes = nextBytes();
+    }
+    return new BigInteger(bytes);
+  }
+
+  private byte[] nextBytes() {
+    int nextAuto = autoInc.getAndIncrement();
+    checkForOverflow(autoInc);
+    byte[] bytes = new byte[16];
+    long millis = System.currentTimeMillis();
+    insertAsBytes(millis, bytes);
+    System.arraycopy(machineIdHash, 0, bytes, 8, 3);
+    System.arraycopy(processIdHash, 0, bytes, 11, 2);
+    insertAsBytes(nextAuto, 1, bytes, 13, 3);
+    return bytes;
+  }
+}
@@ -0,0 +1,395 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+package com.fetherbrik.core.collections;
+
+import javax.annotation.concurrent.Immutable;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * An immutable set backed by a hash array mapped trie. {@link #plus} and {@link #minus} return a new set in
+ * O(log32 n), sharing every part of the trie they did not change with the original, which is left untouched. So a
+ * builder can copy a large set for free, and readers of an older version never see a later change.
+ * <p>
+ * The java.util.Set mutators throw UnsupportedOperationException. Null elements are not permitted.
+ *
+ * @author Geoff M. Granum
+ */
+@Immutable
+public final class PersistentHashSet<E> extends AbstractSet<E> {
+
+  private static final int BitsPerLevel = 5;
+  private static final int LevelMask = (1 << BitsPerLevel) - 1;
+  /**
+   * Deep enough for every level of a 32 bit hash, plus a collision node.
+   */
+  private static final int MaxDepth = 32 / BitsPerLevel + 2;
+
+  private static final Object NotSingle = new Object();
+  private static final PersistentHashSet<?> Empty = new PersistentHashSet<>(null, 0);
+
+  /**
+   * Null when the set is empty.
+   */
+  private final Node root;
+  private final int size;
+
+  private PersistentHashSet(Node root, int size) {
+    this.root = root;
+    this.size = size;
+  }
+
+  @SuppressWarnings("unchecked")
+  public static <E> PersistentHashSet<E> empty() {
+    return (PersistentHashSet<E>) Empty;
+  }
+
+  /**
+   * @return `elements` itself if it is already a PersistentHashSet, otherwise a new set of its elements.
+   */
+  @SuppressWarnings("unchecked")
+  public static <E> PersistentHashSet<E> copyOf(Iterable<? extends E> elements) {
+    if (elements instanceof PersistentHashSet) {
+      return (PersistentHashSet<E>) elements;
+    }
+    return PersistentHashSet.<E>empty().plusAll(elements);
+  }
+
+  /**
+   * @return A set that also contains `element`; this set if it already did.
+   */
+  public PersistentHashSet<E> plus(E element) {
+    Objects.requireNonNull(element, "Null elements are not permitted.");
+    int hash = hash(element);
+    if (root == null) {
+      return new PersistentHashSet<>(new BitmapNode(bit(hash, 0), new Object[]{element}), 1);
+    }
+    Node nextRoot = root.plus(element, hash, 0);
+    return nextRoot == root ? this : new PersistentHashSet<>(nextRoot, size + 1);
+  }
+
+  public PersistentHashSet<E> plusAll(Iterable<? extends E> elements) {
+    PersistentHashSet<E> result = this;
+    for (E element : elements) {
+      result = result.plus(element);
+    }
+    return result;
+  }
+
+  /**
+   * @return A set without `element`; this set if it did not contain it.
+   */
+  public PersistentHashSet<E> minus(Object element) {
+    if (root == null || element == null) {
+      return this;
+    }
+    Node nextRoot = root.minus(element, hash(element), 0);
+    if (nextRoot == root) {
+      return this;
+    }
+    return nextRoot == null ? empty() : new PersistentHashSet<>(nextRoot, size - 1);
+  }
+
+  @Override
+  public boolean contains(Object element) {
+    return root != null && element != null && root.contains(element, hash(element), 0);
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public Iterator<E> iterator() {
+    return new TrieIterator<>(root);
+  }
+
+  private static int hash(Object element) {
+    int h = element.hashCode();
+    return h ^ (h >>> 16);
+  }
+
+  private static int bit(int hash, int shift) {
+    return 1 << ((hash >>> shift) & LevelMask);
+  }
+
+  /**
+   * A node holding `a` and `b`, whose hashes are `aHash` and `bHash`, nested as deep as it takes to tell them apart.
+   */
+  private static Node pair(Object a, int aHash, Object b, int bHash, int shift) {
+    if (aHash == bHash) {
+      return new CollisionNode(aHash, new Object[]{a, b});
+    }
+    int aBit = bit(aHash, shift);
+    int bBit = bit(bHash, shift);
+    if (aBit == bBit) {
+      return new BitmapNode(aBit, new Object[]{pair(a, aHash, b, bHash, shift + BitsPerLevel)});
+    }
+    return new BitmapNode(aBit | bBit, Integer.compareUnsigned(aBit, bBit) < 0 ? new Object[]{a, b} : new Object[]{b, a});
+  }
+
+  private abstract static class Node {
+
+    abstract boolean contains(Object element, int hash, int shift);
+
+    /**
+     * @return This node if it already contains `element`.
+     */
+    abstract Node plus(Object element, int hash, int shift);
+
+    /**
+     * @return This node if it does not contain `element`, or null if removing it leaves the node empty.
+     */
+    abstract Node minus(Object element, int hash, int shift);
+
+    /**
+     * @return The elements and child nodes of this node.
+     */
+    abstract Object[] entries();
+
+    /**
+     * @return This node's only element, if it has exactly one and no children; otherwise NotSingle.
+     */
+    abstract Object single();
+  }
+
+  /**
+   * Up to 32 entries, one per set bit of the bitmap, in bit order. Each entry is either an element or a child node.
+   */
+  private static final class BitmapNode extends Node {
+
+    private final int bitmap;
+    private final Object[] entries;
+
+    BitmapNode(int bitmap, Object[] entries) {
+      this.bitmap = bitmap;
+      this.entries = entries;
+    }
+
+    @Override
+    boolean contains(Object element, int hash, int shift) {
+      int bit = bit(hash, shift);
+      if ((bitmap & bit) == 0) {
+        return false;
+      }
+      Object entry = entries[index(bit)];
+      if (entry instanceof Node) {
+        return ((Node) entry).contains(element, hash, shift + BitsPerLevel);
+      }
+      return entry.equals(element);
+    }
+
+    @Override
+    Node plus(Object element, int hash, int shift) {
+      int bit = bit(hash, shift);
+      int idx = index(bit);
+      if ((bitmap & bit) == 0) {
+        Object[] next = new Object[entries.length + 1];
+        System.arraycopy(entries, 0, next, 0, idx);
+        next[idx] = element;
+        System.arraycopy(entries, idx, next, idx + 1, entries.length - idx);
+        return new BitmapNode(bitmap | bit, next);
+      }
+      Object entry = entries[idx];
+      Object replacement;
+      if (entry instanceof Node) {
+        Node child = (Node) entry;
+        replacement = child.plus(element, hash, shift + BitsPerLevel);
+        if (replacement == child) {
+          return this;
+        }
+      } else if (entry.equals(element)) {
+        return this;
+      } else {
+        replacement = pair(entry, hash(entry), element, hash, shift + BitsPerLevel);
+      }
+      return withEntry(idx, replacement);
+    }
+
+    @Override
+    Node minus(Object element, int hash, int shift) {
+      int bit = bit(hash, shift);
+      if ((bitmap & bit) == 0) {
+        return this;
+      }
+      int idx = index(bit);
+      Object entry = entries[idx];
+      if (entry instanceof Node) {
+        Node child = (Node) entry;
+        Node nextChild = child.minus(element, hash, shift + BitsPerLevel);
+        if (nextChild == child) {
+          return this;
+        }
+        if (nextChild == null) {
+          return withoutEntry(idx, bit);
+        }
+        // Pull a lone element up into this node, so that removals don't leave chains of single entry nodes.
+        Object single = nextChild.single();
+        return withEntry(idx, single != NotSingle ? single : nextChild);
+      }
+      return entry.equals(element) ? withoutEntry(idx, bit) : this;
+    }
+
+    @Override
+    Object[] entries() {
+      return entries;
+    }
+
+    @Override
+    Object single() {
+      return entries.length == 1 && !(entries[0] instanceof Node) ? entries[0] : NotSingle;
+    }
+
+    private int index(int bit) {
+      return Integer.bitCount(bitmap & (bit - 1));
+    }
+
+    private BitmapNode withEntry(int idx, Object entry) {
+      Object[] next = entries.clone();
+      next[idx] = entry;
+      return new BitmapNode(bitmap, next);
+    }
+
+    private BitmapNode withoutEntry(int idx, int bit) {
+      if (entries.length == 1) {
+        return null;
+      }
+      Object[] next = new Object[entries.length - 1];
+      System.arraycopy(entries, 0, next, 0, idx);
+      System.arraycopy(entries, idx + 1, next, idx, next.length - idx);
+      return new BitmapNode(bitmap & ~bit, next);
+    }
+  }
+
+  /**
+   * Elements whose hashes are identical, in no particular order.
+   */
+  private static final class CollisionNode extends Node {
+
+    private final int hash;
+    private final Object[] elements;
+
+    CollisionNode(int hash, Object[] elements) {
+      this.hash = hash;
+      this.elements = elements;
+    }
+
+    @Override
+    boolean contains(Object element, int hash, int shift) {
+      return hash == this.hash && indexOf(element) >= 0;
+    }
+
+    @Override
+    Node plus(Object element, int hash, int shift) {
+      if (hash != this.hash) {
+        // Only reached above the deepest level: push this node down a level beside the new element.
+        return new BitmapNode(bit(this.hash, shift), new Object[]{this}).plus(element, hash, shift);
+      }
+      if (indexOf(element) >= 0) {
+        return this;
+      }
+      Object[] next = Arrays.copyOf(elements, elements.length + 1);
+      next[elements.length] = element;
+      return new CollisionNode(hash, next);
+    }
+
+    @Override
+    Node minus(Object element, int hash, int shift) {
+      int idx = hash == this.hash ? indexOf(element) : -1;
+      if (idx < 0) {
+        return this;
+      }
+      if (elements.length == 1) {
+        return null;
+      }
+      Object[] next = new Object[elements.length - 1];
+      System.arraycopy(elements, 0, next, 0, idx);
+      System.arraycopy(elements, idx + 1, next, idx, next.length - idx);
+      return new CollisionNode(hash, next);
+    }
+
+    @Override
+    Object[] entries() {
+      return elements;
+    }
+
+    @Override
+    Object single() {
+      return elements.length == 1 ? elements[0] : NotSingle;
+    }
+
+    private int indexOf(Object element) {
+      for (int i = 0; i < elements.length; i++) {
+        if (elements[i].equals(element)) {
+          return i;
+        }
+      }
+      return -1;
+    }
+  }
+
+  /**
+   * Depth first, with an explicit stack of the entry arrays being walked.
+   */
+  private static final class TrieIterator<E> implements Iterator<E> {
+
+    private final Object[][] arrays = new Object[MaxDepth][];
+    private final int[] positions = new int[MaxDepth];
+    private int depth = -1;
+    private Object next;
+
+    TrieIterator(Node root) {
+      if (root != null) {
+        push(root);
+        advance();
+      }
+    }
+
+    @Override
+    public boolean hasNext() {
+      return next != null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E next() {
+      if (next == null) {
+        throw new NoSuchElementException();
+      }
+      Object current = next;
+      advance();
+      return (E) current;
+    }
+
+    private void push(Node node) {
+      depth++;
+      arrays[depth] = node.entries();
+      positions[depth] = 0;
+    }
+
+    private void advance() {
+      next = null;
+      while (depth >= 0) {
+        Object[] entries = arrays[depth];
+        if (positions[depth] < entries.length) {
+          Object entry = entries[positions[depth]++];
+          if (entry instanceof Node) {
+            push((Node) entry);
+          } else {
+            next = entry;
+            return;
+          }
+        } else {
+          arrays[depth--] = null;
+        }
+      }
+    }
+  }
+}
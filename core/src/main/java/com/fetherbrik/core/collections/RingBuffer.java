@@ -0,0 +1,154 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+package com.fetherbrik.core.collections;
+
+import com.fetherbrik.core.base.Verify;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * A bounded, multi-producer, single-consumer ring of preallocated slots, after Dmitry Vyukov's bounded MPMC queue.
+ * <p>
+ * A producer claims a slot with {@link #tryClaim}, a compare-and-set on the tail counter, fills it in place, then
+ * {@link #publish publishes} it by advancing the slot's sequence number. The one consumer thread takes published
+ * slots in order with {@link #drain}, and a slot is recycled as soon as the consumer returns from it. No locks are
+ * taken and nothing is allocated once the ring is built, so producers can be request or logging threads.
+ * <p>
+ * Every claimed slot must be published, even if the producer has nothing to put in it: the consumer waits at the
+ * first unpublished slot.
+ *
+ * @author Geoff M. Granum
+ */
+public final class RingBuffer<E> {
+
+  private final E[] slots;
+  private final AtomicLongArray sequences;
+  private final int mask;
+  private final AtomicLong tail = new AtomicLong();
+
+  /**
+   * Only written by the consumer.
+   */
+  private volatile long head;
+
+  /**
+   * @param minCapacity Rounded up to a power of two, and to at least two.
+   * @param slotFactory Called once per slot, here.
+   */
+  @SuppressWarnings("unchecked")
+  public RingBuffer(int minCapacity, Supplier<E> slotFactory) {
+    Verify.isTrue(minCapacity > 0 && minCapacity <= 1 << 30,
+        "Ring buffer capacity must be between 1 and 2^30, not %s.",
+        minCapacity);
+    int capacity = Math.max(2, Integer.highestOneBit(minCapacity - 1) << 1);
+    this.slots = (E[]) new Object[capacity];
+    this.sequences = new AtomicLongArray(capacity);
+    for (int i = 0; i < capacity; i++) {
+      slots[i] = slotFactory.get();
+      sequences.set(i, i);
+    }
+    this.mask = capacity - 1;
+  }
+
+  public int capacity() {
+    return slots.length;
+  }
+
+  /**
+   * @return The sequence of a slot that now belongs to the caller, or -1 if the ring is full. A claim lost to another
+   * producer is retried, so -1 means full rather than busy.
+   */
+  public long tryClaim() {
+    while (true) {
+      long pos = tail.get();
+      long available = sequences.get((int) (pos & mask)) - pos;
+      if (available == 0) {
+        if (tail.compareAndSet(pos, pos + 1)) {
+          return pos;
+        }
+      } else if (available < 0) {
+        // The slot still holds an element from the previous lap.
+        return -1;
+      }
+      // else another producer claimed this slot first; try the next one.
+    }
+  }
+
+  /**
+   * @return The slot for a sequence returned by {@link #tryClaim}, to fill before publishing it.
+   */
+  public E slot(long sequence) {
+    return slots[(int) (sequence & mask)];
+  }
+
+  /**
+   * Hand a claimed slot to the consumer. The producer must not touch the slot afterwards.
+   */
+  public void publish(long sequence) {
+    sequences.set((int) (sequence & mask), sequence + 1);
+  }
+
+  /**
+   * Pass up to {@code maxBatch} published slots, in order, to {@code consumer}, recycling each as it returns. Only one
+   * thread may drain at a time. If the consumer throws, the slot it was given is recycled all the same.
+   *
+   * @return The number of slots consumed.
+   */
+  public int drain(int maxBatch, Consumer<? super E> consumer) {
+    long h = head;
+    int count = 0;
+    try {
+      while (count < maxBatch) {
+        int idx = (int) (h & mask);
+        if (sequences.get(idx) != h + 1) {
+          break;
+        }
+        try {
+          consumer.accept(slots[idx]);
+        } finally {
+          sequences.set(idx, h + slots.length);
+          h++;
+          count++;
+        }
+      }
+    } finally {
+      head = h;
+    }
+    return count;
+  }
+
+  /**
+   * @return True if the next slot the consumer will take has been published.
+   */
+  public boolean hasPublished() {
+    long h = head;
+    return sequences.get((int) (h & mask)) == h + 1;
+  }
+
+  /**
+   * @return The number of slots ever consumed.
+   */
+  public long head() {
+    return head;
+  }
+
+  /**
+   * @return The number of slots ever claimed. Those claimed but not yet consumed are {@link #pending}.
+   */
+  public long tail() {
+    return tail.get();
+  }
+
+  /**
+   * @return The number of slots claimed but not yet consumed.
+   */
+  public int pending() {
+    return (int) Math.max(0, tail.get() - head);
+  }
+}
@@ -0,0 +1,202 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+
+package com.fetherbrik.core.log;
+
+import com.fetherbrik.core.collections.RingBuffer;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.status.StatusLogger;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A {@link RingBuffer} of preallocated LogEvents, drained in batches by a single daemon thread. Logging threads fill
+ * a slot in place and publish it; the appender thread hands each to the Sink and recycles it. No locks are taken and
+ * nothing is allocated on the logging thread.
+ * <p>
+ * Failures on the appender thread are reported to log4j's StatusLogger, never back through Log: under the BLOCK policy
+ * a full ring would have the appender thread wait for room that only it can make.
+ *
+ * @author Geoff M. Granum
+ */
+final class AsyncAppender {
+
+  private static final int MaxBatchSize = 256;
+  private static final long IdleParkNanos = TimeUnit.MILLISECONDS.toNanos(100);
+  private static final long FullParkNanos = TimeUnit.MICROSECONDS.toNanos(50);
+
+  private final RingBuffer<LogEvent> ring;
+  private final OverflowPolicy overflowPolicy;
+  private final Sink sink;
+  private final Consumer<LogEvent> writer = this::write;
+  private final Thread worker;
+  private final LongAdder dropped = new LongAdder();
+  /**
+   * Producers inside {@link #publish}. Once stopped, the appender waits for these to finish before the final drain.
+   */
+  private final LongAdder publishing = new LongAdder();
+
+  private volatile boolean running = true;
+  private volatile boolean workerIdle;
+
+  AsyncAppender(int bufferSize, OverflowPolicy overflowPolicy, Sink sink) {
+    this.ring = new RingBuffer<>(bufferSize, LogEvent::new);
+    this.overflowPolicy = overflowPolicy;
+    this.sink = sink;
+    this.worker = new Thread(this::run, "fetherbrik-async-log");
+    this.worker.setDaemon(true);
+    this.worker.start();
+  }
+
+  /**
+   * @return True if the event was queued. False if the buffer was full and the event was dropped, if the overflow
+   * policy is CALLER_RUNS and the caller must write the event itself, or if the appender has stopped, in which case
+   * the caller must also write it itself.
+   */
+  boolean publish(Logger logger,
+                  org.apache.logging.log4j.Level level,
+                  Throwable throwable,
+                  String msgFormat,
+                  int argCount,
+                  Object arg0,
+                  Object arg1,
+                  Object arg2,
+                  Object[] args) {
+    publishing.increment();
+    try {
+      while (running) {
+        long seq = ring.tryClaim();
+        if (seq >= 0) {
+          ring.slot(seq).set(logger, level, throwable, msgFormat, argCount, arg0, arg1, arg2, args);
+          ring.publish(seq);
+          if (workerIdle) {
+            LockSupport.unpark(worker);
+          }
+          return true;
+        }
+        if (overflowPolicy == OverflowPolicy.BLOCK) {
+          LockSupport.unpark(worker);
+          LockSupport.parkNanos(this, FullParkNanos);
+        } else {
+          if (overflowPolicy == OverflowPolicy.DROP) {
+            dropped.increment();
+          }
+          return false;
+        }
+      }
+      return false;
+    } finally {
+      publishing.decrement();
+    }
+  }
+
+  OverflowPolicy overflowPolicy() {
+    return overflowPolicy;
+  }
+
+  boolean isRunning() {
+    return running;
+  }
+
+  /**
+   * @return The number of events discarded under the DROP overflow policy.
+   */
+  long droppedCount() {
+    return dropped.sum();
+  }
+
+  /**
+   * @return The number of events queued but not yet written.
+   */
+  int pending() {
+    return ring.pending();
+  }
+
+  /**
+   * Block until every event published before this call has been written, or until the timeout elapses.
+   *
+   * @return True if every event was written.
+   */
+  boolean flush(long timeout, TimeUnit unit) {
+    long target = ring.tail();
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    while (ring.head() < target && worker.isAlive()) {
+      if (System.nanoTime() - deadline > 0) {
+        return false;
+      }
+      LockSupport.unpark(worker);
+      LockSupport.parkNanos(this, FullParkNanos);
+    }
+    return ring.head() >= target;
+  }
+
+  /**
+   * Stop accepting work, write everything already queued, and end the appender thread. Events published by threads
+   * that saw the appender running before this call are written too: once the appender thread has ended, the calling
+   * thread waits for those producers and drains what they queued.
+   */
+  void stop(long timeout, TimeUnit unit) {
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    running = false;
+    LockSupport.unpark(worker);
+    try {
+      worker.join(Math.max(1, unit.toMillis(timeout)));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return;
+    }
+    if (worker.isAlive()) {
+      return;
+    }
+    // The appender thread has gone, so this thread is now the only consumer.
+    while (drain() > 0 || publishing.sum() > 0 || ring.pending() > 0) {
+      if (System.nanoTime() - deadline > 0) {
+        StatusLogger.getLogger().warn("Async log appender stopped with {} events unwritten.", ring.pending());
+        return;
+      }
+      Thread.onSpinWait();
+    }
+  }
+
+  private void run() {
+    try {
+      while (running || ring.pending() > 0) {
+        if (drain() == 0) {
+          workerIdle = true;
+          // Re-check after advertising that we're idle, so a publish that raced with us can't be left waiting.
+          if (!ring.hasPublished() && running) {
+            LockSupport.parkNanos(this, IdleParkNanos);
+          }
+          workerIdle = false;
+        }
+      }
+    } finally {
+      // If an Error ended this thread early, stop accepting events so that logging threads write their own.
+      running = false;
+    }
+  }
+
+  private int drain() {
+    return ring.drain(MaxBatchSize, writer);
+  }
+
+  private void write(LogEvent event) {
+    try {
+      sink.write(event);
+    } catch (Exception e) {
+      StatusLogger.getLogger().error("Async log appender could not write an event.", e);
+    }
+    event.clear();
+  }
+
+  interface Sink {
+
+    void write(LogEvent event);
+  }
+}
@@ -6,9 +6,16 @@
 
 package com.fetherbrik.core.log;
 
-import org.apache.commons.lang3.ArrayUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.message.Message;
+import org.apache.logging.log4j.message.TimestampMessage;
+import org.apache.logging.log4j.status.StatusLogger;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * If I weren't so lazy this would be called 'Log4JLogger' and I'd have a different class named 'Log' that would
@@ -16,11 +23,148 @@ import org.apache.logging.log4j.Logger;
  *
  * But I am lazy. So this is just a nice central point from which to replace / augment the logging framework
  * if such is ever desired.
+ * <p>
+ * Loggers are looked up once per class (or name) and cached. Statements with up to three arguments have fixed-arity
+ * overloads, so a statement whose level is disabled costs a cache lookup and a level check, and allocates nothing.
+ * <p>
+ * Asynchronous mode moves formatting and writing onto a background thread, fed by a bounded ring buffer. It is off
+ * by default; enable it with {@link #startAsync(int, OverflowPolicy)} or with these system properties:
+ * <ul>
+ * <li>com.fetherbrik.log.async: "true" to enable at class load. Default "false".</li>
+ * <li>com.fetherbrik.log.async.buffer_size: Ring buffer size, rounded up to a power of two. Default 8192.</li>
+ * <li>com.fetherbrik.log.async.overflow: An {@link OverflowPolicy} name. Default CALLER_RUNS.</li>
+ * </ul>
+ * Arguments are formatted after the logging call returns, so don't pass objects that the caller will go on to
+ * mutate. The event keeps the time of the logging call, but log4j's thread name (%t) will be the appender's.
  *
  * @author Geoff M. Granum
  */
 public class Log {
 
+  private static final ClassValue<Logger> classLoggers = new ClassValue<Logger>() {
+    @Override
+    protected Logger computeValue(Class<?> type) {
+      return LogManager.getLogger(type);
+    }
+  };
+
+  private static final ConcurrentMap<String, Logger> namedLoggers = new ConcurrentHashMap<>();
+
+  /**
+   * Returned by {@link #configVersion()} when changes to the logging configuration cannot be observed.
+   */
+  public static final int UnobservedConfigVersion = -1;
+
+  private static volatile AsyncAppender appender;
+  private static final AtomicInteger configVersion = new AtomicInteger();
+  private static final boolean configObserved = watchConfiguration();
+
+  static {
+    if (Boolean.parseBoolean(System.getProperty("com.fetherbrik.log.async", "false"))) {
+      startAsync(Integer.parseInt(System.getProperty("com.fetherbrik.log.async.buffer_size", "8192")),
+          OverflowPolicy.valueOf(System.getProperty("com.fetherbrik.log.async.overflow",
+              OverflowPolicy.CALLER_RUNS.name())));
+    }
+  }
+
+  /**
+   * Route enabled log statements through a background appender thread. Safe to call more than once; the previous
+   * appender is drained and replaced.
+   *
+   * @param bufferSize     The number of statements that may be queued before the overflow policy applies.
+   * @param overflowPolicy What logging threads do when the buffer is full.
+   */
+  public static synchronized void startAsync(int bufferSize, OverflowPolicy overflowPolicy) {
+    AsyncAppender previous = appender;
+    appender = new AsyncAppender(bufferSize, overflowPolicy, Log::writeEvent);
+    if (previous != null) {
+      previous.stop(5, TimeUnit.SECONDS);
+    } else {
+      Runtime.getRuntime().addShutdownHook(new Thread(Log::stopAsync, "fetherbrik-async-log-shutdown"));
+    }
+  }
+
+  /**
+   * Write everything still queued and return to logging on the calling thread.
+   */
+  public static synchronized void stopAsync() {
+    AsyncAppender current = appender;
+    appender = null;
+    if (current != null) {
+      current.stop(5, TimeUnit.SECONDS);
+    }
+  }
+
+  /**
+   * Wait, for at most `timeout`, until every statement logged before this call has been written.
+   *
+   * @return True if everything was written. Always true when asynchronous logging is off.
+   */
+  public static boolean flush(long timeout, TimeUnit unit) {
+    AsyncAppender current = appender;
+    return current == null || current.flush(timeout, unit);
+  }
+
+  /**
+   * A value that changes whenever the logging configuration, and so possibly any logger's level, changes. Lets callers
+   * cache the result of {@link #enabled(Class, Level)} for as long as the version stays the same.
+   *
+   * @return The current version, or {@link #UnobservedConfigVersion} if changes can't be observed, in which case
+   * nothing derived from the current levels should be cached.
+   */
+  public static int configVersion() {
+    return configObserved ? configVersion.get() : UnobservedConfigVersion;
+  }
+
+  private static boolean watchConfiguration() {
+    try {
+      return Log4jConfigWatcher.watch(() -> configVersion.updateAndGet(v -> v == Integer.MAX_VALUE ? 0 : v + 1));
+    } catch (LinkageError e) {
+      // log4j-core isn't on the classpath; some other log4j backend is in use.
+      return false;
+    }
+  }
+
+  public static boolean asyncEnabled() {
+    return appender != null;
+  }
+
+  /**
+   * @return The number of statements discarded because the ring buffer was full and the policy is DROP.
+   */
+  public static long droppedCount() {
+    AsyncAppender current = appender;
+    return current == null ? 0 : current.droppedCount();
+  }
+
+  public static void debug(Class<?> clazz, String msgFormat) {
+    Logger logger = logger(clazz);
+    if (logger.isEnabled(Level.DEBUG.level())) {
+      write(logger, Level.DEBUG, null, msgFormat, 0, null, null, null, null);
+    }
+  }
+
+  public static void debug(Class<?> clazz, String msgFormat, Object arg0) {
+    Logger logger = logger(clazz);
+    if (logger.isEnabled(Level.DEBUG.level())) {
+      write(logger, Level.DEBUG, null, msgFormat, 1, arg0, null, null, null);
+    }
+  }
+
+  public static void debug(Class<?> clazz, String msgFormat, Object arg0, Object arg1) {
+    Logger logger = logger(clazz);
+    if (logger.isEnabled(Level.DEBUG.level())) {
+      write(logger, Level.DEBUG, null, msgFormat, 2, arg0, arg1, null, null);
+    }
+  }
+
+  public static void debug(Class<?> clazz, String msgFormat, Object arg0, Object arg1, Object arg2) {
+    Logger logger = logger(clazz);
+    if (logger.isEnabled(Level.DEBUG.level())) {
+      write(logger, Level.DEBUG, null, msgFormat, 3, arg0, arg1, arg2, null);
+    }
+  }
+
   public static void debug(Class<?> clazz, String msgFormat, Object... args) {
     log(Level.DEBUG, clazz, msgFormat, args);
   }
@@ -38,7 +182,35 @@ public class Log {
   }
 
   private static Logger logger(Class<?> clazz) {
-    return LogManager.getLogger(clazz);
+    return classLoggers.get(clazz);
+  }
+
+  public static void error(Class<?> clazz, String msgFormat) {
+    Logger logger = logger(clazz);
+    if (logger.isEnabled(Level.ERROR.level())) {
+      write(logger, Level.ERROR, null, msgFormat, 0, null, null, null, null);
+    }
+  }
+
+  public static void error(Class<?> clazz, String msgFormat, Object arg0) {
+    Logger logger = logger(clazz);
+    if (logger.isEnabled(Level.ERROR.level())) {
+      write(logger, Level.ERROR, null, msgFormat, 1, arg0, null, null, null);
+    }
+  }
+
+  public static void error(Class<?> clazz, String msgFormat, Object arg0, Object arg1) {
+    Logger logger = logger(clazz);
+    if (logger.isEnabled(Level.ERROR.level())) {
+      write(logger, Level.ERROR, null, msgFormat, 2, arg0, arg1, null, null);
+    }
+  }
+
+  public static void error(Class<?> clazz, String msgFormat, Object arg0, Object arg1, Object arg2) {
+    Logger logger = logger(clazz);
+    if (logger.isEnabled(Level.ERROR.level())) {
+      write(logger, Level.ERROR, null, msgFormat, 3, arg0, arg1, arg2, null);
+    }
   }
 
   public static void error(Class<?> clazz, String msgFormat, Object... args) {
@@ -53,39 +225,114 @@ public class Log {
     log(Level.ERROR, clazz, throwable, msgFormat, args);
   }
 
+  public static void fatal(Class<?> clazz, String msgFormat) {
+    Logger logger = logger(clazz);
+    if (logger.isEnabled(Level.FATAL.level())) {
+      write(logger, Level.FATAL, null, msgFormat, 0, null, null, null, null);
+    }
+  }
+
+  public static void fatal(Class<?> clazz, String msgFormat, Object arg0) {
+    Logger logger = logger(clazz);
+    if (logger.isEnabled(Level.FATAL.level())) {
+      write(logger, Level.FATAL, null, msgFormat, 1, arg0, null, null, null);
+    }
+  }
+
+  public static void fatal(Class<?> clazz, String msgFormat, Object arg0, Object arg1) {
+    Logger logger = logger(clazz);
+    if (logger.isEnabled(Level.FATAL.level())) {
+      write(logger, Level.FATAL, null, msgFormat, 2, arg0, arg1, null, null);
+    }
+  }
+
+  public static void fatal(Class<?> clazz, String msgFormat, Object arg0, Object arg1, Object arg2) {
+    Logger logger = logger(clazz);
+    if (logger.isEnabled(Level.FATAL.level())) {
+      write(logger, Level.FATAL, null, msgFormat, 3, arg0, arg1, arg2, null);
+    }
+  }
+
   public static void fatal(Class<?> clazz, String msgFormat, Object... args) {
     log(Level.FATAL, clazz, msgFormat, args);
   }
 
+  public static void info(Class<?> clazz, String msgFormat) {
+    Logger logger = logger(clazz);
+    if (logger.isEnabled(Level.INFO.level())) {
+      write(logger, Level.INFO, null, msgFormat, 0, null, null, null, null);
+    }
+  }
+
+  public static void info(Class<?> clazz, String msgFormat, Object arg0) {
+    Logger logger = logger(clazz);
+    if (logger.isEnabled(Level.INFO.level())) {
+      write(logger, Level.INFO, null, msgFormat, 1, arg0, null, null, null);
+    }
+  }
+
+  public static void info(Class<?> clazz, String msgFormat, Object arg0, Object arg1) {
+    Logger logger = logger(clazz);
+    if (logger.isEnabled(Level.INFO.level())) {
+      write(logger, Level.INFO, null, msgFormat, 2, arg0, arg1, null, null);
+    }
+  }
+
+  public static void info(Class<?> clazz, String msgFormat, Object arg0, Object arg1, Object arg2) {
+    Logger logger = logger(clazz);
+    if (logger.isEnabled(Level.INFO.level())) {
+      write(logger, Level.INFO, null, msgFormat, 3, arg0, arg1, arg2, null);
+    }
+  }
+
   public static void info(Class<?> clazz, String msgFormat, Object... args) {
     log(Level.INFO, clazz, msgFormat, args);
   }
 
-  public static void log(Level level, Class<?> clazz, String msgFormat, Object... args) {
+  public static void log(Level level, Class<?> clazz, String msgFormat, Object arg0) {
+    Logger logger = logger(clazz);
+    if (logger.isEnabled(level.level())) {
+      write(logger, level, null, msgFormat, 1, arg0, null, null, null);
+    }
+  }
 
+  public static void log(Level level, Class<?> clazz, String msgFormat, Object arg0, Object arg1) {
     Logger logger = logger(clazz);
-    if(logger.isEnabled(level.level())) {
-      logger.log(level.level(), safeFormat(msgFormat, args));
+    if (logger.isEnabled(level.level())) {
+      write(logger, level, null, msgFormat, 2, arg0, arg1, null, null);
     }
   }
 
-  public static void log(Level level, String loggerName, String msgFormat, Object... args) {
+  public static void log(Level level, Class<?> clazz, String msgFormat, Object arg0, Object arg1, Object arg2) {
+    Logger logger = logger(clazz);
+    if (logger.isEnabled(level.level())) {
+      write(logger, level, null, msgFormat, 3, arg0, arg1, arg2, null);
+    }
+  }
+
+  public static void log(Level level, Class<?> clazz, String msgFormat, Object... args) {
+    Logger logger = logger(clazz);
+    if (logger.isEnabled(level.level())) {
+      write(logger, level, null, msgFormat, args);
+    }
+  }
 
+  public static void log(Level level, String loggerName, String msgFormat, Object... args) {
     Logger logger = logger(loggerName);
-    if(logger.isEnabled(level.level())) {
-      logger.log(level.level(), safeFormat(msgFormat, args));
+    if (logger.isEnabled(level.level())) {
+      write(logger, level, null, msgFormat, args);
     }
   }
 
   public static void log(Level level, Class<?> clazz, Throwable t, String msgFormat, Object... args) {
     Logger logger = logger(clazz);
-    if(logger.isEnabled(level.level())) {
-      logger.log(level.level(), safeFormat(msgFormat, args), t);
+    if (logger.isEnabled(level.level())) {
+      write(logger, level, t, msgFormat, args);
     }
   }
 
   public static void log(Level level, boolean printStack, String clazz, Throwable t, String msgFormat, Object... args) {
-    if(printStack) {
+    if (printStack) {
       log(level, clazz, t, msgFormat, args);
     } else {
       log(level, clazz, msgFormat, args);
@@ -93,7 +340,7 @@ public class Log {
   }
 
   public static void log(Level level, boolean printStack, Class<?> clazz, Throwable t, String msgFormat, Object... args) {
-    if(printStack) {
+    if (printStack) {
       log(level, clazz, t, msgFormat, args);
     } else {
       log(level, clazz, msgFormat, args);
@@ -101,7 +348,38 @@ public class Log {
   }
 
   public static void log(Level level, String name, Throwable throwable, String msgFormat, Object... args) {
-    LogManager.getLogger(name).log(level.level(), safeFormat(msgFormat, args), throwable);
+    Logger logger = logger(name);
+    if (logger.isEnabled(level.level())) {
+      write(logger, level, throwable, msgFormat, args);
+    }
+  }
+
+  public static void trace(Class<?> clazz, String msgFormat) {
+    Logger logger = logger(clazz);
+    if (logger.isEnabled(Level.TRACE.level())) {
+      write(logger, Level.TRACE, null, msgFormat, 0, null, null, null, null);
+    }
+  }
+
+  public static void trace(Class<?> clazz, String msgFormat, Object arg0) {
+    Logger logger = logger(clazz);
+    if (logger.isEnabled(Level.TRACE.level())) {
+      write(logger, Level.TRACE, null, msgFormat, 1, arg0, null, null, null);
+    }
+  }
+
+  public static void trace(Class<?> clazz, String msgFormat, Object arg0, Object arg1) {
+    Logger logger = logger(clazz);
+    if (logger.isEnabled(Level.TRACE.level())) {
+      write(logger, Level.TRACE, null, msgFormat, 2, arg0, arg1, null, null);
+    }
+  }
+
+  public static void trace(Class<?> clazz, String msgFormat, Object arg0, Object arg1, Object arg2) {
+    Logger logger = logger(clazz);
+    if (logger.isEnabled(Level.TRACE.level())) {
+      write(logger, Level.TRACE, null, msgFormat, 3, arg0, arg1, arg2, null);
+    }
   }
 
   public static void trace(Class<?> clazz, String msgFormat, Object... args) {
@@ -126,6 +404,34 @@ public class Log {
     log(Level.ERROR, clazz, throwable, msgFormat, args);
   }
 
+  public static void warn(Class<?> clazz, String msgFormat) {
+    Logger logger = logger(clazz);
+    if (logger.isEnabled(Level.WARN.level())) {
+      write(logger, Level.WARN, null, msgFormat, 0, null, null, null, null);
+    }
+  }
+
+  public static void warn(Class<?> clazz, String msgFormat, Object arg0) {
+    Logger logger = logger(clazz);
+    if (logger.isEnabled(Level.WARN.level())) {
+      write(logger, Level.WARN, null, msgFormat, 1, arg0, null, null, null);
+    }
+  }
+
+  public static void warn(Class<?> clazz, String msgFormat, Object arg0, Object arg1) {
+    Logger logger = logger(clazz);
+    if (logger.isEnabled(Level.WARN.level())) {
+      write(logger, Level.WARN, null, msgFormat, 2, arg0, arg1, null, null);
+    }
+  }
+
+  public static void warn(Class<?> clazz, String msgFormat, Object arg0, Object arg1, Object arg2) {
+    Logger logger = logger(clazz);
+    if (logger.isEnabled(Level.WARN.level())) {
+      write(logger, Level.WARN, null, msgFormat, 3, arg0, arg1, arg2, null);
+    }
+  }
+
   public static void warn(Class<?> clazz, String msgFormat, Object... args) {
     log(Level.WARN, clazz, msgFormat, args);
   }
@@ -135,22 +441,129 @@ public class Log {
   }
 
   private static Logger logger(String loggerName) {
-    return LogManager.getLogger(loggerName);
+    return namedLoggers.computeIfAbsent(loggerName, LogManager::getLogger);
+  }
+
+  private static void write(Logger logger, Level level, Throwable t, String msgFormat, Object[] args) {
+    int argCount = args == null ? 0 : args.length;
+    if (argCount <= 3) {
+      write(logger,
+          level,
+          t,
+          msgFormat,
+          argCount,
+          argCount > 0 ? args[0] : null,
+          argCount > 1 ? args[1] : null,
+          argCount > 2 ? args[2] : null,
+          null);
+    } else {
+      write(logger, level, t, msgFormat, argCount, null, null, null, args);
+    }
+  }
+
+  /**
+   * Only called once the level is known to be enabled.
+   */
+  private static void write(Logger logger,
+                            Level level,
+                            Throwable t,
+                            String msgFormat,
+                            int argCount,
+                            Object arg0,
+                            Object arg1,
+                            Object arg2,
+                            Object[] args) {
+    AsyncAppender current = appender;
+    if (current != null
+        && (current.publish(logger, level.level(), t, msgFormat, argCount, arg0, arg1, arg2, args)
+            || (current.overflowPolicy() == OverflowPolicy.DROP && current.isRunning()))) {
+      return;
+    }
+    String msg = argCount == 0 ? msgFormat : safeFormat(msgFormat, arguments(argCount, arg0, arg1, arg2, args));
+    if (t == null) {
+      logger.log(level.level(), msg);
+    } else {
+      logger.log(level.level(), msg, t);
+    }
+  }
+
+  /**
+   * Runs on the appender thread.
+   */
+  private static void writeEvent(LogEvent event) {
+    String msg = event.argCount == 0 ? event.msgFormat : safeFormat(event.msgFormat, event.arguments());
+    event.logger.log(event.level, new TimestampedMessage(msg, event.timestamp), event.throwable);
+  }
+
+  private static Object[] arguments(int argCount, Object arg0, Object arg1, Object arg2, Object[] args) {
+    switch (argCount) {
+      case 1:
+        return new Object[]{arg0};
+      case 2:
+        return new Object[]{arg0, arg1};
+      case 3:
+        return new Object[]{arg0, arg1, arg2};
+      default:
+        return args;
+    }
   }
 
   private static String safeFormat(String msgFormat, Object... args) {
     String msg = msgFormat;
-    if(ArrayUtils.isNotEmpty(args)) {
+    if (args != null && args.length > 0) {
       try {
         msg = String.format(msgFormat, args);
-      } catch (Throwable e) {
-        warn(Log.class,
-             e,
-             "Error while formatting message for logging. Invalid or missing arguments? Message:  " + msgFormat);
+      } catch (RuntimeException e) {
+        // Not Log.warn: this may be the appender thread, which must never wait on its own ring.
+        StatusLogger.getLogger()
+                    .warn("Error while formatting message for logging. Invalid or missing arguments? Message: {}",
+                        msgFormat,
+                        e);
         msg = msgFormat;
       }
     }
     return msg;
   }
-}
 
+  /**
+   * An already formatted message that carries the time of the original logging call, so that log4j stamps the event
+   * with when it happened rather than when the appender thread got to it.
+   */
+  private static final class TimestampedMessage implements Message, TimestampMessage {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String message;
+    private final long timestamp;
+
+    TimestampedMessage(String message, long timestamp) {
+      this.message = message;
+      this.timestamp = timestamp;
+    }
+
+    @Override
+    public String getFormattedMessage() {
+      return message;
+    }
+
+    @Override
+    public String getFormat() {
+      return message;
+    }
+
+    @Override
+    public Object[] getParameters() {
+      return null;
+    }
+
+    @Override
+    public Throwable getThrowable() {
+      return null;
+    }
+
+    @Override
+    public long getTimestamp() {
+      return timestamp;
+    }
+  }
+}
@@ -0,0 +1,39 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+
+package com.fetherbrik.core.log;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.core.LoggerContext;
+
+/**
+ * Kept apart from Log so that the log4j-core classes are only loaded if this class is. Log catches the LinkageError
+ * that results when some other log4j backend is in use.
+ *
+ * @author Geoff M. Granum
+ */
+final class Log4jConfigWatcher {
+
+  private Log4jConfigWatcher() {
+  }
+
+  /**
+   * @return False if the current logger context isn't a log4j-core context, and so can't be watched.
+   */
+  static boolean watch(Runnable onConfigurationChange) {
+    org.apache.logging.log4j.spi.LoggerContext context = LogManager.getContext(false);
+    if (!(context instanceof LoggerContext)) {
+      return false;
+    }
+    // Fired on reconfiguration (e.g. monitorInterval reloads) and on Configurator.setLevel, via updateLoggers.
+    ((LoggerContext) context).addPropertyChangeListener(event -> {
+      if (LoggerContext.PROPERTY_CONFIG.equals(event.getPropertyName())) {
+        onConfigurationChange.run();
+      }
+    });
+    return true;
+  }
+}
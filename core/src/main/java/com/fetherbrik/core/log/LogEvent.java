@@ -0,0 +1,83 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+
+package com.fetherbrik.core.log;
+
+import org.apache.logging.log4j.Logger;
+
+/**
+ * A reusable slot in the asynchronous appender's ring buffer. Holds everything needed to format a log statement later,
+ * on the appender thread. Up to three arguments are held in fields, so that the fixed-arity Log methods can publish
+ * without creating an argument array.
+ *
+ * @author Geoff M. Granum
+ */
+final class LogEvent {
+
+  Logger logger;
+  org.apache.logging.log4j.Level level;
+  Throwable throwable;
+  String msgFormat;
+  int argCount;
+  Object arg0;
+  Object arg1;
+  Object arg2;
+  Object[] args;
+  long timestamp;
+
+  void set(Logger logger,
+           org.apache.logging.log4j.Level level,
+           Throwable throwable,
+           String msgFormat,
+           int argCount,
+           Object arg0,
+           Object arg1,
+           Object arg2,
+           Object[] args) {
+    this.logger = logger;
+    this.level = level;
+    this.throwable = throwable;
+    this.msgFormat = msgFormat;
+    this.argCount = argCount;
+    this.arg0 = arg0;
+    this.arg1 = arg1;
+    this.arg2 = arg2;
+    this.args = args;
+    this.timestamp = System.currentTimeMillis();
+  }
+
+  /**
+   * @return The arguments as an array, suitable for String.format.
+   */
+  Object[] arguments() {
+    switch (argCount) {
+      case 0:
+        return null;
+      case 1:
+        return new Object[]{arg0};
+      case 2:
+        return new Object[]{arg0, arg1};
+      case 3:
+        return new Object[]{arg0, arg1, arg2};
+      default:
+        return args;
+    }
+  }
+
+  /**
+   * Release references so that the ring buffer doesn't keep arguments reachable after they've been written.
+   */
+  void clear() {
+    logger = null;
+    level = null;
+    throwable = null;
+    msgFormat = null;
+    arg0 = null;
+    arg1 = null;
+    arg2 = null;
+    args = null;
+  }
+}
@@ -0,0 +1,31 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+
+package com.fetherbrik.core.log;
+
+/**
+ * What a logging thread should do when the asynchronous appender's ring buffer is full.
+ *
+ * @author Geoff M. Granum
+ */
+public enum OverflowPolicy {
+
+  /**
+   * Wait for the appender thread to make room. Nothing is lost, but a stalled appender stalls every logging thread.
+   */
+  BLOCK,
+
+  /**
+   * Discard the event and count it. Logging never waits, at the cost of lost log lines under sustained overload.
+   */
+  DROP,
+
+  /**
+   * Format and write the event on the calling thread, as if asynchronous logging were disabled. Nothing is lost and
+   * nothing waits on the appender, but events written this way may appear ahead of older, still queued events.
+   */
+  CALLER_RUNS
+}
@@ -31,12 +31,14 @@ public @interface Logged {
    * Enable to log performance timing to method exit log statement. Adds a few milliseconds to the invocation on a fully spec'd 2015 MacBook Pro.
    * Could be significant hit in a linux environment with High Performance Event Timer enabled.
    * See https://pzemtsov.github.io/2017/07/23/the-slow-currenttimemillis.html
+   * <p>
+   * In {@link PerfMode#METRICS} mode the timing is recorded in a per-method histogram instead of being logged.
    */
   boolean perf() default false;
 
 
   /**
-   * Enable to log performance, including current memory use both before and after the method invocation.
+   * Enable to log performance, including the bytes allocated by the calling thread during the method invocation.
    */
   boolean memPerf() default false;
 }
@@ -12,12 +12,20 @@ import static com.google.inject.matcher.Matchers.any;
 
 public class LoggingInterceptionModule extends AbstractModule {
 
+  private final PerfMode perfMode;
+
   public LoggingInterceptionModule() {
+    this(PerfMode.LOG);
+  }
+
+  public LoggingInterceptionModule(PerfMode perfMode) {
+    this.perfMode = perfMode;
   }
 
   @Override
   protected void configure() {
-    bindInterceptor(any(), annotatedWith(Logged.class), new LoggingInterceptor());
+    MethodMetricsRegistry registry = new MethodMetricsRegistry();
+    bind(MethodMetricsRegistry.class).toInstance(registry);
+    bindInterceptor(any(), annotatedWith(Logged.class), new LoggingInterceptor(perfMode, registry));
   }
 }
- 
@@ -7,14 +7,49 @@ package com.fetherbrik.core.log.intercept;
 
 import com.fetherbrik.core.log.Level;
 import com.fetherbrik.core.log.Log;
+import com.fetherbrik.core.metrics.ThreadAllocation;
 import org.aopalliance.intercept.MethodInterceptor;
 import org.aopalliance.intercept.MethodInvocation;
 
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 /**
+ * The annotation lookup, class name handling and level check for a method are done once, the first time it is
+ * intercepted, and cached per runtime class. The level check is only repeated after the logging configuration has
+ * changed (see {@link Log#configVersion()}), so a call to a method whose level is disabled costs a map lookup and a
+ * version comparison.
+ * <p>
+ * In {@link PerfMode#METRICS} mode, the timings of perf and memPerf methods are recorded in the MethodMetricsRegistry
+ * rather than appended to the "Leave" log line, and are recorded whether or not the method's log level is enabled.
+ *
  * @author Geoff M. Granum
  */
 public class LoggingInterceptor implements MethodInterceptor {
 
+  private final PerfMode perfMode;
+  private final MethodMetricsRegistry metricsRegistry;
+
+  /**
+   * Keyed by the class of the intercepted instance first, as an inherited method is logged against the subclass.
+   */
+  private final ClassValue<ConcurrentMap<Method, Intercept>> intercepts = new ClassValue<>() {
+    @Override
+    protected ConcurrentMap<Method, Intercept> computeValue(Class<?> type) {
+      return new ConcurrentHashMap<>();
+    }
+  };
+
+  public LoggingInterceptor() {
+    this(PerfMode.LOG, new MethodMetricsRegistry());
+  }
+
+  public LoggingInterceptor(PerfMode perfMode, MethodMetricsRegistry metricsRegistry) {
+    this.perfMode = perfMode;
+    this.metricsRegistry = metricsRegistry;
+  }
+
   @Override
   public Object invoke(MethodInvocation invocation) throws Throwable {
     Object result;
@@ -24,7 +59,7 @@ public class LoggingInterceptor implements MethodInterceptor {
     } catch (Exception e) {
       Log.error(getClass(), e, "Error performing interceptor logging, proceeding without logging.");
     }
-    if (intercept != null && intercept.enabled) {
+    if (intercept != null && (intercept.enabled || intercept.metrics != null)) {
       result = doInvoke(invocation, intercept);
     } else {
       result = invocation.proceed();
@@ -33,51 +68,97 @@ public class LoggingInterceptor implements MethodInterceptor {
   }
 
   private Intercept getDetails(MethodInvocation invocation) {
-    Logged annotation = invocation.getMethod().getAnnotation(Logged.class);
-    Class<?> loggedClass = invocation.getThis().getClass();
+    Method method = invocation.getMethod();
+    Class<?> thisClass = invocation.getThis().getClass();
+    ConcurrentMap<Method, Intercept> byMethod = intercepts.get(thisClass);
+    int configVersion = Log.configVersion();
+    Intercept intercept = byMethod.get(method);
+    if (intercept == null) {
+      intercept = createIntercept(thisClass, method, configVersion);
+      byMethod.put(method, intercept);
+    } else if (intercept.configVersion != configVersion || configVersion == Log.UnobservedConfigVersion) {
+      intercept = intercept.withConfigVersion(configVersion);
+      byMethod.put(method, intercept);
+    }
+    return intercept;
+  }
+
+  private Intercept createIntercept(Class<?> thisClass, Method method, int configVersion) {
+    Logged annotation = method.getAnnotation(Logged.class);
+    Class<?> loggedClass = thisClass;
     String className = loggedClass.getName();
     int idx = className.lastIndexOf("$$Enh"); // enhanced by guice...
     if (idx > 0) {
       loggedClass = loggedClass.getSuperclass();
     }
-    String methodName = invocation.getMethod().getName();
-    return new Intercept(loggedClass, methodName, annotation.level(), annotation.perf(), annotation.memPerf());
+    boolean perf = annotation.perf() || annotation.memPerf();
+    MethodMetrics metrics = perf && perfMode == PerfMode.METRICS
+                            ? metricsRegistry.forMethod(loggedClass, method, annotation.memPerf())
+                            : null;
+    return new Intercept(loggedClass,
+        method.getName(),
+        annotation.level(),
+        perf,
+        annotation.memPerf(),
+        metrics,
+        configVersion);
   }
 
   private Object doInvoke(MethodInvocation invocation, Intercept intercept) throws Throwable {
+    boolean log = intercept.enabled;
+    long startBytes = intercept.memPerf ? ThreadAllocation.currentThreadAllocatedBytes() : 0L;
     long start = intercept.perf ? System.nanoTime() : 0L;
     Object result;
     try {
-      Log.log(intercept.level, intercept.clazz, "Enter: %s", intercept.classAndMethod);
+      if (log) {
+        Log.log(intercept.level, intercept.clazz, "Enter: %s", intercept.classAndMethod);
+      }
       result = invocation.proceed();
-      if (intercept.perf) {
-        long end = System.nanoTime();
-        if (intercept.memPerf) {
-          Runtime rt = Runtime.getRuntime();
-          double totalMem = rt.totalMemory() / 1_048_576.0;
-          double freeMem = rt.freeMemory() / 1_048_576.0;
-          double usedMem = totalMem - freeMem;
-          Log.log(intercept.level, intercept.clazz, "Leave: %s [%d] µs, [%.3f, %.3f] [Used, Free] Mib",
-              intercept.methodName, (int) ((end - start) / 1E3), usedMem, freeMem, totalMem);
-        } else {
-          Log.log(intercept.level,
-              intercept.clazz,
-              "Leave: %s [%d] µs",
-              intercept.methodName,
-              (int) ((end - start) / 1E3));
+    } catch (Throwable throwable) {
+      if (intercept.metrics != null) {
+        intercept.metrics.recordError(System.nanoTime() - start, allocatedSince(intercept, startBytes));
+      }
+      if (log) {
+        Log.log(intercept.level, intercept.clazz, "Leave: %s (Exception thrown: %s)",
+            intercept.classAndMethod,
+            throwable.getMessage());
+      }
+      throw throwable; // rethrow the exception, lest we break semantics.
+    }
+    if (intercept.perf) {
+      long elapsed = System.nanoTime() - start;
+      long allocated = allocatedSince(intercept, startBytes);
+      if (intercept.metrics != null) {
+        intercept.metrics.record(elapsed, allocated);
+        if (log) {
+          Log.log(intercept.level, intercept.clazz, "Leave: %s", intercept.classAndMethod);
         }
+      } else if (intercept.memPerf) {
+        Log.log(intercept.level, intercept.clazz, "Leave: %s [%d] µs, [%d] bytes allocated",
+            intercept.methodName, (int) (elapsed / 1E3), allocated);
       } else {
-        Log.log(intercept.level, intercept.clazz, "Leave: %s", intercept.classAndMethod);
+        Log.log(intercept.level,
+            intercept.clazz,
+            "Leave: %s [%d] µs",
+            intercept.methodName,
+            (int) (elapsed / 1E3));
       }
-    } catch (Throwable throwable) {
-      Log.log(intercept.level, intercept.clazz, "Leave: %s (Exception thrown: %s)",
-          intercept.classAndMethod,
-          throwable.getMessage());
-      throw throwable; // rethrow the exception, lest we break semantics.
+    } else if (log) {
+      Log.log(intercept.level, intercept.clazz, "Leave: %s", intercept.classAndMethod);
     }
     return result;
   }
 
+  /**
+   * @return -1 if allocation isn't being tracked for this method, or can't be on this JVM.
+   */
+  private static long allocatedSince(Intercept intercept, long startBytes) {
+    if (!intercept.memPerf || startBytes < 0) {
+      return -1L;
+    }
+    return ThreadAllocation.currentThreadAllocatedBytes() - startBytes;
+  }
+
   private static class Intercept {
 
     final Class<?> clazz;
@@ -85,18 +166,34 @@ public class LoggingInterceptor implements MethodInterceptor {
     final Level level;
     final boolean perf;
     final boolean memPerf;
+    final MethodMetrics metrics;
     final boolean enabled;
-    final String classAndMethod; // 425-981-1501 Anna Lisa
+    final String classAndMethod;
+    final int configVersion;
 
-    Intercept(Class<?> clazz, String methodName, Level level, boolean perf, boolean memPerf) {
+    Intercept(Class<?> clazz,
+              String methodName,
+              Level level,
+              boolean perf,
+              boolean memPerf,
+              MethodMetrics metrics,
+              int configVersion) {
       this.clazz = clazz;
       this.methodName = methodName;
       this.level = level;
-      this.perf = perf || memPerf;
+      this.perf = perf;
       this.memPerf = memPerf;
+      this.metrics = metrics;
+      this.configVersion = configVersion;
       enabled = Log.enabled(clazz, level);
-      this.classAndMethod = enabled ? clazz.getSimpleName() + '#' + methodName : "";
+      this.classAndMethod = clazz.getSimpleName() + '#' + methodName;
+    }
+
+    /**
+     * Re-evaluates the level check against the current configuration; everything else carries over.
+     */
+    Intercept withConfigVersion(int configVersion) {
+      return new Intercept(clazz, methodName, level, perf, memPerf, metrics, configVersion);
     }
   }
 }
- 
@@ -0,0 +1,53 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+package com.fetherbrik.core.log.intercept;
+
+import com.fetherbrik.core.metrics.Histogram;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency and, optionally, allocation histograms for a single intercepted method.
+ *
+ * @author Geoff M. Granum
+ */
+public final class MethodMetrics {
+
+  public final String name;
+  private final Histogram latencyNanos = new Histogram();
+  private final Histogram allocatedBytes;
+  private final LongAdder errors = new LongAdder();
+
+  MethodMetrics(String name, boolean trackAllocation) {
+    this.name = name;
+    this.allocatedBytes = trackAllocation ? new Histogram() : null;
+  }
+
+  /**
+   * @param allocatedBytes Ignored if negative, or if this method isn't tracking allocation.
+   */
+  public void record(long elapsedNanos, long allocatedBytes) {
+    latencyNanos.record(elapsedNanos);
+    if (this.allocatedBytes != null && allocatedBytes >= 0) {
+      this.allocatedBytes.record(allocatedBytes);
+    }
+  }
+
+  /**
+   * Record a call that ended by throwing. It is counted in the latency histogram as well as in the error count.
+   */
+  public void recordError(long elapsedNanos, long allocatedBytes) {
+    errors.increment();
+    record(elapsedNanos, allocatedBytes);
+  }
+
+  public MethodMetricsSnapshot snapshot() {
+    return new MethodMetricsSnapshot(name,
+        errors.sum(),
+        latencyNanos.snapshot(),
+        allocatedBytes == null ? null : allocatedBytes.snapshot());
+  }
+}
@@ -0,0 +1,59 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+package com.fetherbrik.core.log.intercept;
+
+import java.lang.reflect.Method;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+
+/**
+ * Holds the {@link MethodMetrics} of every method intercepted in {@link PerfMode#METRICS} mode. Bound by
+ * LoggingInterceptionModule, so that whatever serves the snapshots can have it injected.
+ *
+ * @author Geoff M. Granum
+ */
+public final class MethodMetricsRegistry {
+
+  private final ConcurrentMap<String, MethodMetrics> metrics = new ConcurrentHashMap<>();
+
+  public MethodMetricsRegistry() {
+  }
+
+  /**
+   * @return The metrics for `method`, named for `loggedClass` so that an inherited method is counted against each
+   * subclass separately, and with the parameter types so that overloads are counted separately.
+   */
+  public MethodMetrics forMethod(Class<?> loggedClass, Method method, boolean trackAllocation) {
+    String name = nameOf(loggedClass, method);
+    return metrics.computeIfAbsent(name, key -> new MethodMetrics(key, trackAllocation));
+  }
+
+  /**
+   * @return A snapshot of every method, ordered by name.
+   */
+  public List<MethodMetricsSnapshot> snapshot() {
+    return metrics.values()
+                  .stream()
+                  .map(MethodMetrics::snapshot)
+                  .sorted(Comparator.comparing(s -> s.name))
+                  .collect(Collectors.toList());
+  }
+
+  private static String nameOf(Class<?> loggedClass, Method method) {
+    StringBuilder name = new StringBuilder(loggedClass.getName()).append('#').append(method.getName()).append('(');
+    Class<?>[] parameterTypes = method.getParameterTypes();
+    for (int i = 0; i < parameterTypes.length; i++) {
+      if (i > 0) {
+        name.append(',');
+      }
+      name.append(parameterTypes[i].getSimpleName());
+    }
+    return name.append(')').toString();
+  }
+}
@@ -0,0 +1,33 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+package com.fetherbrik.core.log.intercept;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fetherbrik.core.metrics.HistogramSnapshot;
+
+/**
+ * @author Geoff M. Granum
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public final class MethodMetricsSnapshot {
+
+  public final String name;
+  public final long count;
+  public final long errors;
+  public final HistogramSnapshot latencyNanos;
+  /**
+   * Null unless the method is annotated with memPerf.
+   */
+  public final HistogramSnapshot allocatedBytes;
+
+  MethodMetricsSnapshot(String name, long errors, HistogramSnapshot latencyNanos, HistogramSnapshot allocatedBytes) {
+    this.name = name;
+    this.count = latencyNanos.count;
+    this.errors = errors;
+    this.latencyNanos = latencyNanos;
+    this.allocatedBytes = allocatedBytes;
+  }
+}
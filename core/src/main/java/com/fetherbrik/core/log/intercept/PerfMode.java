@@ -0,0 +1,22 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+package com.fetherbrik.core.log.intercept;
+
+/**
+ * Where the timings of {@link Logged#perf()} and {@link Logged#memPerf()} methods go.
+ *
+ * @author Geoff M. Granum
+ */
+public enum PerfMode {
+  /**
+   * Append the timing to each method's "Leave" log line, if the method's log level is enabled.
+   */
+  LOG,
+  /**
+   * Record the timing in the method's histograms in the {@link MethodMetricsRegistry}, whatever the log level.
+   */
+  METRICS
+}
@@ -0,0 +1,107 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+package com.fetherbrik.core.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free, fixed size histogram of non-negative long values, in the manner of HdrHistogram. Buckets are
+ * log-linear: each power of two is split into 32 equal sub-buckets, so any value is placed within about 3% of its
+ * actual size, across the whole range of a long, in 1,888 counters.
+ * <p>
+ * Recording is an array index computation and an atomic increment; it never locks and never allocates. Snapshots read
+ * the counters without stopping writers, so a snapshot taken under load may be off by the few values recorded while
+ * it was being read.
+ *
+ * @author Geoff M. Granum
+ */
+public final class Histogram {
+
+  /**
+   * Values below 2^SubBucketBits get a bucket each. Above that, each power of two gets half that many buckets.
+   */
+  private static final int SubBucketBits = 6;
+  private static final int SubBucketCount = 1 << SubBucketBits;
+  private static final int SubBucketHalfCount = SubBucketCount >> 1;
+  private static final int BucketCount = (63 - SubBucketBits) * SubBucketHalfCount + SubBucketCount;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BucketCount);
+  private final LongAdder total = new LongAdder();
+  private final AtomicLong max = new AtomicLong();
+
+  public Histogram() {
+  }
+
+  /**
+   * @param value Negative values are recorded as zero.
+   */
+  public void record(long value) {
+    long v = Math.max(0L, value);
+    counts.incrementAndGet(indexOf(v));
+    total.add(v);
+    long currentMax = max.get();
+    while (v > currentMax && !max.compareAndSet(currentMax, v)) {
+      currentMax = max.get();
+    }
+  }
+
+  public HistogramSnapshot snapshot() {
+    long[] copy = new long[BucketCount];
+    long count = 0;
+    for (int i = 0; i < BucketCount; i++) {
+      long c = counts.get(i);
+      copy[i] = c;
+      count += c;
+    }
+    long maxValue = max.get();
+    return new HistogramSnapshot(count,
+        count == 0 ? 0 : total.sum() / count,
+        valueAtPercentile(copy, count, maxValue, 0.50),
+        valueAtPercentile(copy, count, maxValue, 0.90),
+        valueAtPercentile(copy, count, maxValue, 0.99),
+        valueAtPercentile(copy, count, maxValue, 0.999),
+        maxValue);
+  }
+
+  /**
+   * @return The highest value equivalent to the bucket holding the value at the given percentile, but never more than
+   * the largest value actually recorded.
+   */
+  private static long valueAtPercentile(long[] counts, long count, long maxValue, double percentile) {
+    if (count == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(percentile * count));
+    long seen = 0;
+    for (int i = 0; i < counts.length; i++) {
+      seen += counts[i];
+      if (seen >= rank) {
+        return Math.min(highestEquivalentValue(i), maxValue);
+      }
+    }
+    return maxValue;
+  }
+
+  static int indexOf(long value) {
+    if (value < SubBucketCount) {
+      return (int) value;
+    }
+    // Shift so that the top SubBucketBits bits of the value select the sub-bucket.
+    int shift = 63 - Long.numberOfLeadingZeros(value) - SubBucketBits + 1;
+    return shift * SubBucketHalfCount + (int) (value >>> shift);
+  }
+
+  static long highestEquivalentValue(int index) {
+    if (index < SubBucketCount) {
+      return index;
+    }
+    int shift = index / SubBucketHalfCount - 1;
+    long subBucket = index - shift * SubBucketHalfCount;
+    return ((subBucket + 1) << shift) - 1;
+  }
+}
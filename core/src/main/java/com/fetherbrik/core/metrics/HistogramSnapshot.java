@@ -0,0 +1,32 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+package com.fetherbrik.core.metrics;
+
+/**
+ * An immutable copy of a {@link Histogram}, in whatever unit its values were recorded.
+ *
+ * @author Geoff M. Granum
+ */
+public final class HistogramSnapshot {
+
+  public final long count;
+  public final long mean;
+  public final long p50;
+  public final long p90;
+  public final long p99;
+  public final long p999;
+  public final long max;
+
+  HistogramSnapshot(long count, long mean, long p50, long p90, long p99, long p999, long max) {
+    this.count = count;
+    this.mean = mean;
+    this.p50 = p50;
+    this.p90 = p90;
+    this.p99 = p99;
+    this.p999 = p999;
+    this.max = max;
+  }
+}
@@ -0,0 +1,71 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+package com.fetherbrik.core.metrics;
+
+import com.fetherbrik.core.base.Verify;
+import com.google.inject.Singleton;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Supplier;
+
+/**
+ * The metrics of a process, as named sources of snapshots. Each component registers a source for its own numbers, and
+ * whatever serves metrics asks every source for a fresh snapshot when it is read, so nothing is computed until then.
+ * <p>
+ * Inject the one instance, or pass it to whatever isn't built by Guice, such as
+ * {@code RestClientFactory.registerMetrics}.
+ *
+ * @author Geoff M. Granum
+ */
+@Singleton
+public final class MetricSources {
+
+  private final ConcurrentNavigableMap<String, Supplier<?>> sources = new ConcurrentSkipListMap<>();
+
+  public MetricSources() {
+  }
+
+  /**
+   * @param source Called for each read, from whichever thread reads; the value it returns is serialized as JSON.
+   */
+  public void register(String name, Supplier<?> source) {
+    Verify.isNotEmpty(name, "A metrics source must have a name.");
+    Verify.isNotNull(source, "Source is required.");
+    Verify.isTrue(sources.putIfAbsent(name, source) == null, "A metrics source named %s is already registered.", name);
+  }
+
+  /**
+   * Does nothing if there is no source of that name.
+   */
+  public void unregister(String name) {
+    sources.remove(name);
+  }
+
+  public Set<String> names() {
+    return sources.keySet();
+  }
+
+  public Optional<Object> snapshot(String name) {
+    Supplier<?> source = sources.get(name);
+    return source == null ? Optional.empty() : Optional.ofNullable(source.get());
+  }
+
+  /**
+   * @return A snapshot of every source, by name in alphabetical order.
+   */
+  public Map<String, Object> snapshot() {
+    Map<String, Object> snapshots = new LinkedHashMap<>();
+    for (Map.Entry<String, Supplier<?>> entry : sources.entrySet()) {
+      snapshots.put(entry.getKey(), entry.getValue().get());
+    }
+    return snapshots;
+  }
+}
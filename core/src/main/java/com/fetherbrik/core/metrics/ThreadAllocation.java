@@ -0,0 +1,56 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+package com.fetherbrik.core.metrics;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * The number of bytes the current thread has allocated on the heap, as counted by the JVM's thread allocation
+ * accounting. Unlike sampling Runtime.totalMemory and freeMemory, the difference between two readings is the memory
+ * allocated by the code in between, regardless of what other threads or the garbage collector were doing.
+ *
+ * @author Geoff M. Granum
+ */
+public final class ThreadAllocation {
+
+  private static final com.sun.management.ThreadMXBean ThreadBean = threadBean();
+
+  private ThreadAllocation() {
+  }
+
+  /**
+   * @return False if this JVM can't count allocations per thread, in which case {@link #currentThreadAllocatedBytes()}
+   * always returns -1.
+   */
+  public static boolean supported() {
+    return ThreadBean != null;
+  }
+
+  /**
+   * @return The total bytes allocated by the current thread so far, or -1 if not supported.
+   */
+  public static long currentThreadAllocatedBytes() {
+    return ThreadBean == null ? -1L : ThreadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+  private static com.sun.management.ThreadMXBean threadBean() {
+    try {
+      java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+      if (bean instanceof com.sun.management.ThreadMXBean) {
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+        if (threadBean.isThreadAllocatedMemorySupported()) {
+          if (!threadBean.isThreadAllocatedMemoryEnabled()) {
+            threadBean.setThreadAllocatedMemoryEnabled(true);
+          }
+          return threadBean;
+        }
+      }
+    } catch (LinkageError | UnsupportedOperationException | SecurityException e) {
+      // jdk.management isn't available.
+    }
+    return null;
+  }
+}
@@ -5,10 +5,10 @@
  */
 package com.fetherbrik.core.persistence.id;
 
+import com.fetherbrik.core.base.Verify;
 import com.fetherbrik.core.log.Log;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.inject.Singleton;
-import org.apache.commons.codec.binary.Hex;
 
 import javax.annotation.Nonnull;
 import javax.annotation.concurrent.Immutable;
@@ -21,8 +21,10 @@ import java.net.SocketException;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.Enumeration;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Id generally of the form described here: http://www.mongodb.org/display/DOCS/Object+IDs
@@ -35,17 +37,35 @@ import java.util.concurrent.atomic.AtomicInteger;
  * 3 Bytes for machine ID
  * 2 Bytes for process ID
  * 3 Byte auto increment field.
+ * <p>
+ * The time and increment fields are packed into a single AtomicLong and advanced with a compare-and-set, so no lock
+ * is taken when generating ids. The increment field resets at the start of each millisecond. Should more than 2^24
+ * ids be requested within one millisecond, the increment carries into the time field: the generator 'borrows' the
+ * next millisecond rather than rolling over, which keeps every id strictly greater than the one before it.
+ * <p>
+ * The machine and process bytes are the same for every instance in a JVM, so the clock is shared by them all: two
+ * instances, in a second injector or a benchmark, draw from one sequence rather than handing out the same ids.
  */
 @Singleton
 @ThreadSafe
 @Immutable
 public final class DefaultIdGenerator implements IdGenerator {
 
-  public static final  int DefaultIdByteCount = 16;
-  private static final int ThreeByteIntMaxValue = 1677216;
+  public static final int DefaultIdByteCount = 16;
+  private static final int IncrementBits = 24;
+  private static final long IncrementMask = (1L << IncrementBits) - 1;
   private static final byte[] processIdHash = processIdHash();
   private static final byte[] machineIdHash = machineIdHash();
-  private final AtomicInteger autoInc = new AtomicInteger((int) (Math.random() * ThreeByteIntMaxValue));
+  /**
+   * The machine and process bytes never change, so they are pre-shifted into the high bits of the low-order long.
+   */
+  private static final long machineAndProcess = machineAndProcess(machineIdHash, processIdHash);
+
+  /**
+   * Packed (millis - epochMillis) &lt;&lt; 24 | increment. Forty bits of offset leaves roughly 34 years of uptime.
+   */
+  private static final AtomicLong clock = new AtomicLong();
+  private static final long epochMillis = System.currentTimeMillis();
 
   /**
    * Only called if, for some odd reason, the call to NetworkInterface.getByInetAddress fails.
@@ -69,13 +89,6 @@ public final class DefaultIdGenerator implements IdGenerator {
     return mac;
   }
 
-  private static void checkForOverflow(AtomicInteger autoInc) {
-    if (autoInc.get() >= ThreeByteIntMaxValue) {
-      Log.trace(DefaultIdGenerator.class, "AutoInc field rolled over to 0.");
-      autoInc.set(0);
-    }
-  }
-
   private static byte[] processIdHash() {
     try {
       byte[] name = ManagementFactory.getRuntimeMXBean().getName().getBytes(StandardCharsets.UTF_8);
@@ -106,32 +119,33 @@ public final class DefaultIdGenerator implements IdGenerator {
     }
   }
 
-  private static void insertAsBytes(long v, byte[] into) {
-    into[0] = (byte) (v >>> 56);
-    into[1] = (byte) (v >>> 48);
-    into[2] = (byte) (v >>> 40);
-    into[3] = (byte) (v >>> 32);
-    into[4] = (byte) (v >>> 24);
-    into[5] = (byte) (v >>> 16);
-    into[6] = (byte) (v >>> 8);
-    into[7] = (byte) (v);
-
+  private static long machineAndProcess(byte[] machineIdHash, byte[] processIdHash) {
+    long v = 0;
+    for (int i = 0; i < 3; i++) {
+      v = (v << 8) | (machineIdHash[i] & 0xFF);
+    }
+    for (int i = 0; i < 2; i++) {
+      v = (v << 8) | (processIdHash[i] & 0xFF);
+    }
+    return v << IncrementBits;
   }
 
-  private static void insertAsBytes(int v, int srcPos, byte[] into, int destPos, int length) {
-    for (int i = srcPos; i < length; i++) {
-      into[destPos + i] = (byte) (v >>> (24 - 8 * (srcPos + i)));
-    }
+  private static void insertAsBytes(long v, byte[] into, int destPos) {
+    into[destPos] = (byte) (v >>> 56);
+    into[destPos + 1] = (byte) (v >>> 48);
+    into[destPos + 2] = (byte) (v >>> 40);
+    into[destPos + 3] = (byte) (v >>> 32);
+    into[destPos + 4] = (byte) (v >>> 24);
+    into[destPos + 5] = (byte) (v >>> 16);
+    into[destPos + 6] = (byte) (v >>> 8);
+    into[destPos + 7] = (byte) (v);
   }
 
   @Nonnull
   @Override
   public String nextHex() {
-    byte[] bytes;
-    synchronized (autoInc) {
-      bytes = nextBytes();
-    }
-    return Hex.encodeHexString(bytes);
+    long packedClock = reserve(1);
+    return HexCodec.toHex(hiOf(packedClock), loOf(packedClock), HexCodec.MaxDigits);
   }
 
   @Override public int idByteLength() {
@@ -141,28 +155,80 @@ public final class DefaultIdGenerator implements IdGenerator {
   @Override
   @Nonnull
   public BigInteger next() {
-    byte[] bytes;
-    synchronized (autoInc) {
-      bytes = nextBytes();
+    return new BigInteger(toBytes(reserve(1)));
+  }
+
+  /**
+   * Reserves all `count` ids with a single compare-and-set. The ids are consecutive values of the packed
+   * time-and-increment field, so the run is contiguous in generation order, and no other thread can be handed an id
+   * that falls between the first and last id of the batch.
+   */
+  @Override
+  @Nonnull
+  public List<BigInteger> nextBatch(int count) {
+    Verify.isTrue(count > 0, "Batch size must be greater than zero, but was %s.", count);
+    long first = reserve(count);
+    List<BigInteger> ids = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      ids.add(new BigInteger(toBytes(first + i)));
     }
-    return new BigInteger(bytes);
-  }
-
-  private byte[] nextBytes() {
-    int nextAuto = autoInc.getAndIncrement();
-    checkForOverflow(autoInc);
-    byte[] bytes = new byte[16];
-    long millis = System.currentTimeMillis();
-    insertAsBytes(millis, bytes);
-    //    @todo: Join these two arrays in class initialization so we only have one copy operation here.
-    System.arraycopy(machineIdHash, 0, bytes, 8, 3);
-    System.arraycopy(processIdHash, 0, bytes, 11, 2);
-    // copy lower-order bytes from the int as the auto increment value
-    insertAsBytes(nextAuto, 1, bytes, 13, 3);
-    return bytes;
+    return ids;
   }
 
+  /**
+   * Builds the id straight from the packed clock; no byte array or BigInteger is created.
+   */
+  @Override
+  @Nonnull
+  public <T extends Identified> TypedId<T> next(Class<T> type) {
+    return toTypedId(reserve(1));
+  }
+
+  @Override
+  @Nonnull
+  public <T extends Identified> List<TypedId<T>> nextBatch(Class<T> type, int count) {
+    Verify.isTrue(count > 0, "Batch size must be greater than zero, but was %s.", count);
+    long first = reserve(count);
+    List<TypedId<T>> ids = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      ids.add(toTypedId(first + i));
+    }
+    return ids;
+  }
+
+  /**
+   * Advance the clock by `count` ticks, moving to the current millisecond if wall time has passed the last id handed
+   * out.
+   *
+   * @return The packed clock value of the first reserved id.
+   */
+  private static long reserve(int count) {
+    long now = (System.currentTimeMillis() - epochMillis) << IncrementBits;
+    long prev;
+    long first;
+    do {
+      prev = clock.get();
+      first = now > prev ? now : prev + 1;
+    } while (!clock.compareAndSet(prev, first + count - 1));
+    return first;
+  }
 
+  private <T extends Identified> TypedId<T> toTypedId(long packedClock) {
+    return new TypedId<>(hiOf(packedClock), loOf(packedClock));
+  }
 
+  private static long hiOf(long packedClock) {
+    return epochMillis + (packedClock >>> IncrementBits);
+  }
+
+  private static long loOf(long packedClock) {
+    return machineAndProcess | (packedClock & IncrementMask);
+  }
+
+  private static byte[] toBytes(long packedClock) {
+    byte[] bytes = new byte[DefaultIdByteCount];
+    insertAsBytes(hiOf(packedClock), bytes, 0);
+    insertAsBytes(loOf(packedClock), bytes, 8);
+    return bytes;
+  }
 }
- 
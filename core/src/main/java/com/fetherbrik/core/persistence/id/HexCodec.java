@@ -0,0 +1,182 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+package com.fetherbrik.core.persistence.id;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Table driven, lower-case hexadecimal encoding for identifiers held as a pair of longs. Every encode method writes
+ * into a buffer supplied by the caller, and decoding reads straight into a long, so neither direction creates
+ * temporary Strings, byte arrays or BigIntegers.
+ * <p>
+ * Digits are counted from the low-order end of the value: encoding a 16 byte id as 24 digits writes the low-order 12
+ * bytes, which is exactly what a MongoDB ObjectId sized id wants.
+ *
+ * @author ggranum
+ */
+public final class HexCodec {
+
+  public static final int MaxDigits = TypedId.MaxByteLength * 2;
+
+  private static final char[] Digits = "0123456789abcdef".toCharArray();
+
+  /**
+   * Both characters for every byte value, laid out [hi0, lo0, hi1, lo1, ...], so that a byte encodes with two lookups
+   * and no shifting of the result.
+   */
+  private static final char[] ByteToChars = new char[512];
+
+  /**
+   * Maps an ASCII character to its nibble value, or -1 if the character is not a hexadecimal digit.
+   */
+  private static final byte[] CharToNibble = new byte[128];
+
+  static {
+    for (int i = 0; i < 256; i++) {
+      ByteToChars[i << 1] = Digits[i >>> 4];
+      ByteToChars[(i << 1) + 1] = Digits[i & 0xF];
+    }
+    Arrays.fill(CharToNibble, (byte) -1);
+    for (int i = 0; i < 10; i++) {
+      CharToNibble['0' + i] = (byte) i;
+    }
+    for (int i = 0; i < 6; i++) {
+      CharToNibble['a' + i] = (byte) (10 + i);
+      CharToNibble['A' + i] = (byte) (10 + i);
+    }
+  }
+
+  private HexCodec() {
+  }
+
+  /**
+   * Write the low-order `digitCount` hexadecimal digits of the 128 bit value `hi:lo` into `dest`.
+   */
+  public static void encode(long hi, long lo, int digitCount, char[] dest, int offset) {
+    checkDigitCount(digitCount);
+    int pos = offset + digitCount;
+    int byteCount = digitCount >> 1;
+    for (int i = 0; i < byteCount; i++) {
+      int b = (byteAt(hi, lo, i) & 0xFF) << 1;
+      dest[--pos] = ByteToChars[b + 1];
+      dest[--pos] = ByteToChars[b];
+    }
+    if ((digitCount & 1) == 1) {
+      dest[--pos] = Digits[byteAt(hi, lo, byteCount) & 0xF];
+    }
+  }
+
+  /**
+   * Write the low-order `digitCount` hexadecimal digits of the 128 bit value `hi:lo` into `dest` as ASCII bytes,
+   * advancing the buffer's position by `digitCount`.
+   */
+  public static void encode(long hi, long lo, int digitCount, ByteBuffer dest) {
+    checkDigitCount(digitCount);
+    int start = dest.position();
+    int pos = start + digitCount;
+    int byteCount = digitCount >> 1;
+    for (int i = 0; i < byteCount; i++) {
+      int b = (byteAt(hi, lo, i) & 0xFF) << 1;
+      dest.put(--pos, (byte) ByteToChars[b + 1]);
+      dest.put(--pos, (byte) ByteToChars[b]);
+    }
+    if ((digitCount & 1) == 1) {
+      dest.put(--pos, (byte) Digits[byteAt(hi, lo, byteCount) & 0xF]);
+    }
+    dest.position(start + digitCount);
+  }
+
+  /**
+   * Write every byte of `src` into `dest` as two hexadecimal digits.
+   */
+  public static void encode(byte[] src, char[] dest, int offset) {
+    for (int i = 0, pos = offset; i < src.length; i++, pos += 2) {
+      int b = (src[i] & 0xFF) << 1;
+      dest[pos] = ByteToChars[b];
+      dest[pos + 1] = ByteToChars[b + 1];
+    }
+  }
+
+  /**
+   * @return The low-order `digitCount` hexadecimal digits of `hi:lo`, zero-padded.
+   */
+  public static String toHex(long hi, long lo, int digitCount) {
+    char[] chars = new char[digitCount];
+    encode(hi, lo, digitCount, chars, 0);
+    return new String(chars);
+  }
+
+  /**
+   * @return The number of digits needed to represent `hi:lo` without leading zeros; never less than one.
+   */
+  public static int significantDigits(long hi, long lo) {
+    int leadingZeros = hi != 0 ? Long.numberOfLeadingZeros(hi) : 64 + Long.numberOfLeadingZeros(lo);
+    return Math.max(1, (128 - leadingZeros + 3) >> 2);
+  }
+
+  /**
+   * Parse up to 16 hexadecimal digits, `hex[start, end)`, into a long. Upper and lower case digits are accepted.
+   *
+   * @throws NumberFormatException if any character in the range is not a hexadecimal digit.
+   */
+  public static long decodeLong(CharSequence hex, int start, int end) {
+    if (end - start > 16) {
+      throw new NumberFormatException("At most 16 hexadecimal digits fit in a long: " + hex);
+    }
+    long value = 0;
+    int invalid = 0;
+    for (int i = start; i < end; i++) {
+      char c = hex.charAt(i);
+      // Fold the range and digit checks into one test at the end, rather than branching per character.
+      int nibble = c < 128 ? CharToNibble[c] : -1;
+      invalid |= nibble;
+      value = (value << 4) | (nibble & 0xF);
+    }
+    if (invalid < 0) {
+      throw new NumberFormatException("Not a hexadecimal value: " + hex);
+    }
+    return value;
+  }
+
+  /**
+   * @return The high-order long of the 128 bit value represented by `hex`.
+   */
+  public static long decodeHigh(CharSequence hex) {
+    int length = checkLength(hex);
+    return length > 16 ? decodeLong(hex, 0, length - 16) : 0L;
+  }
+
+  /**
+   * @return The low-order long of the 128 bit value represented by `hex`.
+   */
+  public static long decodeLow(CharSequence hex) {
+    int length = checkLength(hex);
+    return decodeLong(hex, Math.max(0, length - 16), length);
+  }
+
+  private static int checkLength(CharSequence hex) {
+    int length = hex.length();
+    if (length == 0 || length > MaxDigits) {
+      throw new NumberFormatException("Hexadecimal identifiers must be between 1 and " + MaxDigits + " digits long: " + hex);
+    }
+    return length;
+  }
+
+  /**
+   * @param index Byte index counted from the low-order end of `hi:lo`.
+   */
+  private static int byteAt(long hi, long lo, int index) {
+    long word = index < 8 ? lo : hi;
+    return (int) (word >>> ((index & 7) << 3));
+  }
+
+  private static void checkDigitCount(int digitCount) {
+    if (digitCount < 0 || digitCount > MaxDigits) {
+      throw new IllegalArgumentException("Digit count must be between 0 and " + MaxDigits + ", but was " + digitCount);
+    }
+  }
+}
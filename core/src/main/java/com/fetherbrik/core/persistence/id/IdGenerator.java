@@ -5,8 +5,13 @@
  */
 package com.fetherbrik.core.persistence.id;
 
+import com.fetherbrik.core.base.Verify;
+import com.fetherbrik.core.collections.Transform;
+
 import javax.annotation.Nonnull;
 import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * As simple or as complex an id as you like.
@@ -41,6 +46,26 @@ public interface IdGenerator {
   @Nonnull
   String nextHex();
 
+  /**
+   * Reserve a run of `count` ids for bulk inserts. The returned ids are in increasing order, and carry the same
+   * ordering guarantees as {@link #next()}.
+   * <p>
+   * The default implementation simply calls {@link #next()} `count` times, so ids from other threads may be
+   * interleaved with the batch. Implementations SHOULD override this to reserve the whole run in a single atomic step.
+   *
+   * @param count The number of ids to reserve. Must be greater than zero.
+   * @return `count` new, unique ids, in increasing order.
+   */
+  @Nonnull
+  default List<BigInteger> nextBatch(int count) {
+    Verify.isTrue(count > 0, "Batch size must be greater than zero, but was %s.", count);
+    List<BigInteger> ids = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      ids.add(next());
+    }
+    return ids;
+  }
+
   /**
    * BigInteger truncates leading zeros, so if an id is constructed out of sets of byte arrays, reconstructing that
    * array becomes difficult unless we track the original length.
@@ -68,4 +93,9 @@ public interface IdGenerator {
     return new TypedId<T>(next());
   }
 
+  @Nonnull
+  default <T extends Identified> List<TypedId<T>> nextBatch(Class<T> type, int count) {
+    return Transform.apply(nextBatch(count), id -> new TypedId<T>(id));
+  }
+
 }
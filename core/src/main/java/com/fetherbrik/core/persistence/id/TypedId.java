@@ -9,26 +9,63 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.SerializerProvider;
 import com.fasterxml.jackson.databind.ser.std.StdSerializer;
-import org.apache.commons.codec.binary.Hex;
 
 import javax.annotation.Nonnull;
 import java.io.IOException;
 import java.io.Serializable;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 
+/**
+ * An unsigned identifier of up to 16 bytes, held as two longs rather than a BigInteger. Equality, hashing and
+ * comparison are plain primitive operations; the BigInteger returned by {@link #value()} is only built if someone
+ * asks for it.
+ */
 public class TypedId<T extends Identified> implements Identifier, Comparable<TypedId<T>>, Serializable {
 
-  private static final long serialVersionUID = 1L;
+  public static final int MaxByteLength = 16;
+
+  private static final long serialVersionUID = 2L;
+  /**
+   * Scratch space for writing hex digits to a JsonGenerator, which copies the characters out before returning.
+   */
+  private static final ThreadLocal<char[]> JsonBuffer = ThreadLocal.withInitial(() -> new char[HexCodec.MaxDigits]);
+  private static final BigInteger MaxValue = BigInteger.ONE.shiftLeft(MaxByteLength * 8);
+
+  private final long hi;
+  private final long lo;
 
-  @JsonProperty
-  private final BigInteger id;
+  /**
+   * Lazily computed; racy single-check is fine as BigInteger is immutable.
+   */
+  private transient BigInteger value;
 
+  /**
+   * Parses the hex digits directly into the two longs, without going through a BigInteger.
+   *
+   * @param hexId Between 1 and 32 hexadecimal digits, upper or lower case.
+   * @throws NumberFormatException if `hexId` is not a valid hexadecimal identifier.
+   */
   public TypedId(@Nonnull String hexId) {
-    this(new BigInteger(hexId, 16));
+    this(HexCodec.decodeHigh(hexId), HexCodec.decodeLow(hexId));
   }
 
   public TypedId(@Nonnull BigInteger id) {
-    this.id = id;
+    if (id.signum() < 0 || id.compareTo(MaxValue) >= 0) {
+      throw new IllegalArgumentException("Identifiers must be unsigned values of at most " + MaxByteLength + " bytes.");
+    }
+    this.hi = id.shiftRight(64).longValue();
+    this.lo = id.longValue();
+    this.value = id;
+  }
+
+  /**
+   * @param hi The high-order eight bytes of the identifier, big-endian.
+   * @param lo The low-order eight bytes of the identifier, big-endian.
+   */
+  public TypedId(long hi, long lo) {
+    this.hi = hi;
+    this.lo = lo;
   }
 
   /**
@@ -38,12 +75,41 @@ public class TypedId<T extends Identified> implements Identifier, Comparable<Typ
    */
   @Nonnull
   public BigInteger value() {
-    return id;
+    BigInteger v = value;
+    if (v == null) {
+      byte[] bytes = new byte[MaxByteLength];
+      writeBytes(bytes, 0, MaxByteLength);
+      v = new BigInteger(1, bytes);
+      value = v;
+    }
+    return v;
+  }
+
+  /**
+   * @return The high-order eight bytes of this identifier.
+   */
+  public long hi() {
+    return hi;
+  }
+
+  /**
+   * @return The low-order eight bytes of this identifier.
+   */
+  public long lo() {
+    return lo;
+  }
+
+  /**
+   * Serialized as {"id": value} when no TypedIdSerializer is registered, as it was when the BigInteger was the field.
+   */
+  @JsonProperty("id")
+  private BigInteger jsonValue() {
+    return value();
   }
 
   @Nonnull
   public String toString() {
-    return String.format("%s:%s", getClass().getSimpleName(), toHex());
+    return getClass().getSimpleName() + ':' + toHex();
   }
 
   /**
@@ -60,45 +126,99 @@ public class TypedId<T extends Identified> implements Identifier, Comparable<Typ
 
   /**
    * Take care when using identifiers that are made of of sets of byte arrays that are then concatenated into a single
-   * array: BigInteger truncates values.
-   * @return
+   * array: like BigInteger#toString(16), this drops leading zeros.
+   * @return The shortest hexadecimal representation of this identifier; "0" for zero.
    */
   @Nonnull
   public String toHex() {
-    return id.toString(16);
+    return HexCodec.toHex(hi, lo, HexCodec.significantDigits(hi, lo));
   }
 
   /**
    * You probably want IdGenerator#toHex(TypedId) instead of this method.
-   * BigInteger will truncate leading zeros.
-   * @param untruncatedLength The original, known byte length of the generated BigInteger value. Must be greater than
-   *                          or equal to the actual value of `id`.
+   * @param untruncatedLength The original, known byte length of the generated value. Must be large enough to hold the
+   *                          actual value of this identifier.
    * @return A hexadecimal string of `untruncatedLength` bytes.
    */
   @Nonnull
   public String toHex(int untruncatedLength) {
-    byte[] allBytes = toBytes(untruncatedLength);
-    return Hex.encodeHexString(allBytes);
+    checkLength(untruncatedLength);
+    return HexCodec.toHex(hi, lo, untruncatedLength * 2);
   }
 
   /**
    * You probably want IdGenerator#toBytes(TypedId) instead of this method.
-   * BigInteger will truncate leading zeros.
-   * @param untruncatedLength The original, known byte length of the generated BigInteger value. Must be greater than
-   *                          or equal to the actual value of `id`.
+   * @param untruncatedLength The original, known byte length of the generated value. Must be large enough to hold the
+   *                          actual value of this identifier.
    * @return A byte array `untruncatedLength` bytes.
    */
   public byte[] toBytes(int untruncatedLength) {
-    byte[] in = id.toByteArray();
-    if (in.length > untruncatedLength) {
+    checkLength(untruncatedLength);
+    byte[] bytes = new byte[untruncatedLength];
+    writeBytes(bytes, 0, untruncatedLength);
+    return bytes;
+  }
+
+  /**
+   * Write the low-order `byteCount` bytes of this identifier into `dest`, big-endian, without allocating.
+   */
+  public void writeBytes(byte[] dest, int offset, int byteCount) {
+    for (int i = 0; i < byteCount; i++) {
+      int shift = (byteCount - 1 - i) << 3;
+      long word = shift >= 64 ? hi : lo;
+      dest[offset + i] = (byte) (word >>> (shift & 63));
+    }
+  }
+
+  /**
+   * Write the low-order `digitCount` hexadecimal digits of this identifier into `dest`, without allocating.
+   */
+  public void writeHex(char[] dest, int offset, int digitCount) {
+    HexCodec.encode(hi, lo, digitCount, dest, offset);
+  }
+
+  /**
+   * Write the low-order `digitCount` hexadecimal digits of this identifier into `dest` as ASCII bytes, without
+   * allocating.
+   */
+  public void writeHex(ByteBuffer dest, int digitCount) {
+    HexCodec.encode(hi, lo, digitCount, dest);
+  }
+
+  /**
+   * Write the low-order `digitCount` hexadecimal digits of this identifier as a JSON string value, without creating
+   * an intermediate String.
+   */
+  public void writeHex(JsonGenerator jgen, int digitCount) throws IOException {
+    char[] buffer = JsonBuffer.get();
+    HexCodec.encode(hi, lo, digitCount, buffer, 0);
+    jgen.writeString(buffer, 0, digitCount);
+  }
+
+  /**
+   * Write the same value as {@link #toJson()} to `jgen`, without creating an intermediate String.
+   */
+  public void writeJson(JsonGenerator jgen) throws IOException {
+    writeHex(jgen, HexCodec.significantDigits(hi, lo));
+  }
+
+  private void checkLength(int untruncatedLength) {
+    if (untruncatedLength > MaxByteLength) {
+      throw new IllegalArgumentException("Identifiers are at most " + MaxByteLength + " bytes long.");
+    }
+    if (!fitsIn(untruncatedLength)) {
       throw new IllegalArgumentException("Truncating Identifiers is not supported. Untruncated length must be less than or equal to actual identifier length.");
     }
-    // BigInteger#toByteArray() will truncate leading zeros. We have to add them back in by checking the difference
-    // in the returned array size and the required `untruncatedLength` bytes we created the BigInteger with in the first place.
-    byte[] allBytes = new byte[untruncatedLength];
-    int startAt = untruncatedLength - in.length;
-    System.arraycopy(in, 0, allBytes, startAt, in.length);
-    return allBytes;
+  }
+
+  private boolean fitsIn(int byteCount) {
+    if (byteCount >= MaxByteLength) {
+      return true;
+    }
+    if (byteCount > 8) {
+      return (hi >>> ((byteCount - 8) << 3)) == 0;
+    }
+    return hi == 0 && (byteCount == 8 || (lo >>> (byteCount << 3)) == 0);
   }
 
   @Override
@@ -113,17 +233,23 @@ public class TypedId<T extends Identified> implements Identifier, Comparable<Typ
     //noinspection rawtypes
     TypedId id1 = (TypedId) o;
 
-    return id.equals(id1.id);
+    return hi == id1.hi && lo == id1.lo;
   }
 
   @Override
   public int hashCode() {
-    return id.hashCode();
+    long h = hi * 0x9E3779B97F4A7C15L ^ lo;
+    return (int) (h ^ (h >>> 32));
   }
 
+  /**
+   * Unsigned, 128 bit comparison. The high word outweighs the low word, so no branch is needed to pick between them.
+   */
   @Override
   public int compareTo(TypedId<T> o) {
-    return this.id.compareTo(o.id);
+    int hiCmp = Integer.signum(Long.compareUnsigned(this.hi, o.hi));
+    int loCmp = Integer.signum(Long.compareUnsigned(this.lo, o.lo));
+    return (hiCmp << 1) + loCmp;
   }
 
 
@@ -136,8 +262,7 @@ public class TypedId<T extends Identified> implements Identifier, Comparable<Typ
 
     @Override
     public void serialize(T identifier, JsonGenerator jgen, SerializerProvider provider) throws IOException {
-      jgen.writeString(identifier.toJson());
+      identifier.writeJson(jgen);
     }
   }
 }
- 
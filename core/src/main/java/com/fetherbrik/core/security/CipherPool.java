@@ -0,0 +1,43 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+package com.fetherbrik.core.security;
+
+import com.fetherbrik.core.exception.FatalException;
+
+import javax.crypto.Cipher;
+import java.security.GeneralSecurityException;
+
+/**
+ * One Cipher per thread for a given transformation. Cipher.getInstance walks the security providers on every call;
+ * a Cipher can't be shared between threads, but can be re-initialized and reused by the thread that owns it.
+ *
+ * @author Geoff M. Granum
+ */
+final class CipherPool {
+
+  private final String transformation;
+  private final ThreadLocal<Cipher> ciphers;
+
+  CipherPool(String transformation) {
+    this.transformation = transformation;
+    this.ciphers = ThreadLocal.withInitial(this::newCipher);
+  }
+
+  /**
+   * @return This thread's Cipher. The caller must init it before use, and must not hand it to another thread.
+   */
+  Cipher get() {
+    return ciphers.get();
+  }
+
+  private Cipher newCipher() {
+    try {
+      return Cipher.getInstance(transformation);
+    } catch (GeneralSecurityException e) {
+      throw new FatalException(e, "Missing %s cipher.", transformation);
+    }
+  }
+}
@@ -0,0 +1,79 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+package com.fetherbrik.core.security;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import javax.crypto.SecretKey;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.CharBuffer;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * A bounded cache of PBKDF2 derived AES keys, so that the key for a given password and salt is derived once rather
+ * than on every encrypt and decrypt.
+ * <p>
+ * Entries are keyed by a SHA-256 of the password, salt and iteration count, so that the cache never holds the
+ * password itself. It does hold the derived keys, as any cipher using them would.
+ *
+ * @author Geoff M. Granum
+ */
+final class DerivedKeyCache {
+
+  private final SecretKeyFactory keyFactory;
+  private final String keyAlgorithm;
+  private final int iterations;
+  private final int keyLengthBits;
+  private final Cache<HashCode, SecretKey> keys;
+
+  DerivedKeyCache(SecretKeyFactory keyFactory, String keyAlgorithm, int iterations, int keyLengthBits, long maximumSize) {
+    this.keyFactory = keyFactory;
+    this.keyAlgorithm = keyAlgorithm;
+    this.iterations = iterations;
+    this.keyLengthBits = keyLengthBits;
+    this.keys = CacheBuilder.newBuilder().maximumSize(maximumSize).build();
+  }
+
+  SecretKey get(char[] password, byte[] salt) throws GeneralSecurityException {
+    HashCode cacheKey = Hashing.sha256()
+                               .newHasher()
+                               .putInt(password.length)
+                               .putUnencodedChars(CharBuffer.wrap(password))
+                               .putInt(salt.length)
+                               .putBytes(salt)
+                               .putInt(iterations)
+                               .hash();
+    try {
+      return keys.get(cacheKey, () -> derive(password, salt));
+    } catch (ExecutionException | UncheckedExecutionException e) {
+      if (e.getCause() instanceof GeneralSecurityException) {
+        throw (GeneralSecurityException) e.getCause();
+      }
+      throw new GeneralSecurityException("Could not derive key.", e.getCause());
+    }
+  }
+
+  long size() {
+    return keys.size();
+  }
+
+  private SecretKey derive(char[] password, byte[] salt) throws GeneralSecurityException {
+    PBEKeySpec pbeKeySpec = new PBEKeySpec(password, salt, iterations, keyLengthBits);
+    try {
+      SecretKey secretKey = keyFactory.generateSecret(pbeKeySpec);
+      return new SecretKeySpec(secretKey.getEncoded(), keyAlgorithm);
+    } finally {
+      pbeKeySpec.clearPassword();
+    }
+  }
+}
@@ -10,19 +10,32 @@ import com.fetherbrik.core.log.Log;
 import com.google.common.base.Charsets;
 import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.codec.binary.StringUtils;
-import org.apache.commons.lang3.ArrayUtils;
 
+import javax.crypto.AEADBadTagException;
 import javax.crypto.Cipher;
+import javax.crypto.IllegalBlockSizeException;
 import javax.crypto.SecretKey;
 import javax.crypto.SecretKeyFactory;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.IvParameterSpec;
-import javax.crypto.spec.PBEKeySpec;
-import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.security.*;
-import java.security.spec.KeySpec;
-import java.util.Arrays;
 
 /**
+ * Encrypts tokens with AES-256, using a key derived from a password and salt with PBKDF2.
+ * <p>
+ * Tokens are written in a versioned, authenticated format:
+ * <pre>
+ *   [0xFB][version = 1][12 byte nonce][AES-GCM ciphertext of the UTF-8 clear text][16 byte tag]
+ * </pre>
+ * with the two header bytes bound to the tag as additional authenticated data. Tokens in the original format, a 16 byte
+ * IV followed by the AES-CBC ciphertext of the Base64 encoded clear text, still decrypt.
+ * <p>
+ * Derived keys are cached (see `com.fetherbrik.security.key_cache_size`), and each thread reuses its own Cipher, so
+ * after the first use of a password and salt neither PBKDF2 nor Cipher.getInstance is on the request path.
+ *
  * @author Geoff Granum
  */
 public final class EncryptionUtil {
@@ -30,7 +43,9 @@ public final class EncryptionUtil {
   //
   public static final String AUTH_TOKEN_SEP_CHAR = "|";
 
-  private static final String CIPHER = "AES/CBC/PKCS5Padding";
+  private static final String CIPHER = "AES/GCM/NoPadding";
+
+  private static final String LEGACY_CIPHER = "AES/CBC/PKCS5Padding";
 
   private static final String KEY_FACTORY_ALGORITHM = "PBKDF2WithHmacSHA1";
 
@@ -39,12 +54,36 @@ public final class EncryptionUtil {
   private static final int HASH_ITERATIONS =
       Integer.parseInt(System.getProperty("com.fetherbrik.security.hash_iterations", "7459"));
 
+  private static final int KEY_CACHE_SIZE =
+      Integer.parseInt(System.getProperty("com.fetherbrik.security.key_cache_size", "256"));
+
   private static final int KEY_LENGTH_BITS = 256;
 
-  private static final SecretKeyFactory SECRET_KEY_FACTORY;
+  static final byte TOKEN_MAGIC = (byte) 0xFB;
+
+  static final byte TOKEN_VERSION_GCM = 1;
+
+  private static final int TOKEN_HEADER_LENGTH = 2;
+
+  private static final int GCM_NONCE_LENGTH = 12;
+
+  private static final int GCM_TAG_LENGTH = 16;
+
+  private static final int GCM_PREFIX_LENGTH = TOKEN_HEADER_LENGTH + GCM_NONCE_LENGTH;
+
+  private static final int LEGACY_IV_LENGTH = 16;
+
+  private static final SecureRandom NONCE_RANDOM = new SecureRandom();
+
+  private static final CipherPool CIPHERS = new CipherPool(CIPHER);
+
+  private static final CipherPool LEGACY_CIPHERS = new CipherPool(LEGACY_CIPHER);
+
+  private static final DerivedKeyCache KEYS;
   static {
     try {
-      SECRET_KEY_FACTORY = SecretKeyFactory.getInstance(KEY_FACTORY_ALGORITHM);
+      SecretKeyFactory secretKeyFactory = SecretKeyFactory.getInstance(KEY_FACTORY_ALGORITHM);
+      KEYS = new DerivedKeyCache(secretKeyFactory, KEY_SPEC_ALGORITHM, HASH_ITERATIONS, KEY_LENGTH_BITS, KEY_CACHE_SIZE);
     } catch (Exception e) {
       String msg = "Are the JCE Unlimited Strength Jurisdiction Policy Files installed?";
       Log.warn(EncryptionUtil.class, msg);
@@ -54,11 +93,8 @@ public final class EncryptionUtil {
 
   public static void checkJavaCryptographicExtensionsInstalled() {
     String anyValue = "randomMeaninglessString";
-    SecretKey secretKey;
     try {
-      secretKey = generateSecretKey(anyValue.toCharArray(), anyValue.getBytes());
-      Cipher cipher = Cipher.getInstance(CIPHER);
-      cipher.init(Cipher.ENCRYPT_MODE, secretKey); // will explode here if JCE are missing.
+      encrypt(anyValue, anyValue.toCharArray(), anyValue.getBytes()); // will explode here if JCE are missing.
     } catch (InvalidKeyException e) {
       String msg = "Are the JCE Unlimited Strength Jurisdiction Policy Files installed?";
       Log.warn(EncryptionUtil.class, msg);
@@ -71,41 +107,136 @@ public final class EncryptionUtil {
   private EncryptionUtil() {
   }
 
+  /**
+   * @return The Base64 encoded token.
+   */
   public static String encrypt(String tokenClearText, char[] password, byte[] salt) throws GeneralSecurityException {
-    SecretKey secretKey = generateSecretKey(password, salt);
-    Cipher cipher = Cipher.getInstance(CIPHER);
-    cipher.init(Cipher.ENCRYPT_MODE, secretKey);
+    byte[] clearTextBytes = StringUtils.getBytesUtf8(tokenClearText);
+    byte[] tokenBytes = new byte[encryptedLength(clearTextBytes.length)];
+    Cipher cipher = initEncrypt(KEYS.get(password, salt), tokenBytes);
+    cipher.doFinal(clearTextBytes, 0, clearTextBytes.length, tokenBytes, GCM_PREFIX_LENGTH);
+    return Base64.encodeBase64String(tokenBytes);
+  }
 
-    AlgorithmParameters params = cipher.getParameters();
-    byte[] paramSpec = params.getParameterSpec(IvParameterSpec.class).getIV();
+  /**
+   * @param tokenString A Base64 encoded token, in either the current or the original format.
+   */
+  public static String decrypt(String tokenString, char[] password, byte[] salt) throws GeneralSecurityException {
+    byte[] tokenBytes = Base64.decodeBase64(tokenString);
+    // The clear text is always shorter than the token.
+    ByteBuffer clearText = ByteBuffer.allocate(tokenBytes.length);
+    decrypt(ByteBuffer.wrap(tokenBytes), clearText, password, salt);
+    return new String(clearText.array(), 0, clearText.position(), StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Encrypt the remaining bytes of `clearText` into `dest`, as a raw (not Base64 encoded) token. Both buffers' positions
+   * are advanced.
+   *
+   * @return The number of bytes written to `dest`; always {@link #encryptedLength(int)} of the clear text length.
+   * @throws ShortBufferException if `dest` doesn't have room for the token.
+   */
+  public static int encrypt(ByteBuffer clearText, ByteBuffer dest, char[] password, byte[] salt) throws
+      GeneralSecurityException {
+    int length = encryptedLength(clearText.remaining());
+    if (dest.remaining() < length) {
+      throw new ShortBufferException("Need " + length + " bytes for the token, but only " + dest.remaining() + " remain.");
+    }
+    byte[] prefix = new byte[GCM_PREFIX_LENGTH];
+    Cipher cipher = initEncrypt(KEYS.get(password, salt), prefix);
+    dest.put(prefix);
+    cipher.doFinal(clearText, dest);
+    return length;
+  }
 
-    byte[] clearTextBytes = Base64.encodeBase64(StringUtils.getBytesUtf8(tokenClearText));
-    byte[] cipherBytes = cipher.doFinal(clearTextBytes);
-    byte[] authTokenBytes = ArrayUtils.addAll(paramSpec, cipherBytes);
+  /**
+   * Decrypt the remaining bytes of `token`, a raw (not Base64 encoded) token in either format, into `dest`. Both
+   * buffers' positions are advanced. `dest` needs no more room than the length of the token.
+   *
+   * @return The number of bytes written to `dest`.
+   */
+  public static int decrypt(ByteBuffer token, ByteBuffer dest, char[] password, byte[] salt) throws
+      GeneralSecurityException {
+    SecretKey secretKey = KEYS.get(password, salt);
+    int start = dest.position();
+    if (isVersionedToken(token)) {
+      int tokenStart = token.position();
+      try {
+        decryptGcm(token, dest, secretKey);
+        return dest.position() - start;
+      } catch (AEADBadTagException e) {
+        // An original format token begins with a random IV, so may happen to look like a header.
+        if (!couldBeLegacyToken(tokenStart, token.limit())) {
+          throw e;
+        }
+        token.position(tokenStart);
+        dest.position(start);
+      }
+    }
+    decryptLegacy(token, dest, secretKey);
+    return dest.position() - start;
+  }
 
-    return Base64.encodeBase64String(authTokenBytes);
+  /**
+   * @return The length of the raw token that {@link #encrypt(ByteBuffer, ByteBuffer, char[], byte[])} writes for a clear
+   * text of the given length.
+   */
+  public static int encryptedLength(int clearTextLength) {
+    return GCM_PREFIX_LENGTH + clearTextLength + GCM_TAG_LENGTH;
   }
 
-  public static String decrypt(String tokenString, char[] password, byte[] salt) throws GeneralSecurityException {
-    int initVectorLength = 16;
-    byte[] tokenBytes = Base64.decodeBase64(tokenString);
-    byte[] paramSpec = Arrays.copyOfRange(tokenBytes, 0, initVectorLength);
-    byte[] cipherBytes = Arrays.copyOfRange(tokenBytes, initVectorLength, tokenBytes.length);
-    SecretKey secretKey = generateSecretKey(password, salt);
-    Cipher cipher = Cipher.getInstance(CIPHER);
-    cipher.init(Cipher.DECRYPT_MODE, secretKey, new IvParameterSpec(paramSpec));
-    byte[] clearTextBytes = cipher.doFinal(cipherBytes);
-    return StringUtils.newStringUtf8(Base64.decodeBase64(clearTextBytes));
+  /**
+   * Writes the token header and a fresh nonce into the first GCM_PREFIX_LENGTH bytes of `prefix`.
+   */
+  private static Cipher initEncrypt(SecretKey secretKey, byte[] prefix) throws GeneralSecurityException {
+    byte[] nonce = new byte[GCM_NONCE_LENGTH];
+    NONCE_RANDOM.nextBytes(nonce);
+    prefix[0] = TOKEN_MAGIC;
+    prefix[1] = TOKEN_VERSION_GCM;
+    System.arraycopy(nonce, 0, prefix, TOKEN_HEADER_LENGTH, GCM_NONCE_LENGTH);
+    Cipher cipher = CIPHERS.get();
+    cipher.init(Cipher.ENCRYPT_MODE, secretKey, new GCMParameterSpec(GCM_TAG_LENGTH * 8, nonce));
+    cipher.updateAAD(prefix, 0, TOKEN_HEADER_LENGTH);
+    return cipher;
+  }
+
+  private static void decryptGcm(ByteBuffer token, ByteBuffer dest, SecretKey secretKey) throws
+      GeneralSecurityException {
+    byte[] prefix = new byte[GCM_PREFIX_LENGTH];
+    token.get(prefix);
+    Cipher cipher = CIPHERS.get();
+    cipher.init(Cipher.DECRYPT_MODE,
+        secretKey,
+        new GCMParameterSpec(GCM_TAG_LENGTH * 8, prefix, TOKEN_HEADER_LENGTH, GCM_NONCE_LENGTH));
+    cipher.updateAAD(prefix, 0, TOKEN_HEADER_LENGTH);
+    cipher.doFinal(token, dest);
+  }
+
+  private static void decryptLegacy(ByteBuffer token, ByteBuffer dest, SecretKey secretKey) throws
+      GeneralSecurityException {
+    if (token.remaining() < LEGACY_IV_LENGTH) {
+      throw new IllegalBlockSizeException("Token is too short.");
+    }
+    byte[] iv = new byte[LEGACY_IV_LENGTH];
+    token.get(iv);
+    byte[] cipherBytes = new byte[token.remaining()];
+    token.get(cipherBytes);
+    Cipher cipher = LEGACY_CIPHERS.get();
+    cipher.init(Cipher.DECRYPT_MODE, secretKey, new IvParameterSpec(iv));
+    // The original format Base64 encoded the clear text before encrypting it.
+    dest.put(Base64.decodeBase64(cipher.doFinal(cipherBytes)));
+  }
+
+  private static boolean isVersionedToken(ByteBuffer token) {
+    int pos = token.position();
+    return token.remaining() >= GCM_PREFIX_LENGTH + GCM_TAG_LENGTH
+           && token.get(pos) == TOKEN_MAGIC
+           && token.get(pos + 1) == TOKEN_VERSION_GCM;
   }
 
-  private static SecretKey generateSecretKey(char[] password, byte[] salt) throws GeneralSecurityException {
-    KeySpec pbeKeySpec = new PBEKeySpec(
-        password,
-        salt,
-        HASH_ITERATIONS,
-        KEY_LENGTH_BITS);
-    SecretKey secretKey = SECRET_KEY_FACTORY.generateSecret(pbeKeySpec);
-    return new SecretKeySpec(secretKey.getEncoded(), KEY_SPEC_ALGORITHM);
+  private static boolean couldBeLegacyToken(int start, int limit) {
+    int length = limit - start;
+    return length >= LEGACY_IV_LENGTH * 2 && length % LEGACY_IV_LENGTH == 0;
   }
 
   public static byte[] generateSalt(int byteCount) {
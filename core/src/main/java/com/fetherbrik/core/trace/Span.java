@@ -0,0 +1,32 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+package com.fetherbrik.core.trace;
+
+/**
+ * The timed stages of a request. Each stage encloses the ones after it, except that RESOURCE and SERIALIZATION are
+ * siblings within DISPATCH.
+ *
+ * @author Geoff M. Granum
+ */
+public enum Span {
+  /**
+   * From the outermost servlet filter in to the same filter out. For an async request, the filter returns before the
+   * response is complete, so this is only the request's first pass through the filters.
+   */
+  FILTER,
+  /**
+   * The REST dispatcher's service call: routing, the resource and writing the response.
+   */
+  DISPATCH,
+  /**
+   * From the matched resource's request filters to its response filters, which is to say the resource method itself.
+   */
+  RESOURCE,
+  /**
+   * Writing the entity returned by the resource.
+   */
+  SERIALIZATION
+}
@@ -0,0 +1,183 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+package com.fetherbrik.core.trace;
+
+import com.fetherbrik.core.persistence.id.HexCodec;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The trace id, start time, route and stage timings of a single request. A context only exists while tracing is
+ * enabled; code that wants to add to the trace checks {@link #current()} for null and otherwise does nothing, so a
+ * disabled trace costs a thread local read.
+ * <p>
+ * A context is attached to the thread handling its request, and to any task {@link #wrap wrapped} from there, which
+ * is how the rest client finds the trace id to send on. It is not safe for concurrent use: the stages of a request run
+ * one after another, even when an async request moves them between threads.
+ *
+ * @author Geoff M. Granum
+ */
+public final class TraceContext {
+
+  /**
+   * The header the trace id is read from and passed on in.
+   */
+  public static final String HEADER = "X-Trace-Id";
+  /**
+   * Incoming trace ids longer than this are ignored, and a new id is generated in their place.
+   */
+  public static final int MaxTraceIdLength = 64;
+
+  private static final ThreadLocal<TraceContext> Current = new ThreadLocal<>();
+  private static final Span[] Spans = Span.values();
+
+  private final String traceId;
+  private final long startNanos;
+  private final long[] spanStartNanos = new long[Spans.length];
+  private final boolean[] spanBegun = new boolean[Spans.length];
+  private final long[] spanNanos = new long[Spans.length];
+  private String route;
+
+  private TraceContext(String traceId, long startNanos) {
+    this.traceId = traceId;
+    this.startNanos = startNanos;
+    this.spanStartNanos[Span.FILTER.ordinal()] = startNanos;
+    this.spanBegun[Span.FILTER.ordinal()] = true;
+  }
+
+  /**
+   * Start a trace, with its FILTER span begun.
+   *
+   * @param incomingTraceId The caller's trace id, if it sent one. Empty or over-long ids, and ids with characters
+   *                        other than ASCII letters, digits and '-', are replaced.
+   */
+  @Nonnull
+  public static TraceContext start(@Nullable String incomingTraceId) {
+    String traceId = isValidTraceId(incomingTraceId) ? incomingTraceId : newTraceId();
+    return new TraceContext(traceId, System.nanoTime());
+  }
+
+  /**
+   * Incoming ids are written to logs and passed on in headers, so only those that can't break either are kept.
+   *
+   * @return True if `traceId` is 1 to {@value #MaxTraceIdLength} ASCII letters, digits and '-'.
+   */
+  public static boolean isValidTraceId(@Nullable String traceId) {
+    if (traceId == null || traceId.isEmpty() || traceId.length() > MaxTraceIdLength) {
+      return false;
+    }
+    for (int i = 0; i < traceId.length(); i++) {
+      char c = traceId.charAt(i);
+      if (!((c >= '0' && c <= '9') || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '-')) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return 32 random hex digits, the same width as a W3C trace-context trace id.
+   */
+  @Nonnull
+  public static String newTraceId() {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    return HexCodec.toHex(random.nextLong(), random.nextLong(), 32);
+  }
+
+  /**
+   * @return The context attached to this thread, or null if there is none.
+   */
+  @Nullable
+  public static TraceContext current() {
+    return Current.get();
+  }
+
+  /**
+   * Attach this context to the current thread.
+   *
+   * @return The context it replaced, to pass to {@link #restore} when done.
+   */
+  @Nullable
+  public TraceContext attach() {
+    TraceContext previous = Current.get();
+    Current.set(this);
+    return previous;
+  }
+
+  /**
+   * @param previous The context returned by {@link #attach()}.
+   */
+  public static void restore(@Nullable TraceContext previous) {
+    if (previous == null) {
+      Current.remove();
+    } else {
+      Current.set(previous);
+    }
+  }
+
+  /**
+   * @return `task`, running with this context attached to whichever thread runs it.
+   */
+  @Nonnull
+  public Runnable wrap(@Nonnull Runnable task) {
+    return () -> {
+      TraceContext previous = attach();
+      try {
+        task.run();
+      } finally {
+        restore(previous);
+      }
+    };
+  }
+
+  public void begin(Span span) {
+    spanStartNanos[span.ordinal()] = System.nanoTime();
+    spanBegun[span.ordinal()] = true;
+  }
+
+  /**
+   * Add the time since `span` began to its total. A span that is begun and ended more than once, such as
+   * SERIALIZATION for a streamed entity, is the sum of its parts. Ending a span that isn't begun, because it never was
+   * or because it has already ended, does nothing.
+   */
+  public void end(Span span) {
+    int idx = span.ordinal();
+    if (spanBegun[idx]) {
+      spanBegun[idx] = false;
+      spanNanos[idx] += System.nanoTime() - spanStartNanos[idx];
+    }
+  }
+
+  /**
+   * @return The total time spent in `span`, including any stages within it.
+   */
+  public long spanNanos(Span span) {
+    return spanNanos[span.ordinal()];
+  }
+
+  @Nonnull
+  public String traceId() {
+    return traceId;
+  }
+
+  public long startNanos() {
+    return startNanos;
+  }
+
+  /**
+   * @return The template of the matched route, such as "GET /hello/blocking/{millis}", or null if no route matched.
+   */
+  @Nullable
+  public String route() {
+    return route;
+  }
+
+  public void route(String route) {
+    this.route = route;
+  }
+}
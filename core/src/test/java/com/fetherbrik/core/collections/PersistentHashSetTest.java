@@ -0,0 +1,109 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+
+package com.fetherbrik.core.collections;
+
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * @author ggranum
+ */
+public class PersistentHashSetTest {
+
+  @Test
+  public void testMatchesHashSetUnderRandomAddsAndRemoves() {
+    Random random = new Random(42);
+    Set<Integer> expected = new HashSet<>();
+    PersistentHashSet<Integer> actual = PersistentHashSet.empty();
+    for (int i = 0; i < 50_000; i++) {
+      Integer value = random.nextInt(5_000) * (random.nextBoolean() ? 1 : -1);
+      if (random.nextInt(3) == 0) {
+        expected.remove(value);
+        actual = actual.minus(value);
+      } else {
+        expected.add(value);
+        actual = actual.plus(value);
+      }
+    }
+    assertThat(actual.size(), is(expected.size()));
+    assertThat(actual.equals(expected), is(true));
+    assertThat(new HashSet<>(actual).size(), is(expected.size()));
+    for (int v = -5_000; v < 5_000; v++) {
+      assertThat(actual.contains(v), is(expected.contains(v)));
+    }
+  }
+
+  @Test
+  public void testEarlierVersionsAreUnchanged() {
+    PersistentHashSet<String> original = PersistentHashSet.copyOf(List.of("a", "b", "c"));
+    PersistentHashSet<String> added = original.plus("d");
+    PersistentHashSet<String> removed = original.minus("a");
+
+    assertThat(original.size(), is(3));
+    assertThat(original.contains("d"), is(false));
+    assertThat(original.contains("a"), is(true));
+    assertThat(added.size(), is(4));
+    assertThat(removed.size(), is(2));
+    assertThat(original.plus("a") == original, is(true));
+    assertThat(original.minus("z") == original, is(true));
+  }
+
+  @Test
+  public void testCollidingHashes() {
+    List<Colliding> all = new ArrayList<>();
+    PersistentHashSet<Colliding> set = PersistentHashSet.empty();
+    for (int i = 0; i < 100; i++) {
+      Colliding value = new Colliding(i, i % 3);
+      all.add(value);
+      set = set.plus(value);
+    }
+    assertThat(set.size(), is(100));
+    for (Colliding value : all) {
+      assertThat(set.contains(value), is(true));
+      assertThat(set.contains(new Colliding(value.id + 1000, value.hash)), is(false));
+    }
+    for (Colliding value : all) {
+      set = set.minus(value);
+    }
+    assertThat(set.size(), is(0));
+    assertThat(set.iterator().hasNext(), is(false));
+  }
+
+  @Test(expectedExceptions = UnsupportedOperationException.class)
+  public void testIsNotMutable() {
+    PersistentHashSet.<String>empty().plus("a").add("b");
+  }
+
+  private static final class Colliding {
+
+    final int id;
+    final int hash;
+
+    Colliding(int id, int hash) {
+      this.id = id;
+      this.hash = hash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof Colliding && ((Colliding) o).id == id;
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+}
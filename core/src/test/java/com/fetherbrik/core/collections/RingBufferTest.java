@@ -0,0 +1,124 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+
+package com.fetherbrik.core.collections;
+
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.testng.Assert.fail;
+
+/**
+ * @author ggranum
+ */
+public class RingBufferTest {
+
+  @Test
+  public void testRoundsTheCapacityUpToAPowerOfTwo() {
+    assertThat(new RingBuffer<>(1, Slot::new).capacity(), is(2));
+    assertThat(new RingBuffer<>(8, Slot::new).capacity(), is(8));
+    assertThat(new RingBuffer<>(9, Slot::new).capacity(), is(16));
+  }
+
+  @Test
+  public void testRefusesClaimsWhenFullUntilTheConsumerCatchesUp() {
+    RingBuffer<Slot> ring = new RingBuffer<>(4, Slot::new);
+    for (int i = 0; i < 4; i++) {
+      put(ring, i);
+    }
+    assertThat(ring.tryClaim(), is(-1L));
+    assertThat(ring.pending(), is(4));
+
+    List<Integer> taken = new ArrayList<>();
+    assertThat(ring.drain(3, slot -> taken.add(slot.value)), is(3));
+    assertThat(taken, contains(0, 1, 2));
+    put(ring, 4);
+    assertThat(ring.drain(10, slot -> taken.add(slot.value)), is(2));
+    assertThat(taken, contains(0, 1, 2, 3, 4));
+    assertThat(ring.head(), is(5L));
+    assertThat(ring.tail(), is(5L));
+  }
+
+  @Test
+  public void testTheConsumerWaitsAtTheFirstUnpublishedSlot() {
+    RingBuffer<Slot> ring = new RingBuffer<>(4, Slot::new);
+    long first = ring.tryClaim();
+    put(ring, 1);
+
+    assertThat(ring.hasPublished(), is(false));
+    assertThat(ring.drain(10, slot -> fail("Nothing is ready yet.")), is(0));
+    ring.slot(first).value = 0;
+    ring.publish(first);
+    assertThat(ring.hasPublished(), is(true));
+    List<Integer> taken = new ArrayList<>();
+    assertThat(ring.drain(10, slot -> taken.add(slot.value)), is(2));
+    assertThat(taken, contains(0, 1));
+  }
+
+  @Test
+  public void testRecyclesASlotWhoseConsumerThrew() {
+    RingBuffer<Slot> ring = new RingBuffer<>(2, Slot::new);
+    put(ring, 0);
+    put(ring, 1);
+    try {
+      ring.drain(10, slot -> {
+        throw new IllegalStateException("Disk full.");
+      });
+      fail("Expected the consumer's exception.");
+    } catch (IllegalStateException expected) {
+      assertThat(expected.getMessage(), is("Disk full."));
+    }
+    assertThat(ring.head(), is(1L));
+    put(ring, 2);
+    List<Integer> taken = new ArrayList<>();
+    ring.drain(10, slot -> taken.add(slot.value));
+    assertThat(taken, contains(1, 2));
+  }
+
+  @Test
+  public void testLosesNothingUnderContention() throws Exception {
+    RingBuffer<Slot> ring = new RingBuffer<>(8, Slot::new);
+    int threads = 8;
+    int perThread = 5_000;
+    CountDownLatch done = new CountDownLatch(threads);
+    for (int t = 0; t < threads; t++) {
+      new Thread(() -> {
+        for (int i = 0; i < perThread; i++) {
+          long seq;
+          while ((seq = ring.tryClaim()) < 0) {
+            Thread.yield();
+          }
+          ring.slot(seq).value = 1;
+          ring.publish(seq);
+        }
+        done.countDown();
+      }).start();
+    }
+    AtomicInteger sum = new AtomicInteger();
+    while (done.getCount() > 0 || ring.pending() > 0) {
+      ring.drain(64, slot -> sum.addAndGet(slot.value));
+    }
+    assertThat(sum.get(), is(threads * perThread));
+  }
+
+  private static void put(RingBuffer<Slot> ring, int value) {
+    long seq = ring.tryClaim();
+    assertThat(seq, is(not(-1L)));
+    ring.slot(seq).value = value;
+    ring.publish(seq);
+  }
+
+  private static final class Slot {
+
+    int value;
+  }
+}
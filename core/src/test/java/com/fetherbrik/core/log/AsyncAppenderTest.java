@@ -0,0 +1,175 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+
+package com.fetherbrik.core.log;
+
+import org.apache.logging.log4j.core.config.Configurator;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * @author ggranum
+ */
+public class AsyncAppenderTest {
+
+  @Test
+  public void testEventsFromOneThreadArriveInOrder() {
+    List<Object> written = Collections.synchronizedList(new ArrayList<>());
+    AsyncAppender appender = new AsyncAppender(64, OverflowPolicy.BLOCK, e -> written.add(e.arg0));
+    for (int i = 0; i < 10_000; i++) {
+      assertThat(appender.publish(null, null, null, "%s", 1, i, null, null, null), is(true));
+    }
+    assertThat(appender.flush(10, TimeUnit.SECONDS), is(true));
+    appender.stop(1, TimeUnit.SECONDS);
+    assertThat(written.size(), is(10_000));
+    for (int i = 0; i < written.size(); i++) {
+      assertThat(written.get(i), is((Object) i));
+    }
+  }
+
+  @Test
+  public void testBlockingPolicyLosesNothingUnderContention() throws Exception {
+    List<Object> written = Collections.synchronizedList(new ArrayList<>());
+    AsyncAppender appender = new AsyncAppender(8, OverflowPolicy.BLOCK, e -> written.add(e.arg0));
+    int threads = 8;
+    int perThread = 5_000;
+    CountDownLatch done = new CountDownLatch(threads);
+    for (int t = 0; t < threads; t++) {
+      new Thread(() -> {
+        for (int i = 0; i < perThread; i++) {
+          appender.publish(null, null, null, "%s", 1, i, null, null, null);
+        }
+        done.countDown();
+      }).start();
+    }
+    done.await();
+    appender.stop(10, TimeUnit.SECONDS);
+    assertThat(written.size(), is(threads * perThread));
+  }
+
+  @Test
+  public void testDropPolicyCountsDiscardedEvents() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    AsyncAppender appender = new AsyncAppender(4, OverflowPolicy.DROP, e -> {
+      try {
+        release.await();
+      } catch (InterruptedException ignored) {
+        Thread.currentThread().interrupt();
+      }
+    });
+    int accepted = 0;
+    for (int i = 0; i < 20; i++) {
+      if (appender.publish(null, null, null, "x", 0, null, null, null, null)) {
+        accepted++;
+      }
+    }
+    release.countDown();
+    appender.stop(1, TimeUnit.SECONDS);
+    assertThat(accepted, lessThanOrEqualTo(5));
+    assertThat(appender.droppedCount(), is((long) (20 - accepted)));
+  }
+
+  @Test
+  public void testCallerRunsPolicyRefusesWhenFull() {
+    CountDownLatch release = new CountDownLatch(1);
+    AsyncAppender appender = new AsyncAppender(2, OverflowPolicy.CALLER_RUNS, e -> {
+      try {
+        release.await();
+      } catch (InterruptedException ignored) {
+        Thread.currentThread().interrupt();
+      }
+    });
+    boolean refused = false;
+    for (int i = 0; i < 10 && !refused; i++) {
+      refused = !appender.publish(null, null, null, "x", 0, null, null, null, null);
+    }
+    release.countDown();
+    appender.stop(1, TimeUnit.SECONDS);
+    assertThat(refused, is(true));
+    assertThat(appender.droppedCount(), is(0L));
+  }
+
+  @Test
+  public void testStopWritesEveryAcceptedEvent() throws Exception {
+    List<Object> written = Collections.synchronizedList(new ArrayList<>());
+    AsyncAppender appender = new AsyncAppender(16, OverflowPolicy.BLOCK, e -> written.add(e.arg0));
+    int threads = 4;
+    AtomicInteger accepted = new AtomicInteger();
+    CountDownLatch started = new CountDownLatch(threads);
+    CountDownLatch done = new CountDownLatch(threads);
+    for (int t = 0; t < threads; t++) {
+      new Thread(() -> {
+        started.countDown();
+        for (int i = 0; i < 100_000; i++) {
+          if (appender.publish(null, null, null, "%s", 1, i, null, null, null)) {
+            accepted.incrementAndGet();
+          }
+        }
+        done.countDown();
+      }).start();
+    }
+    started.await();
+    appender.stop(10, TimeUnit.SECONDS);
+    done.await();
+    assertThat(appender.isRunning(), is(false));
+    assertThat(written.size(), is(accepted.get()));
+  }
+
+  @Test
+  public void testSinkExceptionsDoNotStopTheAppender() {
+    List<Object> written = Collections.synchronizedList(new ArrayList<>());
+    AsyncAppender appender = new AsyncAppender(8, OverflowPolicy.BLOCK, e -> {
+      if (e.arg0.equals(0)) {
+        throw new IllegalStateException("Expected by the test.");
+      }
+      written.add(e.arg0);
+    });
+    for (int i = 0; i < 3; i++) {
+      appender.publish(null, null, null, "%s", 1, i, null, null, null);
+    }
+    assertThat(appender.flush(10, TimeUnit.SECONDS), is(true));
+    appender.stop(1, TimeUnit.SECONDS);
+    assertThat(written, contains((Object) 1, 2));
+  }
+
+  @Test
+  public void testAppenderKilledByAnErrorRefusesEvents() throws Exception {
+    AsyncAppender appender = new AsyncAppender(8, OverflowPolicy.BLOCK, e -> {
+      throw new AssertionError("Expected by the test.");
+    });
+    appender.publish(null, null, null, "x", 0, null, null, null, null);
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (appender.isRunning() && System.nanoTime() < deadline) {
+      Thread.sleep(1);
+    }
+    assertThat(appender.publish(null, null, null, "x", 0, null, null, null, null), is(false));
+  }
+
+  @Test
+  public void testFormattingFailuresOnTheAppenderThreadDoNotDeadlock() {
+    // The formatting failure used to be reported with Log.warn, from the appender thread, into its own full ring.
+    Configurator.setLevel(Log.class.getName(), org.apache.logging.log4j.Level.WARN);
+    Configurator.setLevel(AsyncAppenderTest.class.getName(), org.apache.logging.log4j.Level.WARN);
+    Log.startAsync(2, OverflowPolicy.BLOCK);
+    try {
+      for (int i = 0; i < 1_000; i++) {
+        Log.warn(AsyncAppenderTest.class, "Not a number: %d", "nope");
+      }
+      assertThat(Log.flush(10, TimeUnit.SECONDS), is(true));
+    } finally {
+      Log.stopAsync();
+    }
+  }
+}
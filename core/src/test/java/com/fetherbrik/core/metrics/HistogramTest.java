@@ -0,0 +1,79 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+
+package com.fetherbrik.core.metrics;
+
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * @author ggranum
+ */
+public class HistogramTest {
+
+  @Test
+  public void testBucketsAreContiguousAndContainTheirValues() {
+    int lastIndex = -1;
+    for (long v = 0; v < 1_000_000; v++) {
+      int index = Histogram.indexOf(v);
+      assertThat(index - lastIndex, lessThanOrEqualTo(1));
+      assertThat(index, greaterThanOrEqualTo(lastIndex));
+      assertThat(Histogram.highestEquivalentValue(index), greaterThanOrEqualTo(v));
+      lastIndex = index;
+    }
+    assertThat(Histogram.highestEquivalentValue(Histogram.indexOf(Long.MAX_VALUE)), is(Long.MAX_VALUE));
+  }
+
+  @Test
+  public void testPercentilesAreWithinBucketPrecision() {
+    Histogram histogram = new Histogram();
+    for (int i = 1; i <= 100_000; i++) {
+      histogram.record(i * 1000L);
+    }
+    HistogramSnapshot snapshot = histogram.snapshot();
+    assertThat(snapshot.count, is(100_000L));
+    assertThat(snapshot.max, is(100_000_000L));
+    assertThat(Math.abs(snapshot.p50 - 50_000_000L) / (double) 50_000_000, lessThan(0.035));
+    assertThat(Math.abs(snapshot.p90 - 90_000_000L) / (double) 90_000_000, lessThan(0.035));
+    assertThat(Math.abs(snapshot.p99 - 99_000_000L) / (double) 99_000_000, lessThan(0.035));
+    assertThat(snapshot.p999, lessThanOrEqualTo(snapshot.max));
+    assertThat(snapshot.mean, is(50_000_500L));
+  }
+
+  @Test
+  public void testEmptySnapshotIsAllZero() {
+    HistogramSnapshot snapshot = new Histogram().snapshot();
+    assertThat(snapshot.count, is(0L));
+    assertThat(snapshot.p99, is(0L));
+    assertThat(snapshot.max, is(0L));
+  }
+
+  @Test
+  public void testConcurrentRecordsAreAllCounted() throws InterruptedException {
+    Histogram histogram = new Histogram();
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < 8; t++) {
+      Thread thread = new Thread(() -> {
+        for (int i = 0; i < 100_000; i++) {
+          histogram.record(i);
+        }
+      });
+      threads.add(thread);
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    HistogramSnapshot snapshot = histogram.snapshot();
+    assertThat(snapshot.count, is(800_000L));
+    assertThat(snapshot.max, is(99_999L));
+  }
+}
@@ -0,0 +1,50 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+
+package com.fetherbrik.core.metrics;
+
+import org.testng.annotations.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.testng.Assert.fail;
+
+/**
+ * @author ggranum
+ */
+public class MetricSourcesTest {
+
+  @Test
+  public void testReadsEachSourceWhenSnapshotted() {
+    MetricSources sources = new MetricSources();
+    AtomicInteger reads = new AtomicInteger();
+    sources.register("requests", reads::incrementAndGet);
+    sources.register("pool", () -> "idle");
+
+    assertThat(reads.get(), is(0));
+    assertThat(sources.snapshot("requests").get(), is(1));
+    assertThat(sources.snapshot().keySet(), contains("pool", "requests"));
+    assertThat(sources.snapshot().get("requests"), is(3));
+    assertThat(sources.snapshot("missing").isPresent(), is(false));
+  }
+
+  @Test
+  public void testRejectsASecondSourceOfTheSameName() {
+    MetricSources sources = new MetricSources();
+    sources.register("pool", () -> 1);
+    try {
+      sources.register("pool", () -> 2);
+      fail("Expected the second source to be rejected.");
+    } catch (IllegalArgumentException expected) {
+      assertThat(expected.getMessage(), containsString("pool"));
+    }
+    sources.unregister("pool");
+    sources.register("pool", () -> 2);
+    assertThat(sources.snapshot("pool").get(), is(2));
+  }
+}
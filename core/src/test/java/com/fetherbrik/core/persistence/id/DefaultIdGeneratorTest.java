@@ -11,6 +11,15 @@ import org.apache.commons.codec.binary.Hex;
 import org.hamcrest.Matchers;
 import org.testng.annotations.Test;
 
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.*;
 
@@ -35,4 +44,78 @@ public class DefaultIdGeneratorTest {
     int seconds = Ints.fromByteArray(Hex.decodeHex(mongoId.toCharArray()));
     assertThat("Time difference should be 1 second or less.", seconds - now, Matchers.allOf(lessThan(2), greaterThanOrEqualTo(0)));
   }
+
+  @Test
+  public void testIdsAreStrictlyIncreasing() throws Exception {
+    DefaultIdGenerator idGen = new DefaultIdGenerator();
+    BigInteger previous = idGen.next();
+    for (int i = 0; i < 100_000; i++) {
+      BigInteger next = idGen.next();
+      assertThat(next, greaterThan(previous));
+      previous = next;
+    }
+  }
+
+  @Test
+  public void testBatchIsContiguousAndOrdered() throws Exception {
+    DefaultIdGenerator idGen = new DefaultIdGenerator();
+    BigInteger before = idGen.next();
+    List<BigInteger> batch = idGen.nextBatch(1000);
+    BigInteger after = idGen.next();
+    assertThat(batch.size(), is(1000));
+    assertThat(batch.get(0), greaterThan(before));
+    assertThat(after, greaterThan(batch.get(batch.size() - 1)));
+    for (int i = 1; i < batch.size(); i++) {
+      assertThat(batch.get(i), greaterThan(batch.get(i - 1)));
+    }
+  }
+
+  @Test
+  public void testIdsAreUniqueAcrossThreads() throws Exception {
+    DefaultIdGenerator idGen = new DefaultIdGenerator();
+    Set<BigInteger> seen = ConcurrentHashMap.newKeySet();
+    int threads = 8;
+    int perThread = 10_000;
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int t = 0; t < threads; t++) {
+      futures.add(executor.submit(() -> {
+        for (int i = 0; i < perThread; i++) {
+          seen.add(idGen.next());
+        }
+      }));
+    }
+    for (Future<?> future : futures) {
+      future.get();
+    }
+    executor.shutdown();
+    assertThat(seen.size(), is(threads * perThread));
+  }
+
+  @Test
+  public void testIdsAreUniqueAcrossInstances() throws Exception {
+    Set<BigInteger> seen = ConcurrentHashMap.newKeySet();
+    int instances = 4;
+    int perInstance = 50_000;
+    ExecutorService executor = Executors.newFixedThreadPool(instances);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int t = 0; t < instances; t++) {
+      DefaultIdGenerator idGen = new DefaultIdGenerator();
+      futures.add(executor.submit(() -> {
+        for (int i = 0; i < perInstance; i++) {
+          seen.add(idGen.next());
+        }
+      }));
+    }
+    for (Future<?> future : futures) {
+      future.get();
+    }
+    executor.shutdown();
+    assertThat(seen.size(), is(instances * perInstance));
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testBatchRequiresPositiveCount() throws Exception {
+    new DefaultIdGenerator().nextBatch(0);
+  }
 }
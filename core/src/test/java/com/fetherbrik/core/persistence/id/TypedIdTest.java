@@ -1,11 +1,17 @@
 package com.fetherbrik.core.persistence.id;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.module.SimpleModule;
 import org.hamcrest.Matchers;
 import org.testng.annotations.Test;
 
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
 
 
 /**
@@ -13,5 +19,117 @@ import static org.hamcrest.MatcherAssert.assertThat;
  */
 public class TypedIdTest {
 
+  private static final Random random = new Random(42);
 
+  private static BigInteger randomValue(int byteCount) {
+    return new BigInteger(byteCount * 8, random);
+  }
+
+  @Test
+  public void testValueRoundTrips() {
+    for (int i = 0; i < 1000; i++) {
+      BigInteger value = randomValue(16);
+      TypedId<?> id = new TypedId<>(value);
+      TypedId<?> fromLongs = new TypedId<>(id.hi(), id.lo());
+      assertThat(fromLongs.value(), is(value));
+      assertThat(fromLongs, Matchers.<TypedId<?>>is(id));
+      assertThat(fromLongs.hashCode(), is(id.hashCode()));
+    }
+  }
+
+  @Test
+  public void testToHexMatchesBigInteger() {
+    assertThat(new TypedId<>(BigInteger.ZERO).toHex(), is("0"));
+    for (int i = 0; i < 1000; i++) {
+      BigInteger value = randomValue(1 + random.nextInt(16));
+      assertThat(new TypedId<>(value).toHex(), is(value.toString(16)));
+    }
+  }
+
+  @Test
+  public void testToHexRestoresLeadingZeros() {
+    TypedId<?> id = new TypedId<>(new BigInteger("00000000000000000000abcd", 16));
+    assertThat(id.toHex(12), is("00000000000000000000abcd"));
+    assertThat(id.toBytes(12).length, is(12));
+    assertThat(id.toBytes(12)[11], is((byte) 0xcd));
+  }
+
+  @Test
+  public void testCompareToMatchesBigInteger() {
+    for (int i = 0; i < 1000; i++) {
+      BigInteger a = randomValue(16);
+      BigInteger b = i % 10 == 0 ? a : randomValue(16);
+      int expected = Integer.signum(a.compareTo(b));
+      assertThat(Integer.signum(new TypedId<>(a).compareTo(new TypedId<>(b))), is(expected));
+    }
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testTruncationIsNotSupported() {
+    new TypedId<>(new BigInteger("0102030405060708090a0b0c0d", 16)).toBytes(12);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testValuesWiderThanSixteenBytesAreRejected() {
+    new TypedId<>(BigInteger.ONE.shiftLeft(128));
+  }
+
+  @Test
+  public void testJsonShapeIsUnchanged() throws Exception {
+    String json = new ObjectMapper().writeValueAsString(new TypedId<>(BigInteger.valueOf(1001)));
+    assertThat(json, is("{\"id\":1001}"));
+  }
+
+  @Test
+  public void testParseMatchesBigInteger() {
+    for (int i = 0; i < 1000; i++) {
+      BigInteger value = randomValue(1 + random.nextInt(16));
+      String hex = value.toString(16);
+      TypedId<?> parsed = new TypedId<>(i % 2 == 0 ? hex : hex.toUpperCase());
+      assertThat(parsed.value(), is(value));
+      assertThat(parsed, Matchers.<TypedId<?>>is(new TypedId<>(value)));
+    }
+  }
+
+  @Test(expectedExceptions = NumberFormatException.class)
+  public void testParseRejectsNonHexCharacters() {
+    new TypedId<>("00ff00zz");
+  }
+
+  @Test(expectedExceptions = NumberFormatException.class)
+  public void testParseRejectsMoreThanSixteenBytes() {
+    new TypedId<>("0102030405060708090a0b0c0d0e0f1011");
+  }
+
+  @Test
+  public void testOddDigitCountsEncodeTheLowOrderDigits() {
+    TypedId<?> id = new TypedId<>("123456789abcdef0123456789abcdef");
+    for (int digits = 0; digits <= HexCodec.MaxDigits; digits++) {
+      char[] chars = new char[digits];
+      id.writeHex(chars, 0, digits);
+      String full = id.toHex(TypedId.MaxByteLength);
+      assertThat(new String(chars), is(full.substring(full.length() - digits)));
+    }
+  }
+
+  @Test
+  public void testWriteHexToByteBuffer() {
+    TypedId<?> id = new TypedId<>("5f1e2d3c4b5a69788796a5b4");
+    ByteBuffer buffer = ByteBuffer.allocate(30);
+    buffer.put((byte) '[');
+    id.writeHex(buffer, 24);
+    buffer.put((byte) ']');
+    assertThat(buffer.position(), is(26));
+    assertThat(new String(buffer.array(), 0, 26, StandardCharsets.US_ASCII), is("[5f1e2d3c4b5a69788796a5b4]"));
+  }
+
+  @Test
+  public void testSerializerWritesHex() throws Exception {
+    ObjectMapper mapper = new ObjectMapper();
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    TypedId.TypedIdSerializer<TypedId<?>> serializer = new TypedId.TypedIdSerializer(TypedId.class);
+    mapper.registerModule(new SimpleModule().addSerializer(serializer));
+    TypedId<?> id = new TypedId<>("00000abc");
+    assertThat(mapper.writeValueAsString(id), is("\"abc\""));
+  }
 }
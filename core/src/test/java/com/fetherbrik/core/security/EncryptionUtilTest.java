@@ -0,0 +1,117 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+
+package com.fetherbrik.core.security;
+
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.codec.binary.StringUtils;
+import org.apache.commons.lang3.ArrayUtils;
+import org.testng.annotations.Test;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * @author ggranum
+ */
+public class EncryptionUtilTest {
+
+  private static final char[] Password = "correct horse battery staple".toCharArray();
+  private static final byte[] Salt = EncryptionUtil.generateSalt(16);
+
+  @Test
+  public void testRoundTrip() throws GeneralSecurityException {
+    String clearText = "userId|tenantId|1572393600000|ünïcøde";
+    String token = EncryptionUtil.encrypt(clearText, Password, Salt);
+    assertThat(token, not(containsString("userId")));
+    assertThat(EncryptionUtil.decrypt(token, Password, Salt), is(clearText));
+  }
+
+  @Test
+  public void testTokensUseAFreshNonce() throws GeneralSecurityException {
+    assertThat(EncryptionUtil.encrypt("same", Password, Salt), not(EncryptionUtil.encrypt("same", Password, Salt)));
+  }
+
+  @Test
+  public void testOriginalCbcTokensStillDecrypt() throws GeneralSecurityException {
+    byte[] iv = new byte[16];
+    for (int i = 0; i < 20; i++) {
+      // Never starts with the versioned header, so these always take the legacy path directly.
+      iv[0] = (byte) i;
+      String clearText = "legacy token " + i;
+      assertThat(EncryptionUtil.decrypt(legacyEncrypt(clearText, Password, Salt, iv), Password, Salt), is(clearText));
+    }
+  }
+
+  @Test
+  public void testOriginalCbcTokenWithAHeaderLookalikeIvStillDecrypts() throws GeneralSecurityException {
+    // The IV begins with the versioned header, so decrypt tries GCM first, fails the tag check and falls back.
+    byte[] iv = new byte[16];
+    iv[0] = EncryptionUtil.TOKEN_MAGIC;
+    iv[1] = EncryptionUtil.TOKEN_VERSION_GCM;
+    for (String clearText : new String[]{"short", "a legacy token long enough to span several cipher blocks"}) {
+      assertThat(EncryptionUtil.decrypt(legacyEncrypt(clearText, Password, Salt, iv), Password, Salt), is(clearText));
+    }
+  }
+
+  @Test(expectedExceptions = AEADBadTagException.class)
+  public void testTamperedTokenIsRejected() throws GeneralSecurityException {
+    byte[] token = Base64.decodeBase64(EncryptionUtil.encrypt("some clear text", Password, Salt));
+    token[token.length - 20] ^= 1;
+    EncryptionUtil.decrypt(Base64.encodeBase64String(token), Password, Salt);
+  }
+
+  @Test(expectedExceptions = GeneralSecurityException.class)
+  public void testWrongPasswordIsRejected() throws GeneralSecurityException {
+    String token = EncryptionUtil.encrypt("some clear text", Password, Salt);
+    EncryptionUtil.decrypt(token, "wrong".toCharArray(), Salt);
+  }
+
+  @Test
+  public void testByteBufferRoundTrip() throws GeneralSecurityException {
+    byte[] clearBytes = "direct buffers, no copies".getBytes(StandardCharsets.UTF_8);
+    ByteBuffer clearText = ByteBuffer.allocateDirect(clearBytes.length);
+    clearText.put(clearBytes).flip();
+    ByteBuffer token = ByteBuffer.allocateDirect(EncryptionUtil.encryptedLength(clearBytes.length));
+    int written = EncryptionUtil.encrypt(clearText, token, Password, Salt);
+    assertThat(written, is(EncryptionUtil.encryptedLength(clearBytes.length)));
+    assertThat(token.remaining(), is(0));
+
+    token.flip();
+    ByteBuffer decrypted = ByteBuffer.allocate(token.remaining());
+    int read = EncryptionUtil.decrypt(token, decrypted, Password, Salt);
+    assertThat(read, is(clearBytes.length));
+    assertThat(new String(decrypted.array(), 0, read, StandardCharsets.UTF_8), is("direct buffers, no copies"));
+  }
+
+  /**
+   * The token format EncryptionUtil wrote before it was versioned.
+   */
+  private static String legacyEncrypt(String clearText, char[] password, byte[] salt, byte[] iv) throws
+      GeneralSecurityException {
+    SecretKey pbeKey = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA1")
+                                       .generateSecret(new PBEKeySpec(password,
+                                           salt,
+                                           Integer.parseInt(System.getProperty("com.fetherbrik.security.hash_iterations",
+                                               "7459")),
+                                           256));
+    Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
+    cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(pbeKey.getEncoded(), "AES"), new IvParameterSpec(iv));
+    byte[] cipherBytes = cipher.doFinal(Base64.encodeBase64(StringUtils.getBytesUtf8(clearText)));
+    return Base64.encodeBase64String(ArrayUtils.addAll(iv, cipherBytes));
+  }
+}
@@ -0,0 +1,113 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+
+package com.fetherbrik.core.trace;
+
+import org.testng.annotations.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * @author ggranum
+ */
+public class TraceContextTest {
+
+  @Test
+  public void testKeepsAReasonableIncomingTraceId() {
+    assertThat(TraceContext.start("abc123").traceId(), is("abc123"));
+  }
+
+  @Test
+  public void testReplacesMissingBlankAndOverlongTraceIds() {
+    String overlong = "a".repeat(TraceContext.MaxTraceIdLength + 1);
+    for (String incoming : new String[]{null, "", " ", overlong}) {
+      String traceId = TraceContext.start(incoming).traceId();
+      assertThat(traceId.length(), is(32));
+      assertThat(traceId, not(overlong));
+    }
+  }
+
+  @Test
+  public void testAcceptsOnlyLettersDigitsAndHyphensInTraceIds() {
+    String longest = "A-z0".repeat(TraceContext.MaxTraceIdLength / 4);
+    assertThat(TraceContext.start(longest).traceId(), is(longest));
+    assertThat(TraceContext.start("req-42").traceId(), is("req-42"));
+    for (String incoming : new String[]{"abc\r\nX-Forged: yes", "a b", "abc_123", "abc;rm", "caf\u00e9", "<script>"}) {
+      assertThat(TraceContext.isValidTraceId(incoming), is(false));
+      String traceId = TraceContext.start(incoming).traceId();
+      assertThat(traceId, not(incoming));
+      assertThat(TraceContext.isValidTraceId(traceId), is(true));
+    }
+  }
+
+  @Test
+  public void testAttachAndRestoreNest() {
+    TraceContext outer = TraceContext.start(null);
+    TraceContext inner = TraceContext.start(null);
+    assertThat(TraceContext.current(), nullValue());
+    TraceContext beforeOuter = outer.attach();
+    TraceContext beforeInner = inner.attach();
+    assertThat(TraceContext.current(), sameInstance(inner));
+    TraceContext.restore(beforeInner);
+    assertThat(TraceContext.current(), sameInstance(outer));
+    TraceContext.restore(beforeOuter);
+    assertThat(TraceContext.current(), nullValue());
+  }
+
+  @Test
+  public void testWrappedTasksSeeTheContext() throws Exception {
+    TraceContext context = TraceContext.start(null);
+    AtomicReference<TraceContext> seen = new AtomicReference<>();
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      executor.submit(context.wrap(() -> seen.set(TraceContext.current()))).get(10, TimeUnit.SECONDS);
+      assertThat(seen.get(), sameInstance(context));
+      executor.submit(() -> seen.set(TraceContext.current())).get(10, TimeUnit.SECONDS);
+      assertThat(seen.get(), nullValue());
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testSpansAccumulate() throws InterruptedException {
+    TraceContext context = TraceContext.start(null);
+    context.end(Span.RESOURCE);
+    assertThat(context.spanNanos(Span.RESOURCE), is(0L));
+    context.begin(Span.SERIALIZATION);
+    Thread.sleep(2);
+    context.end(Span.SERIALIZATION);
+    long first = context.spanNanos(Span.SERIALIZATION);
+    assertThat(first, greaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(2)));
+    context.begin(Span.SERIALIZATION);
+    context.end(Span.SERIALIZATION);
+    assertThat(context.spanNanos(Span.SERIALIZATION), greaterThanOrEqualTo(first));
+    context.end(Span.FILTER);
+    assertThat(context.spanNanos(Span.FILTER), greaterThanOrEqualTo(first));
+  }
+
+  @Test
+  public void testEndingASpanTwiceCountsItOnce() throws InterruptedException {
+    TraceContext context = TraceContext.start(null);
+    context.begin(Span.RESOURCE);
+    context.end(Span.RESOURCE);
+    long once = context.spanNanos(Span.RESOURCE);
+    Thread.sleep(2);
+    context.end(Span.RESOURCE);
+    assertThat(context.spanNanos(Span.RESOURCE), is(once));
+
+    context.end(Span.FILTER);
+    long filter = context.spanNanos(Span.FILTER);
+    context.end(Span.FILTER);
+    assertThat(context.spanNanos(Span.FILTER), is(filter));
+  }
+}
@@ -0,0 +1,144 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+
+package com.fetherbrik.helloworld.loadtest;
+
+import com.fetherbrik.core.metrics.Histogram;
+import com.fetherbrik.core.metrics.HistogramSnapshot;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A closed loop load test: each of {@code --concurrency} threads sends a request, waits for the response and sends
+ * the next, for {@code --seconds} seconds after {@code --warmup} seconds of unrecorded requests. Prints one line of
+ * throughput and latency percentiles, in microseconds.
+ * <p>
+ * To compare execution modes, start the server with each value of {@code executionMode} in turn and run the same load
+ * against it. The blocking endpoints make the difference visible; the plain ones mostly measure the server's
+ * overhead:
+ * <ul>
+ * <li>/hello/world: no blocking</li>
+ * <li>/hello/blocking/50: holds the request thread for 50ms, as a slow repository call would</li>
+ * <li>/hello/offloaded/50: the same 50ms, on the BlockingExecutor</li>
+ * </ul>
+ * For example: {@code ./gradlew :hello-world:loadTest -PloadTest.args="--label BOUNDED --path /hello/blocking/50
+ * --concurrency 2000"}
+ * <p>
+ * {@code --protocol h1}, the default, sends HTTP/1.1 over a pool of connections, one for each request in flight.
+ * {@code --protocol h2} sends HTTP/2 over the HTTP port, upgrading to h2c on the first request, and multiplexes every
+ * request over a single connection. Keep {@code --concurrency} at or below the server's
+ * {@code http2MaxConcurrentStreams} when comparing the two, or the client will refuse the streams beyond it.
+ *
+ * @author ggranum
+ */
+public final class HelloWorldLoadTest {
+
+  private final URI uri;
+  private final int concurrency;
+  private final Duration warmup;
+  private final Duration measured;
+  private final String label;
+  private final String protocol;
+  private final HttpClient client;
+  private final Histogram latencyMicros = new Histogram();
+  private final AtomicLong errors = new AtomicLong();
+
+  private HelloWorldLoadTest(Map<String, String> args) {
+    uri = URI.create(args.getOrDefault("url", "http://127.0.0.1:4280") + args.getOrDefault("path", "/hello/world"));
+    concurrency = Integer.parseInt(args.getOrDefault("concurrency", "200"));
+    warmup = Duration.ofSeconds(Long.parseLong(args.getOrDefault("warmup", "5")));
+    measured = Duration.ofSeconds(Long.parseLong(args.getOrDefault("seconds", "30")));
+    label = args.getOrDefault("label", "unlabelled");
+    protocol = args.getOrDefault("protocol", "h1");
+    HttpClient.Version version;
+    if (protocol.equals("h1")) {
+      version = HttpClient.Version.HTTP_1_1;
+    } else if (protocol.equals("h2")) {
+      version = HttpClient.Version.HTTP_2;
+    } else {
+      throw new IllegalArgumentException("Protocol must be h1 or h2, but was " + protocol);
+    }
+    client = HttpClient.newBuilder().version(version).connectTimeout(Duration.ofSeconds(10)).build();
+  }
+
+  public static void main(String[] commandLineArgs) throws InterruptedException {
+    Map<String, String> args = new HashMap<>();
+    for (int i = 0; i + 1 < commandLineArgs.length; i += 2) {
+      if (!commandLineArgs[i].startsWith("--")) {
+        throw new IllegalArgumentException("Expected an argument name, but found " + commandLineArgs[i]);
+      }
+      args.put(commandLineArgs[i].substring(2), commandLineArgs[i + 1]);
+    }
+    new HelloWorldLoadTest(args).run();
+  }
+
+  private void run() throws InterruptedException {
+    long start = System.nanoTime();
+    long measureFrom = start + warmup.toNanos();
+    long measureTo = measureFrom + measured.toNanos();
+    AtomicLong completed = new AtomicLong();
+    HttpRequest request = HttpRequest.newBuilder(uri).timeout(Duration.ofSeconds(30)).GET().build();
+    // Settle the protocol before the workers start, so that HTTP/2 is upgraded to once rather than raced to by each.
+    try {
+      client.send(request, HttpResponse.BodyHandlers.discarding());
+    } catch (Exception e) {
+      throw new IllegalStateException("Could not reach " + uri, e);
+    }
+
+    List<Thread> workers = new ArrayList<>(concurrency);
+    for (int i = 0; i < concurrency; i++) {
+      Thread worker = new Thread(() -> {
+        long now = System.nanoTime();
+        while (now < measureTo) {
+          boolean ok;
+          try {
+            ok = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200;
+          } catch (Exception e) {
+            ok = false;
+          }
+          long sent = now;
+          now = System.nanoTime();
+          if (sent >= measureFrom && now <= measureTo) {
+            if (ok) {
+              completed.incrementAndGet();
+              latencyMicros.record((now - sent) / 1000);
+            } else {
+              errors.incrementAndGet();
+            }
+          }
+        }
+      }, "load-" + i);
+      worker.setDaemon(true);
+      workers.add(worker);
+      worker.start();
+    }
+    for (Thread worker : workers) {
+      worker.join();
+    }
+
+    HistogramSnapshot latency = latencyMicros.snapshot();
+    System.out.printf("%s %s %s concurrency=%d requests/s=%.1f p50=%d p99=%d p999=%d max=%d errors=%d%n",
+        label,
+        protocol,
+        uri.getPath(),
+        concurrency,
+        completed.get() / (double) measured.getSeconds(),
+        latency.p50,
+        latency.p99,
+        latency.p999,
+        latency.max,
+        errors.get());
+  }
+}
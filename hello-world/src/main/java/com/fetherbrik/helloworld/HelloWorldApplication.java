@@ -8,6 +8,7 @@ package com.fetherbrik.helloworld;
 
 import com.fetherbrik.core.json.DefaultObjectMapperProvider;
 import com.fetherbrik.core.log.Log;
+import com.fetherbrik.core.log.OverflowPolicy;
 import com.fetherbrik.helloworld.bootstrap.HelloWorldBootstrapConfiguration;
 import com.fetherbrik.helloworld.bootstrap.HelloWorldSpecialModuleProvider;
 import com.fetherbrik.servlet.FetherBrikApplication;
@@ -47,6 +48,8 @@ public final class HelloWorldApplication extends FetherBrikApplication {
 
   public static void main(String[] commandLineArgs) throws Exception {
     Bootstrap.disableVerboseNetworkAndCertificateLogging();
+    // Format and write log statements on a background thread; fall back to the calling thread if it falls behind.
+    Log.startAsync(8192, OverflowPolicy.CALLER_RUNS);
     Bootstrap bootstrap = new Bootstrap.Builder()
         .appName("Hello World")
         .basePath("./")
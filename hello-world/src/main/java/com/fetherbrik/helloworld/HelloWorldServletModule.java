@@ -10,6 +10,8 @@ import com.fetherbrik.helloworld.resource.HelloWorldResource;
 import com.fetherbrik.helloworld.resource.HelloWorldResourceImpl;
 import com.fetherbrik.servlet.GuiceResteasyServletModule;
 
+import java.util.Optional;
+
 /**
  * @author ggranum
  */
@@ -19,4 +21,14 @@ public class HelloWorldServletModule extends GuiceResteasyServletModule {
   public void bindResources() {
     bind(HelloWorldResource.class).to(HelloWorldResourceImpl.class);
   }
+
+  @Override
+  public Optional<String> getMethodMetricsPath() {
+    return Optional.of("/metrics/methods");
+  }
+
+  @Override
+  public Optional<String> getMetricsPath() {
+    return Optional.of("/metrics");
+  }
 }
@@ -11,7 +11,7 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.fetherbrik.core.exception.FormattedException;
-import com.fetherbrik.servlet.bootstrap.BootstrapConfiguration;
+import com.fetherbrik.servlet.bootstrap.AbstractBootstrapConfiguration;
 import com.google.common.collect.ImmutableSet;
 
 import javax.annotation.Nullable;
@@ -27,7 +27,7 @@ import java.util.Set;
  * @author ggranum
  */
 @JsonDeserialize(builder = HelloWorldBootstrapConfiguration.Builder.class)
-public final class HelloWorldBootstrapConfiguration implements BootstrapConfiguration {
+public final class HelloWorldBootstrapConfiguration extends AbstractBootstrapConfiguration {
 
   public final @NotNull @Size(min = 1) String env;
   public final Optional<String> hostName;
@@ -43,6 +43,7 @@ public final class HelloWorldBootstrapConfiguration implements BootstrapConfigur
   public final Set<String> someStringSet;
 
   private HelloWorldBootstrapConfiguration(Builder builder) {
+    super(builder);
     env = builder.env;
     httpPort = builder.httpPort;
     httpsPort = builder.httpsPort;
@@ -93,7 +94,7 @@ public final class HelloWorldBootstrapConfiguration implements BootstrapConfigur
     return hostName.orElse("127.0.0.1");
   }
 
-  public static final class Builder {
+  public static final class Builder extends AbstractBootstrapConfiguration.Builder<Builder> {
 
     @JsonProperty private @Nullable String hostname;
     @JsonProperty private @NotNull @Size(min = 1) String env;
@@ -111,6 +112,11 @@ public final class HelloWorldBootstrapConfiguration implements BootstrapConfigur
     public Builder() {
     }
 
+    @Override
+    protected Builder self() {
+      return this;
+    }
+
     public Builder env(String env) {
       this.env = env;
       return this;
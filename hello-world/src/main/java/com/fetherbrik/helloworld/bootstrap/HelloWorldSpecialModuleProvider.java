@@ -7,6 +7,7 @@
 package com.fetherbrik.helloworld.bootstrap;
 
 import com.fetherbrik.core.log.intercept.LoggingInterceptionModule;
+import com.fetherbrik.core.log.intercept.PerfMode;
 import com.fetherbrik.servlet.bootstrap.BootstrapConfiguration;
 import com.fetherbrik.servlet.bootstrap.Env;
 import com.fetherbrik.servlet.bootstrap.ModuleProvider;
@@ -21,6 +22,6 @@ public class HelloWorldSpecialModuleProvider implements ModuleProvider {
 
   @Override
   public Set<Module> get(Env env, BootstrapConfiguration baseConfiguration) {
-    return ImmutableSet.of(new HelloWorldProductionModule(env), new LoggingInterceptionModule());
+    return ImmutableSet.of(new HelloWorldProductionModule(env), new LoggingInterceptionModule(PerfMode.METRICS));
   }
 }
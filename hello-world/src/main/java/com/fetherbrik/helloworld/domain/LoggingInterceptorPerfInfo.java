@@ -19,12 +19,29 @@ public final class LoggingInterceptorPerfInfo {
   public final long suppressedByLogLevel;
   public final long withPerfEnabled;
   public final long notInterceptedLogStatementsOnly;
+  public final long disabledLogStatementsOnly;
+  /**
+   * Nanoseconds per call to an intercepted method whose log level is disabled.
+   */
+  public final long interceptedLevelDisabled;
+  /**
+   * Nanoseconds per call to the same method body, not intercepted.
+   */
+  public final long notIntercepted;
+  /**
+   * The cost of the interceptor itself, when the level is disabled: interceptedLevelDisabled - notIntercepted.
+   */
+  public final long interceptorOverhead;
 
   private LoggingInterceptorPerfInfo(Builder builder) {
     withDefaults = builder.withDefaults;
     suppressedByLogLevel = builder.suppressedByLogLevel;
     withPerfEnabled = builder.withPerfEnabled;
     notInterceptedLogStatementsOnly = builder.notInterceptedLogStatementsOnly;
+    disabledLogStatementsOnly = builder.disabledLogStatementsOnly;
+    interceptedLevelDisabled = builder.interceptedLevelDisabled;
+    notIntercepted = builder.notIntercepted;
+    interceptorOverhead = interceptedLevelDisabled - notIntercepted;
   }
 
   public static final class Builder {
@@ -33,6 +50,9 @@ public final class LoggingInterceptorPerfInfo {
     @JsonProperty private Long suppressedByLogLevel = 0L;
     @JsonProperty private Long withPerfEnabled = 0L;
     @JsonProperty private Long notInterceptedLogStatementsOnly = 0L;
+    @JsonProperty private Long disabledLogStatementsOnly = 0L;
+    @JsonProperty private Long interceptedLevelDisabled = 0L;
+    @JsonProperty private Long notIntercepted = 0L;
 
     public Builder() {
     }
@@ -57,6 +77,21 @@ public final class LoggingInterceptorPerfInfo {
       return this;
     }
 
+    public Builder disabledLogStatementsOnly(long disabledLogStatementsOnly) {
+      this.disabledLogStatementsOnly = disabledLogStatementsOnly;
+      return this;
+    }
+
+    public Builder interceptedLevelDisabled(long interceptedLevelDisabled) {
+      this.interceptedLevelDisabled = interceptedLevelDisabled;
+      return this;
+    }
+
+    public Builder notIntercepted(long notIntercepted) {
+      this.notIntercepted = notIntercepted;
+      return this;
+    }
+
     public LoggingInterceptorPerfInfo build() {
       return new LoggingInterceptorPerfInfo(this);
     }
@@ -10,6 +10,7 @@ import com.fetherbrik.helloworld.domain.ServerPerformanceInfo;
 
 import javax.ws.rs.*;
 import javax.ws.rs.core.MediaType;
+import java.util.concurrent.CompletionStage;
 
 /**
  * @author ggranum
@@ -34,6 +35,28 @@ public interface HelloWorldResource {
   @Produces(MediaType.TEXT_PLAIN)
   String version();
 
+  /**
+   * The longest {@link #blocking(long)} and {@link #offloaded(long)} sleep; longer requests are cut to it.
+   */
+  long MAX_SLEEP_MILLIS = 5000;
+
+  /**
+   * Sleeps on the request thread, standing in for a slow repository or remote call. At most
+   * {@value #MAX_SLEEP_MILLIS}ms.
+   */
+  @GET()
+  @Path("/blocking/{millis}")
+  @Produces(MediaType.TEXT_PLAIN)
+  String blocking(@PathParam("millis") long millis);
+
+  /**
+   * As {@link #blocking(long)}, but sleeps on the BlockingExecutor, leaving the request thread free.
+   */
+  @GET()
+  @Path("/offloaded/{millis}")
+  @Produces(MediaType.TEXT_PLAIN)
+  CompletionStage<String> offloaded(@PathParam("millis") long millis);
+
   @GET()
   @Path("/performance/{anyValue}")
   ServerPerformanceInfo perfCheck(@PathParam("anyValue") String anyValue);
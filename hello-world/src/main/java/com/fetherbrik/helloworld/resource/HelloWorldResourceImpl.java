@@ -13,9 +13,12 @@ import com.fetherbrik.core.log.intercept.Logged;
 import com.fetherbrik.helloworld.domain.LoggingInterceptorPerfInfo;
 import com.fetherbrik.helloworld.domain.ServerPerformanceInfo;
 import com.fetherbrik.servlet.bootstrap.Env;
+import com.fetherbrik.servlet.execution.BlockingExecutor;
 
 import javax.inject.Inject;
 import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
 /**
  * @author ggranum
@@ -25,12 +28,14 @@ public class HelloWorldResourceImpl implements HelloWorldResource {
   private static final Random random = new Random();
   private final Env env;
   private final VersionInfo appVersion;
+  private final BlockingExecutor blockingExecutor;
   private int N = 100000;
 
   @Inject
-  HelloWorldResourceImpl(Env env, VersionInfo appVersion) {
+  HelloWorldResourceImpl(Env env, VersionInfo appVersion, BlockingExecutor blockingExecutor) {
     this.env = env;
     this.appVersion = appVersion;
+    this.blockingExecutor = blockingExecutor;
   }
 
   @Logged(level = Level.INFO, perf = true)
@@ -45,6 +50,27 @@ public class HelloWorldResourceImpl implements HelloWorldResource {
     return "Hello Query " + whatever;
   }
 
+  @Override
+  public String blocking(long millis) {
+    return sleep(millis);
+  }
+
+  @Override
+  public CompletionStage<String> offloaded(long millis) {
+    return CompletableFuture.supplyAsync(() -> sleep(millis), blockingExecutor);
+  }
+
+  private static String sleep(long requestedMillis) {
+    // Clamped, so that a request can't hold a thread, or one of the BlockingExecutor's few, indefinitely.
+    long millis = Math.max(0, Math.min(requestedMillis, HelloWorldResource.MAX_SLEEP_MILLIS));
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    return "Slept " + millis + "ms on " + Thread.currentThread().getName();
+  }
+
   @Logged(level = Level.INFO, perf = true)
   @Override
   public ServerPerformanceInfo perfCheck(String anyValue) {
@@ -53,6 +79,9 @@ public class HelloWorldResourceImpl implements HelloWorldResource {
                                              .withPerfEnabled(runTestPerfWithIntercept()[1])
                                              .suppressedByLogLevel(runTestSuppressedByLogLevel()[1])
                                              .notInterceptedLogStatementsOnly(runTestNotInterceptedLogStatementsOnly(anyValue)[1])
+                                             .disabledLogStatementsOnly(runTestDisabledLogStatementsOnly(anyValue)[1])
+                                             .interceptedLevelDisabled(runTestInterceptedLevelDisabled()[1])
+                                             .notIntercepted(runTestNotIntercepted()[1])
                                              .build();
     ServerPerformanceInfo info = new ServerPerformanceInfo.Builder().logging(logInfo).build();
     return info;
@@ -102,6 +131,52 @@ public class HelloWorldResourceImpl implements HelloWorldResource {
     return new long[]{sum, delta / N};
   }
 
+  private long[] runTestDisabledLogStatementsOnly(String whatever) {
+    long sum = 0;
+    long t1 = System.nanoTime();
+    for (int i = 0; i < N; i++) {
+      sum += testDisabledLogStatementsOnly(whatever, i);
+    }
+    long t2 = System.nanoTime();
+    long delta = t2 - t1;
+    return new long[]{sum, delta / N};
+  }
+
+  private long[] runTestInterceptedLevelDisabled() {
+    long sum = 0;
+    long t1 = System.nanoTime();
+    for (int i = 0; i < N; i++) {
+      sum += testInterceptedLevelDisabled(i);
+    }
+    long t2 = System.nanoTime();
+    long delta = t2 - t1;
+    return new long[]{sum, delta / N};
+  }
+
+  private long[] runTestNotIntercepted() {
+    long sum = 0;
+    long t1 = System.nanoTime();
+    for (int i = 0; i < N; i++) {
+      sum += testNotIntercepted(i);
+    }
+    long t2 = System.nanoTime();
+    long delta = t2 - t1;
+    return new long[]{sum, delta / N};
+  }
+
+  /**
+   * Guice can't intercept private methods, so this and testNotIntercepted must not be private if the pair is to
+   * measure the interceptor. Trace is disabled for this class.
+   */
+  @Logged(level = Level.TRACE, perf = true)
+  int testInterceptedLevelDisabled(int value) {
+    return value ^ 0x5DEECE6;
+  }
+
+  int testNotIntercepted(int value) {
+    return value ^ 0x5DEECE6;
+  }
+
   @Logged(level = Level.INFO, perf = true)
   private int testPerfWithIntercept(long start, long end) {
     return random.nextInt();
@@ -125,6 +200,18 @@ public class HelloWorldResourceImpl implements HelloWorldResource {
     return random.nextInt();
   }
 
+  /**
+   * Trace is disabled for this class, so these should cost a level check each, and allocate nothing. The int argument
+   * is guarded, because it would otherwise be boxed before Log.trace could check the level.
+   */
+  private int testDisabledLogStatementsOnly(String whatever, int count) {
+    Log.trace(HelloWorldResourceImpl.class, "Enter: %s", whatever);
+    if (Log.traceEnabled(HelloWorldResourceImpl.class)) {
+      Log.trace(HelloWorldResourceImpl.class, "Leave: %s [%d]", whatever, count);
+    }
+    return random.nextInt();
+  }
+
   /**
    *
    */
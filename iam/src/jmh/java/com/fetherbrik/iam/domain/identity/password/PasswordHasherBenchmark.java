@@ -0,0 +1,85 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+package com.fetherbrik.iam.domain.identity.password;
+
+import com.fetherbrik.iam.domain.identity.EncryptionToken;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hashes per second for each hasher at a range of costs, to help choose the cost for a given login rate and core
+ * count. The legacy SHA-512 hash is included for comparison; its cost varies with the salt, from none to 32767 rounds.
+ * <p>
+ * ./gradlew :iam:jmh -Pjmh.include=PasswordHasherBenchmark
+ *
+ * @author ggranum
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PasswordHasherBenchmark {
+
+  private static final String Password = "correct horse battery staple";
+
+  /**
+   * pbkdf2-sha256:iterations, or argon2id:memoryKib:iterations:parallelism.
+   */
+  @Param({
+      "pbkdf2-sha256:100000",
+      "pbkdf2-sha256:310000",
+      "pbkdf2-sha256:600000",
+      "argon2id:19456:2:1",
+      "argon2id:47104:1:1",
+      "argon2id:65536:3:4"
+  })
+  public String cost;
+
+  private PasswordHasher hasher;
+  private String encoded;
+
+  @Setup
+  public void setUp() {
+    String[] fields = cost.split(":");
+    if (fields[0].equals(Pbkdf2PasswordHasher.ALGORITHM)) {
+      hasher = new Pbkdf2PasswordHasher(Integer.parseInt(fields[1]));
+    } else {
+      hasher = new Argon2PasswordHasher(Integer.parseInt(fields[1]),
+          Integer.parseInt(fields[2]),
+          Integer.parseInt(fields[3]));
+    }
+    encoded = hasher.hash(Password);
+  }
+
+  @Benchmark
+  public String hash() {
+    return hasher.hash(Password);
+  }
+
+  @Benchmark
+  public boolean verify() {
+    return hasher.verify(Password, encoded);
+  }
+
+  @SuppressWarnings("deprecation")
+  @Benchmark
+  public EncryptionToken legacySha512() {
+    return EncryptionToken.fromPasswordClearText(Password);
+  }
+}
@@ -0,0 +1,62 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+package com.fetherbrik.iam.domain;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The threads that blocking repositories are called on when they are used through one of the async repository
+ * interfaces, such as {@link com.fetherbrik.iam.domain.identity.user.AsyncUserRepository#of}. When every thread is
+ * busy and the queue is full, the caller runs the lookup itself, which slows callers down rather than failing them.
+ * <p>
+ * Configured with the system properties:
+ * <ul>
+ * <li>{@value #THREADS_PROP_KEY}: default 16</li>
+ * <li>{@value #QUEUE_SIZE_PROP_KEY}: default 1024</li>
+ * </ul>
+ *
+ * @author Geoff M. Granum
+ */
+@Singleton
+public class RepositoryExecutor implements Executor {
+
+  public static final String THREADS_PROP_KEY = "com.fetherbrik.iam.repository.threads";
+  public static final String QUEUE_SIZE_PROP_KEY = "com.fetherbrik.iam.repository.queue_size";
+
+  private final ThreadPoolExecutor executor;
+
+  @Inject
+  public RepositoryExecutor() {
+    this(Integer.getInteger(THREADS_PROP_KEY, 16), Integer.getInteger(QUEUE_SIZE_PROP_KEY, 1024));
+  }
+
+  public RepositoryExecutor(int threads, int queueSize) {
+    this.executor = new ThreadPoolExecutor(threads,
+        threads,
+        60,
+        TimeUnit.SECONDS,
+        new ArrayBlockingQueue<>(queueSize),
+        new ThreadFactoryBuilder().setNameFormat("fetherbrik-repository-%d").setDaemon(true).build(),
+        new ThreadPoolExecutor.CallerRunsPolicy());
+    this.executor.allowCoreThreadTimeOut(true);
+  }
+
+  @Override
+  public void execute(Runnable command) {
+    executor.execute(command);
+  }
+
+  public void shutdown() {
+    executor.shutdown();
+  }
+}
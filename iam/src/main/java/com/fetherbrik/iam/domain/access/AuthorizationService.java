@@ -6,41 +6,82 @@
 package com.fetherbrik.iam.domain.access;
 
 import com.fetherbrik.core.base.Verify;
+import com.fetherbrik.iam.domain.RepositoryExecutor;
+import com.fetherbrik.iam.domain.access.role.AsyncRoleRepository;
 import com.fetherbrik.iam.domain.access.role.Role;
 import com.fetherbrik.iam.domain.access.role.RoleRepository;
 import com.fetherbrik.iam.domain.access.role.RoleService;
+import com.fetherbrik.iam.domain.identity.group.GroupService;
+import com.fetherbrik.iam.domain.identity.user.AsyncUserRepository;
 import com.fetherbrik.iam.domain.identity.user.User;
+import com.fetherbrik.iam.domain.identity.user.UserId;
 import com.fetherbrik.iam.domain.identity.user.UserRepository;
+import com.fetherbrik.iam.domain.identity.tenant.Tenant;
 import com.fetherbrik.iam.domain.identity.tenant.TenantId;
-import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.Lists;
-import com.google.common.collect.Maps;
+import com.google.common.cache.CacheStats;
+import com.google.common.eventbus.EventBus;
 import com.google.inject.Inject;
 
-import java.util.List;
+import javax.inject.Singleton;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
 
 import static com.fetherbrik.core.base.Verify.isNotEmpty;
 
 /**
+ * Configured with the system properties:
+ * <ul>
+ * <li>{@value #PERMISSION_CACHE_SIZE_PROP_KEY}: the most users whose permissions are cached, default 10,000</li>
+ * <li>{@value #PERMISSION_CACHE_TTL_SECONDS_PROP_KEY}: default 300</li>
+ * </ul>
+ * <p>
+ * Lookups that don't depend on each other, such as a user and a role, or the roles of several users, are made
+ * concurrently through the async repositories; see {@link RepositoryExecutor}.
+ *
  * @author Geoff M. Granum
  */
+@Singleton
 public class AuthorizationService {
 
-  private final RoleRepository roleRepository;
+  public static final String PERMISSION_CACHE_SIZE_PROP_KEY = "com.fetherbrik.iam.permission_cache.size";
+  public static final String PERMISSION_CACHE_TTL_SECONDS_PROP_KEY = "com.fetherbrik.iam.permission_cache.ttl_seconds";
+
   private final UserRepository userRepository;
+  private final RoleRepository roleRepository;
+  private final AsyncRoleRepository asyncRoleRepository;
+  private final AsyncUserRepository asyncUserRepository;
   private final RoleService roleService;
+  private final GroupService groupService;
+  private final PermissionIndex permissionIndex;
+  private final EffectivePermissionCache permissionCache;
 
   @Inject
   protected AuthorizationService(
       UserRepository userRepository,
       RoleRepository roleRepository,
-      RoleService roleService) {
-    this.roleRepository = roleRepository;
+      RoleService roleService,
+      EventBus domainBus,
+      RepositoryExecutor repositoryExecutor,
+      PermissionIndex permissionIndex,
+      GroupService groupService) {
     this.userRepository = userRepository;
+    this.roleRepository = roleRepository;
+    this.asyncRoleRepository = AsyncRoleRepository.of(roleRepository, repositoryExecutor);
+    this.asyncUserRepository = AsyncUserRepository.of(userRepository, repositoryExecutor);
     this.roleService = roleService;
+    this.permissionIndex = permissionIndex;
+    this.groupService = groupService;
+    this.permissionCache = new EffectivePermissionCache(
+        Long.getLong(PERMISSION_CACHE_SIZE_PROP_KEY, 10_000L),
+        Long.getLong(PERMISSION_CACHE_TTL_SECONDS_PROP_KEY, TimeUnit.MINUTES.toSeconds(5)));
+    domainBus.register(permissionCache);
   }
 
   public Set<Role> rolesForUser(User user) {
@@ -50,52 +91,87 @@ public class AuthorizationService {
   /**
    * Does not implement true role-group hierarchy yet, so do watch out. E.g. if a child group disables a
    * permission, it won't get applied to the user assigned to the child role as expected.
+   * <p>
+   * The permissions inherited from roles are cached per (tenant, user); see {@link EffectivePermissionCache}. The
+   * user's own permissions are applied on every call, so a change to them never waits on the cache.
    *
    * @to`do ggranum: Fix nested role-group hierarchy.
    */
   public Set<RevocablePermission> permissionsForUser(User user) {
-    Set<Role> roles = roleRepository.rolesForUser(user);
-    Map<String, RevocablePermission> effectivePermissions;
+    return effectivePermissionsForUser(user).asRevocablePermissions();
+  }
 
-    effectivePermissions = calculateEffectivePermissionsFromRoles(roles);
+  /**
+   * The same permissions as {@link #permissionsForUser(User)}, as bitsets, for building a Subject.
+   */
+  public EffectivePermissions effectivePermissionsForUser(User user) {
+    EffectivePermissions fromRoles = permissionCache.get(user.tenantId,
+        user.username,
+        () -> EffectivePermissions.fromRoles(permissionIndex, roleRepository.rolesForUser(user)));
+    // The user's explicitly declared permissions always take precedence over any inherited from a role, whether
+    // revoked or not.
+    return fromRoles.withOverrides(user.permissions);
+  }
 
-    // Add all the user's explicitly declared permissions. These always take precedence over any inherited from a
-    // role, whether revoked or not.
+  public CompletionStage<EffectivePermissions> effectivePermissionsForUserAsync(User user) {
+    return permissionCache.getAsync(user.tenantId,
+        user.username,
+        () -> asyncRoleRepository.rolesForUserAsync(user)
+                                 .thenApply(roles -> EffectivePermissions.fromRoles(permissionIndex, roles)))
+                          .thenApply(fromRoles -> fromRoles.withOverrides(user.permissions));
+  }
 
-    for (RevocablePermission revocablePermission : user.permissions) {
-      effectivePermissions.put(revocablePermission.permission.name, revocablePermission);
+  /**
+   * The permissions of each user, with the roles of every user missing from the cache fetched concurrently rather
+   * than one after another.
+   */
+  public Map<UserId, EffectivePermissions> effectivePermissionsForUsers(Collection<User> users) {
+    Map<UserId, CompletableFuture<EffectivePermissions>> pending = new HashMap<>();
+    for (User user : users) {
+      pending.put(user.id, effectivePermissionsForUserAsync(user).toCompletableFuture());
     }
+    Map<UserId, EffectivePermissions> permissions = new HashMap<>();
+    for (Map.Entry<UserId, CompletableFuture<EffectivePermissions>> entry : pending.entrySet()) {
+      permissions.put(entry.getKey(), await(entry.getValue()));
+    }
+    return permissions;
+  }
 
-    return ImmutableSet.copyOf(effectivePermissions.values());
+  /**
+   * A builder for the Subject of `user`, with their roles and permissions, and a GroupResolver for the nested group
+   * checks made while the Subject is applied to the thread. Build it as a request starts, and clear it as it ends.
+   */
+  public Subject.Builder subjectFor(Tenant tenant, User user) {
+    Verify.equal(tenant.id(), user.tenantId, "Wrong tenant for this user.");
+    return new Subject.Builder()
+        .tenant(tenant)
+        .user(user)
+        .roles(rolesForUser(user))
+        .permissions(effectivePermissionsForUser(user))
+        .groupResolver(groupService.newResolver());
   }
 
-  private Map<String, RevocablePermission> calculateEffectivePermissionsFromRoles(Set<Role> roles) {
-    Map<String, RevocablePermission> effectivePermissions;
-    effectivePermissions = Maps.newHashMap();
+  /**
+   * Drop the cached permissions of every user in the tenant. Call this after changing the permissions of a role.
+   */
+  public void invalidatePermissions(TenantId tenantId) {
+    Verify.isNotNull(tenantId, "TenantId must not be null.");
+    permissionCache.invalidate(tenantId);
+  }
 
-    /* As a partial, safe implementation of inheritable groups with revocable permissions,
-     * user a list so we can accumulate an effective permissions list that ensures that a disabled permission
-     * is ALWAYS disabled, no matter where in the hierarchy it's found. */
-    List<RevocablePermission> rolePermissions = Lists.newArrayList();
+  public void invalidateAllPermissions() {
+    permissionCache.invalidateAll();
+  }
 
-    for (Role role : roles) {
-      rolePermissions.addAll(role.permissions);
-    }
+  /**
+   * @return Hit, miss and eviction counts for the effective permission cache.
+   */
+  public CacheStats permissionCacheStats() {
+    return permissionCache.stats();
+  }
 
-    /**
-     * Loop through the flat list, returning a Set that contains the unique permissions with respect to permission
-     * name.
-     * If a permission name is encountered twice (or more), but is disabled in one case and enabled in the other,
-     * the User will ALWAYS receive the permission as disabled.
-     */
-    for (RevocablePermission rolePermission : rolePermissions) {
-      RevocablePermission ancestorPermission = effectivePermissions.put(rolePermission.permission.name, rolePermission);
-      if (ancestorPermission != null && ancestorPermission.isRevocation && !rolePermission.isRevocation) {
-        // If it was in the map and was revoking the right, but the NEW item we just added did NOT revoke the right...
-        effectivePermissions.put(ancestorPermission.permission.name, ancestorPermission); // then use the revoked perm.
-      }
-    }
-    return effectivePermissions;
+  public long permissionCacheSize() {
+    return permissionCache.size();
   }
 
   public boolean isUserInRole(TenantId tenantId, String username, String roleName) {
@@ -106,6 +182,21 @@ public class AuthorizationService {
     return user.isPresent() && this.isUserInRole(user.get(), roleName);
   }
 
+  /**
+   * The user and the role are looked up at the same time.
+   */
+  public CompletionStage<Boolean> isUserInRoleAsync(TenantId tenantId, String username, String roleName) {
+    Verify.isNotNull(tenantId, "TenantId must not be null.");
+    isNotEmpty(username, "Username must not be provided.");
+    isNotEmpty(roleName, "Role name must not be null.");
+    CompletionStage<Optional<User>> user = asyncUserRepository.getAsync(tenantId, username);
+    CompletionStage<Optional<Role>> role = asyncRoleRepository.namedAsync(tenantId, roleName);
+    return user.thenCombine(role, (u, r) -> u.isPresent()
+                                            && u.get().isEnabled()
+                                            && r.isPresent()
+                                            && roleService.isInRole(r.get(), u.get()));
+  }
+
   public boolean isUserInRole(User user, String roleName) {
     Verify.isNotNull(user, "User must not be null.");
     isNotEmpty(roleName, "Role name must not be null.");
@@ -120,5 +211,15 @@ public class AuthorizationService {
     }
     return authorized;
   }
+
+  private static <T> T await(CompletableFuture<T> future) {
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw e;
+    }
+  }
 }
- 
@@ -0,0 +1,211 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+package com.fetherbrik.iam.domain.access;
+
+import com.fetherbrik.iam.domain.access.role.event.GroupAssignedToRole;
+import com.fetherbrik.iam.domain.access.role.event.GroupUnassignedFromRole;
+import com.fetherbrik.iam.domain.access.role.event.RoleProvisioned;
+import com.fetherbrik.iam.domain.access.role.event.UserAssignedToRole;
+import com.fetherbrik.iam.domain.access.role.event.UserUnassignedFromRole;
+import com.fetherbrik.iam.domain.identity.group.event.GroupAddedToGroup;
+import com.fetherbrik.iam.domain.identity.group.event.GroupRemovedFromGroup;
+import com.fetherbrik.iam.domain.identity.group.event.GroupUserAdded;
+import com.fetherbrik.iam.domain.identity.group.event.GroupUserRemoved;
+import com.fetherbrik.iam.domain.identity.tenant.TenantId;
+import com.fetherbrik.iam.domain.identity.tenant.event.TenantBulkProvisioned;
+import com.fetherbrik.iam.domain.identity.user.event.UserEnablementChanged;
+import com.fetherbrik.iam.domain.identity.user.event.UserRegistered;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.eventbus.Subscribe;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * The role derived permissions of each (tenant, user), invalidated by the domain events that change which roles a
+ * user holds.
+ * <p>
+ * An event naming a user invalidates only that user. An event that changes the members of a group or role can change
+ * the roles of any user in the tenant, so it invalidates the whole tenant. Nothing is posted when a role's own
+ * permissions are edited, so whoever does that should call {@link #invalidate(TenantId)}; the time to live bounds how
+ * long a missed invalidation can last.
+ *
+ * @author Geoff M. Granum
+ */
+final class EffectivePermissionCache {
+
+  private final Cache<Key, EffectivePermissions> entries;
+
+  /**
+   * Advanced by every invalidation, so that a load which raced with one is not cached.
+   */
+  private final AtomicLong generation = new AtomicLong();
+
+  EffectivePermissionCache(long maximumSize, long timeToLiveSeconds) {
+    this.entries = CacheBuilder.newBuilder()
+                               .maximumSize(maximumSize)
+                               .expireAfterWrite(timeToLiveSeconds, TimeUnit.SECONDS)
+                               .recordStats()
+                               .build();
+  }
+
+  EffectivePermissions get(TenantId tenantId, String username, Supplier<EffectivePermissions> loader) {
+    Key key = new Key(tenantId, username);
+    EffectivePermissions permissions = entries.getIfPresent(key);
+    if (permissions == null) {
+      long loadGeneration = generation.get();
+      permissions = loader.get();
+      if (generation.get() == loadGeneration) {
+        entries.put(key, permissions);
+        if (generation.get() != loadGeneration) {
+          entries.invalidate(key);
+        }
+      }
+    }
+    return permissions;
+  }
+
+  /**
+   * As {@link #get}, for a loader that completes later. A load that raced with an invalidation is returned but not
+   * cached, as with get.
+   */
+  CompletionStage<EffectivePermissions> getAsync(TenantId tenantId,
+                                                 String username,
+                                                 Supplier<CompletionStage<EffectivePermissions>> loader) {
+    Key key = new Key(tenantId, username);
+    EffectivePermissions permissions = entries.getIfPresent(key);
+    if (permissions != null) {
+      return CompletableFuture.completedFuture(permissions);
+    }
+    long loadGeneration = generation.get();
+    return loader.get().thenApply(loaded -> {
+      if (generation.get() == loadGeneration) {
+        entries.put(key, loaded);
+        if (generation.get() != loadGeneration) {
+          entries.invalidate(key);
+        }
+      }
+      return loaded;
+    });
+  }
+
+  void invalidate(TenantId tenantId, String username) {
+    generation.incrementAndGet();
+    entries.invalidate(new Key(tenantId, username));
+  }
+
+  void invalidate(TenantId tenantId) {
+    generation.incrementAndGet();
+    entries.asMap().keySet().removeIf(key -> key.tenantId.equals(tenantId));
+  }
+
+  void invalidateAll() {
+    generation.incrementAndGet();
+    entries.invalidateAll();
+  }
+
+  long size() {
+    return entries.size();
+  }
+
+  CacheStats stats() {
+    return entries.stats();
+  }
+
+  @Subscribe
+  public void on(UserAssignedToRole event) {
+    invalidate(event.tenantId(), event.userName());
+  }
+
+  @Subscribe
+  public void on(UserUnassignedFromRole event) {
+    invalidate(event.tenantId(), event.userName());
+  }
+
+  @Subscribe
+  public void on(GroupUserAdded event) {
+    invalidate(event.tenantId(), event.username());
+  }
+
+  @Subscribe
+  public void on(GroupUserRemoved event) {
+    invalidate(event.tenantId(), event.username());
+  }
+
+  @Subscribe
+  public void on(UserRegistered event) {
+    invalidate(event.tenantId(), event.username());
+  }
+
+  @Subscribe
+  public void on(UserEnablementChanged event) {
+    invalidate(event.tenantId(), event.username());
+  }
+
+  @Subscribe
+  public void on(GroupAssignedToRole event) {
+    invalidate(event.tenantId());
+  }
+
+  @Subscribe
+  public void on(GroupUnassignedFromRole event) {
+    invalidate(event.tenantId());
+  }
+
+  @Subscribe
+  public void on(GroupAddedToGroup event) {
+    invalidate(event.tenantId());
+  }
+
+  @Subscribe
+  public void on(GroupRemovedFromGroup event) {
+    invalidate(event.tenantId());
+  }
+
+  @Subscribe
+  public void on(RoleProvisioned event) {
+    invalidate(event.tenantId());
+  }
+
+  @Subscribe
+  public void on(TenantBulkProvisioned event) {
+    invalidate(event.tenantId());
+  }
+
+  private static final class Key {
+
+    final TenantId tenantId;
+    final String username;
+
+    Key(TenantId tenantId, String username) {
+      this.tenantId = tenantId;
+      this.username = username;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      Key key = (Key) o;
+      return tenantId.equals(key.tenantId) && username.equals(key.username);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(tenantId, username);
+    }
+  }
+}
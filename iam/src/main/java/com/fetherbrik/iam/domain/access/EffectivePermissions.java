@@ -0,0 +1,265 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+package com.fetherbrik.iam.domain.access;
+
+import com.fetherbrik.core.base.Verify;
+import com.fetherbrik.iam.domain.access.role.Role;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+import javax.annotation.concurrent.Immutable;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A set of revocable permissions, as a pair of bitsets over a {@link PermissionIndex}: one of granted permissions and
+ * one of revoked permissions. A permission is never both granted and revoked. Checking a permission is a single bit
+ * test, and merging the permissions of several roles is a bitwise OR of each set followed by an AND-NOT, so that a
+ * revocation anywhere always wins.
+ * <p>
+ * The IamPermissions are indexed first, so for most users each bitset is a single long. Permissions the index had no
+ * room for are held by id alongside the bitsets, with the same rules. A permission without an id is matched by its
+ * name.
+ *
+ * @author Geoff M. Granum
+ */
+@Immutable
+public final class EffectivePermissions {
+
+  private final PermissionIndex index;
+  private final long[] granted;
+  private final long[] revoked;
+  private final ImmutableMap<Object, RevocablePermission> unindexed;
+
+  private EffectivePermissions(PermissionIndex index,
+                               long[] granted,
+                               long[] revoked,
+                               ImmutableMap<Object, RevocablePermission> unindexed) {
+    this.index = index;
+    this.granted = granted;
+    this.revoked = revoked;
+    this.unindexed = unindexed;
+  }
+
+  /**
+   * If a permission is both granted and revoked in `permissions`, it is revoked.
+   */
+  public static EffectivePermissions of(PermissionIndex index, Iterable<RevocablePermission> permissions) {
+    Bits bits = new Bits(index);
+    for (RevocablePermission permission : permissions) {
+      bits.add(permission);
+    }
+    return bits.build();
+  }
+
+  /**
+   * If a permission is granted by one role and revoked by another, it is revoked.
+   */
+  public static EffectivePermissions fromRoles(PermissionIndex index, Iterable<Role> roles) {
+    Bits bits = new Bits(index);
+    for (Role role : roles) {
+      for (RevocablePermission permission : role.permissions) {
+        bits.add(permission);
+      }
+    }
+    return bits.build();
+  }
+
+  /**
+   * @param other Permissions over the same index as these.
+   * @return The union of these permissions and `other`'s, where a revocation in either wins.
+   */
+  public EffectivePermissions merge(EffectivePermissions other) {
+    Verify.isTrue(index == other.index, "Cannot merge permissions from different indexes.");
+    Bits bits = new Bits(this);
+    bits.or(other);
+    return bits.build();
+  }
+
+  /**
+   * @param overrides Permissions that take precedence over these, whether revoked or not. A user's explicitly declared
+   *                  permissions, for example.
+   */
+  public EffectivePermissions withOverrides(Iterable<RevocablePermission> overrides) {
+    if (!overrides.iterator().hasNext()) {
+      return this;
+    }
+    Bits bits = new Bits(this);
+    for (RevocablePermission override : overrides) {
+      bits.override(override);
+    }
+    return bits.build();
+  }
+
+  public boolean isPermitted(IamPermission permission) {
+    return isSet(granted, PermissionIndex.indexOf(permission));
+  }
+
+  public boolean isPermitted(PermissionId permissionId) {
+    int i = index.indexOf(permissionId);
+    if (i >= 0 || unindexed.isEmpty()) {
+      return isSet(granted, i);
+    }
+    RevocablePermission permission = unindexed.get(permissionId);
+    return permission != null && !permission.isRevocation;
+  }
+
+  /**
+   * Matched by id, or by name if `permission` has no id.
+   */
+  public boolean isPermitted(Permission permission) {
+    int i = index.find(permission);
+    if (i >= 0 || unindexed.isEmpty()) {
+      return isSet(granted, i);
+    }
+    RevocablePermission found = unindexed.get(PermissionIndex.keyOf(permission));
+    return found != null && !found.isRevocation;
+  }
+
+  public boolean isRevoked(IamPermission permission) {
+    return isSet(revoked, PermissionIndex.indexOf(permission));
+  }
+
+  public boolean isRevoked(PermissionId permissionId) {
+    int i = index.indexOf(permissionId);
+    if (i >= 0 || unindexed.isEmpty()) {
+      return isSet(revoked, i);
+    }
+    RevocablePermission permission = unindexed.get(permissionId);
+    return permission != null && permission.isRevocation;
+  }
+
+  public ImmutableSet<RevocablePermission> asRevocablePermissions() {
+    ImmutableSet.Builder<RevocablePermission> builder = ImmutableSet.builder();
+    addAll(builder, granted, false);
+    addAll(builder, revoked, true);
+    builder.addAll(unindexed.values());
+    return builder.build();
+  }
+
+  private void addAll(ImmutableSet.Builder<RevocablePermission> builder, long[] words, boolean isRevocation) {
+    for (int w = 0; w < words.length; w++) {
+      long word = words[w];
+      while (word != 0) {
+        int i = (w << 6) + Long.numberOfTrailingZeros(word);
+        builder.add(new RevocablePermission(index.permissionAt(i), isRevocation));
+        word &= word - 1;
+      }
+    }
+  }
+
+  private static int wordIndex(int index) {
+    return index >>> 6;
+  }
+
+  /**
+   * @param index May be -1, for a permission that has never been indexed, which is never set.
+   */
+  private static boolean isSet(long[] words, int index) {
+    int w = wordIndex(index);
+    return w < words.length && (words[w] & (1L << index)) != 0;
+  }
+
+  /**
+   * Permissions being gathered into an EffectivePermissions. The bitsets grow as needed.
+   */
+  private static final class Bits {
+
+    private final PermissionIndex index;
+    private long[] granted;
+    private long[] revoked;
+    private final Map<Object, RevocablePermission> unindexed;
+
+    Bits(PermissionIndex index) {
+      this.index = index;
+      this.granted = new long[1];
+      this.revoked = new long[1];
+      this.unindexed = new HashMap<>();
+    }
+
+    Bits(EffectivePermissions from) {
+      this.index = from.index;
+      this.granted = from.granted.clone();
+      this.revoked = from.revoked.clone();
+      this.unindexed = new HashMap<>(from.unindexed);
+    }
+
+    /**
+     * A revocation wins over a grant, whichever is added first.
+     */
+    void add(RevocablePermission permission) {
+      int i = index.indexOf(permission.permission);
+      if (i >= 0) {
+        ensureCapacity(i);
+        set(permission.isRevocation ? revoked : granted, i);
+      } else {
+        addUnindexed(permission);
+      }
+    }
+
+    void override(RevocablePermission permission) {
+      int i = index.indexOf(permission.permission);
+      if (i >= 0) {
+        ensureCapacity(i);
+        set(permission.isRevocation ? revoked : granted, i);
+        clear(permission.isRevocation ? granted : revoked, i);
+      } else {
+        unindexed.put(PermissionIndex.keyOf(permission.permission), permission);
+      }
+    }
+
+    void or(EffectivePermissions other) {
+      if (other.granted.length > granted.length) {
+        ensureCapacity((other.granted.length << 6) - 1);
+      }
+      for (int w = 0; w < other.granted.length; w++) {
+        granted[w] |= other.granted[w];
+        revoked[w] |= other.revoked[w];
+      }
+      for (RevocablePermission permission : other.unindexed.values()) {
+        addUnindexed(permission);
+      }
+    }
+
+    private void addUnindexed(RevocablePermission permission) {
+      Object key = PermissionIndex.keyOf(permission.permission);
+      if (permission.isRevocation || !unindexed.containsKey(key)) {
+        unindexed.put(key, permission);
+      }
+    }
+
+    EffectivePermissions build() {
+      int length = granted.length;
+      for (int w = 0; w < length; w++) {
+        granted[w] &= ~revoked[w];
+      }
+      while (length > 0 && granted[length - 1] == 0 && revoked[length - 1] == 0) {
+        length--;
+      }
+      return new EffectivePermissions(index,
+          Arrays.copyOf(granted, length),
+          Arrays.copyOf(revoked, length),
+          ImmutableMap.copyOf(unindexed));
+    }
+
+    private static void set(long[] words, int i) {
+      words[wordIndex(i)] |= 1L << i;
+    }
+
+    private void ensureCapacity(int i) {
+      int words = wordIndex(i) + 1;
+      if (words > granted.length) {
+        granted = Arrays.copyOf(granted, Math.max(words, granted.length * 2));
+        revoked = Arrays.copyOf(revoked, granted.length);
+      }
+    }
+
+    private static void clear(long[] words, int i) {
+      words[wordIndex(i)] &= ~(1L << i);
+    }
+  }
+}
@@ -17,4 +17,8 @@ public final class PermissionId extends TypedId<Permission> {
   public PermissionId(BigInteger value) {
     super(value);
   }
+
+  public PermissionId(long hi, long lo) {
+    super(hi, lo);
+  }
 }
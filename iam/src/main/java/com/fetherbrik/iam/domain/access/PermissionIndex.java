@@ -0,0 +1,125 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+package com.fetherbrik.iam.domain.access;
+
+import com.fetherbrik.core.base.Verify;
+import com.fetherbrik.core.log.Log;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns permissions into a dense, zero based index, so that a set of permissions can be held as a bitset. The
+ * IamPermissions are interned first, in declaration order, so the built in permissions all fit in the first word of
+ * any bitset. Any other permission is given the next free index the first time it is seen, until the index holds
+ * {@value #PERMISSION_INDEX_MAX_SIZE_PROP_KEY} permissions (default 4,096). Permissions seen after that are not
+ * indexed: EffectivePermissions hold them in a set instead, which is slower to check but just as correct.
+ * <p>
+ * Permissions are interned by PermissionId, which is global rather than per tenant, or by name if they have no id.
+ * The bitsets of one index mean nothing to another, so the application shares one, bound as a singleton.
+ *
+ * @author Geoff M. Granum
+ */
+@Singleton
+public final class PermissionIndex {
+
+  public static final String PERMISSION_INDEX_MAX_SIZE_PROP_KEY = "com.fetherbrik.iam.permission_index.max_size";
+
+  private final int maxSize;
+  private final Map<Object, Integer> indexes = new ConcurrentHashMap<>();
+  private volatile Permission[] permissions = new Permission[0];
+  private volatile boolean warnedFull;
+
+  @Inject
+  public PermissionIndex() {
+    this(Integer.getInteger(PERMISSION_INDEX_MAX_SIZE_PROP_KEY, 4096));
+  }
+
+  public PermissionIndex(int maxSize) {
+    Verify.isTrue(maxSize >= IamPermission.values().length,
+        "The permission index must have room for the %s IamPermissions.",
+        IamPermission.values().length);
+    this.maxSize = maxSize;
+    for (IamPermission iamPermission : IamPermission.values()) {
+      indexOf(iamPermission.permission);
+    }
+  }
+
+  static int indexOf(IamPermission permission) {
+    return permission.ordinal();
+  }
+
+  /**
+   * @return The index of `permission`, interning it if it hasn't been seen, or -1 if the index is full.
+   */
+  int indexOf(Permission permission) {
+    Object key = keyOf(permission);
+    Verify.isNotNull(key, IllegalArgumentException.class, "A permission needs an id or a name.");
+    Integer index = indexes.get(key);
+    return index != null ? index : intern(key, permission);
+  }
+
+  /**
+   * @return The index of the permission with the given id, or -1 if no such permission has been interned.
+   */
+  int indexOf(PermissionId id) {
+    Integer index = id != null ? indexes.get(id) : null;
+    return index != null ? index : -1;
+  }
+
+  /**
+   * @return The index of `permission`, or -1 if it hasn't been interned. Never interns it.
+   */
+  int find(Permission permission) {
+    Object key = keyOf(permission);
+    Integer index = key != null ? indexes.get(key) : null;
+    return index != null ? index : -1;
+  }
+
+  /**
+   * @return The permission's id, or its name if it has none.
+   */
+  static Object keyOf(Permission permission) {
+    return permission.id != null ? permission.id : permission.name;
+  }
+
+  Permission permissionAt(int index) {
+    return permissions[index];
+  }
+
+  public int size() {
+    return permissions.length;
+  }
+
+  public int maxSize() {
+    return maxSize;
+  }
+
+  private synchronized int intern(Object key, Permission permission) {
+    Integer index = indexes.get(key);
+    if (index == null) {
+      if (permissions.length >= maxSize) {
+        if (!warnedFull) {
+          warnedFull = true;
+          Log.warn(getClass(), "The permission index is full at %s permissions; those not yet indexed are checked"
+                               + " more slowly. Raise %s if there are more permissions than that.",
+              maxSize,
+              PERMISSION_INDEX_MAX_SIZE_PROP_KEY);
+        }
+        return -1;
+      }
+      Permission[] next = Arrays.copyOf(permissions, permissions.length + 1);
+      index = permissions.length;
+      next[index] = permission;
+      permissions = next;
+      indexes.put(key, index);
+    }
+    return index;
+  }
+}
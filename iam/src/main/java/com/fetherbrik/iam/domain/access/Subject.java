@@ -7,6 +7,7 @@ package com.fetherbrik.iam.domain.access;
 
 import com.fetherbrik.iam.domain.access.exception.PermissionRequiredException;
 import com.fetherbrik.iam.domain.access.role.Role;
+import com.fetherbrik.iam.domain.identity.group.GroupResolver;
 import com.fetherbrik.iam.domain.identity.user.User;
 import com.fetherbrik.iam.domain.identity.tenant.Tenant;
 import com.fetherbrik.iam.domain.identity.tenant.TenantId;
@@ -14,6 +15,7 @@ import com.google.common.base.MoreObjects;
 import com.google.common.collect.ImmutableMap;
 
 import javax.annotation.concurrent.Immutable;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 
@@ -28,17 +30,31 @@ public final class Subject {
   public final Tenant tenant;
   public final User user;
   public final Set<Role> roles;
-  public final Map<String, RevocablePermission> permissions;
+  public final EffectivePermissions effectivePermissions;
+  /**
+   * Remembers the groups fetched for nested group checks while this subject is applied, so that each is fetched at
+   * most once. Null if the subject was built without one. Not thread safe, any more than the subject's binding to the
+   * current thread is.
+   */
+  public final GroupResolver groupResolver;
+
+  /**
+   * The set the subject was built from, if it was built from one, so that {@link #permissions()} returns the same
+   * instances.
+   */
+  private final Set<RevocablePermission> permissionSet;
+  /**
+   * Built on first use. Racing threads may each build it; every copy is equal.
+   */
+  private volatile Map<String, RevocablePermission> permissionsByName;
 
   private Subject(Builder builder) {
     tenant = builder.tenant;
     user = builder.user;
     roles = builder.roles;
-    ImmutableMap.Builder<String, RevocablePermission> permBuilder = ImmutableMap.builder();
-    for (RevocablePermission permission : builder.permissions) {
-      permBuilder.put(permission.permission.name, permission);
-    }
-    permissions = permBuilder.build();
+    effectivePermissions = builder.permissions;
+    groupResolver = builder.groupResolver;
+    permissionSet = builder.permissionSet;
   }
 
   public static Subject currentSubject() {
@@ -62,19 +78,57 @@ public final class Subject {
     return false;
   }
 
+  public void checkPermitted(IamPermission permission) throws PermissionRequiredException {
+    if (!isPermitted(permission)) {
+      throw new PermissionRequiredException(permission.permission, user.username);
+    }
+  }
+
+  public void checkPermitted(PermissionId permissionId) throws PermissionRequiredException {
+    if (!isPermitted(permissionId)) {
+      throw new PermissionRequiredException(permissionId, user.username);
+    }
+  }
+
   public void checkPermitted(Permission permission) throws PermissionRequiredException {
     if (!isPermitted(permission)) {
       throw new PermissionRequiredException(permission, user.username);
     }
   }
 
-  public boolean isPermitted(Permission permission) {
-    boolean allowed = false;
-    RevocablePermission revocablePermission = permissions.get(permission.name);
-    if (revocablePermission != null && !revocablePermission.isRevocation) {
-      allowed = true;
+  /**
+   * The subject's permissions by name, as they were before permission checks used {@link #effectivePermissions}.
+   * Built from the bitsets the first time it is asked for, so prefer the isPermitted methods, which match by id.
+   */
+  public Map<String, RevocablePermission> permissions() {
+    Map<String, RevocablePermission> byName = permissionsByName;
+    if (byName == null) {
+      Map<String, RevocablePermission> building = new LinkedHashMap<>();
+      for (RevocablePermission permission : permissionSet != null
+                                            ? permissionSet
+                                            : effectivePermissions.asRevocablePermissions()) {
+        building.put(permission.permission.name, permission);
+      }
+      byName = ImmutableMap.copyOf(building);
+      permissionsByName = byName;
     }
-    return allowed;
+    return byName;
+  }
+
+  public boolean isPermitted(IamPermission permission) {
+    return effectivePermissions.isPermitted(permission);
+  }
+
+  public boolean isPermitted(PermissionId permissionId) {
+    return effectivePermissions.isPermitted(permissionId);
+  }
+
+  /**
+   * Permissions are matched by id, or by name if they have no id. Prefer {@link #isPermitted(IamPermission)} or
+   * {@link #isPermitted(PermissionId)}.
+   */
+  public boolean isPermitted(Permission permission) {
+    return effectivePermissions.isPermitted(permission);
   }
 
   @Override
@@ -90,7 +144,9 @@ public final class Subject {
     private Tenant tenant;
     private User user;
     private Set<Role> roles;
-    private Set<RevocablePermission> permissions;
+    private EffectivePermissions permissions;
+    private Set<RevocablePermission> permissionSet;
+    private GroupResolver groupResolver;
 
     /*
       Subject subject = new Subject.Builder()
@@ -116,8 +172,29 @@ public final class Subject {
       return this;
     }
 
-    public Builder permissions(Set<RevocablePermission> permissions) {
+    /**
+     * @param index The application's PermissionIndex, so that the subject's bitsets share it with every other.
+     */
+    public Builder permissions(PermissionIndex index, Set<RevocablePermission> permissions) {
+      this.permissions = permissions != null ? EffectivePermissions.of(index, permissions) : null;
+      this.permissionSet = permissions;
+      return this;
+    }
+
+    /**
+     * @see AuthorizationService#effectivePermissionsForUser(User)
+     */
+    public Builder permissions(EffectivePermissions permissions) {
       this.permissions = permissions;
+      this.permissionSet = null;
+      return this;
+    }
+
+    /**
+     * @see com.fetherbrik.iam.domain.identity.group.GroupService#newResolver()
+     */
+    public Builder groupResolver(GroupResolver groupResolver) {
+      this.groupResolver = groupResolver;
       return this;
     }
 
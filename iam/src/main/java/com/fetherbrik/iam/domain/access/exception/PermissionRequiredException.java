@@ -8,6 +8,7 @@ package com.fetherbrik.iam.domain.access.exception;
 import com.fetherbrik.core.exception.service.ServiceException;
 import com.fetherbrik.core.log.Level;
 import com.fetherbrik.iam.domain.access.Permission;
+import com.fetherbrik.iam.domain.access.PermissionId;
 
 /**
  * @author Geoff M. Granum
@@ -22,6 +23,12 @@ public class PermissionRequiredException extends ServiceException {
         username);
   }
 
+  public PermissionRequiredException(PermissionId permissionId, String username) {
+    super("Permission %s required to access requested resource: permission denied for user %s.",
+        permissionId,
+        username);
+  }
+
   @Override
   public boolean shouldPrintStack() {
     return false;
@@ -20,5 +20,9 @@ public final class RegistrationInvitationId extends TypedId<RegistrationInvitati
     super(value);
   }
 
+  public RegistrationInvitationId(long hi, long lo) {
+    super(hi, lo);
+  }
+
 }
  
@@ -0,0 +1,50 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+package com.fetherbrik.iam.domain.access.role;
+
+import com.fetherbrik.iam.domain.identity.group.GroupMember;
+import com.fetherbrik.iam.domain.identity.tenant.TenantId;
+import com.fetherbrik.iam.domain.identity.user.User;
+
+import java.util.Collection;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+
+/**
+ * The non blocking form of {@link RoleRepository}.
+ *
+ * @author Geoff M. Granum
+ */
+public interface AsyncRoleRepository {
+
+  /**
+   * @return `repository` itself if it is already async, otherwise a view that calls it on `executor`.
+   */
+  static AsyncRoleRepository of(RoleRepository repository, Executor executor) {
+    if (repository instanceof AsyncRoleRepository) {
+      return (AsyncRoleRepository) repository;
+    }
+    return new ExecutorAsyncRoleRepository(repository, executor);
+  }
+
+  CompletionStage<Void> addAsync(Role role);
+
+  CompletionStage<Void> addAllAsync(Collection<Role> roles);
+
+  CompletionStage<Void> updateAsync(Role role);
+
+  CompletionStage<Void> addGroupMembersAsync(Role role, Collection<GroupMember> members);
+
+  CompletionStage<Set<Role>> allRolesAsync(TenantId tenantId);
+
+  CompletionStage<Set<Role>> rolesForUserAsync(User user);
+
+  CompletionStage<Void> removeAsync(Role role);
+
+  CompletionStage<Optional<Role>> namedAsync(TenantId tenantId, String roleName);
+}
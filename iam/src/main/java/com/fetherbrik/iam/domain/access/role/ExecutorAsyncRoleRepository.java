@@ -0,0 +1,73 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+package com.fetherbrik.iam.domain.access.role;
+
+import com.fetherbrik.iam.domain.identity.group.GroupMember;
+import com.fetherbrik.iam.domain.identity.tenant.TenantId;
+import com.fetherbrik.iam.domain.identity.user.User;
+
+import java.util.Collection;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+
+/**
+ * Calls a blocking RoleRepository on an executor.
+ *
+ * @author Geoff M. Granum
+ */
+final class ExecutorAsyncRoleRepository implements AsyncRoleRepository {
+
+  private final RoleRepository repository;
+  private final Executor executor;
+
+  ExecutorAsyncRoleRepository(RoleRepository repository, Executor executor) {
+    this.repository = repository;
+    this.executor = executor;
+  }
+
+  @Override
+  public CompletionStage<Void> addAsync(Role role) {
+    return CompletableFuture.runAsync(() -> repository.add(role), executor);
+  }
+
+  @Override
+  public CompletionStage<Void> addAllAsync(Collection<Role> roles) {
+    return CompletableFuture.runAsync(() -> repository.addAll(roles), executor);
+  }
+
+  @Override
+  public CompletionStage<Void> updateAsync(Role role) {
+    return CompletableFuture.runAsync(() -> repository.update(role), executor);
+  }
+
+  @Override
+  public CompletionStage<Void> addGroupMembersAsync(Role role, Collection<GroupMember> members) {
+    return CompletableFuture.runAsync(() -> repository.addGroupMembers(role, members), executor);
+  }
+
+  @Override
+  public CompletionStage<Set<Role>> allRolesAsync(TenantId tenantId) {
+    return CompletableFuture.supplyAsync(() -> repository.allRoles(tenantId), executor);
+  }
+
+  @Override
+  public CompletionStage<Set<Role>> rolesForUserAsync(User user) {
+    return CompletableFuture.supplyAsync(() -> repository.rolesForUser(user), executor);
+  }
+
+  @Override
+  public CompletionStage<Void> removeAsync(Role role) {
+    return CompletableFuture.runAsync(() -> repository.remove(role), executor);
+  }
+
+  @Override
+  public CompletionStage<Optional<Role>> namedAsync(TenantId tenantId, String roleName) {
+    return CompletableFuture.supplyAsync(() -> repository.named(tenantId, roleName), executor);
+  }
+}
@@ -7,6 +7,8 @@ package com.fetherbrik.iam.domain.access.role;
 
 
 import com.fetherbrik.core.base.Verify;
+import com.fetherbrik.core.collections.PersistentHashSet;
+import com.fetherbrik.core.persistence.id.IdGenerator;
 import com.fetherbrik.core.persistence.id.Identified;
 import com.fetherbrik.iam.domain.identity.group.Group;
 import com.fetherbrik.iam.domain.access.IamPermission;
@@ -14,7 +16,6 @@ import com.fetherbrik.iam.domain.access.RevocablePermission;
 import com.fetherbrik.iam.domain.identity.tenant.TenantId;
 import com.google.common.base.Objects;
 import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.Sets;
 
 import java.util.Set;
 import java.util.UUID;
@@ -42,7 +43,7 @@ public class Role implements Identified, SecurityRole {
   public final String description;
   public final Group group;
   public final Boolean supportsNesting;
-  public final Set<RevocablePermission> permissions;
+  public final PersistentHashSet<RevocablePermission> permissions;
 
   private Role(Builder builder) {
     id = builder.id;
@@ -51,7 +52,7 @@ public class Role implements Identified, SecurityRole {
     description = builder.description;
     group = builder.group;
     supportsNesting = builder.supportsNesting;
-    permissions = ImmutableSet.copyOf(builder.permissions);
+    permissions = builder.permissions;
   }
 
 
@@ -94,7 +95,7 @@ public class Role implements Identified, SecurityRole {
     private String name;
     private String description;
     private Boolean supportsNesting;
-    private Set<RevocablePermission> permissions = Sets.newHashSet();
+    private PersistentHashSet<RevocablePermission> permissions = PersistentHashSet.empty();
     private transient boolean isCreate;
     private transient Group group;
 
@@ -153,6 +154,21 @@ public class Role implements Identified, SecurityRole {
       return this;
     }
 
+    /**
+     * Create a new Role, with a new id for both it and its internal group.
+     */
+    public Role create(IdGenerator idGen) {
+      this.id(new RoleId(idGen.next()));
+      group = new Group.Builder()
+          .tenantId(this.tenantId)
+          .name(Group.ROLE_GROUP_PREFIX + UUID.randomUUID().toString().toUpperCase())
+          .description("Role backing group for: " + name)
+          .internal(true)
+          .create(idGen);
+      isCreate = false;
+      return build();
+    }
+
     public Builder description(String description) {
       this.description = description;
       return this;
@@ -191,7 +207,17 @@ public class Role implements Identified, SecurityRole {
     }
 
     public Builder permissions(Set<RevocablePermission> permissions) {
-      this.permissions = permissions;
+      this.permissions = PersistentHashSet.copyOf(permissions);
+      return this;
+    }
+
+    public Builder addPermission(RevocablePermission permission) {
+      this.permissions = this.permissions.plus(permission);
+      return this;
+    }
+
+    public Builder removePermission(RevocablePermission permission) {
+      this.permissions = this.permissions.minus(permission);
       return this;
     }
 
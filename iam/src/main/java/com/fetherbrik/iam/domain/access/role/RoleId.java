@@ -5,7 +5,7 @@
  */
 package com.fetherbrik.iam.domain.access.role;
 
-import com.fetherbrik.core.persistence.id.Identifier;
+import com.fetherbrik.core.persistence.id.TypedId;
 
 import javax.annotation.concurrent.Immutable;
 import java.math.BigInteger;
@@ -14,38 +14,13 @@ import java.math.BigInteger;
  * @author Geoff M. Granum
  */
 @Immutable
-public final class RoleId implements Identifier {
-
-  public final BigInteger value;
+public final class RoleId extends TypedId<Role> {
 
   public RoleId(BigInteger value) {
-    this.value = value;
-  }
-
-  @Override
-  public BigInteger value() {
-    return value;
-  }
-
-  @Override
-  public boolean equals(Object o) {
-    boolean objectsEqual = false;
-
-    if (o != null && this.getClass() == o.getClass()) {
-      RoleId that = (RoleId) o;
-      objectsEqual = value.equals(that.value);
-    }
-    return objectsEqual;
-  }
-
-  @Override
-  public int hashCode() {
-    return value.hashCode();
+    super(value);
   }
 
-  @Override
-  public String toString() {
-    return value.toString();
+  public RoleId(long hi, long lo) {
+    super(hi, lo);
   }
 }
- 
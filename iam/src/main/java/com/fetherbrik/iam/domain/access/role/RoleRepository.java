@@ -5,10 +5,13 @@
  */
 package com.fetherbrik.iam.domain.access.role;
 
+import com.fetherbrik.iam.domain.identity.group.Group;
+import com.fetherbrik.iam.domain.identity.group.GroupMember;
 import com.fetherbrik.iam.domain.identity.user.User;
 import com.fetherbrik.iam.domain.ApplicationRepository;
 import com.fetherbrik.iam.domain.identity.tenant.TenantId;
 
+import java.util.Collection;
 import java.util.Optional;
 import java.util.Set;
 
@@ -16,8 +19,31 @@ public interface RoleRepository extends ApplicationRepository {
 
   public void add(Role role);
 
+  /**
+   * Implementations should override this to write the roles in one round trip; this default adds them one at a time.
+   */
+  default void addAll(Collection<Role> roles) {
+    for (Role role : roles) {
+      add(role);
+    }
+  }
+
   void update(Role role);
 
+  /**
+   * Add `members` to the stored role's group, leaving its other members as they are. Implementations should override
+   * this to write only the new members; this default reads the role and writes it whole.
+   */
+  default void addGroupMembers(Role role, Collection<GroupMember> members) {
+    Role stored = named(role.tenantId, role.name)
+        .orElseThrow(() -> new IllegalStateException("Role " + role.id + " does not exist."));
+    Group.Builder group = stored.group.copy();
+    for (GroupMember member : members) {
+      group.addGroupMember(member);
+    }
+    update(stored.copy().group(group.build()).build());
+  }
+
   public Set<Role> allRoles(TenantId tenantId);
 
   public Set<Role> rolesForUser(User user);
@@ -25,6 +25,14 @@ public class UserAssignedToRole extends DomainEvent {
     this.userName = userName;
   }
 
+  public String userName() {
+    return this.userName;
+  }
+
+  /**
+   * @deprecated Misnamed: this is the name of the user. Use {@link #userName()}.
+   */
+  @Deprecated
   public String groupName() {
     return this.userName;
   }
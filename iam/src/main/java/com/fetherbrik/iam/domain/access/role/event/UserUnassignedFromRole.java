@@ -26,6 +26,14 @@ public class UserUnassignedFromRole extends DomainEvent {
     this.userName = userName;
   }
 
+  public String userName() {
+    return this.userName;
+  }
+
+  /**
+   * @deprecated Misnamed: this is the name of the user. Use {@link #userName()}.
+   */
+  @Deprecated
   public String groupName() {
     return this.userName;
   }
@@ -15,6 +15,9 @@ import java.nio.ByteBuffer;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
+ * The original password hash: salted SHA-512, stored as a hex hash and a separate hex salt. Only used to check and
+ * upgrade passwords hashed before {@link com.fetherbrik.iam.domain.identity.password.PasswordHashingService} existed.
+ *
  * @author Geoff M. Granum
  */
 public class EncryptionToken {
@@ -37,9 +40,14 @@ public class EncryptionToken {
     return new EncryptionToken(saltHex, passwordHex);
   }
 
+  /**
+   * @deprecated The round count this derives from the salt is effectively random, and zero about half the time. Hash
+   * new passwords with PasswordHashingService.
+   */
+  @Deprecated
   public static EncryptionToken fromPasswordClearText(String passwordClearText) {
     byte[] saltBytes = EncryptionUtil.generateSalt(16);
-    int hashIterationCount = ByteBuffer.wrap(saltBytes).getShort();
+    int hashIterationCount = legacyIterationCount(saltBytes);
 
     byte[] hashedPassword = EncryptionUtil.sha512(
         passwordClearText,
@@ -51,7 +59,7 @@ public class EncryptionToken {
   public static EncryptionToken fromPasswordClearText(String passwordClearText, String hexSalt) {
     try {
       byte[] saltBytes = Hex.decodeHex(hexSalt.toCharArray());
-      int hashIterationCount = ByteBuffer.wrap(saltBytes).getShort();
+      int hashIterationCount = legacyIterationCount(saltBytes);
       byte[] hashedPassword = EncryptionUtil.sha512(
           passwordClearText,
           saltBytes,
@@ -62,6 +70,14 @@ public class EncryptionToken {
     }
   }
 
+  /**
+   * The first two salt bytes as a signed short: between -32768 and 32767, and a negative count means no extra rounds.
+   * Existing hashes were made this way, so it must be reproduced exactly to check them.
+   */
+  private static int legacyIterationCount(byte[] saltBytes) {
+    return Math.max(0, ByteBuffer.wrap(saltBytes).getShort());
+  }
+
   @Override
   public boolean equals(Object o) {
     boolean objectsEqual = false;
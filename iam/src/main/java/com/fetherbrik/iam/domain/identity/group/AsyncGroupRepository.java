@@ -0,0 +1,57 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+package com.fetherbrik.iam.domain.identity.group;
+
+import com.fetherbrik.iam.domain.identity.tenant.TenantId;
+import com.fetherbrik.iam.domain.identity.user.UserId;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+
+/**
+ * The non blocking form of {@link GroupRepository}.
+ *
+ * @author Geoff M. Granum
+ */
+public interface AsyncGroupRepository {
+
+  /**
+   * @return `repository` itself if it is already async, otherwise a view that calls it on `executor`.
+   */
+  static AsyncGroupRepository of(GroupRepository repository, Executor executor) {
+    if (repository instanceof AsyncGroupRepository) {
+      return (AsyncGroupRepository) repository;
+    }
+    return new ExecutorAsyncGroupRepository(repository, executor);
+  }
+
+  CompletionStage<Void> addAsync(Group group);
+
+  CompletionStage<Void> addAllAsync(Collection<Group> groups);
+
+  CompletionStage<Void> updateAsync(Group group);
+
+  CompletionStage<Void> addMembersAsync(Group group, Collection<GroupMember> members);
+
+  CompletionStage<Set<Group>> allGroupsAsync(TenantId tenantId);
+
+  CompletionStage<Set<Group>> allGroupsAsync(UserId id);
+
+  CompletionStage<Optional<Group>> namedAsync(TenantId tenantId, String name);
+
+  CompletionStage<Optional<Group>> getAsync(GroupId groupId);
+
+  /**
+   * @return The groups that exist, keyed by id. Ids with no group are left out.
+   */
+  CompletionStage<Map<GroupId, Group>> getAllAsync(Collection<GroupId> groupIds);
+
+  CompletionStage<Void> removeAsync(Group group);
+}
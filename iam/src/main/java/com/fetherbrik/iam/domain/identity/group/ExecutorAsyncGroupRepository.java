@@ -0,0 +1,83 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+package com.fetherbrik.iam.domain.identity.group;
+
+import com.fetherbrik.iam.domain.identity.tenant.TenantId;
+import com.fetherbrik.iam.domain.identity.user.UserId;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+
+/**
+ * Calls a blocking GroupRepository on an executor.
+ *
+ * @author Geoff M. Granum
+ */
+final class ExecutorAsyncGroupRepository implements AsyncGroupRepository {
+
+  private final GroupRepository repository;
+  private final Executor executor;
+
+  ExecutorAsyncGroupRepository(GroupRepository repository, Executor executor) {
+    this.repository = repository;
+    this.executor = executor;
+  }
+
+  @Override
+  public CompletionStage<Void> addAsync(Group group) {
+    return CompletableFuture.runAsync(() -> repository.add(group), executor);
+  }
+
+  @Override
+  public CompletionStage<Void> addAllAsync(Collection<Group> groups) {
+    return CompletableFuture.runAsync(() -> repository.addAll(groups), executor);
+  }
+
+  @Override
+  public CompletionStage<Void> updateAsync(Group group) {
+    return CompletableFuture.runAsync(() -> repository.update(group), executor);
+  }
+
+  @Override
+  public CompletionStage<Void> addMembersAsync(Group group, Collection<GroupMember> members) {
+    return CompletableFuture.runAsync(() -> repository.addMembers(group, members), executor);
+  }
+
+  @Override
+  public CompletionStage<Set<Group>> allGroupsAsync(TenantId tenantId) {
+    return CompletableFuture.supplyAsync(() -> repository.allGroups(tenantId), executor);
+  }
+
+  @Override
+  public CompletionStage<Set<Group>> allGroupsAsync(UserId id) {
+    return CompletableFuture.supplyAsync(() -> repository.allGroups(id), executor);
+  }
+
+  @Override
+  public CompletionStage<Optional<Group>> namedAsync(TenantId tenantId, String name) {
+    return CompletableFuture.supplyAsync(() -> repository.named(tenantId, name), executor);
+  }
+
+  @Override
+  public CompletionStage<Optional<Group>> getAsync(GroupId groupId) {
+    return CompletableFuture.supplyAsync(() -> repository.get(groupId), executor);
+  }
+
+  @Override
+  public CompletionStage<Map<GroupId, Group>> getAllAsync(Collection<GroupId> groupIds) {
+    return CompletableFuture.supplyAsync(() -> repository.getAll(groupIds), executor);
+  }
+
+  @Override
+  public CompletionStage<Void> removeAsync(Group group) {
+    return CompletableFuture.runAsync(() -> repository.remove(group), executor);
+  }
+}
@@ -7,12 +7,12 @@ package com.fetherbrik.iam.domain.identity.group;
 
 
 import com.fetherbrik.core.base.Verify;
+import com.fetherbrik.core.collections.PersistentHashSet;
+import com.fetherbrik.core.persistence.id.IdGenerator;
 import com.fetherbrik.core.persistence.id.Identified;
 import com.fetherbrik.iam.domain.identity.tenant.TenantId;
-import com.google.common.collect.Sets;
 import com.google.inject.Inject;
 
-import java.util.Collections;
 import java.util.Set;
 
 import static com.fetherbrik.core.base.Verify.hasLength;
@@ -31,7 +31,10 @@ public final class Group implements Identified {
   public final String name;
   public final String description;
   public final Boolean internal;
-  public final Set<GroupMember> groupMembers;
+  /**
+   * Persistent: adding or removing a member through the Builder shares everything else with this group's set.
+   */
+  public final PersistentHashSet<GroupMember> groupMembers;
 
   private Group(Builder builder) {
     groupMembers = builder.groupMembers;
@@ -48,7 +51,7 @@ public final class Group implements Identified {
   }
 
   public Set<GroupMember> groupMembers() {
-    return Collections.unmodifiableSet(this.groupMembers);
+    return this.groupMembers;
   }
 
   @Override
@@ -120,7 +123,7 @@ public final class Group implements Identified {
     private String description;
     private String name;
     private boolean internal;
-    private Set<GroupMember> groupMembers = Sets.newHashSet();
+    private PersistentHashSet<GroupMember> groupMembers = PersistentHashSet.empty();
     private transient boolean isCreate;
 
     /*
@@ -147,7 +150,7 @@ public final class Group implements Identified {
     }
 
     public Builder groupMembers(Set<GroupMember> groupMembers) {
-      this.groupMembers = groupMembers;
+      this.groupMembers = PersistentHashSet.copyOf(groupMembers);
       return this;
     }
 
@@ -181,6 +184,11 @@ public final class Group implements Identified {
       return this;
     }
 
+    public Group create(IdGenerator idGen) {
+      this.id(new GroupId(idGen.next()));
+      return build();
+    }
+
     public Group build() {
       Verify.isNotNull(id, "Id is required, even when creating.");
       Verify.isNotNull(tenantId, "Tenant Id is required.");
@@ -210,12 +218,12 @@ public final class Group implements Identified {
     //    }
 
     public Builder addGroupMember(GroupMember newMember) {
-      this.groupMembers.add(newMember);
+      this.groupMembers = this.groupMembers.plus(newMember);
       return this;
     }
 
     public Builder removeGroupMember(GroupMember childGroupMember) {
-      this.groupMembers.remove(childGroupMember);
+      this.groupMembers = this.groupMembers.minus(childGroupMember);
       return this;
     }
 
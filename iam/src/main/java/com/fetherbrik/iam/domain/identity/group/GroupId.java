@@ -19,5 +19,9 @@ public final class GroupId extends TypedId<Group> implements MemberOfGroupId {
     super(value);
   }
 
+  public GroupId(long hi, long lo) {
+    super(hi, lo);
+  }
+
 }
  
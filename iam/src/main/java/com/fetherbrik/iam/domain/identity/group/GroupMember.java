@@ -65,6 +65,9 @@ public class GroupMember {
     return objectsEqual;
   }
 
+  /**
+   * Includes the member's id, so that the members of a large group don't all share one hash bucket.
+   */
   @Override
   public int hashCode() {
     int hashCodeValue =
@@ -72,7 +75,7 @@ public class GroupMember {
             + this.tenantId().hashCode()
             + this.type().hashCode();
 
-    return hashCodeValue;
+    return hashCodeValue * 31 + this.memberOfGroupId.hashCode();
   }
 
   //  public DBObject toMongo() {
@@ -0,0 +1,604 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+package com.fetherbrik.iam.domain.identity.group;
+
+import com.fetherbrik.core.log.Log;
+import com.fetherbrik.iam.domain.access.role.Role;
+import com.fetherbrik.iam.domain.access.role.RoleRepository;
+import com.fetherbrik.iam.domain.access.role.event.GroupAssignedToRole;
+import com.fetherbrik.iam.domain.access.role.event.GroupUnassignedFromRole;
+import com.fetherbrik.iam.domain.access.role.event.UserAssignedToRole;
+import com.fetherbrik.iam.domain.access.role.event.UserUnassignedFromRole;
+import com.fetherbrik.iam.domain.identity.group.event.GroupAddedToGroup;
+import com.fetherbrik.iam.domain.identity.group.event.GroupRemovedFromGroup;
+import com.fetherbrik.iam.domain.identity.group.event.GroupUserAdded;
+import com.fetherbrik.iam.domain.identity.group.event.GroupUserRemoved;
+import com.fetherbrik.iam.domain.identity.tenant.TenantId;
+import com.fetherbrik.iam.domain.identity.tenant.event.TenantBulkProvisioned;
+import com.fetherbrik.iam.domain.identity.user.User;
+import com.fetherbrik.iam.domain.identity.user.UserId;
+import com.fetherbrik.iam.domain.identity.user.UserRepository;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.SetMultimap;
+import com.google.common.eventbus.EventBus;
+import com.google.common.eventbus.Subscribe;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * The transitive closure of group membership: for each user, every group they belong to directly or through any
+ * depth of nested groups, role groups included. With it, a deep membership check is a single set lookup.
+ * <p>
+ * A tenant's memberships are read from the GroupRepository and RoleRepository the first time the tenant is asked
+ * about, then kept up to date from the membership events posted on the domain bus. The events name their groups,
+ * roles and users. Resolving the names to ids costs a repository lookup or two, so it is left to the tenant's next
+ * read rather than done on the thread that posted the event.
+ * <p>
+ * The services post their events before the caller has persisted the change, so a tenant read in between would not
+ * see it. Each tenant therefore keeps the changes of the last {@value #SETTLE_SECONDS_PROP_KEY} seconds (default 30)
+ * and replays them over every read. The changes are idempotent, so replaying one the read already saw does no harm,
+ * and a read that races an event is kept rather than thrown away. An event naming a group or user that isn't stored
+ * yet is retried on each read, and the tenant is not kept until it resolves or the settle time has passed. The
+ * changes of a tenant that hasn't been read are held apart from the tenants that have, only for the settle time, so
+ * that they never push a read tenant out.
+ * <p>
+ * Nothing is posted when a group or user is deleted: call {@link #groupRemoved(Group)} or {@link #userRemoved(User)}
+ * after removing one from its repository. At most {@value #MAX_TENANTS_PROP_KEY} tenants (default 1,000) are kept,
+ * each for at most {@value #TTL_SECONDS_PROP_KEY} seconds (default 600), which also bounds how long a missed change
+ * can last.
+ *
+ * @author Geoff M. Granum
+ */
+@Singleton
+public class GroupMembershipIndex {
+
+  public static final String MAX_TENANTS_PROP_KEY = "com.fetherbrik.iam.group_index.max_tenants";
+  public static final String TTL_SECONDS_PROP_KEY = "com.fetherbrik.iam.group_index.ttl_seconds";
+  public static final String SETTLE_SECONDS_PROP_KEY = "com.fetherbrik.iam.group_index.settle_seconds";
+
+  /**
+   * A tenant with more recent changes than this forgets the oldest, which are the most likely to have been persisted.
+   */
+  private static final int MaxRecentChanges = 10_000;
+
+  private final GroupRepository groupRepository;
+  private final UserRepository userRepository;
+  private final RoleRepository roleRepository;
+  private final Cache<TenantId, TenantSlot> tenants;
+  /**
+   * The recent changes of tenants that haven't been read. A tenant's first read takes its slot over.
+   */
+  private final Cache<TenantId, TenantSlot> settling;
+  private final long settleNanos;
+
+  @Inject
+  public GroupMembershipIndex(EventBus domainBus,
+                              GroupRepository groupRepository,
+                              UserRepository userRepository,
+                              RoleRepository roleRepository) {
+    this(domainBus,
+        groupRepository,
+        userRepository,
+        roleRepository,
+        Long.getLong(MAX_TENANTS_PROP_KEY, 1_000L),
+        Long.getLong(TTL_SECONDS_PROP_KEY, TimeUnit.MINUTES.toSeconds(10)),
+        Long.getLong(SETTLE_SECONDS_PROP_KEY, 30L));
+  }
+
+  public GroupMembershipIndex(EventBus domainBus,
+                              GroupRepository groupRepository,
+                              UserRepository userRepository,
+                              RoleRepository roleRepository,
+                              long maxTenants,
+                              long timeToLiveSeconds,
+                              long settleSeconds) {
+    this.groupRepository = groupRepository;
+    this.userRepository = userRepository;
+    this.roleRepository = roleRepository;
+    this.tenants = CacheBuilder.newBuilder()
+                               .maximumSize(maxTenants)
+                               .expireAfterWrite(timeToLiveSeconds, TimeUnit.SECONDS)
+                               .build();
+    this.settling = CacheBuilder.newBuilder()
+                                .maximumSize(maxTenants)
+                                .expireAfterAccess(settleSeconds, TimeUnit.SECONDS)
+                                .build();
+    this.settleNanos = TimeUnit.SECONDS.toNanos(settleSeconds);
+    domainBus.register(this);
+  }
+
+  /**
+   * @return True if `user` is a member of `group`, directly or through any nested group.
+   */
+  public boolean isMember(Group group, User user) {
+    return memberships(group.tenantId).isMember(user.id, group.id);
+  }
+
+  /**
+   * @return Every group that `user` is a member of, directly or through any nested group.
+   */
+  public Set<GroupId> groupsOf(User user) {
+    return memberships(user.tenantId).groupsOf(user.id);
+  }
+
+  /**
+   * Drop the tenant's memberships, so that they are read from the repository on the next check.
+   */
+  public void invalidate(TenantId tenantId) {
+    TenantSlot slot = tenants.getIfPresent(tenantId);
+    if (slot != null) {
+      slot.drop();
+    }
+  }
+
+  /**
+   * Call after removing `group` from the GroupRepository: it no longer links its members to its parents.
+   */
+  public void groupRemoved(Group group) {
+    record(group.tenantId, () -> m -> m.dropGroup(group.id));
+  }
+
+  /**
+   * Call after removing `user` from the UserRepository.
+   */
+  public void userRemoved(User user) {
+    record(user.tenantId, () -> m -> m.dropUser(user.id));
+  }
+
+  public int loadedTenantCount() {
+    int count = 0;
+    for (TenantSlot slot : tenants.asMap().values()) {
+      if (slot.memberships != null) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  @Subscribe
+  public void on(GroupUserAdded event) {
+    TenantId tenantId = event.tenantId();
+    record(tenantId, () -> {
+      GroupId groupId = groupNamed(tenantId, event.groupName());
+      UserId userId = userNamed(tenantId, event.username());
+      return m -> m.addUser(groupId, userId);
+    });
+  }
+
+  @Subscribe
+  public void on(GroupUserRemoved event) {
+    TenantId tenantId = event.tenantId();
+    record(tenantId, () -> {
+      GroupId groupId = groupNamed(tenantId, event.groupName());
+      UserId userId = userNamed(tenantId, event.username());
+      return m -> m.removeUser(groupId, userId);
+    });
+  }
+
+  @Subscribe
+  public void on(GroupAddedToGroup event) {
+    TenantId tenantId = event.tenantId();
+    record(tenantId, () -> {
+      GroupId parentId = groupNamed(tenantId, event.groupName());
+      GroupId childId = groupNamed(tenantId, event.nestedGroupName());
+      return m -> m.addGroup(parentId, childId);
+    });
+  }
+
+  @Subscribe
+  public void on(GroupRemovedFromGroup event) {
+    TenantId tenantId = event.tenantId();
+    record(tenantId, () -> {
+      GroupId parentId = groupNamed(tenantId, event.groupName());
+      GroupId childId = groupNamed(tenantId, event.nestedGroupName());
+      return m -> m.removeGroup(parentId, childId);
+    });
+  }
+
+  @Subscribe
+  public void on(UserAssignedToRole event) {
+    TenantId tenantId = event.tenantId();
+    record(tenantId, () -> {
+      GroupId groupId = roleGroupNamed(tenantId, event.roleName());
+      UserId userId = userNamed(tenantId, event.userName());
+      return m -> m.addUser(groupId, userId);
+    });
+  }
+
+  @Subscribe
+  public void on(UserUnassignedFromRole event) {
+    TenantId tenantId = event.tenantId();
+    record(tenantId, () -> {
+      GroupId groupId = roleGroupNamed(tenantId, event.roleName());
+      UserId userId = userNamed(tenantId, event.userName());
+      return m -> m.removeUser(groupId, userId);
+    });
+  }
+
+  @Subscribe
+  public void on(GroupAssignedToRole event) {
+    TenantId tenantId = event.tenantId();
+    record(tenantId, () -> {
+      GroupId parentId = roleGroupNamed(tenantId, event.roleName());
+      GroupId childId = groupNamed(tenantId, event.groupName());
+      return m -> m.addGroup(parentId, childId);
+    });
+  }
+
+  @Subscribe
+  public void on(GroupUnassignedFromRole event) {
+    TenantId tenantId = event.tenantId();
+    record(tenantId, () -> {
+      GroupId parentId = roleGroupNamed(tenantId, event.roleName());
+      GroupId childId = groupNamed(tenantId, event.groupName());
+      return m -> m.removeGroup(parentId, childId);
+    });
+  }
+
+  /**
+   * Posted once the provisioned groups and roles are stored, so the next read sees them all.
+   */
+  @Subscribe
+  public void on(TenantBulkProvisioned event) {
+    invalidate(event.tenantId());
+  }
+
+  private TenantMemberships memberships(TenantId tenantId) {
+    TenantSlot slot = slot(tenantId);
+    if (slot.hasUnapplied()) {
+      for (RecentChange pending : slot.pending()) {
+        pending.resolve();
+      }
+      slot.applyResolved(System.nanoTime());
+    }
+    TenantMemberships memberships = slot.memberships;
+    if (memberships == null) {
+      TenantMemberships loaded = load(tenantId);
+      for (RecentChange pending : slot.pending()) {
+        pending.resolve();
+      }
+      memberships = slot.publish(loaded, System.nanoTime());
+    }
+    return memberships;
+  }
+
+  private TenantSlot slot(TenantId tenantId) {
+    return tenants.asMap().computeIfAbsent(tenantId, id -> {
+      TenantSlot settled = settling.asMap().remove(id);
+      return settled != null ? settled : new TenantSlot();
+    });
+  }
+
+  private TenantMemberships load(TenantId tenantId) {
+    TenantMemberships memberships = new TenantMemberships();
+    for (Group group : groupRepository.allGroups(tenantId)) {
+      addMembers(memberships, group);
+    }
+    // A role's group is stored with the role, not in the GroupRepository.
+    for (Role role : roleRepository.allRoles(tenantId)) {
+      if (role.group != null) {
+        addMembers(memberships, role.group);
+      }
+    }
+    return memberships;
+  }
+
+  private static void addMembers(TenantMemberships memberships, Group group) {
+    for (GroupMember member : group.groupMembers()) {
+      if (member.isGroupType()) {
+        memberships.addGroup(group.id, (GroupId) member.memberOfGroupId());
+      } else if (member.isUserType()) {
+        memberships.addUser(group.id, (UserId) member.memberOfGroupId());
+      }
+    }
+  }
+
+  /**
+   * @param resolve Looks up the ids the change needs. Called on the tenant's next read, outside of any lock.
+   */
+  private void record(TenantId tenantId, Supplier<MembershipChange> resolve) {
+    RecentChange change = new RecentChange(System.nanoTime(), resolve);
+    TenantSlot slot = tenants.getIfPresent(tenantId);
+    if (slot == null) {
+      TenantSlot settlingSlot = settling.asMap().computeIfAbsent(tenantId, id -> new TenantSlot());
+      settlingSlot.record(change);
+      // A first read may have started between the two lookups, with a slot of its own.
+      slot = tenants.getIfPresent(tenantId);
+      if (slot == null || slot == settlingSlot) {
+        return;
+      }
+    }
+    slot.record(change);
+  }
+
+  private GroupId groupNamed(TenantId tenantId, String groupName) {
+    return groupRepository.named(tenantId, groupName)
+                          .orElseThrow(() -> new IllegalStateException("No group named " + groupName))
+        .id;
+  }
+
+  private GroupId roleGroupNamed(TenantId tenantId, String roleName) {
+    Optional<Role> role = roleRepository.named(tenantId, roleName);
+    return role.orElseThrow(() -> new IllegalStateException("No role named " + roleName)).group.id;
+  }
+
+  private UserId userNamed(TenantId tenantId, String username) {
+    return userRepository.get(tenantId, username)
+                         .orElseThrow(() -> new IllegalStateException("No user named " + username))
+        .id;
+  }
+
+  private interface MembershipChange {
+
+    void applyTo(TenantMemberships memberships);
+  }
+
+  /**
+   * A change, and when it was posted. Its names are resolved to ids once the groups and users they name are stored.
+   */
+  private static final class RecentChange {
+
+    final long atNanos;
+    private final Supplier<MembershipChange> resolver;
+    private volatile MembershipChange change;
+    /**
+     * True once applied to the slot's kept memberships. Guarded by the slot.
+     */
+    boolean applied;
+
+    RecentChange(long atNanos, Supplier<MembershipChange> resolver) {
+      this.atNanos = atNanos;
+      this.resolver = resolver;
+    }
+
+    void resolve() {
+      if (change == null) {
+        try {
+          change = resolver.get();
+        } catch (IllegalStateException e) {
+          Log.trace(GroupMembershipIndex.class, "Membership change not resolved yet: %s", e.getMessage());
+        }
+      }
+    }
+
+    boolean isResolved() {
+      return change != null;
+    }
+  }
+
+  /**
+   * One tenant: its memberships, once read, and the changes posted within the settle time.
+   */
+  private final class TenantSlot {
+
+    private final Deque<RecentChange> recent = new ArrayDeque<>();
+    private volatile TenantMemberships memberships;
+    /**
+     * True if a change has been recorded since the memberships were last brought up to date.
+     */
+    private volatile boolean unapplied;
+
+    /**
+     * Replay the recent changes over `loaded`, and keep it unless one of them is still unresolved.
+     *
+     * @return The tenant's memberships: `loaded`, or those another thread published first.
+     */
+    synchronized TenantMemberships publish(TenantMemberships loaded, long nowNanos) {
+      if (memberships != null) {
+        return memberships;
+      }
+      prune(nowNanos);
+      boolean complete = true;
+      for (RecentChange recorded : recent) {
+        if (recorded.isResolved()) {
+          recorded.change.applyTo(loaded);
+          recorded.applied = true;
+        } else {
+          complete = false;
+        }
+      }
+      if (complete) {
+        memberships = loaded;
+        unapplied = false;
+      }
+      return loaded;
+    }
+
+    /**
+     * Apply the changes recorded since the memberships were kept, in order. If one is still unresolved, the
+     * memberships are dropped, to be read again.
+     */
+    synchronized void applyResolved(long nowNanos) {
+      prune(nowNanos);
+      if (memberships != null) {
+        for (RecentChange recorded : recent) {
+          if (recorded.applied) {
+            continue;
+          }
+          if (!recorded.isResolved()) {
+            memberships = null;
+            break;
+          }
+          recorded.change.applyTo(memberships);
+          recorded.applied = true;
+        }
+      }
+      unapplied = false;
+    }
+
+    synchronized void record(RecentChange change) {
+      prune(change.atNanos);
+      if (recent.size() >= MaxRecentChanges) {
+        forget(recent.removeFirst());
+      }
+      recent.add(change);
+      if (memberships != null) {
+        unapplied = true;
+      }
+    }
+
+    boolean hasUnapplied() {
+      return unapplied;
+    }
+
+    synchronized List<RecentChange> pending() {
+      List<RecentChange> pending = new ArrayList<>();
+      for (RecentChange recorded : recent) {
+        if (!recorded.isResolved()) {
+          pending.add(recorded);
+        }
+      }
+      return pending;
+    }
+
+    synchronized void drop() {
+      memberships = null;
+    }
+
+    private void prune(long nowNanos) {
+      while (!recent.isEmpty() && nowNanos - recent.peekFirst().atNanos > settleNanos) {
+        forget(recent.removeFirst());
+      }
+    }
+
+    /**
+     * A change forgotten before it was applied is never replayed, so the memberships must be read again.
+     */
+    private void forget(RecentChange change) {
+      if (!change.applied) {
+        memberships = null;
+      }
+    }
+  }
+
+  /**
+   * The direct membership edges of one tenant, plus the closure for each user. Writes are serialized; reads of the
+   * closure are not, as each user's closure is an immutable set that is replaced whole.
+   */
+  private static final class TenantMemberships {
+
+    private final SetMultimap<GroupId, GroupId> parentsOf = HashMultimap.create();
+    private final SetMultimap<GroupId, GroupId> childrenOf = HashMultimap.create();
+    private final SetMultimap<GroupId, UserId> usersOf = HashMultimap.create();
+    private final SetMultimap<UserId, GroupId> directGroupsOf = HashMultimap.create();
+    private final Map<UserId, Set<GroupId>> closure = new ConcurrentHashMap<>();
+
+    boolean isMember(UserId userId, GroupId groupId) {
+      return groupsOf(userId).contains(groupId);
+    }
+
+    Set<GroupId> groupsOf(UserId userId) {
+      return closure.getOrDefault(userId, ImmutableSet.of());
+    }
+
+    synchronized void addUser(GroupId groupId, UserId userId) {
+      usersOf.put(groupId, userId);
+      directGroupsOf.put(userId, groupId);
+      refresh(userId);
+    }
+
+    synchronized void removeUser(GroupId groupId, UserId userId) {
+      usersOf.remove(groupId, userId);
+      directGroupsOf.remove(userId, groupId);
+      refresh(userId);
+    }
+
+    synchronized void addGroup(GroupId parentId, GroupId childId) {
+      parentsOf.put(childId, parentId);
+      childrenOf.put(parentId, childId);
+      refreshUsersBelow(childId);
+    }
+
+    synchronized void removeGroup(GroupId parentId, GroupId childId) {
+      parentsOf.remove(childId, parentId);
+      childrenOf.remove(parentId, childId);
+      refreshUsersBelow(childId);
+    }
+
+    synchronized void dropGroup(GroupId groupId) {
+      Set<UserId> users = usersBelow(groupId);
+      for (GroupId parentId : ImmutableSet.copyOf(parentsOf.removeAll(groupId))) {
+        childrenOf.remove(parentId, groupId);
+      }
+      for (GroupId childId : ImmutableSet.copyOf(childrenOf.removeAll(groupId))) {
+        parentsOf.remove(childId, groupId);
+      }
+      for (UserId userId : usersOf.removeAll(groupId)) {
+        directGroupsOf.remove(userId, groupId);
+      }
+      users.forEach(this::refresh);
+    }
+
+    synchronized void dropUser(UserId userId) {
+      for (GroupId groupId : directGroupsOf.removeAll(userId)) {
+        usersOf.remove(groupId, userId);
+      }
+      closure.remove(userId);
+    }
+
+    /**
+     * Recompute the closure of every user in `groupId` or in any group nested within it.
+     */
+    private void refreshUsersBelow(GroupId groupId) {
+      usersBelow(groupId).forEach(this::refresh);
+    }
+
+    private Set<UserId> usersBelow(GroupId groupId) {
+      Set<UserId> users = new HashSet<>();
+      for (GroupId descendant : walk(groupId, childrenOf)) {
+        users.addAll(usersOf.get(descendant));
+      }
+      return users;
+    }
+
+    private void refresh(UserId userId) {
+      ImmutableSet.Builder<GroupId> groups = ImmutableSet.builder();
+      Set<GroupId> direct = directGroupsOf.get(userId);
+      for (GroupId groupId : direct) {
+        groups.addAll(walk(groupId, parentsOf));
+      }
+      if (direct.isEmpty()) {
+        closure.remove(userId);
+      } else {
+        closure.put(userId, groups.build());
+      }
+    }
+
+    /**
+     * @return `start` and every group reachable from it through `edges`. Cycles are tolerated.
+     */
+    private static Set<GroupId> walk(GroupId start, SetMultimap<GroupId, GroupId> edges) {
+      Set<GroupId> visited = new HashSet<>();
+      Queue<GroupId> queue = new ArrayDeque<>();
+      visited.add(start);
+      queue.add(start);
+      while (!queue.isEmpty()) {
+        for (GroupId next : edges.get(queue.remove())) {
+          if (visited.add(next)) {
+            queue.add(next);
+          }
+        }
+      }
+      return visited;
+    }
+  }
+}
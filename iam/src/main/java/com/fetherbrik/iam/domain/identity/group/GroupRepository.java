@@ -10,6 +10,9 @@ import com.fetherbrik.iam.domain.ApplicationRepository;
 import com.fetherbrik.iam.domain.identity.tenant.TenantId;
 import com.fetherbrik.iam.domain.identity.user.UserId;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 
@@ -20,8 +23,31 @@ public interface GroupRepository extends ApplicationRepository {
 
   void add(Group group);
 
+  /**
+   * Implementations should override this to write the groups in one round trip; this default adds them one at a time.
+   */
+  default void addAll(Collection<Group> groups) {
+    for (Group group : groups) {
+      add(group);
+    }
+  }
+
   void update(Group group);
 
+  /**
+   * Add `members` to the stored group, leaving its other members as they are. Implementations should override this to
+   * write only the new members; this default reads the group and writes it whole.
+   */
+  default void addMembers(Group group, Collection<GroupMember> members) {
+    Group.Builder stored = get(group.id)
+        .orElseThrow(() -> new IllegalStateException("Group " + group.id + " does not exist."))
+        .copy();
+    for (GroupMember member : members) {
+      stored.addGroupMember(member);
+    }
+    update(stored.build());
+  }
+
   Set<Group> allGroups(TenantId tenantId);
 
   Set<Group> allGroups(UserId id);
@@ -30,5 +56,18 @@ public interface GroupRepository extends ApplicationRepository {
 
   Optional<Group> get(GroupId groupId);
 
+  /**
+   * Implementations should override this to fetch every group in one round trip; this default makes one per group.
+   *
+   * @return The groups that exist, keyed by id. Ids with no group are left out.
+   */
+  default Map<GroupId, Group> getAll(Collection<GroupId> groupIds) {
+    Map<GroupId, Group> groups = new HashMap<>();
+    for (GroupId groupId : groupIds) {
+      get(groupId).ifPresent(group -> groups.put(groupId, group));
+    }
+    return groups;
+  }
+
   void remove(Group group);
 }
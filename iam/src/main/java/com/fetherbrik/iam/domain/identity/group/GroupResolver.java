@@ -0,0 +1,116 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+package com.fetherbrik.iam.domain.identity.group;
+
+import com.fetherbrik.iam.domain.identity.user.User;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Walks the tree of groups nested within a group breadth first, fetching each level with a single
+ * {@link GroupRepository#getAll} call. Every group fetched is remembered, so a resolver kept for the length of a
+ * request (or the life of a Subject) fetches each group at most once, however many checks it makes.
+ * <p>
+ * Not thread safe: create one per request with {@link GroupService#newResolver()}, or build the request's Subject
+ * with one; GroupService then uses it for the checks it makes while that Subject is applied.
+ *
+ * @author Geoff M. Granum
+ */
+public final class GroupResolver {
+
+  private final GroupRepository groupRepository;
+  private final Map<GroupId, Group> fetched = new HashMap<>();
+  private final Set<GroupId> missing = new HashSet<>();
+  private int visitedCount;
+  private int roundTripCount;
+
+  GroupResolver(GroupRepository groupRepository) {
+    this.groupRepository = groupRepository;
+  }
+
+  /**
+   * @return True if `user` is a member of `target` or of any group nested within it.
+   */
+  public boolean hasMember(Group target, User user) {
+    return containsMember(target, user.toGroupMember(target));
+  }
+
+  /**
+   * @return True if `member` is a member of `target` or of any group nested within it. Group members compare equal
+   * regardless of their parent group.
+   */
+  public boolean containsMember(Group target, GroupMember member) {
+    Set<GroupId> visited = new HashSet<>();
+    visited.add(target.id);
+    List<Group> level = new ArrayList<>();
+    level.add(target);
+    while (!level.isEmpty()) {
+      List<GroupId> nextIds = new ArrayList<>();
+      for (Group group : level) {
+        visitedCount++;
+        if (group.groupMembers().contains(member)) {
+          return true;
+        }
+        for (GroupMember child : group.groupMembers()) {
+          if (child.isGroupType()) {
+            GroupId childId = (GroupId) child.memberOfGroupId();
+            if (visited.add(childId)) {
+              nextIds.add(childId);
+            }
+          }
+        }
+      }
+      level = fetch(nextIds);
+    }
+    return false;
+  }
+
+  /**
+   * @return The number of groups examined by this resolver, counting a group once per check that reached it.
+   */
+  public int visitedCount() {
+    return visitedCount;
+  }
+
+  /**
+   * @return The number of GroupRepository calls made by this resolver.
+   */
+  public int roundTripCount() {
+    return roundTripCount;
+  }
+
+  private List<Group> fetch(List<GroupId> groupIds) {
+    List<Group> groups = new ArrayList<>(groupIds.size());
+    List<GroupId> unfetched = new ArrayList<>();
+    for (GroupId groupId : groupIds) {
+      Group group = fetched.get(groupId);
+      if (group != null) {
+        groups.add(group);
+      } else if (!missing.contains(groupId)) {
+        unfetched.add(groupId);
+      }
+    }
+    if (!unfetched.isEmpty()) {
+      roundTripCount++;
+      Map<GroupId, Group> found = groupRepository.getAll(unfetched);
+      for (GroupId groupId : unfetched) {
+        Group group = found.get(groupId);
+        if (group != null) {
+          fetched.put(groupId, group);
+          groups.add(group);
+        } else {
+          missing.add(groupId);
+        }
+      }
+    }
+    return groups;
+  }
+}
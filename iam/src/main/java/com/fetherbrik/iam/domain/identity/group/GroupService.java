@@ -1,6 +1,9 @@
 package com.fetherbrik.iam.domain.identity.group;
 
 import com.fetherbrik.core.base.Verify;
+import com.fetherbrik.core.log.Log;
+import com.fetherbrik.iam.domain.RepositoryExecutor;
+import com.fetherbrik.iam.domain.access.Subject;
 import com.fetherbrik.iam.domain.identity.user.User;
 import com.fetherbrik.iam.domain.identity.group.event.GroupAddedToGroup;
 import com.fetherbrik.iam.domain.identity.group.event.GroupRemovedFromGroup;
@@ -9,8 +12,8 @@ import com.fetherbrik.iam.domain.identity.group.event.GroupUserRemoved;
 import com.google.common.eventbus.EventBus;
 
 import javax.inject.Inject;
-import java.util.Iterator;
-import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
 import static com.fetherbrik.core.base.Verify.isTrue;
 
@@ -19,20 +22,35 @@ import static com.fetherbrik.core.base.Verify.isTrue;
  */
 public class GroupService {
 
+  /**
+   * Resolving a group's nested groups logs a warning when it visits more groups than this, to help find tenants with
+   * pathological hierarchies.
+   */
+  public static final String RESOLVE_WARN_THRESHOLD_PROP_KEY = "com.fetherbrik.iam.group.resolve_warn_threshold";
+  private static final int ResolveWarnThreshold = Integer.getInteger(RESOLVE_WARN_THRESHOLD_PROP_KEY, 500);
+
   private final EventBus domainBus;
   private final GroupRepository groupRepository;
+  private final GroupMembershipIndex membershipIndex;
+  private final RepositoryExecutor repositoryExecutor;
 
   @Inject
-  private GroupService(EventBus domainBus, GroupRepository groupRepository) {
+  private GroupService(EventBus domainBus,
+                       GroupRepository groupRepository,
+                       GroupMembershipIndex membershipIndex,
+                       RepositoryExecutor repositoryExecutor) {
     this.domainBus = domainBus;
     this.groupRepository = groupRepository;
+    this.membershipIndex = membershipIndex;
+    this.repositoryExecutor = repositoryExecutor;
   }
 
 
   public Group addGroup(Group targetGroup, Group childGroup) {
     Verify.isNotNull(childGroup, "Group is required.");
     Verify.equal(targetGroup.tenantId, childGroup.tenantId, "Wrong tenant for this group.");
-    Verify.isFalse(isMemberGroup(targetGroup, childGroup, targetGroup.toGroupMemberOf(targetGroup)),
+    // A fresh resolver, as the current subject's may remember a group from before it last changed.
+    Verify.isFalse(isMemberGroup(targetGroup, childGroup, targetGroup.toGroupMemberOf(targetGroup), newResolver()),
         "Group recursion is not allowed.");
     Group result = targetGroup;
     GroupMember childGroupMember = childGroup.toGroupMemberOf(targetGroup);
@@ -84,7 +102,7 @@ public class GroupService {
     Verify.equal(target.tenantId, user.tenantId, "Wrong tenant for this group.");
     GroupMember userMember = user.toGroupMember(target);
     Group result = target;
-    if (target.groupMembers.contains(userMember)) {
+    if (!target.groupMembers.contains(userMember)) {
       result = target.copy().addGroupMember(userMember).build();
       if (!target.internal) {
         domainBus.post(new GroupUserAdded(target.tenantId, target.name, user.username));
@@ -97,6 +115,11 @@ public class GroupService {
     return hasMember(target, user, true);
   }
 
+  /**
+   * @param deep Also look in nested groups. The GroupMembershipIndex already holds every group each user belongs to,
+   *             so this is a lookup rather than a walk of the groups, and needs no resolver. Use
+   *             {@link #isUserInNestedGroup(Group, User)} to walk the stored groups instead.
+   */
   public boolean hasMember(Group target, User user, boolean deep) {
     Verify.isNotNull(user, "User is required");
     Verify.equal(target.tenantId, user.tenantId, "Wrong tenant for this group.");
@@ -106,49 +129,83 @@ public class GroupService {
     boolean isMember = target.groupMembers().contains(groupMember);
 
     if (!isMember && deep) {
-      isMember = isUserInNestedGroup(target, user);
+      isMember = membershipIndex.isMember(target, user);
     }
     return isMember;
   }
 
-  public boolean isUserInNestedGroup(Group group, User user) {
-    boolean isInNestedGroup = false;
-
-    Iterator<GroupMember> members = group.groupMembers().iterator();
+  /**
+   * As {@link #hasMember(Group, User, boolean)}. A direct member is answered at once; otherwise the deep check, which
+   * reads the tenant's groups from the repository the first time the tenant is asked about, runs on the
+   * RepositoryExecutor, so that checks against several groups can proceed together.
+   */
+  public CompletionStage<Boolean> hasMemberAsync(Group target, User user, boolean deep) {
+    Verify.isNotNull(user, "User is required");
+    Verify.equal(target.tenantId, user.tenantId, "Wrong tenant for this group.");
+    isTrue(user.isEnabled(), "User must be enabled.");
 
-    while (!isInNestedGroup && members.hasNext()) {
-      GroupMember member = members.next();
-      if (member.isGroupType()) {
-        Optional<Group> nestedGroup = groupRepository.get((GroupId) member.memberOfGroupId());
-        if (nestedGroup.isPresent()) {
-          isInNestedGroup = hasMember(nestedGroup.get(), user);
-        }
-      }
+    boolean isMember = target.groupMembers().contains(user.toGroupMember(target));
+    if (isMember || !deep) {
+      return CompletableFuture.completedFuture(isMember);
     }
+    return CompletableFuture.supplyAsync(() -> membershipIndex.isMember(target, user), repositoryExecutor);
+  }
+
+  /**
+   * @return A resolver whose memo of fetched groups lasts as long as it does; keep it for the length of a request.
+   * @see Subject.Builder#groupResolver(GroupResolver)
+   */
+  public GroupResolver newResolver() {
+    return new GroupResolver(groupRepository);
+  }
+
+  /**
+   * @return The resolver of the Subject applied to the current thread, or a new one if there is none.
+   */
+  public GroupResolver currentResolver() {
+    Subject subject = Subject.currentSubject();
+    return subject != null && subject.groupResolver != null ? subject.groupResolver : newResolver();
+  }
+
+  /**
+   * Walks the stored groups with the {@link #currentResolver()}.
+   */
+  public boolean isUserInNestedGroup(Group group, User user) {
+    return isUserInNestedGroup(group, user, currentResolver());
+  }
+
+  public boolean isUserInNestedGroup(Group group, User user, GroupResolver resolver) {
+    int visitedBefore = resolver.visitedCount();
+    int roundTripsBefore = resolver.roundTripCount();
+    boolean isInNestedGroup = resolver.hasMember(group, user);
+    reportCost(group, resolver, visitedBefore, roundTripsBefore);
     return isInNestedGroup;
   }
 
+  /**
+   * Walks the stored groups with the {@link #currentResolver()}.
+   */
   public boolean isMemberGroup(Group target, Group parentGroup, GroupMember group) {
-    boolean isMember = false;
-
-    Iterator<GroupMember> members = parentGroup.groupMembers().iterator();
-
-    while (!isMember && members.hasNext()) {
-      GroupMember member = members.next();
-      if (member.isGroupType()) {
-        if (group.equals(member)) {
-          isMember = true;
-        } else {
-          Optional<Group> nestedGroup = groupRepository.get((GroupId) member.memberOfGroupId());
-          if (nestedGroup.isPresent()) {
-            isMember = isMemberGroup(target, nestedGroup.get(), group);
-          }
-        }
-      }
-    }
+    return isMemberGroup(target, parentGroup, group, currentResolver());
+  }
 
+  public boolean isMemberGroup(Group target, Group parentGroup, GroupMember group, GroupResolver resolver) {
+    int visitedBefore = resolver.visitedCount();
+    int roundTripsBefore = resolver.roundTripCount();
+    boolean isMember = resolver.containsMember(parentGroup, group);
+    reportCost(parentGroup, resolver, visitedBefore, roundTripsBefore);
     return isMember;
   }
 
-
+  private static void reportCost(Group group, GroupResolver resolver, int visitedBefore, int roundTripsBefore) {
+    int visited = resolver.visitedCount() - visitedBefore;
+    if (visited > ResolveWarnThreshold) {
+      Log.warn(GroupService.class,
+          "Resolving nested groups of '%s' in tenant %s visited %s groups in %s repository calls.",
+          group.name,
+          group.tenantId,
+          visited,
+          resolver.roundTripCount() - roundTripsBefore);
+    }
+  }
 }
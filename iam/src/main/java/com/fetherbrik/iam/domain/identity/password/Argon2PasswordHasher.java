@@ -0,0 +1,136 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+package com.fetherbrik.iam.domain.identity.password;
+
+import com.fetherbrik.core.base.Verify;
+import org.bouncycastle.crypto.generators.Argon2BytesGenerator;
+import org.bouncycastle.crypto.params.Argon2Parameters;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * Argon2id (RFC 9106), the memory-hard winner of the Password Hashing Competition. Encoded as
+ * $argon2id$v=19$m=memoryKib,t=iterations,p=parallelism$salt$hash, the same format as the reference implementation,
+ * so hashes can be verified by other Argon2 libraries.
+ * <p>
+ * Each hash in progress holds `memoryKib` of memory, so the memory used by hashing is bounded by that times the
+ * number of threads in the {@link PasswordHashingService}.
+ *
+ * @author Geoff M. Granum
+ */
+public final class Argon2PasswordHasher implements PasswordHasher {
+
+  public static final String ALGORITHM = "argon2id";
+  /**
+   * The OWASP minimum for Argon2id: 19 MiB, two passes, one lane.
+   */
+  public static final int DEFAULT_MEMORY_KIB = 19_456;
+  public static final int DEFAULT_ITERATIONS = 2;
+  public static final int DEFAULT_PARALLELISM = 1;
+
+  private static final int VERSION = Argon2Parameters.ARGON2_VERSION_13;
+  private static final int SALT_LENGTH = 16;
+  private static final int HASH_LENGTH = 32;
+  private static final SecureRandom random = new SecureRandom();
+
+  private final int memoryKib;
+  private final int iterations;
+  private final int parallelism;
+
+  public Argon2PasswordHasher() {
+    this(DEFAULT_MEMORY_KIB, DEFAULT_ITERATIONS, DEFAULT_PARALLELISM);
+  }
+
+  public Argon2PasswordHasher(int memoryKib, int iterations, int parallelism) {
+    Verify.isTrue(parallelism >= 1 && parallelism <= 255, "Parallelism must be between 1 and 255, but was %s.", parallelism);
+    Verify.isTrue(memoryKib >= 8 * parallelism, "Memory must be at least 8 KiB per lane, but was %s KiB.", memoryKib);
+    Verify.isTrue(iterations >= 1, "Iterations must be at least 1, but were %s.", iterations);
+    this.memoryKib = memoryKib;
+    this.iterations = iterations;
+    this.parallelism = parallelism;
+  }
+
+  @Override
+  public String algorithm() {
+    return ALGORITHM;
+  }
+
+  @Override
+  public String hash(String passwordClearText) {
+    byte[] salt = new byte[SALT_LENGTH];
+    random.nextBytes(salt);
+    byte[] hash = derive(passwordClearText, salt, VERSION, memoryKib, iterations, parallelism, HASH_LENGTH);
+    return EncodedHash.format(ALGORITHM,
+        salt,
+        hash,
+        "v=" + VERSION,
+        "m=" + memoryKib + ",t=" + iterations + ",p=" + parallelism);
+  }
+
+  @Override
+  public boolean verify(String passwordClearText, String encodedHash) {
+    Optional<EncodedHash> parsed = parse(encodedHash);
+    if (!parsed.isPresent()) {
+      return false;
+    }
+    EncodedHash encoded = parsed.get();
+    int version = encoded.param("v");
+    byte[] hash = derive(passwordClearText,
+        encoded.salt,
+        version < 0 ? Argon2Parameters.ARGON2_VERSION_10 : version,
+        encoded.param("m"),
+        encoded.param("t"),
+        encoded.param("p"),
+        encoded.hash.length);
+    return MessageDigest.isEqual(hash, encoded.hash);
+  }
+
+  @Override
+  public boolean needsRehash(String encodedHash) {
+    return parse(encodedHash).map(encoded -> encoded.param("v") != VERSION
+                                             || encoded.param("m") != memoryKib
+                                             || encoded.param("t") != iterations
+                                             || encoded.param("p") != parallelism).orElse(true);
+  }
+
+  private static Optional<EncodedHash> parse(String encodedHash) {
+    return EncodedHash.parse(encodedHash)
+                      .filter(encoded -> ALGORITHM.equals(encoded.algorithm)
+                                         && encoded.param("m") > 0
+                                         && encoded.param("t") > 0
+                                         && encoded.param("p") > 0);
+  }
+
+  private static byte[] derive(String passwordClearText,
+                               byte[] salt,
+                               int version,
+                               int memoryKib,
+                               int iterations,
+                               int parallelism,
+                               int length) {
+    Argon2Parameters params = new Argon2Parameters.Builder(Argon2Parameters.ARGON2_id)
+        .withVersion(version)
+        .withMemoryAsKB(memoryKib)
+        .withIterations(iterations)
+        .withParallelism(parallelism)
+        .withSalt(salt)
+        .build();
+    Argon2BytesGenerator generator = new Argon2BytesGenerator();
+    generator.init(params);
+    byte[] password = passwordClearText.getBytes(StandardCharsets.UTF_8);
+    byte[] hash = new byte[length];
+    try {
+      generator.generateBytes(password, hash);
+    } finally {
+      Arrays.fill(password, (byte) 0);
+    }
+    return hash;
+  }
+}
@@ -0,0 +1,93 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+package com.fetherbrik.iam.domain.identity.password;
+
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * A parsed PHC string format hash: $algorithm[$v=version]$param=value,...$salt$hash, with the salt and hash in
+ * unpadded Base64.
+ *
+ * @author Geoff M. Granum
+ */
+final class EncodedHash {
+
+  private static final Base64.Encoder Encoder = Base64.getEncoder().withoutPadding();
+  private static final Base64.Decoder Decoder = Base64.getDecoder();
+
+  final String algorithm;
+  final Map<String, Integer> params;
+  final byte[] salt;
+  final byte[] hash;
+
+  private EncodedHash(String algorithm, Map<String, Integer> params, byte[] salt, byte[] hash) {
+    this.algorithm = algorithm;
+    this.params = params;
+    this.salt = salt;
+    this.hash = hash;
+  }
+
+  /**
+   * @return Empty if `encoded` isn't a well formed PHC string.
+   */
+  static Optional<EncodedHash> parse(String encoded) {
+    if (encoded == null || !encoded.startsWith("$")) {
+      return Optional.empty();
+    }
+    String[] fields = encoded.substring(1).split("\\$", -1);
+    if (fields.length < 4) {
+      return Optional.empty();
+    }
+    try {
+      Map<String, Integer> params = new LinkedHashMap<>();
+      // Everything between the algorithm and the salt is parameters; the version, if present, is its own field.
+      for (int i = 1; i < fields.length - 2; i++) {
+        for (String param : fields[i].split(",")) {
+          int eq = param.indexOf('=');
+          if (eq <= 0) {
+            return Optional.empty();
+          }
+          params.put(param.substring(0, eq), Integer.parseInt(param.substring(eq + 1)));
+        }
+      }
+      byte[] salt = Decoder.decode(fields[fields.length - 2]);
+      byte[] hash = Decoder.decode(fields[fields.length - 1]);
+      if (salt.length == 0 || hash.length == 0) {
+        return Optional.empty();
+      }
+      return Optional.of(new EncodedHash(fields[0], params, salt, hash));
+    } catch (IllegalArgumentException e) {
+      // Includes NumberFormatException.
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * @param paramFields The fields between the algorithm and the salt, e.g. "v=19", "m=19456,t=2,p=1".
+   */
+  static String format(String algorithm, byte[] salt, byte[] hash, String... paramFields) {
+    StringBuilder encoded = new StringBuilder(128).append('$').append(algorithm);
+    for (String field : paramFields) {
+      encoded.append('$').append(field);
+    }
+    return encoded.append('$')
+                  .append(Encoder.encodeToString(salt))
+                  .append('$')
+                  .append(Encoder.encodeToString(hash))
+                  .toString();
+  }
+
+  /**
+   * @return The parameter's value, or -1 if it isn't present.
+   */
+  int param(String name) {
+    Integer value = params.get(name);
+    return value == null ? -1 : value;
+  }
+}
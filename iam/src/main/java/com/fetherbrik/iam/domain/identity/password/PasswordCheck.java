@@ -0,0 +1,38 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+package com.fetherbrik.iam.domain.identity.password;
+
+import java.util.Optional;
+
+/**
+ * The result of checking a password against a stored hash.
+ *
+ * @author Geoff M. Granum
+ */
+public final class PasswordCheck {
+
+  static final PasswordCheck MISMATCH = new PasswordCheck(false, null);
+
+  public final boolean matches;
+  /**
+   * Present when the password matched a hash made with an older algorithm or cost: the same password, hashed with
+   * the current hasher, to store in place of the old hash.
+   */
+  public final Optional<String> rehash;
+
+  private PasswordCheck(boolean matches, String rehash) {
+    this.matches = matches;
+    this.rehash = Optional.ofNullable(rehash);
+  }
+
+  static PasswordCheck matched() {
+    return new PasswordCheck(true, null);
+  }
+
+  static PasswordCheck matched(String rehash) {
+    return new PasswordCheck(true, rehash);
+  }
+}
@@ -0,0 +1,40 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+package com.fetherbrik.iam.domain.identity.password;
+
+/**
+ * A one-way, salted password hash with an explicit cost. Hashes are encoded in the PHC string format, e.g.
+ * <pre>
+ *   $argon2id$v=19$m=19456,t=2,p=1$[salt]$[hash]
+ * </pre>
+ * so that a hash carries the algorithm and cost it was made with, and can still be verified after the configured cost
+ * has changed.
+ *
+ * @author Geoff M. Granum
+ */
+public interface PasswordHasher {
+
+  /**
+   * @return The identifier that begins every hash this hasher encodes, e.g. "argon2id".
+   */
+  String algorithm();
+
+  /**
+   * Hash with a new random salt, at this hasher's cost. Slow by design: call through {@link PasswordHashingService}.
+   */
+  String hash(String passwordClearText);
+
+  /**
+   * @param encodedHash A hash in this hasher's algorithm, at any cost.
+   * @return False if the password doesn't match, or if `encodedHash` isn't a hash in this algorithm.
+   */
+  boolean verify(String passwordClearText, String encodedHash);
+
+  /**
+   * @return True unless `encodedHash` was made by this algorithm, at exactly this hasher's cost.
+   */
+  boolean needsRehash(String encodedHash);
+}
@@ -0,0 +1,203 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+package com.fetherbrik.iam.domain.identity.password;
+
+import com.fetherbrik.core.exception.service.ServiceException;
+import com.fetherbrik.core.http.HttpStatus;
+import com.fetherbrik.core.log.Log;
+import com.fetherbrik.iam.domain.identity.EncryptionToken;
+import com.fetherbrik.iam.domain.identity.user.User;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Hashes and checks passwords on a small, bounded pool of dedicated threads, so that a burst of logins queues here
+ * rather than tying up every request thread's CPU. When the queue is full, requests fail fast with a 503
+ * ServiceException.
+ * <p>
+ * New hashes are made with the current {@link PasswordHasher}. Hashes made by either built in algorithm, at any cost,
+ * and the original salted SHA-512 hashes (see {@link EncryptionToken}), can all still be checked; a successful check
+ * against anything but the current algorithm and cost comes with a rehash to store in its place.
+ * <p>
+ * Configured by system properties, unless constructed directly:
+ * <ul>
+ * <li>{@value #ALGORITHM_PROP_KEY}: "argon2id" (default) or "pbkdf2-sha256"</li>
+ * <li>{@value #ARGON2_MEMORY_KIB_PROP_KEY}, {@value #ARGON2_ITERATIONS_PROP_KEY}, {@value #ARGON2_PARALLELISM_PROP_KEY}</li>
+ * <li>{@value #PBKDF2_ITERATIONS_PROP_KEY}</li>
+ * <li>{@value #THREADS_PROP_KEY}: default, the number of processors</li>
+ * <li>{@value #QUEUE_SIZE_PROP_KEY}: default 256</li>
+ * </ul>
+ *
+ * @author Geoff M. Granum
+ */
+@Singleton
+public class PasswordHashingService {
+
+  public static final String ALGORITHM_PROP_KEY = "com.fetherbrik.iam.password.algorithm";
+  public static final String ARGON2_MEMORY_KIB_PROP_KEY = "com.fetherbrik.iam.password.argon2.memory_kib";
+  public static final String ARGON2_ITERATIONS_PROP_KEY = "com.fetherbrik.iam.password.argon2.iterations";
+  public static final String ARGON2_PARALLELISM_PROP_KEY = "com.fetherbrik.iam.password.argon2.parallelism";
+  public static final String PBKDF2_ITERATIONS_PROP_KEY = "com.fetherbrik.iam.password.pbkdf2.iterations";
+  public static final String THREADS_PROP_KEY = "com.fetherbrik.iam.password.threads";
+  public static final String QUEUE_SIZE_PROP_KEY = "com.fetherbrik.iam.password.queue_size";
+
+  private final PasswordHasher current;
+  private final Map<String, PasswordHasher> hashersByAlgorithm = new HashMap<>();
+  private final ThreadPoolExecutor executor;
+  private final CompletableFuture<String> unknownUserHash;
+
+  @Inject
+  public PasswordHashingService() {
+    this(hasherFromProperties(),
+        Integer.getInteger(THREADS_PROP_KEY, Runtime.getRuntime().availableProcessors()),
+        Integer.getInteger(QUEUE_SIZE_PROP_KEY, 256));
+  }
+
+  public PasswordHashingService(PasswordHasher current, int threads, int queueSize) {
+    this.current = current;
+    // Every built in algorithm can verify its own hashes at any cost, so a default instance of each will do.
+    hashersByAlgorithm.put(Argon2PasswordHasher.ALGORITHM, new Argon2PasswordHasher());
+    hashersByAlgorithm.put(Pbkdf2PasswordHasher.ALGORITHM, new Pbkdf2PasswordHasher());
+    hashersByAlgorithm.put(current.algorithm(), current);
+    this.executor = new ThreadPoolExecutor(threads,
+        threads,
+        60,
+        TimeUnit.SECONDS,
+        new ArrayBlockingQueue<>(queueSize),
+        new ThreadFactoryBuilder().setNameFormat("fetherbrik-password-hash-%d").setDaemon(true).build(),
+        new ThreadPoolExecutor.AbortPolicy());
+    this.executor.allowCoreThreadTimeOut(true);
+    this.unknownUserHash = hash(UUID.randomUUID().toString());
+  }
+
+  public PasswordHasher currentHasher() {
+    return current;
+  }
+
+  public CompletableFuture<String> hash(String passwordClearText) {
+    return submit(() -> current.hash(passwordClearText));
+  }
+
+  public CompletableFuture<PasswordCheck> check(User user, String passwordClearText) {
+    return check(passwordClearText, user.passwordHash, user.saltHex);
+  }
+
+  /**
+   * @param legacySaltHex Only used when `passwordHash` is an original, unencoded SHA-512 hash.
+   */
+  public CompletableFuture<PasswordCheck> check(String passwordClearText, String passwordHash, String legacySaltHex) {
+    return submit(() -> doCheck(passwordClearText, passwordHash, legacySaltHex));
+  }
+
+  /**
+   * {@link #hash(String)}, waiting for the result on the calling thread.
+   */
+  public String hashAndWait(String passwordClearText) {
+    return await(hash(passwordClearText));
+  }
+
+  /**
+   * {@link #check(User, String)}, waiting for the result on the calling thread.
+   */
+  public PasswordCheck checkAndWait(User user, String passwordClearText) {
+    return await(check(user, passwordClearText));
+  }
+
+  /**
+   * Check a password for a username that doesn't exist, against a hash made by the current hasher, so that rejecting
+   * an unknown username takes as long as rejecting a wrong password. Never matches.
+   */
+  public PasswordCheck checkUnknownUserAndWait(String passwordClearText) {
+    return await(submit(() -> {
+      doCheck(passwordClearText, unknownUserHash.join(), null);
+      return PasswordCheck.MISMATCH;
+    }));
+  }
+
+  public void shutdown() {
+    executor.shutdown();
+  }
+
+  private PasswordCheck doCheck(String passwordClearText, String passwordHash, String legacySaltHex) {
+    if (passwordClearText == null || passwordHash == null) {
+      return PasswordCheck.MISMATCH;
+    }
+    if (!passwordHash.startsWith("$")) {
+      if (legacySaltHex == null || !legacyMatches(passwordClearText, passwordHash, legacySaltHex)) {
+        return PasswordCheck.MISMATCH;
+      }
+      return PasswordCheck.matched(current.hash(passwordClearText));
+    }
+    String algorithm = passwordHash.substring(1, Math.max(1, passwordHash.indexOf('$', 1)));
+    PasswordHasher hasher = hashersByAlgorithm.get(algorithm);
+    if (hasher == null) {
+      Log.warn(getClass(), "Cannot check password: no hasher for algorithm '%s'.", algorithm);
+      return PasswordCheck.MISMATCH;
+    }
+    if (!hasher.verify(passwordClearText, passwordHash)) {
+      return PasswordCheck.MISMATCH;
+    }
+    return current.needsRehash(passwordHash)
+           ? PasswordCheck.matched(current.hash(passwordClearText))
+           : PasswordCheck.matched();
+  }
+
+  private static boolean legacyMatches(String passwordClearText, String passwordHash, String saltHex) {
+    String legacyHash = EncryptionToken.fromPasswordClearText(passwordClearText, saltHex).hashAsHexString;
+    return MessageDigest.isEqual(legacyHash.getBytes(StandardCharsets.US_ASCII),
+        passwordHash.getBytes(StandardCharsets.US_ASCII));
+  }
+
+  private <T> CompletableFuture<T> submit(Supplier<T> task) {
+    try {
+      return CompletableFuture.supplyAsync(task, executor);
+    } catch (RejectedExecutionException e) {
+      return CompletableFuture.failedFuture(new ServiceException(e,
+          HttpStatus.SERVICE_UNAVAILABLE.code,
+          "Too many password requests in progress; try again shortly."));
+    }
+  }
+
+  private static <T> T await(CompletableFuture<T> future) {
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw e;
+    }
+  }
+
+  private static PasswordHasher hasherFromProperties() {
+    String algorithm = System.getProperty(ALGORITHM_PROP_KEY, Argon2PasswordHasher.ALGORITHM);
+    if (Pbkdf2PasswordHasher.ALGORITHM.equals(algorithm)) {
+      return new Pbkdf2PasswordHasher(Integer.getInteger(PBKDF2_ITERATIONS_PROP_KEY,
+          Pbkdf2PasswordHasher.DEFAULT_ITERATIONS));
+    }
+    if (Argon2PasswordHasher.ALGORITHM.equals(algorithm)) {
+      return new Argon2PasswordHasher(Integer.getInteger(ARGON2_MEMORY_KIB_PROP_KEY,
+          Argon2PasswordHasher.DEFAULT_MEMORY_KIB),
+          Integer.getInteger(ARGON2_ITERATIONS_PROP_KEY, Argon2PasswordHasher.DEFAULT_ITERATIONS),
+          Integer.getInteger(ARGON2_PARALLELISM_PROP_KEY, Argon2PasswordHasher.DEFAULT_PARALLELISM));
+    }
+    throw new IllegalArgumentException("Unknown password hashing algorithm '" + algorithm + "'.");
+  }
+}
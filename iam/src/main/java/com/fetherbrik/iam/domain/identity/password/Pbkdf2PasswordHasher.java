@@ -0,0 +1,89 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+package com.fetherbrik.iam.domain.identity.password;
+
+import com.fetherbrik.core.base.Verify;
+import com.fetherbrik.core.exception.FatalException;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Optional;
+
+/**
+ * PBKDF2 with HMAC-SHA256, encoded as $pbkdf2-sha256$i=iterations$salt$hash. Not memory-hard, so prefer
+ * {@link Argon2PasswordHasher} unless FIPS compliance or the JDK's own providers are required.
+ *
+ * @author Geoff M. Granum
+ */
+public final class Pbkdf2PasswordHasher implements PasswordHasher {
+
+  public static final String ALGORITHM = "pbkdf2-sha256";
+  public static final int DEFAULT_ITERATIONS = 310_000;
+
+  private static final String KEY_FACTORY_ALGORITHM = "PBKDF2WithHmacSHA256";
+  private static final int SALT_LENGTH = 16;
+  private static final int HASH_LENGTH = 32;
+  private static final SecureRandom random = new SecureRandom();
+
+  private final int iterations;
+
+  public Pbkdf2PasswordHasher() {
+    this(DEFAULT_ITERATIONS);
+  }
+
+  public Pbkdf2PasswordHasher(int iterations) {
+    Verify.isTrue(iterations >= 10_000, "PBKDF2 iterations must be at least 10,000, but were %s.", iterations);
+    this.iterations = iterations;
+  }
+
+  @Override
+  public String algorithm() {
+    return ALGORITHM;
+  }
+
+  @Override
+  public String hash(String passwordClearText) {
+    byte[] salt = new byte[SALT_LENGTH];
+    random.nextBytes(salt);
+    byte[] hash = derive(passwordClearText, salt, iterations, HASH_LENGTH);
+    return EncodedHash.format(ALGORITHM, salt, hash, "i=" + iterations);
+  }
+
+  @Override
+  public boolean verify(String passwordClearText, String encodedHash) {
+    Optional<EncodedHash> parsed = parse(encodedHash);
+    if (!parsed.isPresent()) {
+      return false;
+    }
+    EncodedHash encoded = parsed.get();
+    byte[] hash = derive(passwordClearText, encoded.salt, encoded.param("i"), encoded.hash.length);
+    return MessageDigest.isEqual(hash, encoded.hash);
+  }
+
+  @Override
+  public boolean needsRehash(String encodedHash) {
+    return parse(encodedHash).map(encoded -> encoded.param("i") != iterations).orElse(true);
+  }
+
+  private static Optional<EncodedHash> parse(String encodedHash) {
+    return EncodedHash.parse(encodedHash).filter(encoded -> ALGORITHM.equals(encoded.algorithm) && encoded.param("i") > 0);
+  }
+
+  private static byte[] derive(String passwordClearText, byte[] salt, int iterations, int length) {
+    PBEKeySpec spec = new PBEKeySpec(passwordClearText.toCharArray(), salt, iterations, length * 8);
+    try {
+      // SecretKeyFactory instances aren't thread safe, and getInstance is cheap next to the hash itself.
+      return SecretKeyFactory.getInstance(KEY_FACTORY_ALGORITHM).generateSecret(spec).getEncoded();
+    } catch (GeneralSecurityException e) {
+      throw new FatalException(e, "Missing %s algorithm.", KEY_FACTORY_ALGORITHM);
+    } finally {
+      spec.clearPassword();
+    }
+  }
+}
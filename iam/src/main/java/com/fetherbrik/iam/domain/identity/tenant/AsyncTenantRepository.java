@@ -0,0 +1,42 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+package com.fetherbrik.iam.domain.identity.tenant;
+
+import java.util.Optional;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+
+/**
+ * The non blocking form of {@link TenantRepository}.
+ *
+ * @author Geoff M. Granum
+ */
+public interface AsyncTenantRepository {
+
+  /**
+   * @return `repository` itself if it is already async, otherwise a view that calls it on `executor`.
+   */
+  static AsyncTenantRepository of(TenantRepository repository, Executor executor) {
+    if (repository instanceof AsyncTenantRepository) {
+      return (AsyncTenantRepository) repository;
+    }
+    return new ExecutorAsyncTenantRepository(repository, executor);
+  }
+
+  CompletionStage<Void> addAsync(Tenant tenant);
+
+  CompletionStage<Void> putAsync(Tenant tenant);
+
+  CompletionStage<Optional<Tenant>> getAsync(TenantId tenantId);
+
+  CompletionStage<Optional<Tenant>> getAsync(String tenantName);
+
+  CompletionStage<TenantId> tenantIdForTenantNamedAsync(String tenantName);
+
+  CompletionStage<Void> removeAsync(Tenant tenant);
+
+  CompletionStage<Optional<Tenant>> getSystemTenantAsync();
+}
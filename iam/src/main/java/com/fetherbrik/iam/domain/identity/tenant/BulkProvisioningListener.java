@@ -0,0 +1,20 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+package com.fetherbrik.iam.domain.identity.tenant;
+
+/**
+ * Called on the importing thread after each batch of users is written, and once more when the import is done.
+ *
+ * @author Geoff M. Granum
+ */
+@FunctionalInterface
+public interface BulkProvisioningListener {
+
+  BulkProvisioningListener NONE = progress -> {
+  };
+
+  void onProgress(BulkProvisioningProgress progress);
+}
@@ -0,0 +1,408 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+package com.fetherbrik.iam.domain.identity.tenant;
+
+import com.fetherbrik.core.log.Log;
+import com.fetherbrik.core.persistence.id.IdGenerator;
+import com.fetherbrik.iam.domain.access.IamPermission;
+import com.fetherbrik.iam.domain.access.RevocablePermission;
+import com.fetherbrik.iam.domain.access.role.Role;
+import com.fetherbrik.iam.domain.access.role.RoleRepository;
+import com.fetherbrik.iam.domain.identity.group.Group;
+import com.fetherbrik.iam.domain.identity.group.GroupMember;
+import com.fetherbrik.iam.domain.identity.group.GroupRepository;
+import com.fetherbrik.iam.domain.identity.password.PasswordHasher;
+import com.fetherbrik.iam.domain.identity.tenant.BulkProvisioningResult.Rejected;
+import com.fetherbrik.iam.domain.identity.tenant.ProvisioningDescriptor.GroupDescriptor;
+import com.fetherbrik.iam.domain.identity.tenant.ProvisioningDescriptor.RoleDescriptor;
+import com.fetherbrik.iam.domain.identity.tenant.ProvisioningDescriptor.UserDescriptor;
+import com.fetherbrik.iam.domain.identity.tenant.event.TenantBulkProvisioned;
+import com.fetherbrik.iam.domain.identity.user.User;
+import com.fetherbrik.iam.domain.identity.user.UserId;
+import com.fetherbrik.iam.domain.identity.user.UserRepository;
+import com.fetherbrik.iam.domain.identity.user.event.UsersProvisioned;
+import com.google.common.eventbus.EventBus;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * One run of a bulk import into a tenant. Not thread safe; the descriptors are consumed on the calling thread.
+ * <p>
+ * Users are gathered into batches. For each batch the passwords are hashed in parallel on the hashing executor, the
+ * ids are reserved in one {@link IdGenerator#nextBatch} call, the users are written with one
+ * {@link UserRepository#addAll} call, and a single UsersProvisioned event is posted. After each batch, the roles and
+ * groups created since the last batch are written whole, and each other role or group the batch added members to is
+ * given just those members, with {@link RoleRepository#addGroupMembers} or {@link GroupRepository#addMembers}. So an
+ * import that fails part way leaves no user without their memberships, and a role gaining a member in every batch is
+ * never rewritten with all those it gained before. A single TenantBulkProvisioned event is posted at the end.
+ * <p>
+ * A user whose username is already taken is rejected before its batch is written. Should the batch write fail all
+ * the same, the users not yet written are retried one at a time, and those that still fail are rejected.
+ *
+ * @author Geoff M. Granum
+ */
+final class BulkProvisioningPipeline {
+
+  private final Tenant tenant;
+  private final IdGenerator idGen;
+  private final UserRepository userRepository;
+  private final RoleRepository roleRepository;
+  private final GroupRepository groupRepository;
+  private final PasswordHasher hasher;
+  private final Executor hashExecutor;
+  private final EventBus domainBus;
+  private final int batchSize;
+  private final BulkProvisioningListener listener;
+
+  private final Map<String, Role> roles = new HashMap<>();
+  private final Map<String, Group> groups = new HashMap<>();
+  /**
+   * The members given to each role or group since the roles and groups were last written.
+   */
+  private final Map<String, List<GroupMember>> newRoleMembers = new LinkedHashMap<>();
+  private final Map<String, List<GroupMember>> newGroupMembers = new LinkedHashMap<>();
+  private final Set<String> unknownRoles = new HashSet<>();
+  private final Set<String> unknownGroups = new HashSet<>();
+  private final Set<String> newRoles = new LinkedHashSet<>();
+  private final Set<String> changedRoles = new LinkedHashSet<>();
+  private final Set<String> newGroups = new LinkedHashSet<>();
+  private final Set<String> changedGroups = new LinkedHashSet<>();
+  private final Set<String> rolesToAdd = new LinkedHashSet<>();
+  private final Set<String> groupsToAdd = new LinkedHashSet<>();
+  private final Set<String> usernames = new HashSet<>();
+  private final Map<Rejected, String> rejections = new LinkedHashMap<>();
+  private final List<UserDescriptor> pending = new ArrayList<>();
+  private final long startNanos = System.nanoTime();
+  private long usersProvisioned;
+  private int batches;
+
+  BulkProvisioningPipeline(Tenant tenant,
+                           IdGenerator idGen,
+                           UserRepository userRepository,
+                           RoleRepository roleRepository,
+                           GroupRepository groupRepository,
+                           PasswordHasher hasher,
+                           Executor hashExecutor,
+                           EventBus domainBus,
+                           int batchSize,
+                           BulkProvisioningListener listener) {
+    this.tenant = tenant;
+    this.idGen = idGen;
+    this.userRepository = userRepository;
+    this.roleRepository = roleRepository;
+    this.groupRepository = groupRepository;
+    this.hasher = hasher;
+    this.hashExecutor = hashExecutor;
+    this.domainBus = domainBus;
+    this.batchSize = batchSize;
+    this.listener = listener;
+  }
+
+  BulkProvisioningResult run(Iterator<? extends ProvisioningDescriptor> descriptors) {
+    while (descriptors.hasNext()) {
+      ProvisioningDescriptor descriptor = descriptors.next();
+      if (descriptor instanceof UserDescriptor) {
+        pending.add((UserDescriptor) descriptor);
+        if (pending.size() >= batchSize) {
+          flushUsers();
+        }
+      } else if (descriptor instanceof RoleDescriptor) {
+        addRole((RoleDescriptor) descriptor);
+      } else if (descriptor instanceof GroupDescriptor) {
+        addGroup((GroupDescriptor) descriptor);
+      }
+    }
+    flushUsers();
+    writeRolesAndGroups();
+    domainBus.post(new TenantBulkProvisioned(tenant.id,
+        union(newRoles, changedRoles),
+        union(newGroups, changedGroups),
+        usersProvisioned));
+    BulkProvisioningProgress progress = progress(true);
+    listener.onProgress(progress);
+    return new BulkProvisioningResult(progress, rejections);
+  }
+
+  private void addRole(RoleDescriptor descriptor) {
+    if (role(descriptor.name).isPresent()) {
+      rejections.put(Rejected.role(descriptor.name), "Role already exists.");
+      return;
+    }
+    Set<RevocablePermission> permissions = IamPermission.asRevocable(descriptor.permissions, false);
+    Role role = new Role.Builder()
+        .tenantId(tenant.id)
+        .name(descriptor.name)
+        .description(descriptor.description)
+        .supportsNesting(descriptor.supportsNesting)
+        .permissions(permissions)
+        .create(idGen);
+    roles.put(role.name, role);
+    unknownRoles.remove(role.name);
+    newRoles.add(role.name);
+    rolesToAdd.add(role.name);
+  }
+
+  private void addGroup(GroupDescriptor descriptor) {
+    if (group(descriptor.name).isPresent()) {
+      rejections.put(Rejected.group(descriptor.name), "Group already exists.");
+      return;
+    }
+    Group group = new Group.Builder()
+        .tenantId(tenant.id)
+        .name(descriptor.name)
+        .description(descriptor.description)
+        .internal(false)
+        .create(idGen);
+    groups.put(group.name, group);
+    unknownGroups.remove(group.name);
+    newGroups.add(group.name);
+    groupsToAdd.add(group.name);
+  }
+
+  private void flushUsers() {
+    if (pending.isEmpty()) {
+      return;
+    }
+    List<UserDescriptor> accepted = new ArrayList<>(pending.size());
+    for (UserDescriptor descriptor : pending) {
+      String rejection = validate(descriptor);
+      if (rejection == null) {
+        accepted.add(descriptor);
+      } else {
+        rejections.put(Rejected.user(descriptor.name), rejection);
+      }
+    }
+    pending.clear();
+    if (!accepted.isEmpty()) {
+      writeUsers(accepted);
+    }
+    writeRolesAndGroups();
+    batches++;
+    listener.onProgress(progress(false));
+  }
+
+  private void writeUsers(List<UserDescriptor> accepted) {
+    List<CompletableFuture<String>> hashes = new ArrayList<>(accepted.size());
+    for (UserDescriptor descriptor : accepted) {
+      hashes.add(CompletableFuture.supplyAsync(() -> hasher.hash(descriptor.passwordClearText), hashExecutor));
+    }
+    List<BigInteger> ids = idGen.nextBatch(accepted.size());
+    List<User> users = new ArrayList<>(accepted.size());
+    Map<String, UserDescriptor> descriptors = new HashMap<>();
+    for (int i = 0; i < accepted.size(); i++) {
+      UserDescriptor descriptor = accepted.get(i);
+      try {
+        users.add(new User.Builder()
+            .id(new UserId(ids.get(i)))
+            .tenantId(tenant.id)
+            .username(descriptor.name)
+            .passwordHash(hashes.get(i).join())
+            .enablement(descriptor.enablement)
+            .userPermissions(Collections.emptySet())
+            .build());
+        descriptors.put(descriptor.name, descriptor);
+      } catch (CompletionException | IllegalArgumentException | NullPointerException e) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        rejections.put(Rejected.user(descriptor.name), String.valueOf(cause.getMessage()));
+      }
+    }
+    if (users.isEmpty()) {
+      return;
+    }
+    List<User> written = addUsers(users);
+    if (written.isEmpty()) {
+      return;
+    }
+    List<String> batchUsernames = new ArrayList<>(written.size());
+    for (User user : written) {
+      UserDescriptor descriptor = descriptors.get(user.username);
+      for (String roleName : descriptor.roleNames) {
+        newRoleMembers.computeIfAbsent(roleName, name -> new ArrayList<>())
+                      .add(user.toGroupMember(roles.get(roleName).group));
+        if (!newRoles.contains(roleName)) {
+          changedRoles.add(roleName);
+        }
+      }
+      for (String groupName : descriptor.groupNames) {
+        newGroupMembers.computeIfAbsent(groupName, name -> new ArrayList<>())
+                       .add(user.toGroupMember(groups.get(groupName)));
+        if (!newGroups.contains(groupName)) {
+          changedGroups.add(groupName);
+        }
+      }
+      batchUsernames.add(user.username);
+    }
+    usersProvisioned += written.size();
+    domainBus.post(new UsersProvisioned(tenant.id, batchUsernames));
+  }
+
+  /**
+   * @return The users written, which is all of them unless the batch write failed.
+   */
+  private List<User> addUsers(List<User> users) {
+    try {
+      userRepository.addAll(tenant.id, users);
+      return users;
+    } catch (RuntimeException e) {
+      Log.warn(getClass(), "Writing a batch of %s users to tenant %s failed, retrying them one at a time: %s",
+          users.size(),
+          tenant.id,
+          e.getMessage());
+    }
+    List<User> written = new ArrayList<>(users.size());
+    for (User user : users) {
+      // Some of the batch may have been written before the failure.
+      if (userRepository.get(tenant.id, user.id).isPresent()) {
+        written.add(user);
+        continue;
+      }
+      try {
+        userRepository.add(tenant.id, user);
+        written.add(user);
+      } catch (RuntimeException e) {
+        rejections.put(Rejected.user(user.username), String.valueOf(e.getMessage()));
+      }
+    }
+    return written;
+  }
+
+  /**
+   * @return Why the user can't be imported, or null if it can.
+   */
+  private String validate(UserDescriptor descriptor) {
+    try {
+      User.checkAcceptablePassword(descriptor.name, descriptor.passwordClearText);
+    } catch (RuntimeException e) {
+      return e.getMessage();
+    }
+    for (String roleName : descriptor.roleNames) {
+      if (!role(roleName).isPresent()) {
+        return "No role named '" + roleName + "'.";
+      }
+    }
+    for (String groupName : descriptor.groupNames) {
+      if (!group(groupName).isPresent()) {
+        return "No group named '" + groupName + "'.";
+      }
+    }
+    if (!usernames.add(descriptor.name)) {
+      return "Username appears more than once in this import.";
+    }
+    if (userRepository.get(tenant.id, descriptor.name).isPresent()) {
+      return "A user with this username already exists.";
+    }
+    return null;
+  }
+
+  /**
+   * Write the roles and groups created since the last write, with their members, then add the members given since to
+   * each of the others.
+   */
+  private void writeRolesAndGroups() {
+    if (!rolesToAdd.isEmpty()) {
+      List<Role> created = new ArrayList<>(rolesToAdd.size());
+      for (String roleName : rolesToAdd) {
+        Role role = roles.get(roleName);
+        Group.Builder group = role.group.copy();
+        newRoleMembers.getOrDefault(roleName, Collections.emptyList()).forEach(group::addGroupMember);
+        newRoleMembers.remove(roleName);
+        created.add(role.copy().group(group.build()).build());
+      }
+      roleRepository.addAll(created);
+      rolesToAdd.clear();
+    }
+    for (Map.Entry<String, List<GroupMember>> entry : newRoleMembers.entrySet()) {
+      roleRepository.addGroupMembers(roles.get(entry.getKey()), entry.getValue());
+    }
+    newRoleMembers.clear();
+    if (!groupsToAdd.isEmpty()) {
+      List<Group> created = new ArrayList<>(groupsToAdd.size());
+      for (String groupName : groupsToAdd) {
+        Group.Builder group = groups.get(groupName).copy();
+        newGroupMembers.getOrDefault(groupName, Collections.emptyList()).forEach(group::addGroupMember);
+        newGroupMembers.remove(groupName);
+        created.add(group.build());
+      }
+      groupRepository.addAll(created);
+      groupsToAdd.clear();
+    }
+    for (Map.Entry<String, List<GroupMember>> entry : newGroupMembers.entrySet()) {
+      groupRepository.addMembers(groups.get(entry.getKey()), entry.getValue());
+    }
+    newGroupMembers.clear();
+  }
+
+  /**
+   * Looks in this import first, then the repository; each name is looked up in the repository at most once.
+   */
+  private Optional<Role> role(String name) {
+    Role role = roles.get(name);
+    if (role == null && !unknownRoles.contains(name)) {
+      Optional<Role> existing = roleRepository.named(tenant.id, name);
+      if (existing.isPresent()) {
+        role = existing.get();
+        roles.put(name, role);
+      } else {
+        unknownRoles.add(name);
+      }
+    }
+    return Optional.ofNullable(role);
+  }
+
+  private Optional<Group> group(String name) {
+    Group group = groups.get(name);
+    if (group == null && !unknownGroups.contains(name)) {
+      Optional<Group> existing = groupRepository.named(tenant.id, name);
+      if (existing.isPresent()) {
+        group = existing.get();
+        groups.put(name, group);
+      } else {
+        unknownGroups.add(name);
+      }
+    }
+    return Optional.ofNullable(group);
+  }
+
+  private BulkProvisioningProgress progress(boolean done) {
+    return new BulkProvisioningProgress(usersProvisioned,
+        usersRejected(),
+        newRoles.size(),
+        newGroups.size(),
+        batches,
+        System.nanoTime() - startNanos,
+        done);
+  }
+
+  private long usersRejected() {
+    long count = 0;
+    for (Rejected rejected : rejections.keySet()) {
+      if (rejected.kind == BulkProvisioningResult.Kind.USER) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  private static List<String> union(Set<String> a, Set<String> b) {
+    Set<String> union = new LinkedHashSet<>(a);
+    union.addAll(b);
+    return new ArrayList<>(union);
+  }
+}
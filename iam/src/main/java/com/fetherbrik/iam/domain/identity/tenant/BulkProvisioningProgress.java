@@ -0,0 +1,60 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+package com.fetherbrik.iam.domain.identity.tenant;
+
+import com.google.common.base.MoreObjects;
+
+import javax.annotation.concurrent.Immutable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Geoff M. Granum
+ */
+@Immutable
+public final class BulkProvisioningProgress {
+
+  public final long usersProvisioned;
+  public final long usersRejected;
+  public final int rolesProvisioned;
+  public final int groupsProvisioned;
+  public final int batches;
+  public final long elapsedNanos;
+  public final boolean done;
+
+  BulkProvisioningProgress(long usersProvisioned,
+                           long usersRejected,
+                           int rolesProvisioned,
+                           int groupsProvisioned,
+                           int batches,
+                           long elapsedNanos,
+                           boolean done) {
+    this.usersProvisioned = usersProvisioned;
+    this.usersRejected = usersRejected;
+    this.rolesProvisioned = rolesProvisioned;
+    this.groupsProvisioned = groupsProvisioned;
+    this.batches = batches;
+    this.elapsedNanos = elapsedNanos;
+    this.done = done;
+  }
+
+  public double usersPerSecond() {
+    return elapsedNanos > 0 ? usersProvisioned * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos : 0;
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("usersProvisioned", usersProvisioned)
+        .add("usersRejected", usersRejected)
+        .add("rolesProvisioned", rolesProvisioned)
+        .add("groupsProvisioned", groupsProvisioned)
+        .add("batches", batches)
+        .add("elapsedMillis", TimeUnit.NANOSECONDS.toMillis(elapsedNanos))
+        .add("usersPerSecond", (long) usersPerSecond())
+        .add("done", done)
+        .toString();
+  }
+}
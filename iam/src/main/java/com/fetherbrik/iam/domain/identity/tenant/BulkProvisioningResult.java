@@ -0,0 +1,86 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+package com.fetherbrik.iam.domain.identity.tenant;
+
+import com.google.common.collect.ImmutableMap;
+
+import javax.annotation.concurrent.Immutable;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * @author Geoff M. Granum
+ */
+@Immutable
+public final class BulkProvisioningResult {
+
+  public final BulkProvisioningProgress progress;
+
+  /**
+   * The reason each rejected role, group and user was not imported, in import order.
+   */
+  public final Map<Rejected, String> rejections;
+
+  BulkProvisioningResult(BulkProvisioningProgress progress, Map<Rejected, String> rejections) {
+    this.progress = progress;
+    this.rejections = ImmutableMap.copyOf(rejections);
+  }
+
+  public enum Kind {
+    ROLE,
+    GROUP,
+    USER
+  }
+
+  /**
+   * A rejected descriptor: a role, a group and a user may share a name.
+   */
+  @Immutable
+  public static final class Rejected {
+
+    public final Kind kind;
+    public final String name;
+
+    public Rejected(Kind kind, String name) {
+      this.kind = kind;
+      this.name = name;
+    }
+
+    public static Rejected role(String name) {
+      return new Rejected(Kind.ROLE, name);
+    }
+
+    public static Rejected group(String name) {
+      return new Rejected(Kind.GROUP, name);
+    }
+
+    public static Rejected user(String name) {
+      return new Rejected(Kind.USER, name);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      Rejected that = (Rejected) o;
+      return kind == that.kind && Objects.equals(name, that.name);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(kind, name);
+    }
+
+    @Override
+    public String toString() {
+      return kind.name().toLowerCase() + " '" + name + "'";
+    }
+  }
+}
@@ -0,0 +1,62 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+package com.fetherbrik.iam.domain.identity.tenant;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+
+/**
+ * Calls a blocking TenantRepository on an executor.
+ *
+ * @author Geoff M. Granum
+ */
+final class ExecutorAsyncTenantRepository implements AsyncTenantRepository {
+
+  private final TenantRepository repository;
+  private final Executor executor;
+
+  ExecutorAsyncTenantRepository(TenantRepository repository, Executor executor) {
+    this.repository = repository;
+    this.executor = executor;
+  }
+
+  @Override
+  public CompletionStage<Void> addAsync(Tenant tenant) {
+    return CompletableFuture.runAsync(() -> repository.add(tenant), executor);
+  }
+
+  @Override
+  public CompletionStage<Void> putAsync(Tenant tenant) {
+    return CompletableFuture.runAsync(() -> repository.put(tenant), executor);
+  }
+
+  @Override
+  public CompletionStage<Optional<Tenant>> getAsync(TenantId tenantId) {
+    return CompletableFuture.supplyAsync(() -> repository.get(tenantId), executor);
+  }
+
+  @Override
+  public CompletionStage<Optional<Tenant>> getAsync(String tenantName) {
+    return CompletableFuture.supplyAsync(() -> repository.get(tenantName), executor);
+  }
+
+  @Override
+  public CompletionStage<TenantId> tenantIdForTenantNamedAsync(String tenantName) {
+    return CompletableFuture.supplyAsync(() -> repository.tenantIdForTenantNamed(tenantName), executor);
+  }
+
+  @Override
+  public CompletionStage<Void> removeAsync(Tenant tenant) {
+    return CompletableFuture.runAsync(() -> repository.remove(tenant), executor);
+  }
+
+  @Override
+  public CompletionStage<Optional<Tenant>> getSystemTenantAsync() {
+    return CompletableFuture.supplyAsync(repository::getSystemTenant, executor);
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+package com.fetherbrik.iam.domain.identity.tenant;
+
+import com.fetherbrik.core.base.Verify;
+import com.fetherbrik.iam.domain.access.IamPermission;
+import com.fetherbrik.iam.domain.identity.Enablement;
+import com.google.common.collect.ImmutableSet;
+
+import javax.annotation.concurrent.Immutable;
+import java.util.Arrays;
+import java.util.Set;
+
+import static com.fetherbrik.core.base.Verify.isNotEmpty;
+
+/**
+ * One item of a bulk import: a role, a group or a user. See
+ * {@link TenantProvisioningService#provisionAll(Tenant, java.util.stream.Stream, BulkProvisioningListener)}.
+ * <p>
+ * A user may name roles and groups that already exist in the tenant, or that appear earlier in the same import.
+ *
+ * @author Geoff M. Granum
+ */
+@Immutable
+public abstract class ProvisioningDescriptor {
+
+  public final String name;
+
+  private ProvisioningDescriptor(String name) {
+    this.name = isNotEmpty(name, "Name is required.");
+  }
+
+  public static RoleDescriptor role(String name, String description, Set<IamPermission> permissions) {
+    return new RoleDescriptor(name, description, permissions, false);
+  }
+
+  public static GroupDescriptor group(String name, String description) {
+    return new GroupDescriptor(name, description);
+  }
+
+  public static UserDescriptor user(String username, String passwordClearText, String... roleNames) {
+    return new UserDescriptor(username,
+        passwordClearText,
+        Enablement.indefiniteEnablement(),
+        ImmutableSet.copyOf(roleNames),
+        ImmutableSet.of());
+  }
+
+  @Immutable
+  public static final class RoleDescriptor extends ProvisioningDescriptor {
+
+    public final String description;
+    public final Set<IamPermission> permissions;
+    public final boolean supportsNesting;
+
+    private RoleDescriptor(String name, String description, Set<IamPermission> permissions, boolean supportsNesting) {
+      super(name);
+      this.description = description;
+      this.permissions = ImmutableSet.copyOf(permissions);
+      this.supportsNesting = supportsNesting;
+    }
+
+    public RoleDescriptor nestable() {
+      return new RoleDescriptor(name, description, permissions, true);
+    }
+  }
+
+  @Immutable
+  public static final class GroupDescriptor extends ProvisioningDescriptor {
+
+    public final String description;
+
+    private GroupDescriptor(String name, String description) {
+      super(name);
+      this.description = description;
+    }
+  }
+
+  @Immutable
+  public static final class UserDescriptor extends ProvisioningDescriptor {
+
+    public final String passwordClearText;
+    public final Enablement enablement;
+    public final Set<String> roleNames;
+    public final Set<String> groupNames;
+
+    private UserDescriptor(String username,
+                           String passwordClearText,
+                           Enablement enablement,
+                           Set<String> roleNames,
+                           Set<String> groupNames) {
+      super(username);
+      this.passwordClearText = passwordClearText;
+      this.enablement = Verify.isNotNull(enablement, "Enablement is required.");
+      this.roleNames = roleNames;
+      this.groupNames = groupNames;
+    }
+
+    public UserDescriptor inGroups(String... groupNames) {
+      return new UserDescriptor(name,
+          passwordClearText,
+          enablement,
+          roleNames,
+          ImmutableSet.<String>builder().addAll(this.groupNames).addAll(Arrays.asList(groupNames)).build());
+    }
+
+    public UserDescriptor enablement(Enablement enablement) {
+      return new UserDescriptor(name, passwordClearText, enablement, roleNames, groupNames);
+    }
+  }
+}
@@ -7,11 +7,11 @@ package com.fetherbrik.iam.domain.identity.tenant;
 
 
 import com.fetherbrik.core.base.Verify;
+import com.fetherbrik.core.collections.PersistentHashSet;
 import com.fetherbrik.core.persistence.id.Identified;
 import com.fetherbrik.iam.domain.access.registration.InvitationDescriptor;
 import com.fetherbrik.iam.domain.access.registration.RegistrationInvitation;
 import com.google.common.base.Objects;
-import com.google.common.collect.Sets;
 import org.apache.commons.lang3.time.DateUtils;
 
 import javax.annotation.Nullable;
@@ -28,7 +28,10 @@ public final class Tenant implements Identified {
   public final String serverHostname;
   public final boolean active;
 
-  public final Set<RegistrationInvitation> registrationInvitations;
+  /**
+   * Offering an invitation swaps in a new set rather than changing this one, so a set already read never changes.
+   */
+  private volatile PersistentHashSet<RegistrationInvitation> registrationInvitations;
 
   private Tenant(Builder builder) {
     id = builder.id;
@@ -103,9 +106,13 @@ public final class Tenant implements Identified {
             .create()
             .build();
 
-    boolean added = this.registrationInvitations.add(invitation);
-
-    isTrue(added, IllegalStateException.class, "The invitation should have been added.");
+    synchronized (this) {
+      PersistentHashSet<RegistrationInvitation> current = this.registrationInvitations;
+      this.registrationInvitations = current.plus(invitation);
+      isTrue(this.registrationInvitations != current,
+          IllegalStateException.class,
+          "The invitation should have been added.");
+    }
 
     return invitation;
   }
@@ -135,8 +142,11 @@ public final class Tenant implements Identified {
     return invite;
   }
 
-  Set<RegistrationInvitation> registrationInvitations() {
-    return Collections.unmodifiableSet(this.registrationInvitations);
+  /**
+   * Every invitation, available or not, as a repository stores them.
+   */
+  public PersistentHashSet<RegistrationInvitation> registrationInvitations() {
+    return this.registrationInvitations;
   }
 
   @Override
@@ -184,7 +194,7 @@ public final class Tenant implements Identified {
     private String serverHostname;
     private Boolean active = true;
     private Boolean systemTenant = false;
-    private Set<RegistrationInvitation> registrationInvitations = Sets.newHashSet();
+    private PersistentHashSet<RegistrationInvitation> registrationInvitations = PersistentHashSet.empty();
 
 
     public Builder() {
@@ -213,7 +223,7 @@ public final class Tenant implements Identified {
       description = copy.description;
       serverHostname = copy.serverHostname;
       active = copy.active;
-      registrationInvitations = copy.registrationInvitations;
+      registrationInvitations = copy.registrationInvitations();
       return this;
     }
 
@@ -248,7 +258,7 @@ public final class Tenant implements Identified {
     }
 
     public Builder registrationInvitations(Set<RegistrationInvitation> registrationInvitations) {
-      this.registrationInvitations = registrationInvitations;
+      this.registrationInvitations = PersistentHashSet.copyOf(registrationInvitations);
       return this;
     }
 
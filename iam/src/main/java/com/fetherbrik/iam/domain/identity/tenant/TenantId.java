@@ -18,4 +18,8 @@ public final class TenantId extends TypedId<Tenant> {
     super(value);
   }
 
+  public TenantId(long hi, long lo) {
+    super(hi, lo);
+  }
+
 }
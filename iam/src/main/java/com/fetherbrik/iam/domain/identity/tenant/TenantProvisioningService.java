@@ -5,30 +5,51 @@
  */
 package com.fetherbrik.iam.domain.identity.tenant;
 
+import com.fetherbrik.core.base.Verify;
 import com.fetherbrik.core.persistence.id.IdGenerator;
 import com.fetherbrik.iam.domain.access.registration.RegistrationInvitation;
 import com.fetherbrik.iam.domain.access.role.Role;
 import com.fetherbrik.iam.domain.access.role.RoleRepository;
 import com.fetherbrik.iam.domain.access.role.RoleService;
 import com.fetherbrik.iam.domain.identity.Enablement;
+import com.fetherbrik.iam.domain.identity.group.GroupRepository;
+import com.fetherbrik.iam.domain.identity.password.PasswordHashingService;
 import com.fetherbrik.iam.domain.identity.tenant.event.TenantAdministratorRegistered;
 import com.fetherbrik.iam.domain.identity.tenant.event.TenantProvisioned;
 import com.fetherbrik.iam.domain.identity.user.FullName;
 import com.fetherbrik.iam.domain.identity.user.User;
 import com.fetherbrik.iam.domain.identity.user.UserRepository;
 import com.google.common.eventbus.EventBus;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.Inject;
 import com.google.inject.Provider;
 
+import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
 /**
+ * Bulk provisioning is configured by system properties:
+ * <ul>
+ * <li>{@value #BATCH_SIZE_PROP_KEY}: users written per repository call; default 500</li>
+ * <li>{@value #HASH_THREADS_PROP_KEY}: threads hashing passwords during an import; default, the number of
+ * processors</li>
+ * </ul>
+ *
  * @author Geoff M. Granum
  */
 public class TenantProvisioningService {
 
+  public static final String BATCH_SIZE_PROP_KEY = "com.fetherbrik.iam.provisioning.batch_size";
+  public static final String HASH_THREADS_PROP_KEY = "com.fetherbrik.iam.provisioning.hash_threads";
+
   private final IdGenerator idGen;
   private final RoleRepository roleRepository;
   private final TenantRepository tenantRepository;
   private final UserRepository userRepository;
+  private final GroupRepository groupRepository;
+  private final PasswordHashingService passwordHashing;
   private final Provider<Tenant.Builder> tenantFactory;
   private final TenantService tenantService;
   private final RoleService roleService;
@@ -42,7 +63,9 @@ public class TenantProvisioningService {
       RoleRepository roleRepository,
       Provider<Tenant.Builder> tenantFactory,
       TenantService tenantService,
-      IdGenerator idGen, RoleService roleService) {
+      IdGenerator idGen, RoleService roleService,
+      GroupRepository groupRepository,
+      PasswordHashingService passwordHashing) {
 
     super();
     this.domainBus = domainBus;
@@ -53,6 +76,8 @@ public class TenantProvisioningService {
     this.tenantService = tenantService;
     this.idGen = idGen;
     this.roleService = roleService;
+    this.groupRepository = groupRepository;
+    this.passwordHashing = passwordHashing;
   }
 
   public Tenant provisionTenant(
@@ -91,6 +116,43 @@ public class TenantProvisioningService {
     return tenant;
   }
 
+  /**
+   * Import roles, groups and users into an active tenant. Descriptors are consumed in order, so a user may name any
+   * role or group that precedes it. Users are written in batches; a user that can't be imported (weak password,
+   * duplicate username, unknown role or group) is recorded in the result and the import carries on.
+   * <p>
+   * Passwords are hashed on a pool created for this import, so a large import doesn't starve logins of the shared
+   * hashing pool. `listener` is called on this thread after each batch, and once more when the import is done.
+   */
+  public BulkProvisioningResult provisionAll(Tenant tenant,
+                                             Stream<? extends ProvisioningDescriptor> descriptors,
+                                             BulkProvisioningListener listener) {
+    return provisionAll(tenant, descriptors.iterator(), listener);
+  }
+
+  public BulkProvisioningResult provisionAll(Tenant tenant,
+                                             Iterator<? extends ProvisioningDescriptor> descriptors,
+                                             BulkProvisioningListener listener) {
+    Verify.isTrue(tenant.active, IllegalStateException.class, "Tenant is not active.");
+    int threads = Integer.getInteger(HASH_THREADS_PROP_KEY, Runtime.getRuntime().availableProcessors());
+    ExecutorService hashPool = Executors.newFixedThreadPool(threads,
+        new ThreadFactoryBuilder().setNameFormat("fetherbrik-provisioning-hash-%d").setDaemon(true).build());
+    try {
+      return new BulkProvisioningPipeline(tenant,
+          idGen,
+          userRepository,
+          roleRepository,
+          groupRepository,
+          passwordHashing.currentHasher(),
+          hashPool,
+          domainBus,
+          Integer.getInteger(BATCH_SIZE_PROP_KEY, 500),
+          listener == null ? BulkProvisioningListener.NONE : listener).run(descriptors);
+    } finally {
+      hashPool.shutdownNow();
+    }
+  }
+
   private void registerAdministratorFor(
       Tenant tenant,
       FullName administratorName,
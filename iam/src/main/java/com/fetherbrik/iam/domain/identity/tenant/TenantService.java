@@ -9,6 +9,7 @@ import com.fetherbrik.iam.domain.access.role.Role;
 import com.fetherbrik.iam.domain.access.role.event.RoleProvisioned;
 import com.fetherbrik.iam.domain.identity.Enablement;
 import com.fetherbrik.iam.domain.identity.group.Group;
+import com.fetherbrik.iam.domain.identity.password.PasswordHashingService;
 import com.fetherbrik.iam.domain.identity.user.User;
 import com.fetherbrik.iam.domain.identity.group.event.GroupProvisioned;
 import com.fetherbrik.iam.domain.identity.tenant.event.TenantActivated;
@@ -17,7 +18,6 @@ import com.google.common.eventbus.EventBus;
 
 import javax.inject.Inject;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.Set;
 
 /**
@@ -27,11 +27,13 @@ public class TenantService {
 
   private final IdGenerator idGen;
   private final EventBus domainBus;
+  private final PasswordHashingService passwordHashing;
 
   @Inject
-  private TenantService(IdGenerator idGen, EventBus domainBus) {
+  private TenantService(IdGenerator idGen, EventBus domainBus, PasswordHashingService passwordHashing) {
     this.idGen = idGen;
     this.domainBus = domainBus;
+    this.passwordHashing = passwordHashing;
   }
 
   public Tenant activate(Tenant target) {
@@ -103,10 +105,11 @@ public class TenantService {
     User user;
 
     if (target.isRegistrationAvailableThrough(invitationIdentifier)) {
+      User.checkAcceptablePassword(username, passwordClearText);
       user = new User.Builder()
           .tenantId(target.id)
           .username(username)
-          .passwordClearText(passwordClearText)
+          .passwordHash(passwordHashing.hashAndWait(passwordClearText))
           .enablement(enablement)
           .userPermissions(Collections.<RevocablePermission>emptySet())
           .create(idGen);
@@ -120,9 +123,7 @@ public class TenantService {
     RegistrationInvitation invitation = target.invitation(invitationId);
     Tenant result = target;
     if (invitation != null) {
-      Set<RegistrationInvitation> set = new HashSet<>(target.registrationInvitations);
-      set.remove(invitation);
-      result = target.copy().registrationInvitations(set).build();
+      result = target.copy().registrationInvitations(target.registrationInvitations().minus(invitation)).build();
     }
     return result;
   }
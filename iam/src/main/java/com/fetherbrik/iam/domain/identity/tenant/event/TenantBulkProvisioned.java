@@ -0,0 +1,56 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+package com.fetherbrik.iam.domain.identity.tenant.event;
+
+import com.fetherbrik.core.guava.DomainEvent;
+import com.fetherbrik.iam.domain.identity.tenant.TenantId;
+import com.google.common.collect.ImmutableList;
+
+import java.util.List;
+
+/**
+ * Posted once a bulk import has finished writing, in place of the role, group and membership events for each item.
+ * Any of the tenant's roles, groups and memberships may have changed.
+ *
+ * @author Geoff M. Granum
+ */
+public class TenantBulkProvisioned extends DomainEvent {
+
+  private final TenantId tenantId;
+  private final List<String> roleNames;
+  private final List<String> groupNames;
+  private final long userCount;
+
+  public TenantBulkProvisioned(TenantId tenantId, List<String> roleNames, List<String> groupNames, long userCount) {
+    super();
+    this.tenantId = tenantId;
+    this.roleNames = ImmutableList.copyOf(roleNames);
+    this.groupNames = ImmutableList.copyOf(groupNames);
+    this.userCount = userCount;
+  }
+
+  public TenantId tenantId() {
+    return this.tenantId;
+  }
+
+  /**
+   * @return The roles created or given new members by the import.
+   */
+  public List<String> roleNames() {
+    return this.roleNames;
+  }
+
+  /**
+   * @return The groups created or given new members by the import.
+   */
+  public List<String> groupNames() {
+    return this.groupNames;
+  }
+
+  public long userCount() {
+    return this.userCount;
+  }
+}
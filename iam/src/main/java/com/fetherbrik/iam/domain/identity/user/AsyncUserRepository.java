@@ -0,0 +1,49 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+package com.fetherbrik.iam.domain.identity.user;
+
+import com.fetherbrik.iam.domain.identity.tenant.TenantId;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+
+/**
+ * The non blocking form of {@link UserRepository}. Each stage completes once the repository has answered, on a thread
+ * of the implementation's choosing, so callers can start several lookups and wait for them together.
+ *
+ * @author Geoff M. Granum
+ */
+public interface AsyncUserRepository {
+
+  /**
+   * @return `repository` itself if it is already async, otherwise a view that calls it on `executor`.
+   */
+  static AsyncUserRepository of(UserRepository repository, Executor executor) {
+    if (repository instanceof AsyncUserRepository) {
+      return (AsyncUserRepository) repository;
+    }
+    return new ExecutorAsyncUserRepository(repository, executor);
+  }
+
+  CompletionStage<Void> addAsync(TenantId tenantId, User user);
+
+  CompletionStage<Void> addAllAsync(TenantId tenantId, Collection<User> users);
+
+  CompletionStage<Void> updateAsync(User user);
+
+  CompletionStage<Void> removeAsync(TenantId tenantId, User user);
+
+  CompletionStage<Optional<User>> getAsync(TenantId tenantId, UserId userId);
+
+  CompletionStage<Optional<User>> getAsync(TenantId tenantId, String uniquelyNamedUser);
+
+  CompletionStage<List<User>> getAsync(TenantId tenantId);
+
+  CompletionStage<Optional<User>> getUserForUniqueUsernameAsync(String username);
+}
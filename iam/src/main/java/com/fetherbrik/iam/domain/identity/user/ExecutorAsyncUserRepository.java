@@ -0,0 +1,71 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+package com.fetherbrik.iam.domain.identity.user;
+
+import com.fetherbrik.iam.domain.identity.tenant.TenantId;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+
+/**
+ * Calls a blocking UserRepository on an executor.
+ *
+ * @author Geoff M. Granum
+ */
+final class ExecutorAsyncUserRepository implements AsyncUserRepository {
+
+  private final UserRepository repository;
+  private final Executor executor;
+
+  ExecutorAsyncUserRepository(UserRepository repository, Executor executor) {
+    this.repository = repository;
+    this.executor = executor;
+  }
+
+  @Override
+  public CompletionStage<Void> addAsync(TenantId tenantId, User user) {
+    return CompletableFuture.runAsync(() -> repository.add(tenantId, user), executor);
+  }
+
+  @Override
+  public CompletionStage<Void> addAllAsync(TenantId tenantId, Collection<User> users) {
+    return CompletableFuture.runAsync(() -> repository.addAll(tenantId, users), executor);
+  }
+
+  @Override
+  public CompletionStage<Void> updateAsync(User user) {
+    return CompletableFuture.runAsync(() -> repository.update(user), executor);
+  }
+
+  @Override
+  public CompletionStage<Void> removeAsync(TenantId tenantId, User user) {
+    return CompletableFuture.runAsync(() -> repository.remove(tenantId, user), executor);
+  }
+
+  @Override
+  public CompletionStage<Optional<User>> getAsync(TenantId tenantId, UserId userId) {
+    return CompletableFuture.supplyAsync(() -> repository.get(tenantId, userId), executor);
+  }
+
+  @Override
+  public CompletionStage<Optional<User>> getAsync(TenantId tenantId, String uniquelyNamedUser) {
+    return CompletableFuture.supplyAsync(() -> repository.get(tenantId, uniquelyNamedUser), executor);
+  }
+
+  @Override
+  public CompletionStage<List<User>> getAsync(TenantId tenantId) {
+    return CompletableFuture.supplyAsync(() -> repository.get(tenantId), executor);
+  }
+
+  @Override
+  public CompletionStage<Optional<User>> getUserForUniqueUsernameAsync(String username) {
+    return CompletableFuture.supplyAsync(() -> repository.getUserForUniqueUsername(username), executor);
+  }
+}
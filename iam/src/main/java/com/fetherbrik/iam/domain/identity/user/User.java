@@ -10,13 +10,11 @@ import com.fetherbrik.core.persistence.id.IdGenerator;
 import com.fetherbrik.core.persistence.id.Identified;
 import com.fetherbrik.iam.domain.access.RevocablePermission;
 import com.fetherbrik.iam.domain.identity.Enablement;
-import com.fetherbrik.iam.domain.identity.EncryptionToken;
 import com.fetherbrik.iam.domain.identity.group.Group;
 import com.fetherbrik.iam.domain.identity.group.GroupMember;
 import com.fetherbrik.iam.domain.identity.group.GroupMemberType;
 import com.fetherbrik.iam.domain.identity.tenant.TenantId;
 import com.google.common.base.Objects;
-import org.apache.commons.lang3.StringUtils;
 
 import java.util.Set;
 
@@ -89,6 +87,15 @@ public class User implements Identified {
     return Objects.equal(this.id, other.id);
   }
 
+  /**
+   * @throws IllegalArgumentException if the password is too weak, or is the same as the username.
+   */
+  public static void checkAcceptablePassword(String username, String passwordClearText) {
+    Verify.isNotEmpty(passwordClearText, "Password is required.");
+    Verify.isFalse(BasicPasswordService.isWeak(passwordClearText), "The password is too weak.");
+    Verify.isNotEqual(username, passwordClearText, "Username and password cannot be the same.");
+  }
+
   public User.Builder copy() {
     return new Builder().copyOf(this);
   }
@@ -119,8 +126,6 @@ public class User implements Identified {
     private Enablement enablement;
     // internal
     private Set<RevocablePermission> revocablePermissions;
-    private transient String passwordClearText;
-    private transient boolean isCreate;
 
     /*
           User user = new User.Builder()
@@ -177,11 +182,10 @@ public class User implements Identified {
       return this;
     }
 
-    public Builder passwordClearText(String passwordClearText) {
-      this.passwordClearText = passwordClearText;
-      return this;
-    }
-
+    /**
+     * @param password An encoded hash from PasswordHashingService, or an original SHA-512 hex hash, which also
+     *                 requires the salt.
+     */
     public Builder passwordHash(String password) {
       this.passwordHash = password;
       return this;
@@ -202,11 +206,6 @@ public class User implements Identified {
       return this;
     }
 
-    public Builder create() {
-      this.isCreate = true;
-      return this;
-    }
-
     public User create(IdGenerator idGen) {
       this.id((new UserId(idGen.next())));
       return build();
@@ -219,35 +218,12 @@ public class User implements Identified {
       hasLength(username, 1, 100, "Username must be 100 characters or less.");
       Verify.isNotNull(enablement, "The enablement is required.");
       Verify.isNotNull(revocablePermissions, "Permissions are required, but may be empty.");
-      if (isCreate) {
-        EncryptionToken token = this.protectPassword(username, passwordClearText);
-        this.passwordHash = token.hashAsHexString;
-        this.saltHex = token.saltAsHexString;
-        isCreate = false;
-      } else if (StringUtils.isNotEmpty(passwordClearText)) {
+      isNotEmpty(passwordHash, "Password hash is required.");
+      if (!passwordHash.startsWith("$")) {
         isNotEmpty(saltHex, "User's password salt is required.");
-        EncryptionToken token = EncryptionToken.fromPasswordClearText(passwordClearText, saltHex);
-        passwordHash = token.hashAsHexString;
       }
       return new User(this);
     }
-
-    private EncryptionToken protectPassword(String username, String passwordClearText) {
-      Verify.isNotEmpty(passwordClearText, "Password is required.");
-      this.checkPasswordNotWeak(passwordClearText);
-      this.checkUsernamePasswordNotSame(username, passwordClearText);
-      return EncryptionToken.fromPasswordClearText(passwordClearText);
-    }
-
-    private void checkUsernamePasswordNotSame(String username, String passwordClearText) {
-      Verify.isNotEqual(username,
-          passwordClearText,
-          "Username and password cannot be the same.");
-    }
-
-    private void checkPasswordNotWeak(String passwordClearText) {
-      Verify.isFalse(BasicPasswordService.isWeak(passwordClearText), "The password is too weak.");
-    }
   }
 }
  
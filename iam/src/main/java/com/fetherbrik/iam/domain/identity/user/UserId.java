@@ -16,5 +16,9 @@ public final class UserId extends TypedId<User> implements MemberOfGroupId {
   public UserId(BigInteger value) {
     super(value);
   }
+
+  public UserId(long hi, long lo) {
+    super(hi, lo);
+  }
 }
  
@@ -8,6 +8,7 @@ package com.fetherbrik.iam.domain.identity.user;
 import com.fetherbrik.iam.domain.ApplicationRepository;
 import com.fetherbrik.iam.domain.identity.tenant.TenantId;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -18,6 +19,15 @@ public interface UserRepository extends ApplicationRepository {
 
   void add(TenantId tenantId, User user);
 
+  /**
+   * Implementations should override this to write the users in one round trip; this default adds them one at a time.
+   */
+  default void addAll(TenantId tenantId, Collection<User> users) {
+    for (User user : users) {
+      add(tenantId, user);
+    }
+  }
+
   void update(User user);
 
   void remove(TenantId tenantId, User user);
@@ -29,7 +39,4 @@ public interface UserRepository extends ApplicationRepository {
   List<User> get(TenantId tenantId);
 
   Optional<User> getUserForUniqueUsername(String username);
-
-  Optional<User> withCredentials(TenantId tenantId, String uniqueUsername, String passwordPlaintext);
 }
- 
@@ -4,11 +4,14 @@ import com.fetherbrik.core.base.Verify;
 import com.fetherbrik.iam.domain.identity.user.event.UserEnablementChanged;
 import com.fetherbrik.iam.domain.identity.user.event.UserPasswordChanged;
 import com.fetherbrik.iam.domain.identity.Enablement;
-import com.fetherbrik.iam.domain.identity.EncryptionToken;
+import com.fetherbrik.iam.domain.identity.password.PasswordCheck;
+import com.fetherbrik.iam.domain.identity.password.PasswordHashingService;
+import com.fetherbrik.iam.domain.identity.tenant.TenantId;
 import com.google.common.eventbus.EventBus;
 
 import javax.annotation.concurrent.Immutable;
 import javax.inject.Inject;
+import java.util.Optional;
 
 import static com.fetherbrik.core.base.Verify.isNotEmpty;
 
@@ -16,22 +19,50 @@ import static com.fetherbrik.core.base.Verify.isNotEmpty;
 public final class UserService {
 
   private final EventBus domainBus;
+  private final PasswordHashingService passwordHashing;
+  private final UserRepository userRepository;
 
   @Inject
-  private UserService(EventBus domainBus) {
+  private UserService(EventBus domainBus, PasswordHashingService passwordHashing, UserRepository userRepository) {
     this.domainBus = domainBus;
+    this.passwordHashing = passwordHashing;
+    this.userRepository = userRepository;
+  }
+
+  /**
+   * If the password matches but its stored hash was made with an older algorithm or cost, the hash is upgraded and the
+   * user updated before it is returned. An unknown username is checked against a dummy hash, so that it takes as long
+   * to reject as a wrong password.
+   */
+  public Optional<User> withCredentials(TenantId tenantId, String uniqueUsername, String passwordClearText) {
+    Optional<User> user = userRepository.get(tenantId, uniqueUsername);
+    if (!user.isPresent()) {
+      passwordHashing.checkUnknownUserAndWait(passwordClearText);
+      return user;
+    }
+    PasswordCheck check = passwordHashing.checkAndWait(user.get(), passwordClearText);
+    if (!check.matches) {
+      return Optional.empty();
+    }
+    if (check.rehash.isPresent()) {
+      User upgraded = user.get().copy().passwordHash(check.rehash.get()).saltHex(null).build();
+      userRepository.update(upgraded);
+      return Optional.of(upgraded);
+    }
+    return user;
   }
 
   public User changePassword(User user, String currentPasswordClearText, String newPasswordClearText) {
     isNotEmpty(currentPasswordClearText, "Current password is required.");
     isNotEmpty(newPasswordClearText, "New password is required.");
-    Verify.equal(user.passwordHash,
-        EncryptionToken.fromPasswordClearText(currentPasswordClearText, user.saltHex).hashAsHexString,
-        "Passwords do not match.");
+    PasswordCheck check = passwordHashing.checkAndWait(user, currentPasswordClearText);
+    Verify.isTrue(check.matches, "Passwords do not match.");
+    User.checkAcceptablePassword(user.username, newPasswordClearText);
 
     User newUser = new User.Builder()
         .copyOf(user)
-        .passwordClearText(newPasswordClearText)
+        .passwordHash(passwordHashing.hashAndWait(newPasswordClearText))
+        .saltHex(null)
         .build();
     domainBus.post(new UserPasswordChanged(newUser.tenantId, newUser.username));
     return user;
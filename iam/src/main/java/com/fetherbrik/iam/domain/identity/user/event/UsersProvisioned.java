@@ -0,0 +1,37 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+package com.fetherbrik.iam.domain.identity.user.event;
+
+import com.fetherbrik.core.guava.DomainEvent;
+import com.fetherbrik.iam.domain.identity.tenant.TenantId;
+import com.google.common.collect.ImmutableList;
+
+import java.util.List;
+
+/**
+ * One batch of users added by a bulk import, in place of a UserRegistered event for each.
+ *
+ * @author Geoff M. Granum
+ */
+public class UsersProvisioned extends DomainEvent {
+
+  private final TenantId tenantId;
+  private final List<String> usernames;
+
+  public UsersProvisioned(TenantId tenantId, List<String> usernames) {
+    super();
+    this.tenantId = tenantId;
+    this.usernames = ImmutableList.copyOf(usernames);
+  }
+
+  public TenantId tenantId() {
+    return this.tenantId;
+  }
+
+  public List<String> usernames() {
+    return this.usernames;
+  }
+}
@@ -0,0 +1,198 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+package com.fetherbrik.iam.infrastructure.memory;
+
+import com.fetherbrik.core.base.VersionInfo;
+import com.fetherbrik.core.base.Verify;
+import com.fetherbrik.iam.domain.identity.group.AsyncGroupRepository;
+import com.fetherbrik.iam.domain.identity.group.Group;
+import com.fetherbrik.iam.domain.identity.group.GroupId;
+import com.fetherbrik.iam.domain.identity.group.GroupMember;
+import com.fetherbrik.iam.domain.identity.group.GroupRepository;
+import com.fetherbrik.iam.domain.identity.tenant.TenantId;
+import com.fetherbrik.iam.domain.identity.user.UserId;
+
+import javax.inject.Singleton;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A GroupRepository held in memory, for tests and for running without a database. The async methods complete before
+ * they return.
+ *
+ * @author Geoff M. Granum
+ */
+@Singleton
+public class InMemoryGroupRepository implements GroupRepository, AsyncGroupRepository {
+
+  private final ConcurrentMap<GroupId, Group> groups = new ConcurrentHashMap<>();
+
+  @Override
+  public String getName() {
+    return "groups";
+  }
+
+  @Override
+  public void drop() {
+    groups.clear();
+  }
+
+  @Override
+  public void initialize() {
+  }
+
+  @Override
+  public void migrate(VersionInfo versionInfo, VersionInfo codeVersion) {
+  }
+
+  @Override
+  public synchronized void add(Group group) {
+    Verify.isFalse(groups.containsKey(group.id), "Group %s already exists.", group.id);
+    Verify.isFalse(named(group.tenantId, group.name).isPresent(),
+        "Group %s already exists in tenant %s.",
+        group.name,
+        group.tenantId);
+    groups.put(group.id, group);
+  }
+
+  @Override
+  public synchronized void addAll(Collection<Group> groups) {
+    for (Group group : groups) {
+      add(group);
+    }
+  }
+
+  @Override
+  public void update(Group group) {
+    Verify.isNotNull(groups.replace(group.id, group), "Group " + group.id + " does not exist.");
+  }
+
+  @Override
+  public void addMembers(Group group, Collection<GroupMember> members) {
+    Verify.isNotNull(groups.computeIfPresent(group.id, (id, stored) -> {
+      Group.Builder builder = stored.copy();
+      members.forEach(builder::addGroupMember);
+      return builder.build();
+    }), "Group " + group.id + " does not exist.");
+  }
+
+  @Override
+  public Set<Group> allGroups(TenantId tenantId) {
+    Set<Group> result = new HashSet<>();
+    for (Group group : groups.values()) {
+      if (group.tenantId.equals(tenantId)) {
+        result.add(group);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @return The groups that list the user as a direct member.
+   */
+  @Override
+  public Set<Group> allGroups(UserId id) {
+    Set<Group> result = new HashSet<>();
+    for (Group group : groups.values()) {
+      for (GroupMember member : group.groupMembers()) {
+        if (member.isUserType() && member.memberOfGroupId().equals(id)) {
+          result.add(group);
+          break;
+        }
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public Optional<Group> named(TenantId tenantId, String name) {
+    for (Group group : groups.values()) {
+      if (group.tenantId.equals(tenantId) && group.name.equals(name)) {
+        return Optional.of(group);
+      }
+    }
+    return Optional.empty();
+  }
+
+  @Override
+  public Optional<Group> get(GroupId groupId) {
+    return Optional.ofNullable(groups.get(groupId));
+  }
+
+  @Override
+  public Map<GroupId, Group> getAll(Collection<GroupId> groupIds) {
+    Map<GroupId, Group> result = new HashMap<>();
+    for (GroupId groupId : groupIds) {
+      Group group = groups.get(groupId);
+      if (group != null) {
+        result.put(groupId, group);
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public void remove(Group group) {
+    groups.remove(group.id);
+  }
+
+  @Override
+  public CompletionStage<Void> addAsync(Group group) {
+    return Stages.run(() -> add(group));
+  }
+
+  @Override
+  public CompletionStage<Void> addAllAsync(Collection<Group> groups) {
+    return Stages.run(() -> addAll(groups));
+  }
+
+  @Override
+  public CompletionStage<Void> updateAsync(Group group) {
+    return Stages.run(() -> update(group));
+  }
+
+  @Override
+  public CompletionStage<Void> addMembersAsync(Group group, Collection<GroupMember> members) {
+    return Stages.run(() -> addMembers(group, members));
+  }
+
+  @Override
+  public CompletionStage<Set<Group>> allGroupsAsync(TenantId tenantId) {
+    return Stages.of(() -> allGroups(tenantId));
+  }
+
+  @Override
+  public CompletionStage<Set<Group>> allGroupsAsync(UserId id) {
+    return Stages.of(() -> allGroups(id));
+  }
+
+  @Override
+  public CompletionStage<Optional<Group>> namedAsync(TenantId tenantId, String name) {
+    return Stages.of(() -> named(tenantId, name));
+  }
+
+  @Override
+  public CompletionStage<Optional<Group>> getAsync(GroupId groupId) {
+    return Stages.of(() -> get(groupId));
+  }
+
+  @Override
+  public CompletionStage<Map<GroupId, Group>> getAllAsync(Collection<GroupId> groupIds) {
+    return Stages.of(() -> getAll(groupIds));
+  }
+
+  @Override
+  public CompletionStage<Void> removeAsync(Group group) {
+    return Stages.run(() -> remove(group));
+  }
+}
@@ -0,0 +1,167 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+package com.fetherbrik.iam.infrastructure.memory;
+
+import com.fetherbrik.core.base.VersionInfo;
+import com.fetherbrik.core.base.Verify;
+import com.fetherbrik.iam.domain.access.role.AsyncRoleRepository;
+import com.fetherbrik.iam.domain.access.role.Role;
+import com.fetherbrik.iam.domain.access.role.RoleId;
+import com.fetherbrik.iam.domain.access.role.RoleRepository;
+import com.fetherbrik.iam.domain.identity.group.Group;
+import com.fetherbrik.iam.domain.identity.group.GroupMember;
+import com.fetherbrik.iam.domain.identity.tenant.TenantId;
+import com.fetherbrik.iam.domain.identity.user.User;
+
+import javax.inject.Singleton;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A RoleRepository held in memory, for tests and for running without a database. The async methods complete before
+ * they return.
+ *
+ * @author Geoff M. Granum
+ */
+@Singleton
+public class InMemoryRoleRepository implements RoleRepository, AsyncRoleRepository {
+
+  private final ConcurrentMap<RoleId, Role> roles = new ConcurrentHashMap<>();
+
+  @Override
+  public String getName() {
+    return "roles";
+  }
+
+  @Override
+  public void drop() {
+    roles.clear();
+  }
+
+  @Override
+  public void initialize() {
+  }
+
+  @Override
+  public void migrate(VersionInfo versionInfo, VersionInfo codeVersion) {
+  }
+
+  @Override
+  public synchronized void add(Role role) {
+    Verify.isFalse(roles.containsKey(role.id), "Role %s already exists.", role.id);
+    Verify.isFalse(named(role.tenantId, role.name).isPresent(),
+        "Role %s already exists in tenant %s.",
+        role.name,
+        role.tenantId);
+    roles.put(role.id, role);
+  }
+
+  @Override
+  public synchronized void addAll(Collection<Role> roles) {
+    for (Role role : roles) {
+      add(role);
+    }
+  }
+
+  @Override
+  public void update(Role role) {
+    Verify.isNotNull(roles.replace(role.id, role), "Role " + role.id + " does not exist.");
+  }
+
+  @Override
+  public void addGroupMembers(Role role, Collection<GroupMember> members) {
+    Verify.isNotNull(roles.computeIfPresent(role.id, (id, stored) -> {
+      Group.Builder group = stored.group.copy();
+      members.forEach(group::addGroupMember);
+      return stored.copy().group(group.build()).build();
+    }), "Role " + role.id + " does not exist.");
+  }
+
+  @Override
+  public Set<Role> allRoles(TenantId tenantId) {
+    Set<Role> result = new HashSet<>();
+    for (Role role : roles.values()) {
+      if (role.tenantId.equals(tenantId)) {
+        result.add(role);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @return The roles whose group lists the user as a direct member.
+   */
+  @Override
+  public Set<Role> rolesForUser(User user) {
+    Set<Role> result = new HashSet<>();
+    for (Role role : roles.values()) {
+      if (role.tenantId.equals(user.tenantId) && role.group.groupMembers().contains(user.toGroupMember(role.group))) {
+        result.add(role);
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public void remove(Role role) {
+    roles.remove(role.id);
+  }
+
+  @Override
+  public Optional<Role> named(TenantId tenantId, String roleName) {
+    for (Role role : roles.values()) {
+      if (role.tenantId.equals(tenantId) && role.name.equals(roleName)) {
+        return Optional.of(role);
+      }
+    }
+    return Optional.empty();
+  }
+
+  @Override
+  public CompletionStage<Void> addAsync(Role role) {
+    return Stages.run(() -> add(role));
+  }
+
+  @Override
+  public CompletionStage<Void> addAllAsync(Collection<Role> roles) {
+    return Stages.run(() -> addAll(roles));
+  }
+
+  @Override
+  public CompletionStage<Void> updateAsync(Role role) {
+    return Stages.run(() -> update(role));
+  }
+
+  @Override
+  public CompletionStage<Void> addGroupMembersAsync(Role role, Collection<GroupMember> members) {
+    return Stages.run(() -> addGroupMembers(role, members));
+  }
+
+  @Override
+  public CompletionStage<Set<Role>> allRolesAsync(TenantId tenantId) {
+    return Stages.of(() -> allRoles(tenantId));
+  }
+
+  @Override
+  public CompletionStage<Set<Role>> rolesForUserAsync(User user) {
+    return Stages.of(() -> rolesForUser(user));
+  }
+
+  @Override
+  public CompletionStage<Void> removeAsync(Role role) {
+    return Stages.run(() -> remove(role));
+  }
+
+  @Override
+  public CompletionStage<Optional<Role>> namedAsync(TenantId tenantId, String roleName) {
+    return Stages.of(() -> named(tenantId, roleName));
+  }
+}
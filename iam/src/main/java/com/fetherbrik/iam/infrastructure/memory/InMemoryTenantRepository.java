@@ -0,0 +1,134 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+package com.fetherbrik.iam.infrastructure.memory;
+
+import com.fetherbrik.core.base.VersionInfo;
+import com.fetherbrik.core.base.Verify;
+import com.fetherbrik.iam.domain.identity.tenant.AsyncTenantRepository;
+import com.fetherbrik.iam.domain.identity.tenant.Tenant;
+import com.fetherbrik.iam.domain.identity.tenant.TenantId;
+import com.fetherbrik.iam.domain.identity.tenant.TenantRepository;
+
+import javax.inject.Singleton;
+import java.util.Optional;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A TenantRepository held in memory, for tests and for running without a database. The async methods complete before
+ * they return.
+ *
+ * @author Geoff M. Granum
+ */
+@Singleton
+public class InMemoryTenantRepository implements TenantRepository, AsyncTenantRepository {
+
+  private final ConcurrentMap<TenantId, Tenant> tenants = new ConcurrentHashMap<>();
+
+  @Override
+  public String getName() {
+    return "tenants";
+  }
+
+  @Override
+  public void drop() {
+    tenants.clear();
+  }
+
+  @Override
+  public void initialize() {
+  }
+
+  @Override
+  public void migrate(VersionInfo versionInfo, VersionInfo codeVersion) {
+  }
+
+  @Override
+  public synchronized void add(Tenant tenant) {
+    Verify.isFalse(tenants.containsKey(tenant.id), "Tenant %s already exists.", tenant.id);
+    Verify.isFalse(get(tenant.name).isPresent(), "Tenant %s already exists.", tenant.name);
+    tenants.put(tenant.id, tenant);
+  }
+
+  @Override
+  public void put(Tenant tenant) {
+    tenants.put(tenant.id, tenant);
+  }
+
+  @Override
+  public Optional<Tenant> get(TenantId tenantId) {
+    return Optional.ofNullable(tenants.get(tenantId));
+  }
+
+  @Override
+  public Optional<Tenant> get(String tenantName) {
+    for (Tenant tenant : tenants.values()) {
+      if (tenant.name.equals(tenantName)) {
+        return Optional.of(tenant);
+      }
+    }
+    return Optional.empty();
+  }
+
+  /**
+   * @return The id, or null if there is no such tenant.
+   */
+  @Override
+  public TenantId tenantIdForTenantNamed(String tenantName) {
+    return get(tenantName).map(tenant -> tenant.id).orElse(null);
+  }
+
+  @Override
+  public void remove(Tenant tenant) {
+    tenants.remove(tenant.id);
+  }
+
+  @Override
+  public Optional<Tenant> getSystemTenant() {
+    for (Tenant tenant : tenants.values()) {
+      if (Boolean.TRUE.equals(tenant.systemTenant)) {
+        return Optional.of(tenant);
+      }
+    }
+    return Optional.empty();
+  }
+
+  @Override
+  public CompletionStage<Void> addAsync(Tenant tenant) {
+    return Stages.run(() -> add(tenant));
+  }
+
+  @Override
+  public CompletionStage<Void> putAsync(Tenant tenant) {
+    return Stages.run(() -> put(tenant));
+  }
+
+  @Override
+  public CompletionStage<Optional<Tenant>> getAsync(TenantId tenantId) {
+    return Stages.of(() -> get(tenantId));
+  }
+
+  @Override
+  public CompletionStage<Optional<Tenant>> getAsync(String tenantName) {
+    return Stages.of(() -> get(tenantName));
+  }
+
+  @Override
+  public CompletionStage<TenantId> tenantIdForTenantNamedAsync(String tenantName) {
+    return Stages.of(() -> tenantIdForTenantNamed(tenantName));
+  }
+
+  @Override
+  public CompletionStage<Void> removeAsync(Tenant tenant) {
+    return Stages.run(() -> remove(tenant));
+  }
+
+  @Override
+  public CompletionStage<Optional<Tenant>> getSystemTenantAsync() {
+    return Stages.of(this::getSystemTenant);
+  }
+}
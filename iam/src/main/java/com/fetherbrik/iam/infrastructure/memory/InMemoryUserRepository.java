@@ -0,0 +1,162 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+package com.fetherbrik.iam.infrastructure.memory;
+
+import com.fetherbrik.core.base.VersionInfo;
+import com.fetherbrik.core.base.Verify;
+import com.fetherbrik.iam.domain.identity.tenant.TenantId;
+import com.fetherbrik.iam.domain.identity.user.AsyncUserRepository;
+import com.fetherbrik.iam.domain.identity.user.User;
+import com.fetherbrik.iam.domain.identity.user.UserId;
+import com.fetherbrik.iam.domain.identity.user.UserRepository;
+
+import javax.inject.Singleton;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A UserRepository held in memory, for tests and for running without a database. Reads don't lock; writes are
+ * serialized so that the id and username indexes agree. The async methods complete before they return.
+ *
+ * @author Geoff M. Granum
+ */
+@Singleton
+public class InMemoryUserRepository implements UserRepository, AsyncUserRepository {
+
+  private final ConcurrentMap<UserId, User> usersById = new ConcurrentHashMap<>();
+  private final ConcurrentMap<TenantId, ConcurrentMap<String, User>> usersByTenant = new ConcurrentHashMap<>();
+
+  @Override
+  public String getName() {
+    return "users";
+  }
+
+  @Override
+  public synchronized void drop() {
+    usersById.clear();
+    usersByTenant.clear();
+  }
+
+  @Override
+  public void initialize() {
+  }
+
+  @Override
+  public void migrate(VersionInfo versionInfo, VersionInfo codeVersion) {
+  }
+
+  @Override
+  public synchronized void add(TenantId tenantId, User user) {
+    Verify.equal(user.tenantId, tenantId, "Wrong tenant for this user.");
+    Verify.isFalse(usersById.containsKey(user.id), "User %s already exists.", user.id);
+    Verify.isFalse(tenantUsers(tenantId).containsKey(user.username),
+        "User %s already exists in tenant %s.",
+        user.username,
+        tenantId);
+    usersById.put(user.id, user);
+    tenantUsers(tenantId).put(user.username, user);
+  }
+
+  @Override
+  public synchronized void addAll(TenantId tenantId, Collection<User> users) {
+    for (User user : users) {
+      add(tenantId, user);
+    }
+  }
+
+  @Override
+  public synchronized void update(User user) {
+    User existing = usersById.get(user.id);
+    Verify.isNotNull(existing, "User " + user.id + " does not exist.");
+    tenantUsers(existing.tenantId).remove(existing.username);
+    usersById.put(user.id, user);
+    tenantUsers(user.tenantId).put(user.username, user);
+  }
+
+  @Override
+  public synchronized void remove(TenantId tenantId, User user) {
+    User existing = usersById.remove(user.id);
+    if (existing != null) {
+      tenantUsers(existing.tenantId).remove(existing.username);
+    }
+  }
+
+  @Override
+  public Optional<User> get(TenantId tenantId, UserId userId) {
+    return Optional.ofNullable(usersById.get(userId)).filter(user -> user.tenantId.equals(tenantId));
+  }
+
+  @Override
+  public Optional<User> get(TenantId tenantId, String uniquelyNamedUser) {
+    return Optional.ofNullable(tenantUsers(tenantId).get(uniquelyNamedUser));
+  }
+
+  @Override
+  public List<User> get(TenantId tenantId) {
+    return new ArrayList<>(tenantUsers(tenantId).values());
+  }
+
+  @Override
+  public Optional<User> getUserForUniqueUsername(String username) {
+    for (Map<String, User> users : usersByTenant.values()) {
+      User user = users.get(username);
+      if (user != null) {
+        return Optional.of(user);
+      }
+    }
+    return Optional.empty();
+  }
+
+  @Override
+  public CompletionStage<Void> addAsync(TenantId tenantId, User user) {
+    return Stages.run(() -> add(tenantId, user));
+  }
+
+  @Override
+  public CompletionStage<Void> addAllAsync(TenantId tenantId, Collection<User> users) {
+    return Stages.run(() -> addAll(tenantId, users));
+  }
+
+  @Override
+  public CompletionStage<Void> updateAsync(User user) {
+    return Stages.run(() -> update(user));
+  }
+
+  @Override
+  public CompletionStage<Void> removeAsync(TenantId tenantId, User user) {
+    return Stages.run(() -> remove(tenantId, user));
+  }
+
+  @Override
+  public CompletionStage<Optional<User>> getAsync(TenantId tenantId, UserId userId) {
+    return Stages.of(() -> get(tenantId, userId));
+  }
+
+  @Override
+  public CompletionStage<Optional<User>> getAsync(TenantId tenantId, String uniquelyNamedUser) {
+    return Stages.of(() -> get(tenantId, uniquelyNamedUser));
+  }
+
+  @Override
+  public CompletionStage<List<User>> getAsync(TenantId tenantId) {
+    return Stages.of(() -> get(tenantId));
+  }
+
+  @Override
+  public CompletionStage<Optional<User>> getUserForUniqueUsernameAsync(String username) {
+    return Stages.of(() -> getUserForUniqueUsername(username));
+  }
+
+  private ConcurrentMap<String, User> tenantUsers(TenantId tenantId) {
+    return usersByTenant.computeIfAbsent(tenantId, id -> new ConcurrentHashMap<>());
+  }
+}
@@ -0,0 +1,36 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+package com.fetherbrik.iam.infrastructure.memory;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Supplier;
+
+/**
+ * Completes a stage with the result of a call made on the caller's thread, failing it rather than throwing.
+ *
+ * @author Geoff M. Granum
+ */
+final class Stages {
+
+  private Stages() {
+  }
+
+  static <T> CompletionStage<T> of(Supplier<T> call) {
+    try {
+      return CompletableFuture.completedFuture(call.get());
+    } catch (RuntimeException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+  }
+
+  static CompletionStage<Void> run(Runnable call) {
+    return of(() -> {
+      call.run();
+      return null;
+    });
+  }
+}
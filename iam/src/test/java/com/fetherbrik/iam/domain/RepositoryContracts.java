@@ -0,0 +1,78 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+
+package com.fetherbrik.iam.domain;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+
+import static org.testng.Assert.fail;
+
+/**
+ * Helpers shared by the repository contract tests.
+ *
+ * @author ggranum
+ */
+public final class RepositoryContracts {
+
+  /**
+   * A pool of its own, so that the async views really do hop threads.
+   */
+  public static final Executor Executor = new RepositoryExecutor(2, 64);
+
+  private RepositoryContracts() {
+  }
+
+  /**
+   * @return `repository`, seen only through `repositoryType`: a repository that also implements the async interface
+   * is hidden behind this view, so that AsyncXRepository.of wraps it with an executor.
+   */
+  public static <R> R syncOnly(Class<R> repositoryType, R repository) {
+    Object view = Proxy.newProxyInstance(repositoryType.getClassLoader(),
+        new Class<?>[]{repositoryType},
+        (proxy, method, args) -> {
+          try {
+            return method.invoke(repository, args);
+          } catch (InvocationTargetException e) {
+            throw e.getCause();
+          }
+        });
+    return repositoryType.cast(view);
+  }
+
+  public static <T> T await(CompletionStage<T> stage) {
+    return stage.toCompletableFuture().join();
+  }
+
+  /**
+   * Fails unless `stage` completes exceptionally with a RuntimeException.
+   */
+  public static void awaitFailure(CompletionStage<?> stage) {
+    try {
+      stage.toCompletableFuture().join();
+      fail("Expected the stage to fail.");
+    } catch (CompletionException e) {
+      if (!(e.getCause() instanceof RuntimeException)) {
+        fail("Expected a RuntimeException, but was " + e.getCause());
+      }
+    }
+  }
+
+  /**
+   * Fails unless `call` throws a RuntimeException.
+   */
+  public static void assertRejected(Runnable call) {
+    try {
+      call.run();
+      fail("Expected the call to be rejected.");
+    } catch (RuntimeException expected) {
+      // The exception type is the repository's own; a rejection is all the contract asks for.
+    }
+  }
+}
@@ -0,0 +1,148 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+
+package com.fetherbrik.iam.domain.access;
+
+import com.fetherbrik.iam.domain.access.role.Role;
+import com.fetherbrik.iam.domain.access.role.RoleId;
+import com.fetherbrik.iam.domain.access.role.RoleRepository;
+import com.fetherbrik.iam.domain.access.role.RoleService;
+import com.fetherbrik.iam.domain.identity.Enablement;
+import com.fetherbrik.iam.domain.identity.group.Group;
+import com.fetherbrik.iam.domain.identity.group.GroupId;
+import com.fetherbrik.iam.domain.identity.group.GroupRepository;
+import com.fetherbrik.iam.domain.identity.tenant.TenantId;
+import com.fetherbrik.iam.domain.identity.user.User;
+import com.fetherbrik.iam.domain.identity.user.UserId;
+import com.fetherbrik.iam.domain.identity.user.UserRepository;
+import com.fetherbrik.iam.infrastructure.memory.InMemoryGroupRepository;
+import com.fetherbrik.iam.infrastructure.memory.InMemoryRoleRepository;
+import com.fetherbrik.iam.infrastructure.memory.InMemoryUserRepository;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.eventbus.EventBus;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Collections;
+import java.util.Set;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * @author ggranum
+ */
+public class AuthorizationServiceTest {
+
+  private static final TenantId Tenant = new TenantId(1, 1);
+
+  private InMemoryUserRepository users;
+  private InMemoryRoleRepository roles;
+  private AuthorizationService authorization;
+  private RoleService roleService;
+
+  @BeforeMethod
+  public void setUp() {
+    users = new InMemoryUserRepository();
+    roles = new InMemoryRoleRepository();
+    Injector injector = Guice.createInjector(binder -> {
+      binder.bind(EventBus.class).toInstance(new EventBus());
+      binder.bind(UserRepository.class).toInstance(users);
+      binder.bind(RoleRepository.class).toInstance(roles);
+      binder.bind(GroupRepository.class).toInstance(new InMemoryGroupRepository());
+    });
+    authorization = injector.getInstance(AuthorizationService.class);
+    roleService = injector.getInstance(RoleService.class);
+  }
+
+  @Test
+  public void testPermissionsComeFromTheUsersRoles() {
+    User alice = user("alice", Collections.emptySet());
+    Role viewer = role(1, IamPermission.asRevocable(ImmutableList.of(IamPermission.VIEW_USER), false));
+    roles.add(roleService.assignUser(viewer, alice));
+    roles.add(role(2, IamPermission.asRevocable(ImmutableList.of(IamPermission.PROVISION_USER), false)));
+
+    EffectivePermissions permissions = authorization.effectivePermissionsForUser(alice);
+    assertThat(permissions.isPermitted(IamPermission.VIEW_USER), is(true));
+    assertThat(permissions.isPermitted(IamPermission.PROVISION_USER), is(false));
+    assertThat(authorization.permissionsForUser(alice).size(), is(1));
+  }
+
+  @Test
+  public void testTheUsersOwnPermissionsOverrideTheirRoles() {
+    User alice = user("alice", IamPermission.asRevocable(ImmutableList.of(IamPermission.VIEW_USER), true));
+    Role viewer = role(1,
+        IamPermission.asRevocable(ImmutableList.of(IamPermission.VIEW_USER, IamPermission.VIEW_TENANT), false));
+    roles.add(roleService.assignUser(viewer, alice));
+
+    EffectivePermissions permissions = authorization.effectivePermissionsForUser(alice);
+    assertThat(permissions.isPermitted(IamPermission.VIEW_USER), is(false));
+    assertThat(permissions.isPermitted(IamPermission.VIEW_TENANT), is(true));
+  }
+
+  @Test
+  public void testAssigningARoleInvalidatesTheCachedPermissions() {
+    User alice = user("alice", Collections.emptySet());
+    Role viewer = role(1, IamPermission.asRevocable(ImmutableList.of(IamPermission.VIEW_USER), false));
+    roles.add(viewer);
+    assertThat(authorization.effectivePermissionsForUser(alice).isPermitted(IamPermission.VIEW_USER), is(false));
+    assertThat(authorization.permissionCacheSize(), is(1L));
+
+    roles.update(roleService.assignUser(viewer, alice));
+    assertThat(authorization.permissionCacheSize(), is(0L));
+    assertThat(authorization.effectivePermissionsForUser(alice).isPermitted(IamPermission.VIEW_USER), is(true));
+  }
+
+  @Test
+  public void testEditingARolesPermissionsIsSeenAfterInvalidatingTheTenant() {
+    User alice = user("alice", Collections.emptySet());
+    Role viewer = roleService.assignUser(role(1, Collections.emptySet()), alice);
+    roles.add(viewer);
+    assertThat(authorization.effectivePermissionsForUser(alice).isPermitted(IamPermission.VIEW_USER), is(false));
+
+    RevocablePermission viewUser = new RevocablePermission(IamPermission.VIEW_USER.permission, false);
+    roles.update(viewer.copy().addPermission(viewUser).build());
+    assertThat("Still cached.",
+        authorization.effectivePermissionsForUser(alice).isPermitted(IamPermission.VIEW_USER),
+        is(false));
+    authorization.invalidatePermissions(Tenant);
+    assertThat(authorization.effectivePermissionsForUser(alice).isPermitted(IamPermission.VIEW_USER), is(true));
+  }
+
+  private User user(String username, Set<RevocablePermission> permissions) {
+    User user = new User.Builder()
+        .id(new UserId(3, username.hashCode()))
+        .tenantId(Tenant)
+        .username(username)
+        .passwordHash("$pbkdf2-sha256$i=10000$c2FsdA$aGFzaA")
+        .enablement(Enablement.indefiniteEnablement())
+        .userPermissions(ImmutableSet.copyOf(permissions))
+        .build();
+    users.add(Tenant, user);
+    return user;
+  }
+
+  private static Role role(int id, Set<RevocablePermission> permissions) {
+    return new Role.Builder()
+        .id(new RoleId(1, id))
+        .tenantId(Tenant)
+        .name("role-" + id)
+        .description("A role.")
+        .supportsNesting(true)
+        .group(new Group.Builder()
+            .id(new GroupId(2, id))
+            .tenantId(Tenant)
+            .name("role-group-" + id)
+            .description("The role's group.")
+            .internal(true)
+            .build())
+        .permissions(permissions)
+        .build();
+  }
+}
@@ -0,0 +1,139 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+
+package com.fetherbrik.iam.domain.access;
+
+import com.fetherbrik.iam.domain.access.role.event.GroupAssignedToRole;
+import com.fetherbrik.iam.domain.access.role.event.RoleProvisioned;
+import com.fetherbrik.iam.domain.access.role.event.UserAssignedToRole;
+import com.fetherbrik.iam.domain.access.role.event.UserUnassignedFromRole;
+import com.fetherbrik.iam.domain.identity.group.event.GroupAddedToGroup;
+import com.fetherbrik.iam.domain.identity.group.event.GroupUserAdded;
+import com.fetherbrik.iam.domain.identity.group.event.GroupUserRemoved;
+import com.fetherbrik.iam.domain.identity.tenant.TenantId;
+import com.fetherbrik.iam.domain.identity.user.event.UserEnablementChanged;
+import com.fetherbrik.iam.domain.identity.Enablement;
+import com.google.common.collect.ImmutableList;
+import com.google.common.eventbus.EventBus;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * @author ggranum
+ */
+public class EffectivePermissionCacheTest {
+
+  private static final TenantId Tenant = new TenantId(1, 1);
+  private static final TenantId OtherTenant = new TenantId(1, 2);
+
+  private final PermissionIndex index = new PermissionIndex();
+  private EventBus domainBus;
+  private EffectivePermissionCache cache;
+  private AtomicInteger loads;
+
+  @BeforeMethod
+  public void setUp() {
+    domainBus = new EventBus();
+    cache = new EffectivePermissionCache(100, 60);
+    domainBus.register(cache);
+    loads = new AtomicInteger();
+  }
+
+  @Test
+  public void testLoadsAreCached() {
+    EffectivePermissions first = load(Tenant, "alice");
+    assertThat(load(Tenant, "alice"), sameInstance(first));
+    assertThat(loads.get(), is(1));
+    assertThat(first.isPermitted(IamPermission.VIEW_USER), is(true));
+  }
+
+  @Test
+  public void testUserEventsInvalidateOnlyThatUser() {
+    load(Tenant, "alice");
+    load(Tenant, "bob");
+
+    domainBus.post(new UserAssignedToRole(Tenant, "admin", "alice"));
+    load(Tenant, "alice");
+    load(Tenant, "bob");
+    assertThat(loads.get(), is(3));
+
+    domainBus.post(new UserUnassignedFromRole(Tenant, "admin", "alice"));
+    domainBus.post(new GroupUserAdded(Tenant, "staff", "bob"));
+    load(Tenant, "alice");
+    load(Tenant, "bob");
+    assertThat(loads.get(), is(5));
+
+    domainBus.post(new GroupUserRemoved(Tenant, "staff", "bob"));
+    domainBus.post(new UserEnablementChanged(Tenant, "alice", Enablement.indefiniteEnablement()));
+    load(Tenant, "alice");
+    load(Tenant, "bob");
+    assertThat(loads.get(), is(7));
+  }
+
+  @Test
+  public void testGroupAndRoleEventsInvalidateTheWholeTenant() {
+    load(Tenant, "alice");
+    load(Tenant, "bob");
+    load(OtherTenant, "alice");
+
+    domainBus.post(new GroupAssignedToRole(Tenant, "admin", "staff"));
+    load(Tenant, "alice");
+    load(Tenant, "bob");
+    load(OtherTenant, "alice");
+    assertThat(loads.get(), is(5));
+
+    domainBus.post(new GroupAddedToGroup(Tenant, "staff", "contractors"));
+    domainBus.post(new RoleProvisioned(OtherTenant, "admin"));
+    load(Tenant, "alice");
+    load(OtherTenant, "alice");
+    assertThat(loads.get(), is(7));
+  }
+
+  @Test
+  public void testALoadThatRacesAnInvalidationIsNotCached() {
+    EffectivePermissions loaded = cache.get(Tenant, "alice", () -> {
+      loads.incrementAndGet();
+      domainBus.post(new UserAssignedToRole(Tenant, "admin", "alice"));
+      return permissions();
+    });
+    assertThat(loaded, notNullValue());
+    load(Tenant, "alice");
+    assertThat(loads.get(), is(2));
+  }
+
+  @Test
+  public void testAnAsyncLoadThatRacesAnInvalidationIsNotCached() {
+    CompletableFuture<EffectivePermissions> pending = new CompletableFuture<>();
+    CompletableFuture<EffectivePermissions> loaded =
+        cache.getAsync(Tenant, "alice", () -> pending).toCompletableFuture();
+    domainBus.post(new GroupAssignedToRole(Tenant, "admin", "staff"));
+    pending.complete(permissions());
+
+    assertThat(loaded.join(), notNullValue());
+    assertThat(cache.size(), is(0L));
+    cache.getAsync(Tenant, "alice", () -> CompletableFuture.completedFuture(permissions()))
+         .toCompletableFuture()
+         .join();
+    assertThat(cache.size(), is(1L));
+  }
+
+  private EffectivePermissions load(TenantId tenantId, String username) {
+    return cache.get(tenantId, username, () -> {
+      loads.incrementAndGet();
+      return permissions();
+    });
+  }
+
+  private EffectivePermissions permissions() {
+    return EffectivePermissions.of(index, IamPermission.asRevocable(ImmutableList.of(IamPermission.VIEW_USER), false));
+  }
+}
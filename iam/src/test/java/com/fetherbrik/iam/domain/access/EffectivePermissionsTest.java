@@ -0,0 +1,177 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+
+package com.fetherbrik.iam.domain.access;
+
+import com.fetherbrik.iam.domain.access.role.Role;
+import com.fetherbrik.iam.domain.access.role.RoleId;
+import com.fetherbrik.iam.domain.identity.group.Group;
+import com.fetherbrik.iam.domain.identity.group.GroupId;
+import com.fetherbrik.iam.domain.identity.tenant.TenantId;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * @author ggranum
+ */
+public class EffectivePermissionsTest {
+
+  private static final TenantId Tenant = new TenantId(1, 1);
+
+  @Test
+  public void testGrantedPermissionsArePermitted() {
+    PermissionIndex index = new PermissionIndex();
+    EffectivePermissions permissions = EffectivePermissions.of(index,
+        IamPermission.asRevocable(ImmutableList.of(IamPermission.VIEW_USER, IamPermission.VIEW_TENANT), false));
+
+    assertThat(permissions.isPermitted(IamPermission.VIEW_USER), is(true));
+    assertThat(permissions.isPermitted(IamPermission.VIEW_TENANT.id), is(true));
+    assertThat(permissions.isPermitted(IamPermission.VIEW_TENANT.permission), is(true));
+    assertThat(permissions.isPermitted(IamPermission.PROVISION_TENANT), is(false));
+    assertThat(permissions.isRevoked(IamPermission.PROVISION_TENANT), is(false));
+    assertThat(permissions.isPermitted(new PermissionId(9, 9)), is(false));
+  }
+
+  @Test
+  public void testRevocationWinsWithinASet() {
+    PermissionIndex index = new PermissionIndex();
+    EffectivePermissions permissions = EffectivePermissions.of(index, ImmutableList.of(
+        new RevocablePermission(IamPermission.VIEW_USER.permission, false),
+        new RevocablePermission(IamPermission.VIEW_USER.permission, true),
+        new RevocablePermission(IamPermission.VIEW_TENANT.permission, true),
+        new RevocablePermission(IamPermission.VIEW_TENANT.permission, false)));
+
+    assertThat(permissions.isPermitted(IamPermission.VIEW_USER), is(false));
+    assertThat(permissions.isRevoked(IamPermission.VIEW_USER), is(true));
+    assertThat(permissions.isPermitted(IamPermission.VIEW_TENANT), is(false));
+    assertThat(permissions.isRevoked(IamPermission.VIEW_TENANT.id), is(true));
+  }
+
+  @Test
+  public void testARevocationInAnyRoleWins() {
+    PermissionIndex index = new PermissionIndex();
+    Role viewer = role(1,
+        IamPermission.asRevocable(ImmutableList.of(IamPermission.VIEW_USER, IamPermission.VIEW_TENANT), false));
+    Role restricted = role(2, IamPermission.asRevocable(ImmutableList.of(IamPermission.VIEW_TENANT), true));
+
+    EffectivePermissions permissions = EffectivePermissions.fromRoles(index, ImmutableList.of(viewer, restricted));
+    assertThat(permissions.isPermitted(IamPermission.VIEW_USER), is(true));
+    assertThat(permissions.isPermitted(IamPermission.VIEW_TENANT), is(false));
+    assertThat(permissions.isRevoked(IamPermission.VIEW_TENANT), is(true));
+
+    EffectivePermissions merged = EffectivePermissions.of(index, viewer.permissions)
+                                                      .merge(EffectivePermissions.of(index, restricted.permissions));
+    assertThat(merged.asRevocablePermissions().size(), is(2));
+    assertThat(merged.isPermitted(IamPermission.VIEW_TENANT), is(false));
+  }
+
+  @Test
+  public void testOverridesTakePrecedenceEitherWay() {
+    PermissionIndex index = new PermissionIndex();
+    Role role = role(1, ImmutableSet.of(new RevocablePermission(IamPermission.VIEW_USER.permission, false),
+        new RevocablePermission(IamPermission.VIEW_TENANT.permission, true)));
+
+    EffectivePermissions permissions = EffectivePermissions.fromRoles(index, ImmutableList.of(role)).withOverrides(
+        ImmutableList.of(new RevocablePermission(IamPermission.VIEW_USER.permission, true),
+            new RevocablePermission(IamPermission.VIEW_TENANT.permission, false)));
+    assertThat(permissions.isPermitted(IamPermission.VIEW_USER), is(false));
+    assertThat(permissions.isRevoked(IamPermission.VIEW_USER), is(true));
+    assertThat(permissions.isPermitted(IamPermission.VIEW_TENANT), is(true));
+    assertThat(permissions.isRevoked(IamPermission.VIEW_TENANT), is(false));
+  }
+
+  @Test
+  public void testPermissionsPastTheFirstWord() {
+    PermissionIndex index = new PermissionIndex();
+    List<RevocablePermission> custom = new ArrayList<>();
+    for (int i = 0; i < 150; i++) {
+      custom.add(new RevocablePermission(new Permission(new PermissionId(7, i), "custom-" + i), i % 3 == 0));
+    }
+    EffectivePermissions permissions = EffectivePermissions.of(index, custom);
+
+    for (int i = 0; i < 150; i++) {
+      assertThat(permissions.isPermitted(new PermissionId(7, i)), is(i % 3 != 0));
+      assertThat(permissions.isRevoked(new PermissionId(7, i)), is(i % 3 == 0));
+    }
+    assertThat(permissions.asRevocablePermissions().size(), is(150));
+    assertThat(index.size(), is(IamPermission.values().length + 150));
+  }
+
+  @Test
+  public void testPermissionsBeyondAFullIndexAreStillChecked() {
+    PermissionIndex index = new PermissionIndex(IamPermission.values().length + 2);
+    List<RevocablePermission> custom = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      custom.add(new RevocablePermission(new Permission(new PermissionId(7, i), "custom-" + i), i == 4));
+    }
+    custom.add(new RevocablePermission(IamPermission.VIEW_USER.permission, false));
+    EffectivePermissions permissions = EffectivePermissions.of(index, custom);
+
+    assertThat(index.size(), is(index.maxSize()));
+    for (int i = 0; i < 4; i++) {
+      assertThat("custom-" + i, permissions.isPermitted(new PermissionId(7, i)), is(true));
+    }
+    assertThat(permissions.isPermitted(new PermissionId(7, 4)), is(false));
+    assertThat(permissions.isRevoked(new PermissionId(7, 4)), is(true));
+    assertThat(permissions.isPermitted(IamPermission.VIEW_USER), is(true));
+    assertThat(permissions.asRevocablePermissions().size(), is(6));
+
+    EffectivePermissions overridden = permissions.withOverrides(ImmutableList.of(
+        new RevocablePermission(new Permission(new PermissionId(7, 3), "custom-3"), true),
+        new RevocablePermission(new Permission(new PermissionId(7, 4), "custom-4"), false)));
+    assertThat(overridden.isPermitted(new PermissionId(7, 3)), is(false));
+    assertThat(overridden.isPermitted(new PermissionId(7, 4)), is(true));
+
+    EffectivePermissions revokedElsewhere = EffectivePermissions.of(index, ImmutableList.of(
+        new RevocablePermission(new Permission(new PermissionId(7, 2), "custom-2"), true)));
+    assertThat(permissions.merge(revokedElsewhere).isPermitted(new PermissionId(7, 2)), is(false));
+    assertThat(revokedElsewhere.merge(permissions).isPermitted(new PermissionId(7, 2)), is(false));
+  }
+
+  @Test
+  public void testIamPermissionsKeepTheirOrdinalInEveryIndex() {
+    PermissionIndex first = new PermissionIndex();
+    first.indexOf(new Permission(new PermissionId(7, 1), "custom"));
+    PermissionIndex second = new PermissionIndex();
+    for (IamPermission permission : IamPermission.values()) {
+      assertThat(first.indexOf(permission.id), is(permission.ordinal()));
+      assertThat(second.indexOf(permission.id), is(permission.ordinal()));
+    }
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testPermissionsFromDifferentIndexesCannotBeMerged() {
+    Set<RevocablePermission> viewUser = IamPermission.asRevocable(ImmutableList.of(IamPermission.VIEW_USER), false);
+    EffectivePermissions.of(new PermissionIndex(), viewUser)
+                        .merge(EffectivePermissions.of(new PermissionIndex(), viewUser));
+  }
+
+  private static Role role(int id, Set<RevocablePermission> permissions) {
+    return new Role.Builder()
+        .id(new RoleId(1, id))
+        .tenantId(Tenant)
+        .name("role-" + id)
+        .description("A role.")
+        .supportsNesting(true)
+        .group(new Group.Builder()
+            .id(new GroupId(2, id))
+            .tenantId(Tenant)
+            .name("role-group-" + id)
+            .description("The role's group.")
+            .internal(true)
+            .build())
+        .permissions(permissions)
+        .build();
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+
+package com.fetherbrik.iam.domain.access;
+
+import com.fetherbrik.iam.domain.access.exception.PermissionRequiredException;
+import com.fetherbrik.iam.domain.identity.Enablement;
+import com.fetherbrik.iam.domain.identity.tenant.Tenant;
+import com.fetherbrik.iam.domain.identity.tenant.TenantId;
+import com.fetherbrik.iam.domain.identity.user.User;
+import com.fetherbrik.iam.domain.identity.user.UserId;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.testng.annotations.Test;
+
+import java.util.Collections;
+import java.util.Set;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * @author ggranum
+ */
+public class SubjectTest {
+
+  private static final TenantId TenantId = new TenantId(1, 1);
+
+  @Test
+  public void testPermissionsFromASet() {
+    Permission unnamed = new Permission(null, "custom.without-id");
+    Set<RevocablePermission> permissions = ImmutableSet.of(
+        new RevocablePermission(IamPermission.VIEW_USER.permission, false),
+        new RevocablePermission(IamPermission.VIEW_TENANT.permission, true),
+        new RevocablePermission(unnamed, false));
+
+    PermissionIndex index = new PermissionIndex();
+    Subject subject = subject(new Subject.Builder().permissions(index, permissions));
+    try {
+      assertThat(subject.isPermitted(IamPermission.VIEW_USER), is(true));
+      assertThat(subject.isPermitted(IamPermission.VIEW_TENANT.id), is(false));
+      assertThat(subject.isPermitted(IamPermission.PROVISION_USER.permission), is(false));
+      assertThat("Permissions without ids are matched by name.",
+          subject.isPermitted(new Permission(null, "custom.without-id")),
+          is(true));
+      assertThat(subject.isPermitted(new Permission(null, "custom.other")), is(false));
+
+      assertThat(subject.permissions().size(), is(3));
+      assertThat(subject.permissions().get(IamPermission.VIEW_TENANT.key).isRevocation, is(true));
+      assertThat(subject.permissions().get("custom.without-id").permission, sameInstance(unnamed));
+      assertThat("Indexed by the given index, so it merges with that index's permissions.",
+          subject.effectivePermissions.merge(EffectivePermissions.of(index, Collections.emptySet()))
+              .isPermitted(IamPermission.VIEW_USER),
+          is(true));
+    } finally {
+      subject.clear();
+    }
+  }
+
+  @Test
+  public void testPermissionsFromAnAuthorizationService() {
+    PermissionIndex index = new PermissionIndex();
+    EffectivePermissions effective = EffectivePermissions.of(index,
+        IamPermission.asRevocable(ImmutableList.of(IamPermission.VIEW_USER), false));
+
+    Subject subject = subject(new Subject.Builder().permissions(effective));
+    try {
+      assertThat(subject.effectivePermissions, sameInstance(effective));
+      assertThat(subject.isPermitted(IamPermission.VIEW_USER), is(true));
+      assertThat(subject.permissions().keySet(), contains(IamPermission.VIEW_USER.key));
+      assertThat("Built once.", subject.permissions(), sameInstance(subject.permissions()));
+    } finally {
+      subject.clear();
+    }
+  }
+
+  @Test
+  public void testCheckPermittedThrowsWhenNotPermitted() {
+    Subject subject = subject(new Subject.Builder().permissions(new PermissionIndex(), Collections.emptySet()));
+    try {
+      subject.checkPermitted(IamPermission.VIEW_USER);
+      throw new AssertionError("Should have thrown.");
+    } catch (PermissionRequiredException expected) {
+      assertThat(expected.getMessage(), containsString("alice"));
+    } finally {
+      subject.clear();
+    }
+  }
+
+  private static Subject subject(Subject.Builder builder) {
+    return builder
+        .tenant(new Tenant.Builder().id(TenantId).name("Tenant").build())
+        .user(new User.Builder()
+            .id(new UserId(3, 1))
+            .tenantId(TenantId)
+            .username("alice")
+            .passwordHash("$pbkdf2-sha256$i=10000$c2FsdA$aGFzaA")
+            .enablement(Enablement.indefiniteEnablement())
+            .userPermissions(Collections.emptySet())
+            .build())
+        .roles(Collections.emptySet())
+        .build();
+  }
+}
@@ -0,0 +1,158 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+
+package com.fetherbrik.iam.domain.access.role;
+
+import com.fetherbrik.iam.domain.identity.Enablement;
+import com.fetherbrik.iam.domain.identity.group.Group;
+import com.fetherbrik.iam.domain.identity.group.GroupId;
+import com.fetherbrik.iam.domain.identity.tenant.TenantId;
+import com.fetherbrik.iam.domain.identity.user.User;
+import com.fetherbrik.iam.domain.identity.user.UserId;
+import com.google.common.collect.ImmutableList;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Collections;
+
+import static com.fetherbrik.iam.domain.RepositoryContracts.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * What every RoleRepository, and its async form, must do. Extend it with the repository to test.
+ *
+ * @author ggranum
+ */
+public abstract class RoleRepositoryContract {
+
+  private static final TenantId Tenant = new TenantId(1, 1);
+  private static final TenantId OtherTenant = new TenantId(1, 2);
+
+  private RoleRepository repository;
+
+  /**
+   * @return An empty repository.
+   */
+  protected abstract RoleRepository newRepository();
+
+  @BeforeMethod
+  public void setUp() {
+    repository = newRepository();
+  }
+
+  @Test
+  public void testFindsAddedRolesByNameAndTenant() {
+    Role admin = role(Tenant, 1, "admin");
+    repository.add(admin);
+    repository.addAll(ImmutableList.of(role(Tenant, 2, "viewer"), role(OtherTenant, 3, "admin")));
+
+    assertThat(repository.named(Tenant, "admin").get().id(), is(admin.id()));
+    assertThat(repository.named(Tenant, "editor").isPresent(), is(false));
+    assertThat(repository.allRoles(Tenant).size(), is(2));
+    assertThat(repository.allRoles(OtherTenant).size(), is(1));
+  }
+
+  @Test
+  public void testRejectsADuplicateNameWithinATenant() {
+    repository.add(role(Tenant, 1, "admin"));
+
+    assertRejected(() -> repository.add(role(Tenant, 2, "admin")));
+    assertThat(repository.allRoles(Tenant).size(), is(1));
+  }
+
+  @Test
+  public void testFindsTheRolesADirectMemberHas() {
+    User alice = user(1, "alice");
+    Role admin = role(Tenant, 1, "admin");
+    Group members = admin.group.copy().addGroupMember(alice.toGroupMember(admin.group)).build();
+    repository.add(admin.copy().group(members).build());
+    repository.add(role(Tenant, 2, "viewer"));
+
+    assertThat(repository.rolesForUser(alice).size(), is(1));
+    assertThat(repository.rolesForUser(user(2, "bob")), is(empty()));
+  }
+
+  @Test
+  public void testAddingGroupMembersKeepsTheExistingOnes() {
+    User alice = user(1, "alice");
+    User bob = user(2, "bob");
+    Role admin = role(Tenant, 1, "admin");
+    repository.add(admin.copy().group(admin.group.copy().addGroupMember(alice.toGroupMember(admin.group)).build())
+                        .build());
+
+    repository.addGroupMembers(admin,
+        ImmutableList.of(alice.toGroupMember(admin.group), bob.toGroupMember(admin.group)));
+    assertThat(repository.named(Tenant, "admin").get().group.groupMembers(),
+        containsInAnyOrder(alice.toGroupMember(admin.group), bob.toGroupMember(admin.group)));
+    assertThat(repository.rolesForUser(bob).size(), is(1));
+    assertRejected(() -> repository.addGroupMembers(role(Tenant, 2, "viewer"),
+        ImmutableList.of(bob.toGroupMember(admin.group))));
+  }
+
+  @Test
+  public void testUpdateAndRemove() {
+    Role admin = role(Tenant, 1, "admin");
+    repository.add(admin);
+
+    repository.update(admin.copy().description("Changed.").build());
+    assertThat(repository.named(Tenant, "admin").get().description, is("Changed."));
+    repository.remove(admin);
+    assertThat(repository.named(Tenant, "admin").isPresent(), is(false));
+  }
+
+  @Test
+  public void testAsyncFormsMatchTheRepository() {
+    int id = 10;
+    for (AsyncRoleRepository async : ImmutableList.of(AsyncRoleRepository.of(repository, Executor),
+        AsyncRoleRepository.of(syncOnly(RoleRepository.class, repository), Executor))) {
+      Role role = role(Tenant, id++, "role-" + id);
+      await(async.addAsync(role));
+      await(async.addAllAsync(ImmutableList.of(role(Tenant, id++, "role-" + id))));
+
+      assertThat(await(async.namedAsync(Tenant, role.name)).get().id(), is(role.id()));
+      assertThat(await(async.allRolesAsync(Tenant)), is(repository.allRoles(Tenant)));
+      assertThat(await(async.rolesForUserAsync(user(1, "alice"))), is(empty()));
+
+      await(async.updateAsync(role.copy().description("Changed.").build()));
+      assertThat(repository.named(Tenant, role.name).get().description, is("Changed."));
+      await(async.addGroupMembersAsync(role, ImmutableList.of(user(1, "alice").toGroupMember(role.group))));
+      assertThat(repository.rolesForUser(user(1, "alice")).size(), is(1));
+      await(async.removeAsync(role));
+      assertThat(repository.named(Tenant, role.name).isPresent(), is(false));
+      awaitFailure(async.updateAsync(role));
+    }
+  }
+
+  private static Role role(TenantId tenantId, int id, String name) {
+    return new Role.Builder()
+        .id(new RoleId(1, id))
+        .tenantId(tenantId)
+        .name(name)
+        .description("A role.")
+        .supportsNesting(true)
+        .group(new Group.Builder()
+            .id(new GroupId(2, id))
+            .tenantId(tenantId)
+            .name(name + "-group")
+            .description("The role's group.")
+            .internal(true)
+            .build())
+        .permissions(Collections.emptySet())
+        .build();
+  }
+
+  private static User user(int id, String username) {
+    return new User.Builder()
+        .id(new UserId(3, id))
+        .tenantId(Tenant)
+        .username(username)
+        .passwordHash("$pbkdf2-sha256$i=10000$c2FsdA$aGFzaA")
+        .enablement(Enablement.indefiniteEnablement())
+        .userPermissions(Collections.emptySet())
+        .build();
+  }
+}
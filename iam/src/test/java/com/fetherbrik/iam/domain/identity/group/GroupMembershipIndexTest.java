@@ -0,0 +1,278 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+
+package com.fetherbrik.iam.domain.identity.group;
+
+import com.fetherbrik.iam.domain.access.role.Role;
+import com.fetherbrik.iam.domain.access.role.RoleId;
+import com.fetherbrik.iam.domain.access.role.RoleRepository;
+import com.fetherbrik.iam.domain.access.role.RoleService;
+import com.fetherbrik.iam.domain.identity.Enablement;
+import com.fetherbrik.iam.domain.identity.group.event.GroupUserAdded;
+import com.fetherbrik.iam.domain.identity.tenant.TenantId;
+import com.fetherbrik.iam.domain.identity.user.User;
+import com.fetherbrik.iam.domain.identity.user.UserId;
+import com.fetherbrik.iam.domain.identity.user.UserRepository;
+import com.fetherbrik.iam.infrastructure.memory.InMemoryGroupRepository;
+import com.fetherbrik.iam.infrastructure.memory.InMemoryRoleRepository;
+import com.fetherbrik.iam.infrastructure.memory.InMemoryUserRepository;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.eventbus.EventBus;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * @author ggranum
+ */
+public class GroupMembershipIndexTest {
+
+  private static final TenantId Tenant = new TenantId(1, 1);
+  private static final TenantId OtherTenant = new TenantId(1, 2);
+
+  private EventBus domainBus;
+  private CountingGroupRepository groups;
+  private InMemoryUserRepository users;
+  private InMemoryRoleRepository roles;
+  private GroupMembershipIndex index;
+  private GroupService groupService;
+  private RoleService roleService;
+
+  @BeforeMethod
+  public void setUp() {
+    domainBus = new EventBus();
+    groups = new CountingGroupRepository();
+    users = new InMemoryUserRepository();
+    roles = new InMemoryRoleRepository();
+    Injector injector = Guice.createInjector(binder -> {
+      binder.bind(EventBus.class).toInstance(domainBus);
+      binder.bind(GroupRepository.class).toInstance(groups);
+      binder.bind(UserRepository.class).toInstance(users);
+      binder.bind(RoleRepository.class).toInstance(roles);
+    });
+    index = injector.getInstance(GroupMembershipIndex.class);
+    groupService = injector.getInstance(GroupService.class);
+    roleService = injector.getInstance(RoleService.class);
+  }
+
+  @Test
+  public void testFindsMembersOfDeeplyNestedGroups() {
+    User alice = user(Tenant, "alice");
+    Group bottom = groupService.addUser(group(Tenant, 3, "bottom"), alice);
+    Group middle = groupService.addGroup(group(Tenant, 2, "middle"), bottom);
+    Group top = groupService.addGroup(group(Tenant, 1, "top"), middle);
+    groups.add(bottom);
+    groups.add(middle);
+    groups.add(top);
+
+    assertThat(index.isMember(top, alice), is(true));
+    assertThat(index.groupsOf(alice), containsInAnyOrder(top.id, middle.id, bottom.id));
+    assertThat(index.isMember(top, user(Tenant, "bob")), is(false));
+  }
+
+  @Test
+  public void testFindsMembersThroughARolesGroup() {
+    User alice = user(Tenant, "alice");
+    Group staff = groupService.addUser(group(Tenant, 1, "staff"), alice);
+    groups.add(staff);
+    Role admin = roleService.assignGroup(role(Tenant, 1, "admin"), staff);
+    roles.add(admin);
+
+    assertThat(index.isMember(admin.group, alice), is(true));
+  }
+
+  @Test
+  public void testAChangeIsSeenByALoadThatRunsBeforeItIsPersisted() {
+    User alice = user(Tenant, "alice");
+    Group staff = group(Tenant, 1, "staff");
+    groups.add(staff);
+
+    Group updated = groupService.addUser(staff, alice);
+    assertThat("Not yet persisted, but the change is replayed over the load.", index.isMember(staff, alice), is(true));
+    groups.update(updated);
+    assertThat(index.isMember(updated, alice), is(true));
+    assertThat(groups.allGroupsCalls, is(1));
+  }
+
+  @Test
+  public void testAnEventInAnotherTenantDoesNotStopALoadBeingKept() {
+    User alice = user(Tenant, "alice");
+    User carol = user(OtherTenant, "carol");
+    Group otherStaff = group(OtherTenant, 9, "other-staff");
+    groups.add(otherStaff);
+    groups.add(groupService.addUser(group(Tenant, 1, "staff"), alice));
+    groups.duringLoad = () -> groupService.addUser(otherStaff, carol);
+
+    Group staff = groups.named(Tenant, "staff").get();
+    assertThat(index.isMember(staff, alice), is(true));
+    assertThat(index.isMember(staff, alice), is(true));
+    assertThat(groups.allGroupsCalls, is(1));
+    assertThat(index.loadedTenantCount(), is(1));
+  }
+
+  @Test
+  public void testAnUnresolvableChangeKeepsTheTenantFromBeingKept() {
+    User alice = user(Tenant, "alice");
+    Group staff = groupService.addUser(group(Tenant, 1, "staff"), alice);
+    groups.add(staff);
+    assertThat(index.isMember(staff, alice), is(true));
+
+    domainBus.post(new GroupUserAdded(Tenant, "no-such-group", "alice"));
+    assertThat(index.isMember(staff, alice), is(true));
+    assertThat(index.loadedTenantCount(), is(0));
+    assertThat(index.isMember(staff, alice), is(true));
+    assertThat("Read from the repository every time until the changes have settled.", groups.allGroupsCalls, is(3));
+  }
+
+  @Test
+  public void testResolvesAnEventOnTheTenantsNextReadRatherThanWhenPosted() {
+    User alice = user(Tenant, "alice");
+    Group staff = group(Tenant, 1, "staff");
+    groups.add(staff);
+    assertThat(index.isMember(staff, alice), is(false));
+
+    int lookups = groups.namedCalls;
+    groups.update(groupService.addUser(staff, alice));
+    assertThat(groups.namedCalls, is(lookups));
+    assertThat(index.isMember(staff, alice), is(true));
+    assertThat(groups.namedCalls, is(greaterThan(lookups)));
+    assertThat(groups.allGroupsCalls, is(1));
+  }
+
+  @Test
+  public void testEventsForUnreadTenantsAreNotResolvedAndDoNotPushOutReadTenants() {
+    GroupMembershipIndex bounded = new GroupMembershipIndex(domainBus, groups, users, roles, 1, 600, 30);
+    User alice = user(Tenant, "alice");
+    Group staff = groupService.addUser(group(Tenant, 1, "staff"), alice);
+    groups.add(staff);
+    assertThat(bounded.isMember(staff, alice), is(true));
+
+    List<Group> others = new ArrayList<>();
+    for (int i = 1; i <= 5; i++) {
+      Group group = group(new TenantId(1, 10 + i), 10 + i, "group-" + i);
+      groups.add(group);
+      others.add(group);
+    }
+    int lookups = groups.namedCalls;
+    for (Group group : others) {
+      groups.update(groupService.addUser(group, user(group.tenantId, "user-of-" + group.name)));
+    }
+    assertThat(groups.namedCalls, is(lookups));
+    assertThat(bounded.isMember(staff, alice), is(true));
+    assertThat(bounded.loadedTenantCount(), is(1));
+    assertThat(groups.allGroupsCalls, is(1));
+  }
+
+  @Test
+  public void testRemovingAGroupUnlinksItsMembers() {
+    User alice = user(Tenant, "alice");
+    Group bottom = groupService.addUser(group(Tenant, 2, "bottom"), alice);
+    Group top = groupService.addGroup(group(Tenant, 1, "top"), bottom);
+    groups.add(bottom);
+    groups.add(top);
+    assertThat(index.isMember(top, alice), is(true));
+
+    groups.remove(bottom);
+    index.groupRemoved(bottom);
+    assertThat(index.isMember(top, alice), is(false));
+    assertThat(index.groupsOf(alice), is(empty()));
+  }
+
+  @Test
+  public void testRemovingAUserForgetsTheirMemberships() {
+    User alice = user(Tenant, "alice");
+    Group staff = groupService.addUser(group(Tenant, 1, "staff"), alice);
+    groups.add(staff);
+    assertThat(index.isMember(staff, alice), is(true));
+
+    index.userRemoved(alice);
+    assertThat(index.isMember(staff, alice), is(false));
+  }
+
+  @Test
+  public void testKeepsNoMoreThanTheMaximumNumberOfTenants() {
+    GroupMembershipIndex bounded = new GroupMembershipIndex(domainBus, groups, users, roles, 2, 600, 30);
+    for (int i = 1; i <= 5; i++) {
+      TenantId tenantId = new TenantId(1, 10 + i);
+      User user = user(tenantId, "user-" + i);
+      Group group = groupService.addUser(group(tenantId, 10 + i, "group-" + i), user);
+      groups.add(group);
+      assertThat(bounded.isMember(group, user), is(true));
+    }
+    assertThat(bounded.loadedTenantCount(), is(2));
+  }
+
+  private User user(TenantId tenantId, String username) {
+    User user = new User.Builder()
+        .id(new UserId(tenantId.hashCode(), username.hashCode()))
+        .tenantId(tenantId)
+        .username(username)
+        .passwordHash("$pbkdf2-sha256$i=10000$c2FsdA$aGFzaA")
+        .enablement(Enablement.indefiniteEnablement())
+        .userPermissions(Collections.emptySet())
+        .build();
+    users.add(tenantId, user);
+    return user;
+  }
+
+  private static Group group(TenantId tenantId, int id, String name) {
+    return new Group.Builder()
+        .id(new GroupId(2, id))
+        .tenantId(tenantId)
+        .name(name)
+        .description("A group.")
+        .internal(false)
+        .build();
+  }
+
+  private static Role role(TenantId tenantId, int id, String name) {
+    return new Role.Builder()
+        .id(new RoleId(1, id))
+        .tenantId(tenantId)
+        .name(name)
+        .description("A role.")
+        .supportsNesting(true)
+        .group(new Group.Builder()
+            .id(new GroupId(3, id))
+            .tenantId(tenantId)
+            .name(name + "-group")
+            .description("The role's group.")
+            .internal(true)
+            .build())
+        .permissions(ImmutableSet.of())
+        .build();
+  }
+
+  private static class CountingGroupRepository extends InMemoryGroupRepository {
+
+    int allGroupsCalls;
+    int namedCalls;
+    Runnable duringLoad = () -> { };
+
+    @Override
+    public Optional<Group> named(TenantId tenantId, String name) {
+      namedCalls++;
+      return super.named(tenantId, name);
+    }
+
+    @Override
+    public Set<Group> allGroups(TenantId tenantId) {
+      allGroupsCalls++;
+      duringLoad.run();
+      return super.allGroups(tenantId);
+    }
+  }
+}
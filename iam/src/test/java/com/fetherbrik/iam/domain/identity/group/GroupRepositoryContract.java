@@ -0,0 +1,159 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+
+package com.fetherbrik.iam.domain.identity.group;
+
+import com.fetherbrik.iam.domain.identity.Enablement;
+import com.fetherbrik.iam.domain.identity.tenant.TenantId;
+import com.fetherbrik.iam.domain.identity.user.User;
+import com.fetherbrik.iam.domain.identity.user.UserId;
+import com.google.common.collect.ImmutableList;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Collections;
+import java.util.Map;
+
+import static com.fetherbrik.iam.domain.RepositoryContracts.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * What every GroupRepository, and its async form, must do. Extend it with the repository to test.
+ *
+ * @author ggranum
+ */
+public abstract class GroupRepositoryContract {
+
+  private static final TenantId Tenant = new TenantId(1, 1);
+  private static final TenantId OtherTenant = new TenantId(1, 2);
+
+  private GroupRepository repository;
+
+  /**
+   * @return An empty repository.
+   */
+  protected abstract GroupRepository newRepository();
+
+  @BeforeMethod
+  public void setUp() {
+    repository = newRepository();
+  }
+
+  @Test
+  public void testFindsAddedGroupsByIdNameAndTenant() {
+    Group staff = group(Tenant, 1, "staff");
+    repository.add(staff);
+    repository.addAll(ImmutableList.of(group(Tenant, 2, "ops"), group(OtherTenant, 3, "staff")));
+
+    assertThat(repository.get(staff.id).get().name, is("staff"));
+    assertThat(repository.named(Tenant, "staff").get().id, is(staff.id));
+    assertThat(repository.named(Tenant, "sales").isPresent(), is(false));
+    assertThat(repository.allGroups(Tenant).size(), is(2));
+    assertThat(repository.allGroups(OtherTenant).size(), is(1));
+  }
+
+  @Test
+  public void testGetAllLeavesOutMissingIds() {
+    Group staff = group(Tenant, 1, "staff");
+    Group ops = group(Tenant, 2, "ops");
+    repository.addAll(ImmutableList.of(staff, ops));
+
+    Map<GroupId, Group> found = repository.getAll(ImmutableList.of(staff.id, ops.id, new GroupId(2, 99)));
+    assertThat(found.keySet(), containsInAnyOrder(staff.id, ops.id));
+    assertThat(repository.getAll(Collections.emptyList()).isEmpty(), is(true));
+  }
+
+  @Test
+  public void testRejectsADuplicateNameWithinATenant() {
+    repository.add(group(Tenant, 1, "staff"));
+
+    assertRejected(() -> repository.add(group(Tenant, 2, "staff")));
+    assertThat(repository.allGroups(Tenant).size(), is(1));
+  }
+
+  @Test
+  public void testFindsTheGroupsAUserIsADirectMemberOf() {
+    User alice = user(1, "alice");
+    Group staff = group(Tenant, 1, "staff");
+    repository.add(staff.copy().addGroupMember(alice.toGroupMember(staff)).build());
+    repository.add(group(Tenant, 2, "ops"));
+
+    assertThat(repository.allGroups(alice.id).size(), is(1));
+    assertThat(repository.allGroups(new UserId(3, 2)), is(empty()));
+  }
+
+  @Test
+  public void testAddingMembersKeepsTheExistingOnes() {
+    User alice = user(1, "alice");
+    User bob = user(2, "bob");
+    Group staff = group(Tenant, 1, "staff");
+    repository.add(staff.copy().addGroupMember(alice.toGroupMember(staff)).build());
+
+    repository.addMembers(staff, ImmutableList.of(alice.toGroupMember(staff), bob.toGroupMember(staff)));
+    assertThat(repository.get(staff.id).get().groupMembers(),
+        containsInAnyOrder(alice.toGroupMember(staff), bob.toGroupMember(staff)));
+    assertRejected(() -> repository.addMembers(group(Tenant, 2, "ops"), ImmutableList.of(bob.toGroupMember(staff))));
+  }
+
+  @Test
+  public void testUpdateAndRemove() {
+    Group staff = group(Tenant, 1, "staff");
+    repository.add(staff);
+
+    repository.update(staff.copy().description("Changed.").build());
+    assertThat(repository.get(staff.id).get().description, is("Changed."));
+    repository.remove(staff);
+    assertThat(repository.get(staff.id).isPresent(), is(false));
+  }
+
+  @Test
+  public void testAsyncFormsMatchTheRepository() {
+    int id = 10;
+    for (AsyncGroupRepository async : ImmutableList.of(AsyncGroupRepository.of(repository, Executor),
+        AsyncGroupRepository.of(syncOnly(GroupRepository.class, repository), Executor))) {
+      Group group = group(Tenant, id++, "group-" + id);
+      Group other = group(Tenant, id++, "group-" + id);
+      await(async.addAsync(group));
+      await(async.addAllAsync(ImmutableList.of(other)));
+
+      assertThat(await(async.getAsync(group.id)).get().name, is(group.name));
+      assertThat(await(async.namedAsync(Tenant, other.name)).get().id, is(other.id));
+      assertThat(await(async.allGroupsAsync(Tenant)), is(repository.allGroups(Tenant)));
+      assertThat(await(async.allGroupsAsync(new UserId(3, 1))), is(empty()));
+      assertThat(await(async.getAllAsync(ImmutableList.of(group.id, other.id))).size(), is(2));
+
+      await(async.updateAsync(group.copy().description("Changed.").build()));
+      assertThat(repository.get(group.id).get().description, is("Changed."));
+      await(async.addMembersAsync(other, ImmutableList.of(user(1, "alice").toGroupMember(other))));
+      assertThat(repository.get(other.id).get().groupMembers().size(), is(1));
+      await(async.removeAsync(other));
+      assertThat(repository.get(other.id).isPresent(), is(false));
+      awaitFailure(async.addAsync(group));
+    }
+  }
+
+  private static Group group(TenantId tenantId, int id, String name) {
+    return new Group.Builder()
+        .id(new GroupId(2, id))
+        .tenantId(tenantId)
+        .name(name)
+        .description("A group.")
+        .internal(false)
+        .build();
+  }
+
+  private static User user(int id, String username) {
+    return new User.Builder()
+        .id(new UserId(3, id))
+        .tenantId(Tenant)
+        .username(username)
+        .passwordHash("$pbkdf2-sha256$i=10000$c2FsdA$aGFzaA")
+        .enablement(Enablement.indefiniteEnablement())
+        .userPermissions(Collections.emptySet())
+        .build();
+  }
+}
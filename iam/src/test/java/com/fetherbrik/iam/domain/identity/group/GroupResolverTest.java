@@ -0,0 +1,169 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+
+package com.fetherbrik.iam.domain.identity.group;
+
+import com.fetherbrik.iam.domain.access.AuthorizationService;
+import com.fetherbrik.iam.domain.access.Subject;
+import com.fetherbrik.iam.domain.access.role.RoleRepository;
+import com.fetherbrik.iam.domain.identity.Enablement;
+import com.fetherbrik.iam.domain.identity.tenant.Tenant;
+import com.fetherbrik.iam.domain.identity.tenant.TenantId;
+import com.fetherbrik.iam.domain.identity.user.User;
+import com.fetherbrik.iam.domain.identity.user.UserId;
+import com.fetherbrik.iam.domain.identity.user.UserRepository;
+import com.fetherbrik.iam.infrastructure.memory.InMemoryGroupRepository;
+import com.fetherbrik.iam.infrastructure.memory.InMemoryRoleRepository;
+import com.fetherbrik.iam.infrastructure.memory.InMemoryUserRepository;
+import com.google.common.eventbus.EventBus;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * @author ggranum
+ */
+public class GroupResolverTest {
+
+  private static final TenantId TenantId = new TenantId(1, 1);
+
+  private CountingGroupRepository groups;
+  private InMemoryUserRepository users;
+  private GroupService groupService;
+  private AuthorizationService authorization;
+
+  @BeforeMethod
+  public void setUp() {
+    groups = new CountingGroupRepository();
+    users = new InMemoryUserRepository();
+    Injector injector = Guice.createInjector(binder -> {
+      binder.bind(EventBus.class).toInstance(new EventBus());
+      binder.bind(GroupRepository.class).toInstance(groups);
+      binder.bind(UserRepository.class).toInstance(users);
+      binder.bind(RoleRepository.class).toInstance(new InMemoryRoleRepository());
+    });
+    groupService = injector.getInstance(GroupService.class);
+    authorization = injector.getInstance(AuthorizationService.class);
+  }
+
+  @Test
+  public void testFetchesEachLevelInOneRoundTrip() {
+    User alice = user("alice");
+    Group top = tree(alice);
+
+    GroupResolver resolver = groupService.newResolver();
+    assertThat(resolver.hasMember(top, alice), is(true));
+    assertThat("Three levels below the top group.", resolver.roundTripCount(), is(3));
+    assertThat(resolver.visitedCount(), is(7));
+    assertThat(groups.getAllCalls, is(3));
+  }
+
+  @Test
+  public void testRemembersTheGroupsItHasFetched() {
+    User alice = user("alice");
+    Group top = tree(alice);
+
+    GroupResolver resolver = groupService.newResolver();
+    assertThat(resolver.hasMember(top, user("bob")), is(false));
+    int roundTrips = resolver.roundTripCount();
+    assertThat(resolver.hasMember(top, alice), is(true));
+    assertThat(resolver.roundTripCount(), is(roundTrips));
+  }
+
+  @Test
+  public void testStopsAtGroupsThatAreMissingOrAlreadyVisited() {
+    User alice = user("alice");
+    Group a = group(1, "a");
+    Group b = group(2, "b");
+    // Written straight to the repository, past the recursion check, to make a cycle through a missing group.
+    a = a.copy().addGroupMember(b.toGroupMemberOf(a)).addGroupMember(group(3, "gone").toGroupMemberOf(a)).build();
+    b = b.copy().addGroupMember(a.toGroupMemberOf(b)).build();
+    groups.add(a);
+    groups.add(b);
+
+    GroupResolver resolver = groupService.newResolver();
+    assertThat(resolver.hasMember(a, alice), is(false));
+    assertThat(resolver.roundTripCount(), is(1));
+  }
+
+  @Test
+  public void testChecksUseTheResolverOfTheCurrentSubject() {
+    User alice = user("alice");
+    Group top = tree(alice);
+    Tenant tenant = new Tenant.Builder().id(TenantId).name("Tenant").build();
+
+    Subject subject = authorization.subjectFor(tenant, alice).build();
+    try {
+      assertThat(groupService.currentResolver(), sameInstance(subject.groupResolver));
+      assertThat(groupService.isUserInNestedGroup(top, alice), is(true));
+      assertThat(groupService.isUserInNestedGroup(top, alice), is(true));
+      assertThat("The second check is answered from the subject's resolver.", groups.getAllCalls, is(3));
+    } finally {
+      subject.clear();
+    }
+    assertThat(groupService.currentResolver(), not(sameInstance(subject.groupResolver)));
+  }
+
+  /**
+   * top > (left, right > (middle > bottom > alice)), plus two empty groups below left.
+   */
+  private Group tree(User alice) {
+    Group bottom = groupService.addUser(group(5, "bottom"), alice);
+    Group middle = groupService.addGroup(group(4, "middle"), bottom);
+    Group right = groupService.addGroup(group(3, "right"), middle);
+    Group leafOne = group(6, "leaf-one");
+    Group leafTwo = group(7, "leaf-two");
+    Group left = groupService.addGroup(groupService.addGroup(group(2, "left"), leafOne), leafTwo);
+    Group top = groupService.addGroup(groupService.addGroup(group(1, "top"), left), right);
+    for (Group group : new Group[]{bottom, middle, right, leafOne, leafTwo, left, top}) {
+      groups.add(group);
+    }
+    groups.getAllCalls = 0;
+    return top;
+  }
+
+  private User user(String username) {
+    User user = new User.Builder()
+        .id(new UserId(3, username.hashCode()))
+        .tenantId(TenantId)
+        .username(username)
+        .passwordHash("$pbkdf2-sha256$i=10000$c2FsdA$aGFzaA")
+        .enablement(Enablement.indefiniteEnablement())
+        .userPermissions(Collections.emptySet())
+        .build();
+    users.add(TenantId, user);
+    return user;
+  }
+
+  private static Group group(int id, String name) {
+    return new Group.Builder()
+        .id(new GroupId(2, id))
+        .tenantId(TenantId)
+        .name(name)
+        .description("A group.")
+        .internal(false)
+        .build();
+  }
+
+  private static class CountingGroupRepository extends InMemoryGroupRepository {
+
+    int getAllCalls;
+
+    @Override
+    public Map<GroupId, Group> getAll(Collection<GroupId> groupIds) {
+      getAllCalls++;
+      return super.getAll(groupIds);
+    }
+  }
+}
@@ -0,0 +1,140 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+
+package com.fetherbrik.iam.domain.identity.password;
+
+import com.fetherbrik.core.exception.service.ServiceException;
+import com.fetherbrik.core.http.HttpStatus;
+import com.fetherbrik.iam.domain.identity.EncryptionToken;
+import org.apache.commons.codec.binary.Hex;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.testng.Assert.fail;
+
+/**
+ * @author ggranum
+ */
+public class PasswordHashingServiceTest {
+
+  private static final String Password = "correct horse battery staple";
+
+  private final PasswordHashingService service = new PasswordHashingService(new Pbkdf2PasswordHasher(20_000), 2, 16);
+
+  @Test
+  public void testHashesCheckAgainstTheirPassword() {
+    String hash = service.hashAndWait(Password);
+    assertThat(hash, startsWith("$" + Pbkdf2PasswordHasher.ALGORITHM + "$i=20000$"));
+
+    PasswordCheck check = service.check(Password, hash, null).join();
+    assertThat(check.matches, is(true));
+    assertThat(check.rehash.isPresent(), is(false));
+  }
+
+  @Test
+  public void testWrongPasswordsDoNotMatch() {
+    String hash = service.hashAndWait(Password);
+    assertThat(service.check("Correct horse battery staple", hash, null).join().matches, is(false));
+    assertThat(service.check(null, hash, null).join().matches, is(false));
+    assertThat(service.check(Password, null, null).join().matches, is(false));
+  }
+
+  @Test
+  public void testMatchingHashesAtAnOlderCostComeWithARehash() {
+    String weaker = new Pbkdf2PasswordHasher(10_000).hash(Password);
+
+    PasswordCheck check = service.check(Password, weaker, null).join();
+    assertThat(check.matches, is(true));
+    assertThat(check.rehash.isPresent(), is(true));
+    assertThat(check.rehash.get(), startsWith("$" + Pbkdf2PasswordHasher.ALGORITHM + "$i=20000$"));
+    assertThat(service.check(Password, check.rehash.get(), null).join().rehash.isPresent(), is(false));
+  }
+
+  @Test
+  public void testOriginalSha512HashesMatchAndComeWithARehash() {
+    // A salt starting 0x00 0x10 has a legacy round count of 16.
+    String saltHex = Hex.encodeHexString(new byte[]{0, 16, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16});
+    String legacyHash = EncryptionToken.fromPasswordClearText(Password, saltHex).hashAsHexString;
+
+    PasswordCheck check = service.check(Password, legacyHash, saltHex).join();
+    assertThat(check.matches, is(true));
+    assertThat(check.rehash.get(), startsWith("$" + Pbkdf2PasswordHasher.ALGORITHM + "$"));
+    assertThat(service.check("wrong", legacyHash, saltHex).join().matches, is(false));
+    assertThat("The salt is required to check an original hash.",
+        service.check(Password, legacyHash, null).join().matches,
+        is(false));
+  }
+
+  @Test
+  public void testUnknownAlgorithmsDoNotMatch() {
+    assertThat(service.check(Password, "$md5$abc$def", null).join().matches, is(false));
+  }
+
+  @Test
+  public void testUnknownUsersNeverMatch() {
+    assertThat(service.checkUnknownUserAndWait(Password).matches, is(false));
+    assertThat(service.checkUnknownUserAndWait("").matches, is(false));
+  }
+
+  @Test
+  public void testAFullQueueFailsFastWithServiceUnavailable() throws InterruptedException {
+    CountDownLatch release = new CountDownLatch(1);
+    // One thread, held by the unknown user hash the service makes on construction, and room to queue one more.
+    PasswordHashingService blocked = new PasswordHashingService(new BlockingHasher(release), 1, 1);
+    try {
+      CompletableFuture<String> queued = blocked.hash(Password);
+      try {
+        blocked.hashAndWait(Password);
+        fail("Should have been rejected.");
+      } catch (ServiceException e) {
+        assertThat(e.statusCode(), is(HttpStatus.SERVICE_UNAVAILABLE.code));
+      }
+      release.countDown();
+      assertThat(queued.join(), is("$blocking$" + Password));
+    } finally {
+      release.countDown();
+      blocked.shutdown();
+    }
+  }
+
+  private static final class BlockingHasher implements PasswordHasher {
+
+    private final CountDownLatch release;
+
+    private BlockingHasher(CountDownLatch release) {
+      this.release = release;
+    }
+
+    @Override
+    public String algorithm() {
+      return "blocking";
+    }
+
+    @Override
+    public String hash(String passwordClearText) {
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return "$blocking$" + passwordClearText;
+    }
+
+    @Override
+    public boolean verify(String passwordClearText, String encodedHash) {
+      return encodedHash.equals(hash(passwordClearText));
+    }
+
+    @Override
+    public boolean needsRehash(String encodedHash) {
+      return false;
+    }
+  }
+}
@@ -0,0 +1,275 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+
+package com.fetherbrik.iam.domain.identity.tenant;
+
+import com.fetherbrik.core.persistence.id.DefaultIdGenerator;
+import com.fetherbrik.iam.domain.access.IamPermission;
+import com.fetherbrik.iam.domain.access.role.Role;
+import com.fetherbrik.iam.domain.identity.Enablement;
+import com.fetherbrik.iam.domain.identity.group.Group;
+import com.fetherbrik.iam.domain.identity.group.GroupMember;
+import com.fetherbrik.iam.domain.identity.password.PasswordHasher;
+import com.fetherbrik.iam.domain.identity.tenant.BulkProvisioningResult.Rejected;
+import com.fetherbrik.iam.domain.identity.tenant.event.TenantBulkProvisioned;
+import com.fetherbrik.iam.domain.identity.user.User;
+import com.fetherbrik.iam.domain.identity.user.UserId;
+import com.fetherbrik.iam.infrastructure.memory.InMemoryGroupRepository;
+import com.fetherbrik.iam.infrastructure.memory.InMemoryRoleRepository;
+import com.fetherbrik.iam.infrastructure.memory.InMemoryUserRepository;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.eventbus.EventBus;
+import com.google.common.eventbus.Subscribe;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.testng.Assert.fail;
+
+/**
+ * @author ggranum
+ */
+public class BulkProvisioningPipelineTest {
+
+  private static final TenantId TenantId = new TenantId(1, 1);
+  private static final String Password = "Correct-Horse-Battery-Staple-9";
+  private static final String Hash = "$pbkdf2-sha256$i=10000$c2FsdA$aGFzaA";
+
+  private Tenant tenant;
+  private EventBus domainBus;
+  private InMemoryUserRepository users;
+  private CountingRoleRepository roles;
+  private CountingGroupRepository groups;
+  private List<TenantBulkProvisioned> provisioned;
+
+  @BeforeMethod
+  public void setUp() {
+    tenant = new Tenant.Builder().id(TenantId).name("Tenant").build();
+    domainBus = new EventBus();
+    users = new InMemoryUserRepository();
+    roles = new CountingRoleRepository();
+    groups = new CountingGroupRepository();
+    provisioned = new ArrayList<>();
+    domainBus.register(new Object() {
+      @Subscribe
+      public void on(TenantBulkProvisioned event) {
+        provisioned.add(event);
+      }
+    });
+  }
+
+  @Test
+  public void testRejectsAnExistingUsernameAndCarriesOn() {
+    users.add(TenantId, existingUser("bob"));
+
+    BulkProvisioningResult result = pipeline(2, BulkProvisioningListener.NONE).run(ImmutableList.of(
+        ProvisioningDescriptor.role("staff", "Staff.", ImmutableSet.of(IamPermission.VIEW_USER)),
+        ProvisioningDescriptor.user("alice", Password, "staff"),
+        ProvisioningDescriptor.user("bob", Password, "staff"),
+        ProvisioningDescriptor.user("carol", Password, "staff")).iterator());
+
+    assertThat(result.rejections.keySet(), contains(Rejected.user("bob")));
+    assertThat(result.progress.usersProvisioned, is(2L));
+    assertThat(result.progress.usersRejected, is(1L));
+    assertThat(users.get(TenantId, "carol").isPresent(), is(true));
+    assertThat(roleMembers("staff"), is(2));
+    assertThat(provisioned.size(), is(1));
+  }
+
+  @Test
+  public void testKeysRejectionsByKindAndName() {
+    BulkProvisioningResult first = pipeline(10, BulkProvisioningListener.NONE).run(ImmutableList.of(
+        ProvisioningDescriptor.role("ops", "Ops.", ImmutableSet.of()),
+        ProvisioningDescriptor.group("ops", "Ops.")).iterator());
+    assertThat(first.rejections.isEmpty(), is(true));
+
+    BulkProvisioningResult second = pipeline(10, BulkProvisioningListener.NONE).run(ImmutableList.of(
+        ProvisioningDescriptor.role("ops", "Ops.", ImmutableSet.of()),
+        ProvisioningDescriptor.group("ops", "Ops."),
+        ProvisioningDescriptor.user("ops", Password, "no-such-role")).iterator());
+    assertThat(second.rejections.keySet(), contains(Rejected.role("ops"), Rejected.group("ops"), Rejected.user("ops")));
+    assertThat(second.progress.usersRejected, is(1L));
+  }
+
+  @Test
+  public void testWritesEachBatchesMembershipsBeforeTheNextBatch() {
+    List<BulkProvisioningProgress> progress = new ArrayList<>();
+    BulkProvisioningListener failOnSecondBatch = p -> {
+      progress.add(p);
+      if (progress.size() == 2) {
+        throw new IllegalStateException("Import interrupted.");
+      }
+    };
+    try {
+      pipeline(2, failOnSecondBatch).run(ImmutableList.of(
+          ProvisioningDescriptor.role("staff", "Staff.", ImmutableSet.of()),
+          ProvisioningDescriptor.group("team", "Team."),
+          ProvisioningDescriptor.user("alice", Password, "staff").inGroups("team"),
+          ProvisioningDescriptor.user("bob", Password, "staff").inGroups("team"),
+          ProvisioningDescriptor.user("carol", Password, "staff").inGroups("team"),
+          ProvisioningDescriptor.user("dave", Password, "staff").inGroups("team"),
+          ProvisioningDescriptor.user("erin", Password, "staff").inGroups("team")).iterator());
+      fail("Expected the listener to stop the import.");
+    } catch (IllegalStateException expected) {
+      assertThat(expected.getMessage(), is("Import interrupted."));
+    }
+    assertThat(users.get(TenantId).size(), is(4));
+    assertThat(roleMembers("staff"), is(4));
+    assertThat(groups.named(TenantId, "team").get().groupMembers().size(), is(4));
+    assertThat(provisioned.isEmpty(), is(true));
+  }
+
+  @Test
+  public void testWritesOnlyEachBatchesNewMemberships() {
+    List<ProvisioningDescriptor> descriptors = new ArrayList<>();
+    descriptors.add(ProvisioningDescriptor.role("staff", "Staff.", ImmutableSet.of()));
+    descriptors.add(ProvisioningDescriptor.group("team", "Team."));
+    for (int i = 0; i < 10; i++) {
+      descriptors.add(ProvisioningDescriptor.user("user-" + i, Password, "staff").inGroups("team"));
+    }
+    pipeline(2, BulkProvisioningListener.NONE).run(descriptors.iterator());
+
+    assertThat("Created once, with the first batch's members.", roles.writes, contains("addAll:2"));
+    assertThat(roles.memberWrites, contains(2, 2, 2, 2));
+    assertThat(groups.writes, contains("addAll:2"));
+    assertThat(groups.memberWrites, contains(2, 2, 2, 2));
+    assertThat(roleMembers("staff"), is(10));
+    assertThat(groups.named(TenantId, "team").get().groupMembers().size(), is(10));
+  }
+
+  @Test
+  public void testRetriesAFailedBatchOneUserAtATime() {
+    users = new InMemoryUserRepository() {
+      @Override
+      public synchronized void addAll(TenantId tenantId, Collection<User> batch) {
+        add(tenantId, batch.iterator().next());
+        throw new IllegalStateException("Connection reset.");
+      }
+    };
+    BulkProvisioningResult result = pipeline(3, BulkProvisioningListener.NONE).run(ImmutableList.of(
+        ProvisioningDescriptor.group("team", "Team."),
+        ProvisioningDescriptor.user("alice", Password).inGroups("team"),
+        ProvisioningDescriptor.user("bob", Password).inGroups("team"),
+        ProvisioningDescriptor.user("carol", Password).inGroups("team")).iterator());
+
+    assertThat(result.rejections.isEmpty(), is(true));
+    assertThat(result.progress.usersProvisioned, is(3L));
+    assertThat(users.get(TenantId).size(), is(3));
+    assertThat(groups.named(TenantId, "team").get().groupMembers().size(), is(3));
+  }
+
+  private BulkProvisioningPipeline pipeline(int batchSize, BulkProvisioningListener listener) {
+    return new BulkProvisioningPipeline(tenant,
+        new DefaultIdGenerator(),
+        users,
+        roles,
+        groups,
+        new FixedHasher(),
+        Runnable::run,
+        domainBus,
+        batchSize,
+        listener);
+  }
+
+  private int roleMembers(String roleName) {
+    Role role = roles.named(TenantId, roleName).get();
+    Group group = role.group;
+    return group.groupMembers().size();
+  }
+
+  private static User existingUser(String username) {
+    return new User.Builder()
+        .id(new UserId(3, username.hashCode()))
+        .tenantId(TenantId)
+        .username(username)
+        .passwordHash(Hash)
+        .enablement(Enablement.indefiniteEnablement())
+        .userPermissions(Collections.emptySet())
+        .build();
+  }
+
+  /**
+   * Records each write: "addAll:n" for the members of the roles added, "update" for a whole role rewritten, and the
+   * number of members of each addGroupMembers.
+   */
+  private static final class CountingRoleRepository extends InMemoryRoleRepository {
+
+    final List<String> writes = new ArrayList<>();
+    final List<Integer> memberWrites = new ArrayList<>();
+
+    @Override
+    public synchronized void addAll(Collection<Role> added) {
+      writes.add("addAll:" + added.stream().mapToInt(role -> role.group.groupMembers().size()).sum());
+      super.addAll(added);
+    }
+
+    @Override
+    public void update(Role role) {
+      writes.add("update");
+      super.update(role);
+    }
+
+    @Override
+    public void addGroupMembers(Role role, Collection<GroupMember> members) {
+      memberWrites.add(members.size());
+      super.addGroupMembers(role, members);
+    }
+  }
+
+  private static final class CountingGroupRepository extends InMemoryGroupRepository {
+
+    final List<String> writes = new ArrayList<>();
+    final List<Integer> memberWrites = new ArrayList<>();
+
+    @Override
+    public synchronized void addAll(Collection<Group> added) {
+      writes.add("addAll:" + added.stream().mapToInt(group -> group.groupMembers().size()).sum());
+      super.addAll(added);
+    }
+
+    @Override
+    public void update(Group group) {
+      writes.add("update");
+      super.update(group);
+    }
+
+    @Override
+    public void addMembers(Group group, Collection<GroupMember> members) {
+      memberWrites.add(members.size());
+      super.addMembers(group, members);
+    }
+  }
+
+  private static final class FixedHasher implements PasswordHasher {
+
+    @Override
+    public String algorithm() {
+      return "pbkdf2-sha256";
+    }
+
+    @Override
+    public String hash(String passwordClearText) {
+      return Hash;
+    }
+
+    @Override
+    public boolean verify(String passwordClearText, String encodedHash) {
+      return Hash.equals(encodedHash);
+    }
+
+    @Override
+    public boolean needsRehash(String encodedHash) {
+      return false;
+    }
+  }
+}
@@ -0,0 +1,105 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+
+package com.fetherbrik.iam.domain.identity.tenant;
+
+import com.google.common.collect.ImmutableList;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static com.fetherbrik.iam.domain.RepositoryContracts.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * What every TenantRepository, and its async form, must do. Extend it with the repository to test.
+ *
+ * @author ggranum
+ */
+public abstract class TenantRepositoryContract {
+
+  private TenantRepository repository;
+
+  /**
+   * @return An empty repository.
+   */
+  protected abstract TenantRepository newRepository();
+
+  @BeforeMethod
+  public void setUp() {
+    repository = newRepository();
+  }
+
+  @Test
+  public void testFindsAddedTenantsByIdAndName() {
+    Tenant acme = tenant(1, "Acme", false);
+    repository.add(acme);
+
+    assertThat(repository.get(acme.id).get().name, is("Acme"));
+    assertThat(repository.get("Acme").get().id, is(acme.id));
+    assertThat(repository.tenantIdForTenantNamed("Acme"), is(acme.id));
+    assertThat(repository.get("Initech").isPresent(), is(false));
+  }
+
+  @Test
+  public void testRejectsADuplicateName() {
+    repository.add(tenant(1, "Acme", false));
+
+    assertRejected(() -> repository.add(tenant(2, "Acme", false)));
+  }
+
+  @Test
+  public void testPutAddsOrReplaces() {
+    Tenant acme = tenant(1, "Acme", false);
+    repository.put(acme);
+    repository.put(acme.copy().description("Changed.").build());
+
+    assertThat(repository.get(acme.id).get().description, is("Changed."));
+  }
+
+  @Test
+  public void testFindsTheSystemTenant() {
+    assertThat(repository.getSystemTenant().isPresent(), is(false));
+    Tenant system = tenant(1, "System", true);
+    repository.add(system);
+    repository.add(tenant(2, "Acme", false));
+
+    assertThat(repository.getSystemTenant().get().id, is(system.id));
+    repository.remove(system);
+    assertThat(repository.getSystemTenant().isPresent(), is(false));
+  }
+
+  @Test
+  public void testAsyncFormsMatchTheRepository() {
+    int id = 10;
+    for (AsyncTenantRepository async : ImmutableList.of(AsyncTenantRepository.of(repository, Executor),
+        AsyncTenantRepository.of(syncOnly(TenantRepository.class, repository), Executor))) {
+      Tenant tenant = tenant(id++, "Tenant " + id, false);
+      await(async.addAsync(tenant));
+
+      assertThat(await(async.getAsync(tenant.id)).get().name, is(tenant.name));
+      assertThat(await(async.getAsync(tenant.name)).get().id, is(tenant.id));
+      assertThat(await(async.tenantIdForTenantNamedAsync(tenant.name)), is(tenant.id));
+      assertThat(await(async.getSystemTenantAsync()).isPresent(), is(false));
+
+      await(async.putAsync(tenant.copy().description("Changed.").build()));
+      assertThat(repository.get(tenant.id).get().description, is("Changed."));
+      awaitFailure(async.addAsync(tenant));
+      await(async.removeAsync(tenant));
+      assertThat(repository.get(tenant.id).isPresent(), is(false));
+    }
+  }
+
+  private static Tenant tenant(int id, String name, boolean system) {
+    return new Tenant.Builder()
+        .id(new TenantId(1, id))
+        .name(name)
+        .description("A tenant.")
+        .systemTenant(system)
+        .active(true)
+        .build();
+  }
+}
@@ -0,0 +1,131 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+
+package com.fetherbrik.iam.domain.identity.user;
+
+import com.fetherbrik.iam.domain.identity.Enablement;
+import com.fetherbrik.iam.domain.identity.tenant.TenantId;
+import com.google.common.collect.ImmutableList;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Collections;
+
+import static com.fetherbrik.iam.domain.RepositoryContracts.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * What every UserRepository, and its async form, must do. Extend it with the repository to test.
+ *
+ * @author ggranum
+ */
+public abstract class UserRepositoryContract {
+
+  private static final TenantId Tenant = new TenantId(1, 1);
+  private static final TenantId OtherTenant = new TenantId(1, 2);
+
+  private UserRepository repository;
+
+  /**
+   * @return An empty repository.
+   */
+  protected abstract UserRepository newRepository();
+
+  @BeforeMethod
+  public void setUp() {
+    repository = newRepository();
+  }
+
+  @Test
+  public void testFindsAddedUsersByIdUsernameAndTenant() {
+    User alice = user(Tenant, 1, "alice");
+    User bob = user(OtherTenant, 2, "bob");
+    repository.add(Tenant, alice);
+    repository.addAll(OtherTenant, ImmutableList.of(bob));
+
+    assertThat(repository.get(Tenant, alice.id).get().username, is("alice"));
+    assertThat(repository.get(Tenant, "alice").get().id, is(alice.id));
+    assertThat(repository.get(OtherTenant, "alice").isPresent(), is(false));
+    assertThat(repository.get(OtherTenant, alice.id).isPresent(), is(false));
+    assertThat(repository.get(OtherTenant), contains(bob));
+    assertThat(repository.getUserForUniqueUsername("bob").get().id, is(bob.id));
+    assertThat(repository.getUserForUniqueUsername("carol").isPresent(), is(false));
+  }
+
+  @Test
+  public void testRejectsADuplicateUsernameWithinATenant() {
+    repository.add(Tenant, user(Tenant, 1, "alice"));
+
+    assertRejected(() -> repository.add(Tenant, user(Tenant, 2, "alice")));
+    repository.add(OtherTenant, user(OtherTenant, 3, "alice"));
+    assertThat(repository.get(Tenant).size(), is(1));
+  }
+
+  @Test
+  public void testUpdateReplacesTheStoredUser() {
+    User alice = user(Tenant, 1, "alice");
+    repository.add(Tenant, alice);
+
+    repository.update(alice.copy().username("alicia").build());
+    assertThat(repository.get(Tenant, alice.id).get().username, is("alicia"));
+    assertThat(repository.get(Tenant, "alice").isPresent(), is(false));
+    assertThat(repository.get(Tenant, "alicia").isPresent(), is(true));
+  }
+
+  @Test
+  public void testRemoveForgetsTheUser() {
+    User alice = user(Tenant, 1, "alice");
+    repository.add(Tenant, alice);
+
+    repository.remove(Tenant, alice);
+    assertThat(repository.get(Tenant, alice.id).isPresent(), is(false));
+    assertThat(repository.get(Tenant, "alice").isPresent(), is(false));
+    assertThat(repository.get(Tenant), is(empty()));
+  }
+
+  @Test
+  public void testAsyncFormsMatchTheRepository() {
+    int id = 10;
+    for (AsyncUserRepository async : ImmutableList.of(AsyncUserRepository.of(repository, Executor),
+        AsyncUserRepository.of(syncOnly(UserRepository.class, repository), Executor))) {
+      User user = user(Tenant, id++, "user-" + id);
+      User other = user(Tenant, id++, "user-" + id);
+      await(async.addAsync(Tenant, user));
+      await(async.addAllAsync(Tenant, ImmutableList.of(other)));
+
+      assertThat(await(async.getAsync(Tenant, user.id)), is(repository.get(Tenant, user.id)));
+      assertThat(await(async.getAsync(Tenant, user.username)).get().id, is(user.id));
+      assertThat(await(async.getAsync(Tenant)).size(), is(repository.get(Tenant).size()));
+      assertThat(await(async.getUserForUniqueUsernameAsync(other.username)).get().id, is(other.id));
+
+      await(async.updateAsync(user.copy().username(user.username + "-renamed").build()));
+      assertThat(repository.get(Tenant, user.username + "-renamed").isPresent(), is(true));
+      await(async.removeAsync(Tenant, other));
+      assertThat(repository.get(Tenant, other.id).isPresent(), is(false));
+    }
+  }
+
+  @Test
+  public void testAsyncFormsFailTheStageRatherThanThrow() {
+    repository.add(Tenant, user(Tenant, 1, "alice"));
+    for (AsyncUserRepository async : ImmutableList.of(AsyncUserRepository.of(repository, Executor),
+        AsyncUserRepository.of(syncOnly(UserRepository.class, repository), Executor))) {
+      awaitFailure(async.addAsync(Tenant, user(Tenant, 2, "alice")));
+    }
+  }
+
+  private static User user(TenantId tenantId, int id, String username) {
+    return new User.Builder()
+        .id(new UserId(3, id))
+        .tenantId(tenantId)
+        .username(username)
+        .passwordHash("$pbkdf2-sha256$i=10000$c2FsdA$aGFzaA")
+        .enablement(Enablement.indefiniteEnablement())
+        .userPermissions(Collections.emptySet())
+        .build();
+  }
+}
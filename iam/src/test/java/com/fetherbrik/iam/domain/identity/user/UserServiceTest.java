@@ -0,0 +1,96 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+
+package com.fetherbrik.iam.domain.identity.user;
+
+import com.fetherbrik.iam.domain.identity.Enablement;
+import com.fetherbrik.iam.domain.identity.password.PasswordHashingService;
+import com.fetherbrik.iam.domain.identity.password.Pbkdf2PasswordHasher;
+import com.fetherbrik.iam.domain.identity.tenant.TenantId;
+import com.fetherbrik.iam.infrastructure.memory.InMemoryUserRepository;
+import com.google.common.eventbus.EventBus;
+import com.google.inject.Guice;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Collections;
+import java.util.Optional;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * @author ggranum
+ */
+public class UserServiceTest {
+
+  private static final TenantId Tenant = new TenantId(1, 1);
+  private static final String Password = "correct horse battery staple";
+
+  private InMemoryUserRepository users;
+  private UserService userService;
+
+  @BeforeMethod
+  public void setUp() {
+    users = new InMemoryUserRepository();
+    PasswordHashingService passwordHashing = new PasswordHashingService(new Pbkdf2PasswordHasher(20_000), 2, 16);
+    userService = Guice.createInjector(binder -> {
+      binder.bind(EventBus.class).toInstance(new EventBus());
+      binder.bind(PasswordHashingService.class).toInstance(passwordHashing);
+      binder.bind(UserRepository.class).toInstance(users);
+    }).getInstance(UserService.class);
+  }
+
+  @Test
+  public void testTheRightPasswordReturnsTheUser() {
+    User user = user("alice", new Pbkdf2PasswordHasher(20_000).hash(Password));
+    users.add(Tenant, user);
+
+    Optional<User> found = userService.withCredentials(Tenant, "alice", Password);
+    assertThat(found.get(), is(user));
+    assertThat("A hash at the current cost isn't replaced.",
+        users.get(Tenant, "alice").get().passwordHash,
+        is(user.passwordHash));
+  }
+
+  @Test
+  public void testTheWrongPasswordReturnsNothing() {
+    users.add(Tenant, user("alice", new Pbkdf2PasswordHasher(20_000).hash(Password)));
+    assertThat(userService.withCredentials(Tenant, "alice", "not the password").isPresent(), is(false));
+  }
+
+  @Test
+  public void testAnUnknownUserReturnsNothing() {
+    users.add(Tenant, user("alice", new Pbkdf2PasswordHasher(20_000).hash(Password)));
+    assertThat(userService.withCredentials(Tenant, "bob", Password).isPresent(), is(false));
+    assertThat(userService.withCredentials(new TenantId(1, 2), "alice", Password).isPresent(), is(false));
+  }
+
+  @Test
+  public void testAnOutdatedHashIsUpgradedOnLogin() {
+    User user = user("alice", new Pbkdf2PasswordHasher(10_000).hash(Password));
+    users.add(Tenant, user);
+
+    User upgraded = userService.withCredentials(Tenant, "alice", Password).get();
+    assertThat(upgraded.id, is(user.id));
+    assertThat(upgraded.passwordHash, startsWith("$" + Pbkdf2PasswordHasher.ALGORITHM + "$i=20000$"));
+    assertThat(upgraded.saltHex, nullValue());
+    assertThat(users.get(Tenant, "alice").get().passwordHash, is(upgraded.passwordHash));
+    assertThat(userService.withCredentials(Tenant, "alice", Password).get().passwordHash,
+        is(upgraded.passwordHash));
+  }
+
+  private static User user(String username, String passwordHash) {
+    return new User.Builder()
+        .id(new UserId(1, username.hashCode()))
+        .tenantId(Tenant)
+        .username(username)
+        .passwordHash(passwordHash)
+        .enablement(Enablement.indefiniteEnablement())
+        .userPermissions(Collections.emptySet())
+        .build();
+  }
+}
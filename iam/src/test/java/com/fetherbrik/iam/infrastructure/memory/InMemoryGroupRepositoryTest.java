@@ -0,0 +1,21 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+
+package com.fetherbrik.iam.infrastructure.memory;
+
+import com.fetherbrik.iam.domain.identity.group.GroupRepository;
+import com.fetherbrik.iam.domain.identity.group.GroupRepositoryContract;
+
+/**
+ * @author ggranum
+ */
+public class InMemoryGroupRepositoryTest extends GroupRepositoryContract {
+
+  @Override
+  protected GroupRepository newRepository() {
+    return new InMemoryGroupRepository();
+  }
+}
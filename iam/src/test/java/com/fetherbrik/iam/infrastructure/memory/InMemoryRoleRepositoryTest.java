@@ -0,0 +1,21 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+
+package com.fetherbrik.iam.infrastructure.memory;
+
+import com.fetherbrik.iam.domain.access.role.RoleRepository;
+import com.fetherbrik.iam.domain.access.role.RoleRepositoryContract;
+
+/**
+ * @author ggranum
+ */
+public class InMemoryRoleRepositoryTest extends RoleRepositoryContract {
+
+  @Override
+  protected RoleRepository newRepository() {
+    return new InMemoryRoleRepository();
+  }
+}
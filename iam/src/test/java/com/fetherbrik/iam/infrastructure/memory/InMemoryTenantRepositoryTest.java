@@ -0,0 +1,21 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+
+package com.fetherbrik.iam.infrastructure.memory;
+
+import com.fetherbrik.iam.domain.identity.tenant.TenantRepository;
+import com.fetherbrik.iam.domain.identity.tenant.TenantRepositoryContract;
+
+/**
+ * @author ggranum
+ */
+public class InMemoryTenantRepositoryTest extends TenantRepositoryContract {
+
+  @Override
+  protected TenantRepository newRepository() {
+    return new InMemoryTenantRepository();
+  }
+}
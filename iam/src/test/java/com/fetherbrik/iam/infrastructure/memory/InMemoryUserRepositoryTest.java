@@ -0,0 +1,21 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+
+package com.fetherbrik.iam.infrastructure.memory;
+
+import com.fetherbrik.iam.domain.identity.user.UserRepository;
+import com.fetherbrik.iam.domain.identity.user.UserRepositoryContract;
+
+/**
+ * @author ggranum
+ */
+public class InMemoryUserRepositoryTest extends UserRepositoryContract {
+
+  @Override
+  protected UserRepository newRepository() {
+    return new InMemoryUserRepository();
+  }
+}
@@ -0,0 +1,504 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+package com.fetherbrik.mongodb;
+
+import com.fetherbrik.core.base.Buildable;
+import com.mongodb.MongoClientSettings;
+import org.bson.BsonBinaryReader;
+import org.bson.BsonBinaryWriter;
+import org.bson.Document;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.configuration.CodecProvider;
+import org.bson.codecs.configuration.CodecRegistries;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.io.BasicOutputBuffer;
+import org.bson.types.ObjectId;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encode and decode cost of the Document path (BuilderGenCodec and hand written transforms) against the streaming
+ * path (BuildableCodec from a BuildableSchema), for User, Group and Tenant shaped types. The shapes mirror the iam
+ * entities' fields, without depending on the iam module. Run with -prof gc to see the allocation difference.
+ * <p>
+ * ./gradlew :mongodb:jmh -Pjmh.include=BuildableCodecBenchmark
+ *
+ * @author ggranum
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BuildableCodecBenchmark {
+
+  @Param({"user", "group", "tenant"})
+  public String shape;
+
+  @Param({"document", "streaming"})
+  public String path;
+
+  private Codec<Object> codec;
+  private Object value;
+  private byte[] encoded;
+  private final BasicOutputBuffer buffer = new BasicOutputBuffer(4096);
+
+  @Setup
+  @SuppressWarnings("unchecked")
+  public void setUp() {
+    CodecRegistry buildables = path.equals("streaming")
+                               ? CodecRegistries.fromProviders(new BuildableCodecProvider.Builder()
+                                   .add(Member.SCHEMA)
+                                   .add(UserShape.SCHEMA)
+                                   .add(GroupShape.SCHEMA)
+                                   .add(TenantShape.SCHEMA)
+                                   .build())
+                               : CodecRegistries.fromProviders(Member.DOCUMENT_PROVIDER,
+                                   UserShape.DOCUMENT_PROVIDER,
+                                   GroupShape.DOCUMENT_PROVIDER,
+                                   TenantShape.DOCUMENT_PROVIDER);
+    CodecRegistry registry = CodecRegistries.fromRegistries(buildables,
+        MongoClientSettings.getDefaultCodecRegistry());
+
+    switch (shape) {
+      case "user":
+        value = UserShape.sample();
+        break;
+      case "group":
+        value = GroupShape.sample(50);
+        break;
+      default:
+        value = TenantShape.sample();
+    }
+    codec = (Codec<Object>) registry.get(value.getClass());
+    encoded = encode();
+  }
+
+  @Benchmark
+  public byte[] encode() {
+    buffer.truncateToPosition(0);
+    try (BsonBinaryWriter writer = new BsonBinaryWriter(buffer)) {
+      codec.encode(writer, value, EncoderContext.builder().build());
+    }
+    return buffer.toByteArray();
+  }
+
+  @Benchmark
+  public Object decode() {
+    try (BsonBinaryReader reader = new BsonBinaryReader(ByteBuffer.wrap(encoded))) {
+      return codec.decode(reader, DecoderContext.builder().build());
+    }
+  }
+
+  public static final class Member implements Buildable {
+
+    static final BuildableSchema<Member, Builder> SCHEMA = BuildableSchema.of(Member.class, Builder::new, Builder::build)
+        .string("type", m -> m.type, Builder::type)
+        .field("memberId", ObjectId.class, m -> m.memberId, Builder::memberId)
+        .build();
+
+    static final CodecProvider DOCUMENT_PROVIDER = new BuilderGenCodecProvider<>(Member.class,
+        doc -> new Builder().type(doc.getString("type")).memberId(doc.getObjectId("memberId")).build(),
+        m -> new Document("type", m.type).append("memberId", m.memberId));
+
+    final String type;
+    final ObjectId memberId;
+
+    private Member(Builder builder) {
+      type = builder.type;
+      memberId = builder.memberId;
+    }
+
+    public static final class Builder {
+
+      private String type;
+      private ObjectId memberId;
+
+      Builder type(String type) {
+        this.type = type;
+        return this;
+      }
+
+      Builder memberId(ObjectId memberId) {
+        this.memberId = memberId;
+        return this;
+      }
+
+      Member build() {
+        return new Member(this);
+      }
+    }
+  }
+
+  public static final class UserShape implements Buildable {
+
+    static final BuildableSchema<UserShape, Builder> SCHEMA = BuildableSchema.of(UserShape.class,
+        Builder::new,
+        Builder::build)
+        .field("_id", ObjectId.class, u -> u.id, Builder::id)
+        .field("tenantId", ObjectId.class, u -> u.tenantId, Builder::tenantId)
+        .string("username", u -> u.username, Builder::username)
+        .string("passwordHash", u -> u.passwordHash, Builder::passwordHash)
+        .bool("enabled", u -> u.enabled, Builder::enabled)
+        .int64("startDate", u -> u.startDate, Builder::startDate)
+        .int64("endDate", u -> u.endDate, Builder::endDate)
+        .list("permissions", String.class, u -> u.permissions, Builder::permissions)
+        .build();
+
+    @SuppressWarnings("unchecked")
+    static final CodecProvider DOCUMENT_PROVIDER = new BuilderGenCodecProvider<>(UserShape.class,
+        doc -> new Builder()
+            .id(doc.getObjectId("_id"))
+            .tenantId(doc.getObjectId("tenantId"))
+            .username(doc.getString("username"))
+            .passwordHash(doc.getString("passwordHash"))
+            .enabled(doc.getBoolean("enabled"))
+            .startDate(doc.getLong("startDate"))
+            .endDate(doc.getLong("endDate"))
+            .permissions((List<String>) doc.get("permissions"))
+            .build(),
+        u -> new Document("_id", u.id)
+            .append("tenantId", u.tenantId)
+            .append("username", u.username)
+            .append("passwordHash", u.passwordHash)
+            .append("enabled", u.enabled)
+            .append("startDate", u.startDate)
+            .append("endDate", u.endDate)
+            .append("permissions", u.permissions));
+
+    final ObjectId id;
+    final ObjectId tenantId;
+    final String username;
+    final String passwordHash;
+    final boolean enabled;
+    final long startDate;
+    final long endDate;
+    final List<String> permissions;
+
+    private UserShape(Builder builder) {
+      id = builder.id;
+      tenantId = builder.tenantId;
+      username = builder.username;
+      passwordHash = builder.passwordHash;
+      enabled = builder.enabled;
+      startDate = builder.startDate;
+      endDate = builder.endDate;
+      permissions = builder.permissions;
+    }
+
+    static UserShape sample() {
+      List<String> permissions = new ArrayList<>();
+      for (int i = 0; i < 8; i++) {
+        permissions.add("iam.permission." + i);
+      }
+      return new Builder()
+          .id(new ObjectId())
+          .tenantId(new ObjectId())
+          .username("someone@example.com")
+          .passwordHash("$argon2id$v=19$m=19456,t=2,p=1$c29tZXNhbHRzb21lc2FsdA$aGFzaGhhc2hoYXNoaGFzaGhhc2hoYXNoaGFzaA")
+          .enabled(true)
+          .startDate(1_546_300_800_000L)
+          .endDate(Long.MAX_VALUE)
+          .permissions(permissions)
+          .build();
+    }
+
+    public static final class Builder {
+
+      private ObjectId id;
+      private ObjectId tenantId;
+      private String username;
+      private String passwordHash;
+      private boolean enabled;
+      private long startDate;
+      private long endDate;
+      private List<String> permissions;
+
+      Builder id(ObjectId id) {
+        this.id = id;
+        return this;
+      }
+
+      Builder tenantId(ObjectId tenantId) {
+        this.tenantId = tenantId;
+        return this;
+      }
+
+      Builder username(String username) {
+        this.username = username;
+        return this;
+      }
+
+      Builder passwordHash(String passwordHash) {
+        this.passwordHash = passwordHash;
+        return this;
+      }
+
+      Builder enabled(boolean enabled) {
+        this.enabled = enabled;
+        return this;
+      }
+
+      Builder startDate(long startDate) {
+        this.startDate = startDate;
+        return this;
+      }
+
+      Builder endDate(long endDate) {
+        this.endDate = endDate;
+        return this;
+      }
+
+      Builder permissions(List<String> permissions) {
+        this.permissions = permissions;
+        return this;
+      }
+
+      UserShape build() {
+        return new UserShape(this);
+      }
+    }
+  }
+
+  public static final class GroupShape implements Buildable {
+
+    static final BuildableSchema<GroupShape, Builder> SCHEMA = BuildableSchema.of(GroupShape.class,
+        Builder::new,
+        Builder::build)
+        .field("_id", ObjectId.class, g -> g.id, Builder::id)
+        .field("tenantId", ObjectId.class, g -> g.tenantId, Builder::tenantId)
+        .string("name", g -> g.name, Builder::name)
+        .string("description", g -> g.description, Builder::description)
+        .bool("internal", g -> g.internal, Builder::internal)
+        .list("members", Member.class, g -> g.members, Builder::members)
+        .build();
+
+    @SuppressWarnings("unchecked")
+    static final CodecProvider DOCUMENT_PROVIDER = new BuilderGenCodecProvider<>(GroupShape.class,
+        doc -> {
+          List<Member> members = new ArrayList<>();
+          for (Document member : (List<Document>) doc.get("members")) {
+            members.add(new Member.Builder()
+                .type(member.getString("type"))
+                .memberId(member.getObjectId("memberId"))
+                .build());
+          }
+          return new Builder()
+              .id(doc.getObjectId("_id"))
+              .tenantId(doc.getObjectId("tenantId"))
+              .name(doc.getString("name"))
+              .description(doc.getString("description"))
+              .internal(doc.getBoolean("internal"))
+              .members(members)
+              .build();
+        },
+        g -> {
+          List<Document> members = new ArrayList<>(g.members.size());
+          for (Member member : g.members) {
+            members.add(new Document("type", member.type).append("memberId", member.memberId));
+          }
+          return new Document("_id", g.id)
+              .append("tenantId", g.tenantId)
+              .append("name", g.name)
+              .append("description", g.description)
+              .append("internal", g.internal)
+              .append("members", members);
+        });
+
+    final ObjectId id;
+    final ObjectId tenantId;
+    final String name;
+    final String description;
+    final boolean internal;
+    final List<Member> members;
+
+    private GroupShape(Builder builder) {
+      id = builder.id;
+      tenantId = builder.tenantId;
+      name = builder.name;
+      description = builder.description;
+      internal = builder.internal;
+      members = builder.members;
+    }
+
+    static GroupShape sample(int memberCount) {
+      List<Member> members = new ArrayList<>(memberCount);
+      for (int i = 0; i < memberCount; i++) {
+        members.add(new Member.Builder().type(i % 5 == 0 ? "Group" : "User").memberId(new ObjectId()).build());
+      }
+      return new Builder()
+          .id(new ObjectId())
+          .tenantId(new ObjectId())
+          .name("Engineering")
+          .description("Everyone who builds the thing.")
+          .internal(false)
+          .members(members)
+          .build();
+    }
+
+    public static final class Builder {
+
+      private ObjectId id;
+      private ObjectId tenantId;
+      private String name;
+      private String description;
+      private boolean internal;
+      private List<Member> members;
+
+      Builder id(ObjectId id) {
+        this.id = id;
+        return this;
+      }
+
+      Builder tenantId(ObjectId tenantId) {
+        this.tenantId = tenantId;
+        return this;
+      }
+
+      Builder name(String name) {
+        this.name = name;
+        return this;
+      }
+
+      Builder description(String description) {
+        this.description = description;
+        return this;
+      }
+
+      Builder internal(boolean internal) {
+        this.internal = internal;
+        return this;
+      }
+
+      Builder members(List<Member> members) {
+        this.members = members;
+        return this;
+      }
+
+      GroupShape build() {
+        return new GroupShape(this);
+      }
+    }
+  }
+
+  public static final class TenantShape implements Buildable {
+
+    static final BuildableSchema<TenantShape, Builder> SCHEMA = BuildableSchema.of(TenantShape.class,
+        Builder::new,
+        Builder::build)
+        .field("_id", ObjectId.class, t -> t.id, Builder::id)
+        .string("name", t -> t.name, Builder::name)
+        .string("description", t -> t.description, Builder::description)
+        .string("serverHostname", t -> t.serverHostname, Builder::serverHostname)
+        .bool("active", t -> t.active, Builder::active)
+        .bool("systemTenant", t -> t.systemTenant, Builder::systemTenant)
+        .build();
+
+    static final CodecProvider DOCUMENT_PROVIDER = new BuilderGenCodecProvider<>(TenantShape.class,
+        doc -> new Builder()
+            .id(doc.getObjectId("_id"))
+            .name(doc.getString("name"))
+            .description(doc.getString("description"))
+            .serverHostname(doc.getString("serverHostname"))
+            .active(doc.getBoolean("active"))
+            .systemTenant(doc.getBoolean("systemTenant"))
+            .build(),
+        t -> new Document("_id", t.id)
+            .append("name", t.name)
+            .append("description", t.description)
+            .append("serverHostname", t.serverHostname)
+            .append("active", t.active)
+            .append("systemTenant", t.systemTenant));
+
+    final ObjectId id;
+    final String name;
+    final String description;
+    final String serverHostname;
+    final boolean active;
+    final boolean systemTenant;
+
+    private TenantShape(Builder builder) {
+      id = builder.id;
+      name = builder.name;
+      description = builder.description;
+      serverHostname = builder.serverHostname;
+      active = builder.active;
+      systemTenant = builder.systemTenant;
+    }
+
+    static TenantShape sample() {
+      return new Builder()
+          .id(new ObjectId())
+          .name("Example")
+          .description("An example tenant.")
+          .serverHostname("example.com")
+          .active(true)
+          .systemTenant(false)
+          .build();
+    }
+
+    public static final class Builder {
+
+      private ObjectId id;
+      private String name;
+      private String description;
+      private String serverHostname;
+      private boolean active;
+      private boolean systemTenant;
+
+      Builder id(ObjectId id) {
+        this.id = id;
+        return this;
+      }
+
+      Builder name(String name) {
+        this.name = name;
+        return this;
+      }
+
+      Builder description(String description) {
+        this.description = description;
+        return this;
+      }
+
+      Builder serverHostname(String serverHostname) {
+        this.serverHostname = serverHostname;
+        return this;
+      }
+
+      Builder active(boolean active) {
+        this.active = active;
+        return this;
+      }
+
+      Builder systemTenant(boolean systemTenant) {
+        this.systemTenant = systemTenant;
+        return this;
+      }
+
+      TenantShape build() {
+        return new TenantShape(this);
+      }
+    }
+  }
+}
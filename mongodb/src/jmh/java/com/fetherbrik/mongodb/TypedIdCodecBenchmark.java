@@ -0,0 +1,131 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+package com.fetherbrik.mongodb;
+
+import com.fetherbrik.core.persistence.id.Identified;
+import com.fetherbrik.core.persistence.id.TypedId;
+import org.bson.BsonBinaryReader;
+import org.bson.BsonBinaryWriter;
+import org.bson.BsonReader;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.io.BasicOutputBuffer;
+import org.bson.types.ObjectId;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scans a million documents of the shape {_id: ObjectId, tenantId: ObjectId}, decoding both ids to TypedIds, with
+ * the binary TypedIdCodec and with the hex string round trip it replaced. Scores are per document. Also compares id
+ * generation with the hex string path MongoIdGenerator used to take. Run with -prof gc to see the allocation
+ * difference.
+ * <p>
+ * ./gradlew :mongodb:jmh -Pjmh.include=TypedIdCodecBenchmark
+ *
+ * @author ggranum
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class TypedIdCodecBenchmark {
+
+  private static final int DocumentCount = 1_000_000;
+
+  @Param({"hex", "binary"})
+  public String path;
+
+  @SuppressWarnings("rawtypes")
+  private Codec<TypedId> codec;
+  private byte[] documents;
+  private int[] offsets;
+  private final MongoIdGenerator idGen = new MongoIdGenerator();
+
+  @Setup
+  public void setUp() {
+    codec = path.equals("binary") ? new TypedIdCodec() : new HexTypedIdCodec();
+    BasicOutputBuffer buffer = new BasicOutputBuffer(DocumentCount * 48);
+    offsets = new int[DocumentCount + 1];
+    EncoderContext encoderContext = EncoderContext.builder().build();
+    TypedId<?> tenantId = idGen.next(Identified.class);
+    for (int i = 0; i < DocumentCount; i++) {
+      offsets[i] = buffer.getPosition();
+      BsonWriter writer = new BsonBinaryWriter(buffer);
+      writer.writeStartDocument();
+      writer.writeName("_id");
+      codec.encode(writer, idGen.next(Identified.class), encoderContext);
+      writer.writeName("tenantId");
+      codec.encode(writer, tenantId, encoderContext);
+      writer.writeEndDocument();
+    }
+    offsets[DocumentCount] = buffer.getPosition();
+    documents = buffer.toByteArray();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(DocumentCount)
+  public long scan() {
+    DecoderContext decoderContext = DecoderContext.builder().build();
+    long checksum = 0;
+    for (int i = 0; i < DocumentCount; i++) {
+      ByteBuffer document = ByteBuffer.wrap(documents, offsets[i], offsets[i + 1] - offsets[i]).slice();
+      try (BsonBinaryReader reader = new BsonBinaryReader(document)) {
+        reader.readStartDocument();
+        reader.readName();
+        checksum += codec.decode(reader, decoderContext).lo();
+        reader.readName();
+        checksum += codec.decode(reader, decoderContext).lo();
+        reader.readEndDocument();
+      }
+    }
+    return checksum;
+  }
+
+  @Benchmark
+  public BigInteger generate() {
+    return path.equals("binary") ? idGen.next() : new BigInteger(new ObjectId().toHexString(), 16);
+  }
+
+  /**
+   * The hex string round trip TypedIdCodec used before.
+   */
+  @SuppressWarnings("rawtypes")
+  private static final class HexTypedIdCodec implements Codec<TypedId> {
+
+    @Override
+    public void encode(BsonWriter writer, TypedId id, EncoderContext encoderContext) {
+      writer.writeObjectId(new ObjectId(id.toBytes(MongoIdGenerator.objectIdByteCount)));
+    }
+
+    @Override
+    public TypedId decode(BsonReader reader, DecoderContext decoderContext) {
+      return new TypedId(reader.readObjectId().toHexString());
+    }
+
+    @Override
+    public Class<TypedId> getEncoderClass() {
+      return TypedId.class;
+    }
+  }
+}
@@ -0,0 +1,75 @@
+package com.fetherbrik.mongodb;
+
+import com.fetherbrik.mongodb.BuildableSchema.FieldCodec;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streams a Buildable type to and from BSON, one field at a time, as described by a {@link BuildableSchema}. Unlike
+ * {@link BuilderGenCodec}, no {@link org.bson.Document} is built along the way.
+ *
+ * @author ggranum
+ */
+@Immutable
+@ThreadSafe
+public final class BuildableCodec<T, B> implements Codec<T> {
+
+  private final BuildableSchema<T, B> schema;
+  private final FieldCodec<T, B>[] fields;
+  private final Map<String, FieldCodec<T, B>> fieldsByName;
+
+  @SuppressWarnings("unchecked")
+  BuildableCodec(BuildableSchema<T, B> schema, List<FieldCodec<T, B>> fields) {
+    this.schema = schema;
+    this.fields = fields.toArray(new FieldCodec[0]);
+    this.fieldsByName = new HashMap<>(fields.size() * 2);
+    for (FieldCodec<T, B> field : fields) {
+      fieldsByName.put(field.name(), field);
+    }
+  }
+
+  @Override
+  public T decode(BsonReader reader, DecoderContext decoderContext) {
+    B builder = schema.newBuilder.get();
+    reader.readStartDocument();
+    while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+      FieldCodec<T, B> field = fieldsByName.get(reader.readName());
+      if (field == null) {
+        reader.skipValue();
+      } else if (reader.getCurrentBsonType() == BsonType.NULL) {
+        reader.readNull();
+      } else {
+        field.decode(reader, builder, decoderContext);
+      }
+    }
+    reader.readEndDocument();
+    return schema.build.apply(builder);
+  }
+
+  @Override
+  public void encode(BsonWriter writer, T value, EncoderContext encoderContext) {
+    writer.writeStartDocument();
+    for (FieldCodec<T, B> field : fields) {
+      if (field.isPresent(value)) {
+        writer.writeName(field.name());
+        field.encode(writer, value, encoderContext);
+      }
+    }
+    writer.writeEndDocument();
+  }
+
+  @Override
+  public Class<T> getEncoderClass() {
+    return schema.buildableClass;
+  }
+}
@@ -0,0 +1,89 @@
+package com.fetherbrik.mongodb;
+
+import com.fetherbrik.core.base.Buildable;
+import com.fetherbrik.core.base.Verify;
+import org.bson.codecs.Codec;
+import org.bson.codecs.configuration.CodecProvider;
+import org.bson.codecs.configuration.CodecRegistry;
+
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Provides codecs for a whole set of Buildable classes, found with a single map lookup rather than by asking a chain
+ * of single class {@link BuilderGenCodecProvider}s in turn. Each codec is built once per registry; see
+ * {@link CodecCache}.
+ * <pre>
+ *   CodecProvider provider = new BuildableCodecProvider.Builder()
+ *       .add(tenantSchema)
+ *       .add(userSchema)
+ *       .add(Group.class, groupFromDocument, groupToDocument)
+ *       .build();
+ * </pre>
+ *
+ * @author ggranum
+ */
+@Immutable
+@ThreadSafe
+public final class BuildableCodecProvider implements CodecProvider {
+
+  private final Map<Class<?>, Function<CodecRegistry, ? extends Codec<?>>> codecFactories;
+  private final CodecCache codecs = new CodecCache();
+
+  private BuildableCodecProvider(Builder builder) {
+    this.codecFactories = new HashMap<>(builder.codecFactories);
+  }
+
+  public Set<Class<?>> buildableClasses() {
+    return codecFactories.keySet();
+  }
+
+  /**
+   * @return The codec for `clazz`, or null if `clazz` isn't one of this provider's classes, as the driver expects.
+   */
+  @SuppressWarnings("unchecked")
+  @Override
+  public <X> Codec<X> get(Class<X> clazz, CodecRegistry registry) {
+    Function<CodecRegistry, ? extends Codec<?>> factory = codecFactories.get(clazz);
+    if (factory == null) {
+      return null;
+    }
+    return codecs.get(clazz, registry, (Function<CodecRegistry, Codec<X>>) factory);
+  }
+
+  public static final class Builder {
+
+    private final Map<Class<?>, Function<CodecRegistry, ? extends Codec<?>>> codecFactories = new HashMap<>();
+
+    public Builder() {
+    }
+
+    public <T> Builder add(BuildableSchema<T, ?> schema) {
+      return add(schema.buildableClass(), schema::codec);
+    }
+
+    public <T extends Buildable> Builder add(Class<T> buildableClass,
+                                             ToBuildableTransform<T> fromDocumentFn,
+                                             ToDocumentTransform<T> toDocumentFn) {
+      return add(buildableClass,
+          registry -> new BuilderGenCodec<>(registry, buildableClass, fromDocumentFn, toDocumentFn));
+    }
+
+    public BuildableCodecProvider build() {
+      return new BuildableCodecProvider(this);
+    }
+
+    private Builder add(Class<?> buildableClass, Function<CodecRegistry, ? extends Codec<?>> codecFactory) {
+      Verify.isNotNull(buildableClass, "Buildable class is required.");
+      Verify.isFalse(codecFactories.containsKey(buildableClass),
+          "A codec for %s is already registered.",
+          buildableClass.getName());
+      codecFactories.put(buildableClass, codecFactory);
+      return this;
+    }
+  }
+}
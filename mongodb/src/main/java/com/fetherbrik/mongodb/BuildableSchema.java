@@ -0,0 +1,367 @@
+package com.fetherbrik.mongodb;
+
+import com.fetherbrik.core.base.Verify;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.configuration.CodecRegistry;
+
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.ObjIntConsumer;
+import java.util.function.ObjLongConsumer;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * Describes how the fields of a Buildable type map to a BSON document: a getter to read each field from an instance,
+ * and a setter to write it into the type's Builder. {@link #codec(CodecRegistry)} turns the description into a
+ * {@link BuildableCodec}, which reads and writes the fields straight from the BsonReader and BsonWriter, without
+ * going through an intermediate {@link org.bson.Document}.
+ * <pre>
+ *   BuildableSchema&lt;Tenant, Tenant.Builder&gt; schema = BuildableSchema.of(Tenant.class, Tenant.Builder::new, Tenant.Builder::build)
+ *       .field("_id", TenantId.class, t -&gt; t.id, Tenant.Builder::id)
+ *       .string("name", t -&gt; t.name, Tenant.Builder::name)
+ *       .bool("active", t -&gt; t.active, Tenant.Builder::active)
+ *       .build();
+ *   CodecProvider provider = new BuilderGenCodecProvider&lt;&gt;(schema);
+ * </pre>
+ * Null values are not written. Null and unknown fields are skipped when reading, leaving the Builder's default in
+ * place.
+ *
+ * @author ggranum
+ */
+@Immutable
+@ThreadSafe
+public final class BuildableSchema<T, B> {
+
+  final Class<T> buildableClass;
+  final Supplier<B> newBuilder;
+  final Function<B, T> build;
+  private final List<Function<CodecRegistry, FieldCodec<T, B>>> fields;
+
+  private BuildableSchema(Builder<T, B> builder) {
+    this.buildableClass = builder.buildableClass;
+    this.newBuilder = builder.newBuilder;
+    this.build = builder.build;
+    this.fields = new ArrayList<>(builder.fields);
+  }
+
+  /**
+   * @param newBuilder Creates an empty Builder for each decoded document.
+   * @param build      Builds the instance once every field has been read.
+   */
+  public static <T, B> Builder<T, B> of(Class<T> buildableClass, Supplier<B> newBuilder, Function<B, T> build) {
+    return new Builder<>(buildableClass, newBuilder, build);
+  }
+
+  public Class<T> buildableClass() {
+    return buildableClass;
+  }
+
+  /**
+   * Resolve the codec for each field from `registry`, once.
+   */
+  public BuildableCodec<T, B> codec(CodecRegistry registry) {
+    List<FieldCodec<T, B>> bound = new ArrayList<>(fields.size());
+    for (Function<CodecRegistry, FieldCodec<T, B>> field : fields) {
+      bound.add(field.apply(registry));
+    }
+    return new BuildableCodec<>(this, bound);
+  }
+
+  /**
+   * Reads and writes one named field. The name has already been written, or read, by the caller.
+   */
+  interface FieldCodec<T, B> {
+
+    String name();
+
+    /**
+     * @return False if the field's value is null, and nothing should be written.
+     */
+    boolean isPresent(T value);
+
+    void encode(BsonWriter writer, T value, EncoderContext encoderContext);
+
+    void decode(BsonReader reader, B builder, DecoderContext decoderContext);
+  }
+
+  public static final class Builder<T, B> {
+
+    private final Class<T> buildableClass;
+    private final Supplier<B> newBuilder;
+    private final Function<B, T> build;
+    private final List<Function<CodecRegistry, FieldCodec<T, B>>> fields = new ArrayList<>();
+    private final Set<String> names = new HashSet<>();
+
+    private Builder(Class<T> buildableClass, Supplier<B> newBuilder, Function<B, T> build) {
+      this.buildableClass = Verify.isNotNull(buildableClass, "Buildable class is required.");
+      this.newBuilder = Verify.isNotNull(newBuilder, "Builder supplier is required.");
+      this.build = Verify.isNotNull(build, "Build function is required.");
+    }
+
+    public Builder<T, B> string(String name, Function<T, String> getter, BiConsumer<B, String> setter) {
+      return add(name, registry -> new ObjectField<T, B, String>(name, getter, setter) {
+        @Override
+        public void encode(BsonWriter writer, T value, EncoderContext encoderContext) {
+          writer.writeString(getter.apply(value));
+        }
+
+        @Override
+        public void decode(BsonReader reader, B builder, DecoderContext decoderContext) {
+          setter.accept(builder, reader.readString());
+        }
+      });
+    }
+
+    public Builder<T, B> int32(String name, ToIntFunction<T> getter, ObjIntConsumer<B> setter) {
+      return add(name, registry -> new FieldCodec<T, B>() {
+        @Override
+        public String name() {
+          return name;
+        }
+
+        @Override
+        public boolean isPresent(T value) {
+          return true;
+        }
+
+        @Override
+        public void encode(BsonWriter writer, T value, EncoderContext encoderContext) {
+          writer.writeInt32(getter.applyAsInt(value));
+        }
+
+        @Override
+        public void decode(BsonReader reader, B builder, DecoderContext decoderContext) {
+          setter.accept(builder, (int) readNumber(reader));
+        }
+      });
+    }
+
+    public Builder<T, B> int64(String name, ToLongFunction<T> getter, ObjLongConsumer<B> setter) {
+      return add(name, registry -> new FieldCodec<T, B>() {
+        @Override
+        public String name() {
+          return name;
+        }
+
+        @Override
+        public boolean isPresent(T value) {
+          return true;
+        }
+
+        @Override
+        public void encode(BsonWriter writer, T value, EncoderContext encoderContext) {
+          writer.writeInt64(getter.applyAsLong(value));
+        }
+
+        @Override
+        public void decode(BsonReader reader, B builder, DecoderContext decoderContext) {
+          setter.accept(builder, readNumber(reader));
+        }
+      });
+    }
+
+    /**
+     * A null Boolean is not written, like any other null value.
+     */
+    public Builder<T, B> bool(String name, Function<T, Boolean> getter, BiConsumer<B, Boolean> setter) {
+      return add(name, registry -> new ObjectField<T, B, Boolean>(name, getter, setter) {
+        @Override
+        public void encode(BsonWriter writer, T value, EncoderContext encoderContext) {
+          writer.writeBoolean(getter.apply(value));
+        }
+
+        @Override
+        public void decode(BsonReader reader, B builder, DecoderContext decoderContext) {
+          setter.accept(builder, reader.readBoolean());
+        }
+      });
+    }
+
+    /**
+     * A field encoded by whichever codec the registry holds for `type`, e.g. a TypedId, a Date or another Buildable.
+     */
+    public <V> Builder<T, B> field(String name, Class<V> type, Function<T, V> getter, BiConsumer<B, V> setter) {
+      return add(name, registry -> new CodecField<>(name, registry.get(type), getter, setter));
+    }
+
+    /**
+     * A field encoded by `codec`, regardless of what the registry holds.
+     */
+    public <V> Builder<T, B> field(String name, Codec<V> codec, Function<T, V> getter, BiConsumer<B, V> setter) {
+      Verify.isNotNull(codec, "Codec is required.");
+      return add(name, registry -> new CodecField<>(name, codec, getter, setter));
+    }
+
+    /**
+     * A set, written as a BSON array of elements encoded by the registry's codec for `elementType`. Decoded into a
+     * HashSet.
+     */
+    public <E> Builder<T, B> set(String name,
+                                 Class<E> elementType,
+                                 Function<T, ? extends Collection<E>> getter,
+                                 BiConsumer<B, Set<E>> setter) {
+      return collection(name, elementType, HashSet::new, getter, setter);
+    }
+
+    /**
+     * A list, written as a BSON array of elements encoded by the registry's codec for `elementType`. Decoded into an
+     * ArrayList.
+     */
+    public <E> Builder<T, B> list(String name,
+                                  Class<E> elementType,
+                                  Function<T, ? extends Collection<E>> getter,
+                                  BiConsumer<B, List<E>> setter) {
+      return collection(name, elementType, ArrayList::new, getter, setter);
+    }
+
+    public <E, C extends Collection<E>> Builder<T, B> collection(String name,
+                                                                 Class<E> elementType,
+                                                                 Supplier<C> newCollection,
+                                                                 Function<T, ? extends Collection<E>> getter,
+                                                                 BiConsumer<B, C> setter) {
+      return add(name, registry -> new CollectionField<>(name, registry.get(elementType), newCollection, getter, setter));
+    }
+
+    public BuildableSchema<T, B> build() {
+      Verify.isFalse(fields.isEmpty(), "At least one field is required.");
+      return new BuildableSchema<>(this);
+    }
+
+    private Builder<T, B> add(String name, Function<CodecRegistry, FieldCodec<T, B>> field) {
+      Verify.isNotEmpty(name, "Field name is required.");
+      Verify.isTrue(names.add(name), "Field '%s' is already mapped.", name);
+      fields.add(field);
+      return this;
+    }
+  }
+
+  /**
+   * BSON written by other tools may hold a whole number as any numeric type.
+   */
+  private static long readNumber(BsonReader reader) {
+    BsonType type = reader.getCurrentBsonType();
+    if (type == BsonType.INT32) {
+      return reader.readInt32();
+    }
+    if (type == BsonType.DOUBLE) {
+      return (long) reader.readDouble();
+    }
+    return reader.readInt64();
+  }
+
+  private abstract static class ObjectField<T, B, V> implements FieldCodec<T, B> {
+
+    private final String name;
+    final Function<T, ? extends V> getter;
+    final BiConsumer<B, V> setter;
+
+    ObjectField(String name, Function<T, ? extends V> getter, BiConsumer<B, V> setter) {
+      this.name = name;
+      this.getter = Verify.isNotNull(getter, "A getter is required.");
+      this.setter = Verify.isNotNull(setter, "A setter is required.");
+    }
+
+    @Override
+    public String name() {
+      return name;
+    }
+
+    @Override
+    public boolean isPresent(T value) {
+      return getter.apply(value) != null;
+    }
+  }
+
+  private static final class CodecField<T, B, V> extends ObjectField<T, B, V> {
+
+    private final Codec<V> codec;
+
+    CodecField(String name, Codec<V> codec, Function<T, V> getter, BiConsumer<B, V> setter) {
+      super(name, getter, setter);
+      this.codec = codec;
+    }
+
+    @Override
+    public void encode(BsonWriter writer, T value, EncoderContext encoderContext) {
+      encoderContext.encodeWithChildContext(codec, writer, getter.apply(value));
+    }
+
+    @Override
+    public void decode(BsonReader reader, B builder, DecoderContext decoderContext) {
+      setter.accept(builder, decoderContext.decodeWithChildContext(codec, reader));
+    }
+  }
+
+  private static final class CollectionField<T, B, E, C extends Collection<E>> implements FieldCodec<T, B> {
+
+    private final String name;
+    private final Codec<E> elementCodec;
+    private final Supplier<C> newCollection;
+    private final Function<T, ? extends Collection<E>> getter;
+    private final BiConsumer<B, C> setter;
+
+    CollectionField(String name,
+                    Codec<E> elementCodec,
+                    Supplier<C> newCollection,
+                    Function<T, ? extends Collection<E>> getter,
+                    BiConsumer<B, C> setter) {
+      this.name = name;
+      this.elementCodec = elementCodec;
+      this.newCollection = newCollection;
+      this.getter = Verify.isNotNull(getter, "A getter is required.");
+      this.setter = Verify.isNotNull(setter, "A setter is required.");
+    }
+
+    @Override
+    public String name() {
+      return name;
+    }
+
+    @Override
+    public boolean isPresent(T value) {
+      return getter.apply(value) != null;
+    }
+
+    @Override
+    public void encode(BsonWriter writer, T value, EncoderContext encoderContext) {
+      writer.writeStartArray();
+      for (E element : getter.apply(value)) {
+        if (element == null) {
+          writer.writeNull();
+        } else {
+          encoderContext.encodeWithChildContext(elementCodec, writer, element);
+        }
+      }
+      writer.writeEndArray();
+    }
+
+    @Override
+    public void decode(BsonReader reader, B builder, DecoderContext decoderContext) {
+      C collection = newCollection.get();
+      reader.readStartArray();
+      while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+        if (reader.getCurrentBsonType() == BsonType.NULL) {
+          reader.readNull();
+        } else {
+          collection.add(decoderContext.decodeWithChildContext(elementCodec, reader));
+        }
+      }
+      reader.readEndArray();
+      setter.accept(builder, collection);
+    }
+  }
+}
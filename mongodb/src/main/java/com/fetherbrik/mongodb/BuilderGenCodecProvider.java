@@ -7,25 +7,37 @@ import org.bson.codecs.configuration.CodecRegistry;
 
 import javax.annotation.concurrent.Immutable;
 import javax.annotation.concurrent.ThreadSafe;
+import java.util.function.Function;
 
 /**
+ * Provides the codec for one Buildable class: either a {@link BuildableCodec} generated from a
+ * {@link BuildableSchema}, which streams fields straight into the class's Builder, or a {@link BuilderGenCodec},
+ * which converts through a {@link org.bson.Document} using your transforms. The codec is built once per registry; see
+ * {@link CodecCache}. To serve several classes from one provider use {@link BuildableCodecProvider}.
+ *
  * @author ggranum
  */
 @Immutable
 @ThreadSafe
 public final class BuilderGenCodecProvider<T extends Buildable> implements CodecProvider {
 
+  public static final String REGISTRY_CACHE_SIZE_PROP_KEY = "com.fetherbrik.mongodb.codec_cache.registries";
+
   private final Class<T> buildableClass;
-  private final ToBuildableTransform<T> fromDocumentFn;
-  private final ToDocumentTransform<T> toDocumentFn;
+  private final Function<CodecRegistry, Codec<T>> codecFactory;
+  private final CodecCache codecs = new CodecCache();
+
+  public BuilderGenCodecProvider(BuildableSchema<T, ?> schema) {
+    this.buildableClass = schema.buildableClass();
+    this.codecFactory = schema::codec;
+  }
 
   public BuilderGenCodecProvider(Class<T> buildableClass,
                                  ToBuildableTransform<T> fromDocumentFn,
                                  ToDocumentTransform<T> toDocumentFn
   ) {
     this.buildableClass = buildableClass;
-    this.fromDocumentFn = fromDocumentFn;
-    this.toDocumentFn = toDocumentFn;
+    this.codecFactory = registry -> new BuilderGenCodec<>(registry, buildableClass, fromDocumentFn, toDocumentFn);
   }
 
   /**
@@ -44,7 +56,7 @@ public final class BuilderGenCodecProvider<T extends Buildable> implements Codec
   public <X> Codec<X> get(Class<X> clazz, CodecRegistry registry) {
     Codec<X> result = null;
     if (clazz == buildableClass) {
-      result = (Codec<X>) new BuilderGenCodec<T>(registry, buildableClass, fromDocumentFn, toDocumentFn);
+      result = (Codec<X>) codecs.get(buildableClass, registry, codecFactory);
     }
     return result;
   }
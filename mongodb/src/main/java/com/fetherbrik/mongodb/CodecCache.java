@@ -0,0 +1,50 @@
+package com.fetherbrik.mongodb;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.bson.codecs.Codec;
+import org.bson.codecs.configuration.CodecRegistry;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * One codec per class per registry, for the codec providers in this package. The driver asks a provider for a codec
+ * each time a registry that doesn't cache (or a new child of one that does) resolves a class, and a codec is costly
+ * to build: it resolves its own child codecs from the registry.
+ * <p>
+ * Registries are compared with equals, which the driver's child registries implement, so repeated lookups through
+ * equivalent registries share a codec. The number of registries remembered is bounded by
+ * {@value BuilderGenCodecProvider#REGISTRY_CACHE_SIZE_PROP_KEY}, default 64.
+ * <p>
+ * Codecs are built outside of any map update: building one may ask the same provider for another codec, e.g. for a
+ * nested Buildable type.
+ *
+ * @author ggranum
+ */
+@ThreadSafe
+final class CodecCache {
+
+  private final Cache<CodecRegistry, Map<Class<?>, Codec<?>>> codecs = CacheBuilder.newBuilder()
+      .maximumSize(Integer.getInteger(BuilderGenCodecProvider.REGISTRY_CACHE_SIZE_PROP_KEY, 64))
+      .build();
+
+  @SuppressWarnings("unchecked")
+  <X> Codec<X> get(Class<X> clazz, CodecRegistry registry, Function<CodecRegistry, Codec<X>> factory) {
+    Map<Class<?>, Codec<?>> forRegistry = codecs.getIfPresent(registry);
+    if (forRegistry == null) {
+      forRegistry = new ConcurrentHashMap<>();
+      Map<Class<?>, Codec<?>> existing = codecs.asMap().putIfAbsent(registry, forRegistry);
+      forRegistry = existing != null ? existing : forRegistry;
+    }
+    Codec<?> codec = forRegistry.get(clazz);
+    if (codec == null) {
+      codec = factory.apply(registry);
+      Codec<?> existing = forRegistry.putIfAbsent(clazz, codec);
+      codec = existing != null ? existing : codec;
+    }
+    return (Codec<X>) codec;
+  }
+}
@@ -0,0 +1,58 @@
+package com.fetherbrik.mongodb;
+
+import com.fetherbrik.core.base.Verify;
+import com.fetherbrik.core.persistence.id.TypedId;
+import org.bson.BsonBinary;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Writes one TypedId subclass, such as UserId, and reads it back as that subclass. Ids that fit in 12 bytes, as those
+ * of {@link MongoIdGenerator} do, are written as ObjectIds; wider ids, as the sixteen bytes of their two longs. Both
+ * forms are read, so a collection may hold ids from either kind of generator. With an IdCodec in the collection's
+ * registry, an id can be used directly as a query value, e.g. `Filters.eq("_id", userId)`.
+ *
+ * @author ggranum
+ */
+public final class IdCodec<I extends TypedId<?>> implements Codec<I> {
+
+  private static final int WideIdByteCount = 16;
+
+  private final Class<I> idClass;
+  private final TypedIdFactory<I> factory;
+
+  public IdCodec(Class<I> idClass, TypedIdFactory<I> factory) {
+    this.idClass = Verify.isNotNull(idClass, "Id class is required.");
+    this.factory = Verify.isNotNull(factory, "Id factory is required.");
+  }
+
+  @Override
+  public void encode(BsonWriter writer, I id, EncoderContext encoderContext) {
+    if (ObjectIds.fitsObjectId(id)) {
+      writer.writeObjectId(ObjectIds.toObjectId(id));
+    } else {
+      byte[] bytes = ByteBuffer.allocate(WideIdByteCount).putLong(id.hi()).putLong(id.lo()).array();
+      writer.writeBinaryData(new BsonBinary(bytes));
+    }
+  }
+
+  @Override
+  public I decode(BsonReader reader, DecoderContext decoderContext) {
+    if (reader.getCurrentBsonType() == BsonType.BINARY) {
+      ByteBuffer bytes = ByteBuffer.wrap(reader.readBinaryData().getData());
+      return factory.create(bytes.getLong(0), bytes.getLong(8));
+    }
+    return ObjectIds.toTypedId(reader.readObjectId(), factory);
+  }
+
+  @Override
+  public Class<I> getEncoderClass() {
+    return idClass;
+  }
+}
@@ -1,10 +1,17 @@
 package com.fetherbrik.mongodb;
 
+import com.fetherbrik.core.base.Verify;
+import com.fetherbrik.core.persistence.id.HexCodec;
 import com.fetherbrik.core.persistence.id.IdGenerator;
-import org.bson.types.ObjectId;
+import com.fetherbrik.core.persistence.id.Identified;
+import com.fetherbrik.core.persistence.id.TypedId;
 
 import javax.annotation.Nonnull;
 import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Generate a MongoDb compatible ObjectId as a Hex String or BigInteger. BigInteger has a slight memory and significant
@@ -14,16 +21,29 @@ import java.math.BigInteger;
  * Which is to say that, if a BigInteger is created with 12 bytes, but the first byte value of that 12 bytes is zero,
  * then BigInteger.toString(16).getBytes().length will be 11.
  *
+ * Ids are laid out as the ObjectId specification describes: a four byte timestamp in seconds, a five byte random
+ * value chosen once per generator, and a three byte counter. They are assembled straight into the two longs of a
+ * TypedId (see {@link ObjectIds}), without creating an ObjectId or a hex string. {@link #nextBatch(int)} reserves
+ * a run of counter values in one atomic step.
+ *
  * @author ggranum
  */
 public class MongoIdGenerator implements IdGenerator {
   public  static final int objectIdByteCount = 12;
 
+  private static final int CounterMask = 0x00FFFFFF;
+  private static final SecureRandom Random = new SecureRandom();
+
+  /**
+   * Forty random bits, shifted above the counter.
+   */
+  private final long randomValue = (Random.nextLong() & 0xFFFFFFFFFFL) << 24;
+  private final AtomicInteger counter = new AtomicInteger(Random.nextInt());
 
   @Override
   @Nonnull
   public String nextHex() {
-    return new ObjectId().toHexString();
+    return HexCodec.toHex(timestamp(), lo(counter.getAndIncrement()), objectIdByteCount * 2);
   }
 
   @Override public int idByteLength() {
@@ -33,8 +53,49 @@ public class MongoIdGenerator implements IdGenerator {
   @Override
   @Nonnull
   public BigInteger next() {
-    return new BigInteger(new ObjectId().toHexString(), 16);
+    return next(Identified.class).value();
+  }
+
+  @Override
+  @Nonnull
+  public <T extends Identified> TypedId<T> next(Class<T> type) {
+    return new TypedId<>(timestamp(), lo(counter.getAndIncrement()));
+  }
+
+  /**
+   * The whole run shares one timestamp and a contiguous range of the counter, reserved in a single atomic step.
+   */
+  @Override
+  @Nonnull
+  public List<BigInteger> nextBatch(int count) {
+    List<BigInteger> ids = new ArrayList<>(count);
+    for (TypedId<Identified> id : nextBatch(Identified.class, count)) {
+      ids.add(id.value());
+    }
+    return ids;
+  }
+
+  @Override
+  @Nonnull
+  public <T extends Identified> List<TypedId<T>> nextBatch(Class<T> type, int count) {
+    Verify.isTrue(count > 0 && count <= CounterMask,
+        "Batch size must be between 1 and %s, but was %s.",
+        CounterMask,
+        count);
+    long hi = timestamp();
+    int first = counter.getAndAdd(count);
+    List<TypedId<T>> ids = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      ids.add(new TypedId<>(hi, lo(first + i)));
+    }
+    return ids;
   }
 
+  private static long timestamp() {
+    return (System.currentTimeMillis() / 1000) & 0xFFFFFFFFL;
+  }
 
+  private long lo(int count) {
+    return randomValue | (count & CounterMask);
+  }
 }
@@ -0,0 +1,64 @@
+package com.fetherbrik.mongodb;
+
+import com.fetherbrik.core.persistence.id.Identified;
+import com.fetherbrik.core.persistence.id.TypedId;
+import org.bson.types.ObjectId;
+
+import javax.annotation.Nonnull;
+import java.nio.ByteBuffer;
+
+/**
+ * Moves the 12 bytes of an ObjectId to and from the two longs of a TypedId directly, with no hex string or BigInteger
+ * in between. The first four bytes (the timestamp) are the low bits of {@link TypedId#hi()}; the remaining eight are
+ * {@link TypedId#lo()}.
+ *
+ * @author ggranum
+ */
+public final class ObjectIds {
+
+  /**
+   * Scratch space for the driver's ByteBuffer based ObjectId conversions; nothing is kept in it between calls.
+   */
+  private static final ThreadLocal<ByteBuffer> Scratch =
+      ThreadLocal.withInitial(() -> ByteBuffer.allocate(MongoIdGenerator.objectIdByteCount));
+
+  private ObjectIds() {
+  }
+
+  @Nonnull
+  public static <T extends Identified> TypedId<T> toTypedId(@Nonnull ObjectId objectId) {
+    return toTypedId(objectId, TypedId::new);
+  }
+
+  /**
+   * @param factory Creates the id, e.g. `UserId::new`.
+   */
+  @Nonnull
+  public static <I extends TypedId<?>> I toTypedId(@Nonnull ObjectId objectId, @Nonnull TypedIdFactory<I> factory) {
+    ByteBuffer buffer = Scratch.get();
+    buffer.clear();
+    objectId.putToByteBuffer(buffer);
+    return factory.create(buffer.getInt(0) & 0xFFFFFFFFL, buffer.getLong(4));
+  }
+
+  /**
+   * @return True if `id` fits in the 12 bytes of an ObjectId.
+   */
+  public static boolean fitsObjectId(@Nonnull TypedId<?> id) {
+    return (id.hi() >>> 32) == 0;
+  }
+
+  /**
+   * @throws IllegalArgumentException if `id` is wider than the 12 bytes of an ObjectId.
+   */
+  @Nonnull
+  public static ObjectId toObjectId(@Nonnull TypedId<?> id) {
+    if (!fitsObjectId(id)) {
+      throw new IllegalArgumentException("Identifier " + id + " is wider than an ObjectId.");
+    }
+    ByteBuffer buffer = Scratch.get();
+    buffer.clear();
+    buffer.putInt((int) id.hi()).putLong(id.lo()).flip();
+    return new ObjectId(buffer);
+  }
+}
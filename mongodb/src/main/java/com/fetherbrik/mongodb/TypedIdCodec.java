@@ -7,28 +7,35 @@ import org.bson.BsonWriter;
 import org.bson.codecs.Codec;
 import org.bson.codecs.DecoderContext;
 import org.bson.codecs.EncoderContext;
-import org.bson.types.ObjectId;
 
 /**
+ * Writes a TypedId as an ObjectId and back, moving the 12 bytes straight between the ObjectId and the id's two longs;
+ * see {@link ObjectIds}. Ids must fit in 12 bytes, as those of {@link MongoIdGenerator} do.
+ *
  * @author ggranum
  */
 @SuppressWarnings("rawtypes")
 public class TypedIdCodec implements Codec<TypedId> {
 
-  private final IdGenerator idGen;
+  public TypedIdCodec() {
+  }
 
+  /**
+   * @deprecated The width of an ObjectId is fixed, so the generator is no longer needed. Use {@link #TypedIdCodec()}.
+   */
+  @Deprecated
   public TypedIdCodec(IdGenerator idGen) {
-    this.idGen = idGen;
+    this();
   }
 
   @Override
   public void encode(final BsonWriter writer, final TypedId id, final EncoderContext encoderContext) {
-    writer.writeObjectId(new ObjectId(idGen.toBytes(id)));
+    writer.writeObjectId(ObjectIds.toObjectId(id));
   }
 
   @Override
   public TypedId decode(final BsonReader reader, final DecoderContext decoderContext) {
-    return new TypedId(reader.readObjectId().toHexString());
+    return ObjectIds.toTypedId(reader.readObjectId());
   }
 
   @Override
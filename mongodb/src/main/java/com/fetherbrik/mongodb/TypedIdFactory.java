@@ -0,0 +1,14 @@
+package com.fetherbrik.mongodb;
+
+import com.fetherbrik.core.persistence.id.TypedId;
+
+/**
+ * Creates a TypedId subclass from its two longs, e.g. `UserId::new`.
+ *
+ * @author ggranum
+ */
+@FunctionalInterface
+public interface TypedIdFactory<I extends TypedId<?>> {
+
+  I create(long hi, long lo);
+}
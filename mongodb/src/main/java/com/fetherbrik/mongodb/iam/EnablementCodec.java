@@ -0,0 +1,59 @@
+package com.fetherbrik.mongodb.iam;
+
+import com.fetherbrik.iam.domain.identity.Enablement;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+
+/**
+ * Enablement has no Builder, so it is read into locals and constructed at the end of the document.
+ *
+ * @author ggranum
+ */
+final class EnablementCodec implements Codec<Enablement> {
+
+  @Override
+  public void encode(BsonWriter writer, Enablement value, EncoderContext encoderContext) {
+    writer.writeStartDocument();
+    writer.writeName("enabled");
+    writer.writeBoolean(value.enabled);
+    writer.writeName("startMils");
+    writer.writeInt64(value.startMils);
+    writer.writeName("endMils");
+    writer.writeInt64(value.endMils);
+    writer.writeEndDocument();
+  }
+
+  @Override
+  public Enablement decode(BsonReader reader, DecoderContext decoderContext) {
+    boolean enabled = false;
+    Long startMils = null;
+    Long endMils = null;
+    reader.readStartDocument();
+    while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+      switch (reader.readName()) {
+        case "enabled":
+          enabled = reader.readBoolean();
+          break;
+        case "startMils":
+          startMils = reader.readInt64();
+          break;
+        case "endMils":
+          endMils = reader.readInt64();
+          break;
+        default:
+          reader.skipValue();
+      }
+    }
+    reader.readEndDocument();
+    return new Enablement(enabled, startMils, endMils);
+  }
+
+  @Override
+  public Class<Enablement> getEncoderClass() {
+    return Enablement.class;
+  }
+}
@@ -0,0 +1,81 @@
+package com.fetherbrik.mongodb.iam;
+
+import com.fetherbrik.iam.domain.identity.group.GroupId;
+import com.fetherbrik.iam.domain.identity.group.GroupMember;
+import com.fetherbrik.iam.domain.identity.group.GroupMemberType;
+import com.fetherbrik.iam.domain.identity.group.MemberOfGroupId;
+import com.fetherbrik.iam.domain.identity.user.UserId;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+
+/**
+ * The class of `memberOfGroupId` depends on `type`, which may come after it in the document, so the member is read
+ * into locals and built at the end rather than described with a BuildableSchema.
+ *
+ * @author ggranum
+ */
+final class GroupMemberCodec implements Codec<GroupMember> {
+
+  @Override
+  public void encode(BsonWriter writer, GroupMember value, EncoderContext encoderContext) {
+    writer.writeStartDocument();
+    writer.writeName("tenantId");
+    encoderContext.encodeWithChildContext(IamCodecs.TenantIds, writer, value.tenantId);
+    writer.writeName("type");
+    writer.writeString(value.type.name());
+    writer.writeName("memberOfGroupId");
+    if (value.isUserType()) {
+      encoderContext.encodeWithChildContext(IamCodecs.UserIds, writer, (UserId) value.memberOfGroupId);
+    } else {
+      encoderContext.encodeWithChildContext(IamCodecs.GroupIds, writer, (GroupId) value.memberOfGroupId);
+    }
+    writer.writeName("parentGroupId");
+    encoderContext.encodeWithChildContext(IamCodecs.GroupIds, writer, value.parentGroupId);
+    writer.writeEndDocument();
+  }
+
+  @Override
+  public GroupMember decode(BsonReader reader, DecoderContext decoderContext) {
+    GroupMember.Builder builder = new GroupMember.Builder();
+    GroupMemberType type = null;
+    GroupId memberOfGroupId = null;
+    reader.readStartDocument();
+    while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+      switch (reader.readName()) {
+        case "tenantId":
+          builder.tenantId(decoderContext.decodeWithChildContext(IamCodecs.TenantIds, reader));
+          break;
+        case "type":
+          type = GroupMemberType.valueOf(reader.readString());
+          break;
+        case "memberOfGroupId":
+          // Read with either codec; the id is rewrapped once the type is known.
+          memberOfGroupId = decoderContext.decodeWithChildContext(IamCodecs.GroupIds, reader);
+          break;
+        case "parentGroupId":
+          builder.parentGroupId(decoderContext.decodeWithChildContext(IamCodecs.GroupIds, reader));
+          break;
+        default:
+          reader.skipValue();
+      }
+    }
+    reader.readEndDocument();
+    return builder.type(type).memberOfGroupId(memberOfGroupId(type, memberOfGroupId)).build();
+  }
+
+  @Override
+  public Class<GroupMember> getEncoderClass() {
+    return GroupMember.class;
+  }
+
+  private static MemberOfGroupId memberOfGroupId(GroupMemberType type, GroupId id) {
+    if (type == null || id == null) {
+      return null;
+    }
+    return type == GroupMemberType.User ? new UserId(id.hi(), id.lo()) : id;
+  }
+}
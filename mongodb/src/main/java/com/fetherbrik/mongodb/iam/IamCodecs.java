@@ -0,0 +1,125 @@
+package com.fetherbrik.mongodb.iam;
+
+import com.fetherbrik.iam.domain.access.PermissionId;
+import com.fetherbrik.iam.domain.access.RevocablePermission;
+import com.fetherbrik.iam.domain.access.registration.RegistrationInvitation;
+import com.fetherbrik.iam.domain.access.registration.RegistrationInvitationId;
+import com.fetherbrik.iam.domain.access.role.Role;
+import com.fetherbrik.iam.domain.access.role.RoleId;
+import com.fetherbrik.iam.domain.identity.Enablement;
+import com.fetherbrik.iam.domain.identity.group.Group;
+import com.fetherbrik.iam.domain.identity.group.GroupId;
+import com.fetherbrik.iam.domain.identity.group.GroupMember;
+import com.fetherbrik.iam.domain.identity.tenant.Tenant;
+import com.fetherbrik.iam.domain.identity.tenant.TenantId;
+import com.fetherbrik.iam.domain.identity.user.User;
+import com.fetherbrik.iam.domain.identity.user.UserId;
+import com.fetherbrik.mongodb.BuildableCodecProvider;
+import com.fetherbrik.mongodb.BuildableSchema;
+import com.fetherbrik.mongodb.IdCodec;
+import org.bson.codecs.configuration.CodecRegistries;
+import org.bson.codecs.configuration.CodecRegistry;
+
+/**
+ * The codecs for the iam domain: the id types, the entities the repositories store, and the values embedded in them.
+ * Field names follow the documents the original Mongo mapping of each entity wrote.
+ *
+ * @author ggranum
+ */
+public final class IamCodecs {
+
+  static final IdCodec<TenantId> TenantIds = new IdCodec<>(TenantId.class, TenantId::new);
+  static final IdCodec<UserId> UserIds = new IdCodec<>(UserId.class, UserId::new);
+  static final IdCodec<GroupId> GroupIds = new IdCodec<>(GroupId.class, GroupId::new);
+  static final IdCodec<RoleId> RoleIds = new IdCodec<>(RoleId.class, RoleId::new);
+  static final IdCodec<PermissionId> PermissionIds = new IdCodec<>(PermissionId.class, PermissionId::new);
+  static final IdCodec<RegistrationInvitationId> InvitationIds =
+      new IdCodec<>(RegistrationInvitationId.class, RegistrationInvitationId::new);
+
+  private static final BuildableSchema<User, User.Builder> UserSchema =
+      BuildableSchema.of(User.class, User.Builder::new, User.Builder::build)
+                     .field("_id", UserId.class, u -> u.id, User.Builder::id)
+                     .field("tenantId", TenantId.class, u -> u.tenantId, User.Builder::tenantId)
+                     .string("username", u -> u.username, User.Builder::username)
+                     .string("passwordHash", u -> u.passwordHash, User.Builder::passwordHash)
+                     .string("saltHex", u -> u.saltHex, User.Builder::saltHex)
+                     .field("enablement", Enablement.class, u -> u.enablement, User.Builder::enablement)
+                     .set("userPermissions", RevocablePermission.class, u -> u.permissions, User.Builder::userPermissions)
+                     .build();
+
+  private static final BuildableSchema<Group, Group.Builder> GroupSchema =
+      BuildableSchema.of(Group.class, Group.Builder::new, Group.Builder::build)
+                     .field("_id", GroupId.class, g -> g.id, Group.Builder::id)
+                     .field("tenantId", TenantId.class, g -> g.tenantId, Group.Builder::tenantId)
+                     .string("name", g -> g.name, Group.Builder::name)
+                     .string("description", g -> g.description, Group.Builder::description)
+                     .bool("internal", Group::isInternalGroup, Group.Builder::internal)
+                     .set("groupMembers", GroupMember.class, g -> g.groupMembers, Group.Builder::groupMembers)
+                     .build();
+
+  private static final BuildableSchema<Role, Role.Builder> RoleSchema =
+      BuildableSchema.of(Role.class, Role.Builder::new, Role.Builder::build)
+                     .field("_id", RoleId.class, r -> r.id, Role.Builder::id)
+                     .field("tenantId", TenantId.class, r -> r.tenantId, Role.Builder::tenantId)
+                     .string("name", r -> r.name, Role.Builder::name)
+                     .string("description", r -> r.description, Role.Builder::description)
+                     .field("group", Group.class, r -> r.group, Role.Builder::group)
+                     .bool("supportsNesting", r -> Boolean.TRUE.equals(r.supportsNesting), Role.Builder::supportsNesting)
+                     .set("permissions", RevocablePermission.class, r -> r.permissions, Role.Builder::permissions)
+                     .build();
+
+  private static final BuildableSchema<RegistrationInvitation, RegistrationInvitation.Builder> InvitationSchema =
+      BuildableSchema.of(RegistrationInvitation.class,
+          RegistrationInvitation.Builder::new,
+          RegistrationInvitation.Builder::build)
+                     .field("_id", RegistrationInvitationId.class, i -> i.id, RegistrationInvitation.Builder::id)
+                     .field("tenantId", TenantId.class, i -> i.tenantId, RegistrationInvitation.Builder::tenantId)
+                     .string("description", i -> i.description, RegistrationInvitation.Builder::description)
+                     .string("invitationToken", i -> i.invitationToken, RegistrationInvitation.Builder::invitationToken)
+                     .int64("startingOn", i -> i.startingOn, RegistrationInvitation.Builder::startingOn)
+                     .int64("until", i -> i.until, RegistrationInvitation.Builder::until)
+                     .build();
+
+  private static final BuildableSchema<Tenant, Tenant.Builder> TenantSchema =
+      BuildableSchema.of(Tenant.class, Tenant.Builder::new, Tenant.Builder::build)
+                     .field("_id", TenantId.class, t -> t.id, Tenant.Builder::id)
+                     .bool("systemTenant", t -> Boolean.TRUE.equals(t.systemTenant), Tenant.Builder::systemTenant)
+                     .string("name", t -> t.name, Tenant.Builder::name)
+                     .string("description", t -> t.description, Tenant.Builder::description)
+                     .string("serverHostname", t -> t.serverHostname, Tenant.Builder::serverHostname)
+                     .bool("active", t -> t.active, Tenant.Builder::active)
+                     .set("registrationInvitations",
+                         RegistrationInvitation.class,
+                         Tenant::registrationInvitations,
+                         Tenant.Builder::registrationInvitations)
+                     .build();
+
+  private static final BuildableCodecProvider Provider = new BuildableCodecProvider.Builder()
+      .add(UserSchema)
+      .add(GroupSchema)
+      .add(RoleSchema)
+      .add(InvitationSchema)
+      .add(TenantSchema)
+      .build();
+
+  private IamCodecs() {
+  }
+
+  /**
+   * @param base The registry for everything else, usually {@link com.mongodb.MongoClientSettings#getDefaultCodecRegistry()}.
+   */
+  public static CodecRegistry registry(CodecRegistry base) {
+    return CodecRegistries.fromRegistries(
+        CodecRegistries.fromCodecs(TenantIds,
+            UserIds,
+            GroupIds,
+            RoleIds,
+            PermissionIds,
+            InvitationIds,
+            new EnablementCodec(),
+            new RevocablePermissionCodec(),
+            new GroupMemberCodec()),
+        CodecRegistries.fromProviders(Provider),
+        base);
+  }
+}
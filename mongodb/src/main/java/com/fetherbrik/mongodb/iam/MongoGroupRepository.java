@@ -0,0 +1,174 @@
+package com.fetherbrik.mongodb.iam;
+
+import com.fetherbrik.iam.domain.RepositoryExecutor;
+import com.fetherbrik.iam.domain.identity.group.AsyncGroupRepository;
+import com.fetherbrik.iam.domain.identity.group.Group;
+import com.fetherbrik.iam.domain.identity.group.GroupId;
+import com.fetherbrik.iam.domain.identity.group.GroupMember;
+import com.fetherbrik.iam.domain.identity.group.GroupRepository;
+import com.fetherbrik.iam.domain.identity.tenant.TenantId;
+import com.fetherbrik.iam.domain.identity.user.UserId;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Updates;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+
+import static com.mongodb.client.model.Filters.and;
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.in;
+
+/**
+ * Groups, with their members embedded, in the "groups" collection.
+ *
+ * @author ggranum
+ */
+@Singleton
+public class MongoGroupRepository extends MongoRepository<Group> implements GroupRepository, AsyncGroupRepository {
+
+  @Inject
+  public MongoGroupRepository(MongoDatabase database, RepositoryExecutor executor) {
+    this(database, (Executor) executor);
+  }
+
+  public MongoGroupRepository(MongoDatabase database, Executor executor) {
+    super(database, "groups", Group.class, executor);
+  }
+
+  @Override
+  public void initialize() {
+    collection.createIndex(Indexes.ascending("tenantId", "name"), new IndexOptions().unique(true));
+    collection.createIndex(Indexes.ascending("groupMembers.memberOfGroupId"));
+  }
+
+  @Override
+  public void add(Group group) {
+    collection.insertOne(group);
+  }
+
+  @Override
+  public void addAll(Collection<Group> groups) {
+    if (!groups.isEmpty()) {
+      collection.insertMany(new ArrayList<>(groups));
+    }
+  }
+
+  @Override
+  public void update(Group group) {
+    collection.replaceOne(eq("_id", group.id), group);
+  }
+
+  /**
+   * Sends only the new members, which are added to the stored set with $addToSet.
+   */
+  @Override
+  public void addMembers(Group group, Collection<GroupMember> members) {
+    if (collection.updateOne(eq("_id", group.id), Updates.addEachToSet("groupMembers", new ArrayList<>(members)))
+                  .getMatchedCount() == 0) {
+      throw new IllegalStateException("Group " + group.id + " does not exist.");
+    }
+  }
+
+  @Override
+  public Set<Group> allGroups(TenantId tenantId) {
+    return collection.find(eq("tenantId", tenantId)).into(new HashSet<>());
+  }
+
+  /**
+   * @return The groups that list the user as a direct member.
+   */
+  @Override
+  public Set<Group> allGroups(UserId id) {
+    return collection.find(eq("groupMembers.memberOfGroupId", id)).into(new HashSet<>());
+  }
+
+  @Override
+  public Optional<Group> named(TenantId tenantId, String name) {
+    return first(and(eq("tenantId", tenantId), eq("name", name)));
+  }
+
+  @Override
+  public Optional<Group> get(GroupId groupId) {
+    return first(eq("_id", groupId));
+  }
+
+  /**
+   * One query for every id.
+   */
+  @Override
+  public Map<GroupId, Group> getAll(Collection<GroupId> groupIds) {
+    Map<GroupId, Group> groups = new HashMap<>();
+    if (!groupIds.isEmpty()) {
+      for (Group group : collection.find(in("_id", groupIds))) {
+        groups.put(group.id, group);
+      }
+    }
+    return groups;
+  }
+
+  @Override
+  public void remove(Group group) {
+    collection.deleteOne(eq("_id", group.id));
+  }
+
+  @Override
+  public CompletionStage<Void> addAsync(Group group) {
+    return run(() -> add(group));
+  }
+
+  @Override
+  public CompletionStage<Void> addAllAsync(Collection<Group> groups) {
+    return run(() -> addAll(groups));
+  }
+
+  @Override
+  public CompletionStage<Void> updateAsync(Group group) {
+    return run(() -> update(group));
+  }
+
+  @Override
+  public CompletionStage<Void> addMembersAsync(Group group, Collection<GroupMember> members) {
+    return run(() -> addMembers(group, members));
+  }
+
+  @Override
+  public CompletionStage<Set<Group>> allGroupsAsync(TenantId tenantId) {
+    return supply(() -> allGroups(tenantId));
+  }
+
+  @Override
+  public CompletionStage<Set<Group>> allGroupsAsync(UserId id) {
+    return supply(() -> allGroups(id));
+  }
+
+  @Override
+  public CompletionStage<Optional<Group>> namedAsync(TenantId tenantId, String name) {
+    return supply(() -> named(tenantId, name));
+  }
+
+  @Override
+  public CompletionStage<Optional<Group>> getAsync(GroupId groupId) {
+    return supply(() -> get(groupId));
+  }
+
+  @Override
+  public CompletionStage<Map<GroupId, Group>> getAllAsync(Collection<GroupId> groupIds) {
+    return supply(() -> getAll(groupIds));
+  }
+
+  @Override
+  public CompletionStage<Void> removeAsync(Group group) {
+    return run(() -> remove(group));
+  }
+}
@@ -0,0 +1,60 @@
+package com.fetherbrik.mongodb.iam;
+
+import com.fetherbrik.core.base.VersionInfo;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import org.bson.conversions.Bson;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * The collection, lifecycle and async plumbing shared by the iam repositories. Entities are read and written with
+ * {@link IamCodecs}, so documents go straight to and from the domain types.
+ * <p>
+ * Only the synchronous driver is on the classpath, so the async methods run the blocking call on the executor given,
+ * normally the {@link com.fetherbrik.iam.domain.RepositoryExecutor}. Callers still get to start several lookups at
+ * once and wait on them together.
+ *
+ * @author ggranum
+ */
+abstract class MongoRepository<T> {
+
+  final MongoCollection<T> collection;
+  private final String name;
+  private final Executor executor;
+
+  MongoRepository(MongoDatabase database, String name, Class<T> type, Executor executor) {
+    this.name = name;
+    this.executor = executor;
+    this.collection = database.withCodecRegistry(IamCodecs.registry(database.getCodecRegistry()))
+                              .getCollection(name, type);
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public void drop() {
+    collection.drop();
+  }
+
+  public void migrate(VersionInfo versionInfo, VersionInfo codeVersion) {
+    // Nothing to migrate yet; this is the first version of these collections.
+  }
+
+  <R> CompletionStage<R> supply(Supplier<R> call) {
+    return CompletableFuture.supplyAsync(call, executor);
+  }
+
+  CompletionStage<Void> run(Runnable call) {
+    return CompletableFuture.runAsync(call, executor);
+  }
+
+  Optional<T> first(Bson filter) {
+    return Optional.ofNullable(collection.find(filter).first());
+  }
+}
@@ -0,0 +1,142 @@
+package com.fetherbrik.mongodb.iam;
+
+import com.fetherbrik.iam.domain.RepositoryExecutor;
+import com.fetherbrik.iam.domain.access.role.AsyncRoleRepository;
+import com.fetherbrik.iam.domain.access.role.Role;
+import com.fetherbrik.iam.domain.access.role.RoleRepository;
+import com.fetherbrik.iam.domain.identity.group.GroupMember;
+import com.fetherbrik.iam.domain.identity.tenant.TenantId;
+import com.fetherbrik.iam.domain.identity.user.User;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Updates;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+
+import static com.mongodb.client.model.Filters.and;
+import static com.mongodb.client.model.Filters.eq;
+
+/**
+ * Roles, each with its internal group embedded, in the "roles" collection.
+ *
+ * @author ggranum
+ */
+@Singleton
+public class MongoRoleRepository extends MongoRepository<Role> implements RoleRepository, AsyncRoleRepository {
+
+  @Inject
+  public MongoRoleRepository(MongoDatabase database, RepositoryExecutor executor) {
+    this(database, (Executor) executor);
+  }
+
+  public MongoRoleRepository(MongoDatabase database, Executor executor) {
+    super(database, "roles", Role.class, executor);
+  }
+
+  @Override
+  public void initialize() {
+    collection.createIndex(Indexes.ascending("tenantId", "name"), new IndexOptions().unique(true));
+    collection.createIndex(Indexes.ascending("group.groupMembers.memberOfGroupId"));
+  }
+
+  @Override
+  public void add(Role role) {
+    collection.insertOne(role);
+  }
+
+  @Override
+  public void addAll(Collection<Role> roles) {
+    if (!roles.isEmpty()) {
+      collection.insertMany(new ArrayList<>(roles));
+    }
+  }
+
+  @Override
+  public void update(Role role) {
+    collection.replaceOne(eq("_id", role.id), role);
+  }
+
+  /**
+   * Sends only the new members, which are added to the stored set of the embedded group with $addToSet.
+   */
+  @Override
+  public void addGroupMembers(Role role, Collection<GroupMember> members) {
+    if (collection.updateOne(eq("_id", role.id), Updates.addEachToSet("group.groupMembers", new ArrayList<>(members)))
+                  .getMatchedCount() == 0) {
+      throw new IllegalStateException("Role " + role.id + " does not exist.");
+    }
+  }
+
+  @Override
+  public Set<Role> allRoles(TenantId tenantId) {
+    return collection.find(eq("tenantId", tenantId)).into(new HashSet<>());
+  }
+
+  /**
+   * @return The roles whose group lists the user as a direct member.
+   */
+  @Override
+  public Set<Role> rolesForUser(User user) {
+    return collection.find(and(eq("tenantId", user.tenantId), eq("group.groupMembers.memberOfGroupId", user.id)))
+                     .into(new HashSet<>());
+  }
+
+  @Override
+  public void remove(Role role) {
+    collection.deleteOne(eq("_id", role.id));
+  }
+
+  @Override
+  public Optional<Role> named(TenantId tenantId, String roleName) {
+    return first(and(eq("tenantId", tenantId), eq("name", roleName)));
+  }
+
+  @Override
+  public CompletionStage<Void> addAsync(Role role) {
+    return run(() -> add(role));
+  }
+
+  @Override
+  public CompletionStage<Void> addAllAsync(Collection<Role> roles) {
+    return run(() -> addAll(roles));
+  }
+
+  @Override
+  public CompletionStage<Void> updateAsync(Role role) {
+    return run(() -> update(role));
+  }
+
+  @Override
+  public CompletionStage<Void> addGroupMembersAsync(Role role, Collection<GroupMember> members) {
+    return run(() -> addGroupMembers(role, members));
+  }
+
+  @Override
+  public CompletionStage<Set<Role>> allRolesAsync(TenantId tenantId) {
+    return supply(() -> allRoles(tenantId));
+  }
+
+  @Override
+  public CompletionStage<Set<Role>> rolesForUserAsync(User user) {
+    return supply(() -> rolesForUser(user));
+  }
+
+  @Override
+  public CompletionStage<Void> removeAsync(Role role) {
+    return run(() -> remove(role));
+  }
+
+  @Override
+  public CompletionStage<Optional<Role>> namedAsync(TenantId tenantId, String roleName) {
+    return supply(() -> named(tenantId, roleName));
+  }
+}
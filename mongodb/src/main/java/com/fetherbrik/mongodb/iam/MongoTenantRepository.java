@@ -0,0 +1,115 @@
+package com.fetherbrik.mongodb.iam;
+
+import com.fetherbrik.iam.domain.RepositoryExecutor;
+import com.fetherbrik.iam.domain.identity.tenant.AsyncTenantRepository;
+import com.fetherbrik.iam.domain.identity.tenant.Tenant;
+import com.fetherbrik.iam.domain.identity.tenant.TenantId;
+import com.fetherbrik.iam.domain.identity.tenant.TenantRepository;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.ReplaceOptions;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.Optional;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+
+import static com.mongodb.client.model.Filters.eq;
+
+/**
+ * Tenants, with their registration invitations embedded, in the "tenants" collection.
+ *
+ * @author ggranum
+ */
+@Singleton
+public class MongoTenantRepository extends MongoRepository<Tenant> implements TenantRepository, AsyncTenantRepository {
+
+  @Inject
+  public MongoTenantRepository(MongoDatabase database, RepositoryExecutor executor) {
+    this(database, (Executor) executor);
+  }
+
+  public MongoTenantRepository(MongoDatabase database, Executor executor) {
+    super(database, "tenants", Tenant.class, executor);
+  }
+
+  @Override
+  public void initialize() {
+    collection.createIndex(Indexes.ascending("name"), new IndexOptions().unique(true));
+  }
+
+  @Override
+  public void add(Tenant tenant) {
+    collection.insertOne(tenant);
+  }
+
+  @Override
+  public void put(Tenant tenant) {
+    collection.replaceOne(eq("_id", tenant.id), tenant, new ReplaceOptions().upsert(true));
+  }
+
+  @Override
+  public Optional<Tenant> get(TenantId tenantId) {
+    return first(eq("_id", tenantId));
+  }
+
+  @Override
+  public Optional<Tenant> get(String tenantName) {
+    return first(eq("name", tenantName));
+  }
+
+  /**
+   * @return The id, or null if there is no such tenant.
+   */
+  @Override
+  public TenantId tenantIdForTenantNamed(String tenantName) {
+    return get(tenantName).map(tenant -> tenant.id).orElse(null);
+  }
+
+  @Override
+  public void remove(Tenant tenant) {
+    collection.deleteOne(eq("_id", tenant.id));
+  }
+
+  @Override
+  public Optional<Tenant> getSystemTenant() {
+    return first(eq("systemTenant", true));
+  }
+
+  @Override
+  public CompletionStage<Void> addAsync(Tenant tenant) {
+    return run(() -> add(tenant));
+  }
+
+  @Override
+  public CompletionStage<Void> putAsync(Tenant tenant) {
+    return run(() -> put(tenant));
+  }
+
+  @Override
+  public CompletionStage<Optional<Tenant>> getAsync(TenantId tenantId) {
+    return supply(() -> get(tenantId));
+  }
+
+  @Override
+  public CompletionStage<Optional<Tenant>> getAsync(String tenantName) {
+    return supply(() -> get(tenantName));
+  }
+
+  @Override
+  public CompletionStage<TenantId> tenantIdForTenantNamedAsync(String tenantName) {
+    return supply(() -> tenantIdForTenantNamed(tenantName));
+  }
+
+  @Override
+  public CompletionStage<Void> removeAsync(Tenant tenant) {
+    return run(() -> remove(tenant));
+  }
+
+  @Override
+  public CompletionStage<Optional<Tenant>> getSystemTenantAsync() {
+    return supply(this::getSystemTenant);
+  }
+}
@@ -0,0 +1,129 @@
+package com.fetherbrik.mongodb.iam;
+
+import com.fetherbrik.iam.domain.RepositoryExecutor;
+import com.fetherbrik.iam.domain.identity.tenant.TenantId;
+import com.fetherbrik.iam.domain.identity.user.AsyncUserRepository;
+import com.fetherbrik.iam.domain.identity.user.User;
+import com.fetherbrik.iam.domain.identity.user.UserId;
+import com.fetherbrik.iam.domain.identity.user.UserRepository;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+
+import static com.mongodb.client.model.Filters.and;
+import static com.mongodb.client.model.Filters.eq;
+
+/**
+ * Users, one document per user in the "users" collection.
+ *
+ * @author ggranum
+ */
+@Singleton
+public class MongoUserRepository extends MongoRepository<User> implements UserRepository, AsyncUserRepository {
+
+  @Inject
+  public MongoUserRepository(MongoDatabase database, RepositoryExecutor executor) {
+    this(database, (Executor) executor);
+  }
+
+  public MongoUserRepository(MongoDatabase database, Executor executor) {
+    super(database, "users", User.class, executor);
+  }
+
+  @Override
+  public void initialize() {
+    collection.createIndex(Indexes.ascending("tenantId", "username"), new IndexOptions().unique(true));
+    collection.createIndex(Indexes.ascending("username"));
+  }
+
+  @Override
+  public void add(TenantId tenantId, User user) {
+    collection.insertOne(user);
+  }
+
+  @Override
+  public void addAll(TenantId tenantId, Collection<User> users) {
+    if (!users.isEmpty()) {
+      collection.insertMany(new ArrayList<>(users));
+    }
+  }
+
+  @Override
+  public void update(User user) {
+    collection.replaceOne(eq("_id", user.id), user);
+  }
+
+  @Override
+  public void remove(TenantId tenantId, User user) {
+    collection.deleteOne(and(eq("_id", user.id), eq("tenantId", tenantId)));
+  }
+
+  @Override
+  public Optional<User> get(TenantId tenantId, UserId userId) {
+    return first(and(eq("_id", userId), eq("tenantId", tenantId)));
+  }
+
+  @Override
+  public Optional<User> get(TenantId tenantId, String uniquelyNamedUser) {
+    return first(and(eq("tenantId", tenantId), eq("username", uniquelyNamedUser)));
+  }
+
+  @Override
+  public List<User> get(TenantId tenantId) {
+    return collection.find(eq("tenantId", tenantId)).into(new ArrayList<>());
+  }
+
+  @Override
+  public Optional<User> getUserForUniqueUsername(String username) {
+    return first(eq("username", username));
+  }
+
+  @Override
+  public CompletionStage<Void> addAsync(TenantId tenantId, User user) {
+    return run(() -> add(tenantId, user));
+  }
+
+  @Override
+  public CompletionStage<Void> addAllAsync(TenantId tenantId, Collection<User> users) {
+    return run(() -> addAll(tenantId, users));
+  }
+
+  @Override
+  public CompletionStage<Void> updateAsync(User user) {
+    return run(() -> update(user));
+  }
+
+  @Override
+  public CompletionStage<Void> removeAsync(TenantId tenantId, User user) {
+    return run(() -> remove(tenantId, user));
+  }
+
+  @Override
+  public CompletionStage<Optional<User>> getAsync(TenantId tenantId, UserId userId) {
+    return supply(() -> get(tenantId, userId));
+  }
+
+  @Override
+  public CompletionStage<Optional<User>> getAsync(TenantId tenantId, String uniquelyNamedUser) {
+    return supply(() -> get(tenantId, uniquelyNamedUser));
+  }
+
+  @Override
+  public CompletionStage<List<User>> getAsync(TenantId tenantId) {
+    return supply(() -> get(tenantId));
+  }
+
+  @Override
+  public CompletionStage<Optional<User>> getUserForUniqueUsernameAsync(String username) {
+    return supply(() -> getUserForUniqueUsername(username));
+  }
+}
@@ -0,0 +1,61 @@
+package com.fetherbrik.mongodb.iam;
+
+import com.fetherbrik.iam.domain.access.Permission;
+import com.fetherbrik.iam.domain.access.PermissionId;
+import com.fetherbrik.iam.domain.access.RevocablePermission;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+
+/**
+ * Writes the permission inline: {permissionId, name, revocation}.
+ *
+ * @author ggranum
+ */
+final class RevocablePermissionCodec implements Codec<RevocablePermission> {
+
+  @Override
+  public void encode(BsonWriter writer, RevocablePermission value, EncoderContext encoderContext) {
+    writer.writeStartDocument();
+    writer.writeName("permissionId");
+    encoderContext.encodeWithChildContext(IamCodecs.PermissionIds, writer, value.permission.id);
+    writer.writeName("name");
+    writer.writeString(value.permission.name);
+    writer.writeName("revocation");
+    writer.writeBoolean(value.isRevocation);
+    writer.writeEndDocument();
+  }
+
+  @Override
+  public RevocablePermission decode(BsonReader reader, DecoderContext decoderContext) {
+    PermissionId id = null;
+    String name = null;
+    boolean revocation = false;
+    reader.readStartDocument();
+    while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+      switch (reader.readName()) {
+        case "permissionId":
+          id = decoderContext.decodeWithChildContext(IamCodecs.PermissionIds, reader);
+          break;
+        case "name":
+          name = reader.readString();
+          break;
+        case "revocation":
+          revocation = reader.readBoolean();
+          break;
+        default:
+          reader.skipValue();
+      }
+    }
+    reader.readEndDocument();
+    return new RevocablePermission(new Permission(id, name), revocation);
+  }
+
+  @Override
+  public Class<RevocablePermission> getEncoderClass() {
+    return RevocablePermission.class;
+  }
+}
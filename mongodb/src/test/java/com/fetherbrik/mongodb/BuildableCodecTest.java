@@ -0,0 +1,153 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+
+package com.fetherbrik.mongodb;
+
+import com.google.common.collect.ImmutableList;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
+import org.bson.BsonDocumentWriter;
+import org.bson.BsonInt32;
+import org.bson.BsonNull;
+import org.bson.BsonString;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.ValueCodecProvider;
+import org.bson.codecs.configuration.CodecRegistries;
+import org.testng.annotations.Test;
+
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * @author ggranum
+ */
+public class BuildableCodecTest {
+
+  private static final BuildableSchema<Sample, Sample.Builder> Schema =
+      BuildableSchema.of(Sample.class, Sample.Builder::new, Sample.Builder::build)
+                     .string("name", s -> s.name, Sample.Builder::name)
+                     .bool("active", s -> s.active, Sample.Builder::active)
+                     .int32("count", s -> s.count, Sample.Builder::count)
+                     .int64("total", s -> s.total, Sample.Builder::total)
+                     .list("tags", String.class, s -> s.tags, Sample.Builder::tags)
+                     .build();
+
+  private final BuildableCodec<Sample, Sample.Builder> codec =
+      Schema.codec(CodecRegistries.fromProviders(new ValueCodecProvider()));
+
+  @Test
+  public void testRoundTripsEveryField() {
+    Sample sample = new Sample.Builder()
+        .name("alpha")
+        .active(true)
+        .count(3)
+        .total(1L << 40)
+        .tags(ImmutableList.of("a", "b"))
+        .build();
+
+    Sample decoded = decode(encode(sample));
+    assertThat(decoded.name, is("alpha"));
+    assertThat(decoded.active, is(true));
+    assertThat(decoded.count, is(3));
+    assertThat(decoded.total, is(1L << 40));
+    assertThat(decoded.tags, contains("a", "b"));
+  }
+
+  @Test
+  public void testDoesNotWriteNullValues() {
+    Sample sample = new Sample.Builder().name(null).count(1).build();
+
+    BsonDocument document = encode(sample);
+    assertThat(document.containsKey("name"), is(false));
+    assertThat("A null Boolean is skipped rather than unboxed.", document.containsKey("active"), is(false));
+    assertThat(document.containsKey("tags"), is(false));
+
+    Sample decoded = decode(document);
+    assertThat("The builder's default is kept.", decoded.name, is("default"));
+    assertThat(decoded.active, is(nullValue()));
+    assertThat(decoded.count, is(1));
+  }
+
+  @Test
+  public void testSkipsNullAndUnknownFieldsWhenDecoding() {
+    BsonDocument document = new BsonDocument()
+        .append("name", BsonNull.VALUE)
+        .append("unknown", new BsonString("ignored"))
+        .append("count", new BsonInt32(7));
+
+    Sample decoded = decode(document);
+    assertThat(decoded.name, is("default"));
+    assertThat(decoded.count, is(7));
+  }
+
+  private BsonDocument encode(Sample sample) {
+    BsonDocument document = new BsonDocument();
+    codec.encode(new BsonDocumentWriter(document), sample, EncoderContext.builder().build());
+    return document;
+  }
+
+  private Sample decode(BsonDocument document) {
+    return codec.decode(new BsonDocumentReader(document), DecoderContext.builder().build());
+  }
+
+  private static final class Sample {
+
+    final String name;
+    final Boolean active;
+    final int count;
+    final long total;
+    final List<String> tags;
+
+    private Sample(Builder builder) {
+      name = builder.name;
+      active = builder.active;
+      count = builder.count;
+      total = builder.total;
+      tags = builder.tags;
+    }
+
+    static final class Builder {
+
+      private String name = "default";
+      private Boolean active;
+      private int count;
+      private long total;
+      private List<String> tags;
+
+      Builder name(String name) {
+        this.name = name;
+        return this;
+      }
+
+      Builder active(Boolean active) {
+        this.active = active;
+        return this;
+      }
+
+      Builder count(int count) {
+        this.count = count;
+        return this;
+      }
+
+      Builder total(long total) {
+        this.total = total;
+        return this;
+      }
+
+      Builder tags(List<String> tags) {
+        this.tags = tags;
+        return this;
+      }
+
+      Sample build() {
+        return new Sample(this);
+      }
+    }
+  }
+}
@@ -5,11 +5,15 @@
  */
 package com.fetherbrik.restclient;
 
+import com.fetherbrik.core.trace.TraceContext;
 import java.io.IOException;
 import java.util.Map;
 import javax.ws.rs.client.ClientRequestContext;
 
 /**
+ * Adds a fixed set of headers to every request. When the calling thread is handling a traced request, also passes its
+ * trace id on in the {@value TraceContext#HEADER} header, unless a header of that name is already set.
+ *
  * @author Geoff M. Granum
  */
 public class AddHeadersClientRequestFilter extends LoggingClientRequestFilter {
@@ -25,6 +29,10 @@ public class AddHeadersClientRequestFilter extends LoggingClientRequestFilter {
     for (Map.Entry<String, String> entry : headers.entrySet()) {
       requestContext.getHeaders().putSingle(entry.getKey(), entry.getValue());
     }
+    TraceContext trace = TraceContext.current();
+    if (trace != null && !requestContext.getHeaders().containsKey(TraceContext.HEADER)) {
+      requestContext.getHeaders().putSingle(TraceContext.HEADER, trace.traceId());
+    }
     super.filter(requestContext);
   }
 }
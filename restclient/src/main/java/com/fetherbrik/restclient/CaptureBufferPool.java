@@ -0,0 +1,41 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+package com.fetherbrik.restclient;
+
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Reuses the buffers that {@link CapturingInputStream}s capture into. A stream may be opened on one thread and closed
+ * on another, so buffers are handed back to a shared queue rather than kept per thread. Buffers beyond the queue's
+ * capacity are left to the garbage collector.
+ *
+ * @author Geoff M. Granum
+ */
+final class CaptureBufferPool {
+
+  private final int bufferSize;
+  private final ArrayBlockingQueue<byte[]> buffers;
+
+  CaptureBufferPool(int bufferSize, int capacity) {
+    this.bufferSize = bufferSize;
+    this.buffers = new ArrayBlockingQueue<>(capacity);
+  }
+
+  int bufferSize() {
+    return bufferSize;
+  }
+
+  byte[] take() {
+    byte[] buffer = buffers.poll();
+    return buffer != null ? buffer : new byte[bufferSize];
+  }
+
+  void give(byte[] buffer) {
+    if (buffer.length == bufferSize) {
+      buffers.offer(buffer);
+    }
+  }
+}
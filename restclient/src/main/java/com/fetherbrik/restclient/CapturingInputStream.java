@@ -0,0 +1,132 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+package com.fetherbrik.restclient;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Passes a stream through to its reader, copying the first bytes read into a pooled buffer on the way. Once the
+ * stream reaches its end or is closed, whichever comes first, the captured prefix is handed to the listener and the
+ * buffer returned to the pool. Nothing is buffered beyond the prefix, and the stream is never read ahead of the
+ * caller.
+ * <p>
+ * Skipped bytes are counted but not captured, so capture stops at the first skip to keep the prefix contiguous.
+ * Mark and reset are not supported.
+ *
+ * @author Geoff M. Granum
+ */
+public class CapturingInputStream extends FilterInputStream {
+
+  public interface Listener {
+
+    /**
+     * @param prefix    The captured bytes, decoded as UTF-8.
+     * @param totalRead Every byte read or skipped, captured or not.
+     * @param truncated True if fewer bytes were captured than were read.
+     */
+    void captured(String prefix, long totalRead, boolean truncated);
+  }
+
+  private final CaptureBufferPool pool;
+  private final Listener listener;
+  private byte[] buffer;
+  private int captured;
+  private boolean capturing = true;
+  private long totalRead;
+  private boolean reported;
+
+  CapturingInputStream(InputStream in, CaptureBufferPool pool, Listener listener) {
+    super(in);
+    this.pool = pool;
+    this.listener = listener;
+  }
+
+  @Override
+  public int read() throws IOException {
+    int b = in.read();
+    if (b < 0) {
+      report();
+    } else {
+      totalRead++;
+      if (capturing && captured < pool.bufferSize()) {
+        buffer()[captured++] = (byte) b;
+      }
+    }
+    return b;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    int count = in.read(b, off, len);
+    if (count < 0) {
+      report();
+    } else {
+      totalRead += count;
+      int toCapture = capturing ? Math.min(count, pool.bufferSize() - captured) : 0;
+      if (toCapture > 0) {
+        System.arraycopy(b, off, buffer(), captured, toCapture);
+        captured += toCapture;
+      }
+    }
+    return count;
+  }
+
+  @Override
+  public long skip(long n) throws IOException {
+    long skipped = in.skip(n);
+    if (skipped > 0) {
+      capturing = false;
+      totalRead += skipped;
+    }
+    return skipped;
+  }
+
+  @Override
+  public boolean markSupported() {
+    return false;
+  }
+
+  @Override
+  public synchronized void mark(int readlimit) {
+  }
+
+  @Override
+  public synchronized void reset() throws IOException {
+    throw new IOException("mark/reset not supported");
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      in.close();
+    } finally {
+      report();
+    }
+  }
+
+  private byte[] buffer() {
+    if (buffer == null) {
+      buffer = pool.take();
+    }
+    return buffer;
+  }
+
+  private void report() {
+    if (reported) {
+      return;
+    }
+    reported = true;
+    String prefix = buffer == null ? "" : new String(buffer, 0, captured, StandardCharsets.UTF_8);
+    if (buffer != null) {
+      pool.give(buffer);
+      buffer = null;
+    }
+    listener.captured(prefix, totalRead, totalRead > captured);
+  }
+}
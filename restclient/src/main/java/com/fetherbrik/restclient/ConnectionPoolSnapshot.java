@@ -0,0 +1,43 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+package com.fetherbrik.restclient;
+
+import org.apache.http.pool.PoolStats;
+
+/**
+ * The connections of a {@link RestClientFactory}'s pool, in total or for one route (scheme, host and port), at the
+ * time it was taken.
+ *
+ * @author Geoff M. Granum
+ */
+public final class ConnectionPoolSnapshot {
+
+  /**
+   * "total", or the route, e.g. "https://api.example.com:443".
+   */
+  public final String name;
+  /**
+   * Connections in use.
+   */
+  public final int leased;
+  /**
+   * Connections idle in the pool, ready for reuse.
+   */
+  public final int available;
+  /**
+   * Requests waiting for a connection.
+   */
+  public final int pending;
+  public final int max;
+
+  ConnectionPoolSnapshot(String name, PoolStats stats) {
+    this.name = name;
+    this.leased = stats.getLeased();
+    this.available = stats.getAvailable();
+    this.pending = stats.getPending();
+    this.max = stats.getMax();
+  }
+}
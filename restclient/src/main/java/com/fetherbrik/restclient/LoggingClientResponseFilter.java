@@ -8,25 +8,53 @@ package com.fetherbrik.restclient;
 import com.fetherbrik.core.log.Log;
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
+import java.net.URI;
 import javax.ws.rs.client.ClientRequestContext;
 import javax.ws.rs.client.ClientResponseContext;
 import javax.ws.rs.client.ClientResponseFilter;
-import org.apache.commons.io.IOUtils;
 
 /**
+ * Logs the start of each response body at trace, as the caller reads it; see {@link CapturingInputStream}. When trace
+ * is off the entity stream is left untouched.
+ * <p>
+ * Configured with the system property {@value #CAPTURE_BYTES_PROP_KEY}: the most bytes of a body logged, default
+ * 10,000.
+ *
  * @author Geoff M. Granum
  */
 public class LoggingClientResponseFilter implements ClientResponseFilter {
 
+  public static final String CAPTURE_BYTES_PROP_KEY = "com.fetherbrik.restclient.log.capture_bytes";
+
+  private static final CaptureBufferPool Buffers =
+      new CaptureBufferPool(Integer.getInteger(CAPTURE_BYTES_PROP_KEY, 10_000), 64);
+
   @Override
   public void filter(
       ClientRequestContext requestContext,
       ClientResponseContext responseContext) throws IOException {
+    if (!isLogEnabled()) {
+      return;
+    }
     InputStream stream = responseContext.getEntityStream();
-    String response = IOUtils.toString(stream, StandardCharsets.UTF_8.name());
-    stream.reset();
-    Log.trace(getClass(), response);
+    // Stream can be null if response is empty.
+    if (stream != null) {
+      URI uri = requestContext.getUri();
+      responseContext.setEntityStream(new CapturingInputStream(stream, Buffers, (prefix, totalRead, truncated) -> {
+        if (truncated) {
+          log("Response from %s, first %s of %s bytes: %s", uri, Buffers.bufferSize(), totalRead, prefix);
+        } else {
+          log("Response from %s: %s", uri, prefix);
+        }
+      }));
+    }
+  }
+
+  protected boolean isLogEnabled() {
+    return Log.traceEnabled(getClass());
+  }
+
+  protected void log(String msgFormat, Object... args) {
+    Log.trace(getClass(), msgFormat, args);
   }
 }
- 
@@ -0,0 +1,373 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+package com.fetherbrik.restclient;
+
+import com.fetherbrik.core.base.Verify;
+import com.fetherbrik.core.log.Log;
+import com.fetherbrik.core.metrics.MetricSources;
+import com.fetherbrik.restclient.security.AddAuthHeadersRequestFilter;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.apache.http.client.HttpClient;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.client.IdleConnectionEvictor;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.ssl.SSLContexts;
+import org.jboss.resteasy.client.jaxrs.ResteasyClientBuilder;
+import org.jboss.resteasy.client.jaxrs.ResteasyWebTarget;
+import org.jboss.resteasy.client.jaxrs.engines.ApacheHttpClient43Engine;
+
+import javax.annotation.concurrent.ThreadSafe;
+import javax.net.ssl.KeyManager;
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.TrustManagerFactory;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+import java.io.Closeable;
+import java.io.FileInputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyStore;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hands out JAX-RS clients and resource proxies that share one pool of connections, so that a proxy fetched per call
+ * reuses an open, already negotiated connection instead of paying for a new TCP and TLS handshake.
+ * <p>
+ * One client is kept per service URI and credentials, and one proxy per client and resource interface. Clients are
+ * found by a keyed hash of the password, never the password itself. Past {@value #MAX_CLIENTS_PROP_KEY} clients the
+ * least recently used is forgotten, but not closed: a caller may still hold one of its proxies, and it has no
+ * connections of its own to give back. Connections are kept alive for as long as the server allows, or
+ * {@value #KEEP_ALIVE_SECONDS_PROP_KEY} when it doesn't say, and evicted once they have been idle for
+ * {@value #IDLE_SECONDS_PROP_KEY}.
+ * <p>
+ * {@link #registerMetrics(MetricSources)} publishes the {@link #poolSnapshots()} as {@value #METRICS_SOURCE_NAME}.
+ * <p>
+ * Configured with the system properties:
+ * <ul>
+ * <li>{@value #MAX_TOTAL_PROP_KEY}: the most open connections, default 200</li>
+ * <li>{@value #MAX_PER_ROUTE_PROP_KEY}: the most open connections to one host and port, default 20</li>
+ * <li>{@value #KEEP_ALIVE_SECONDS_PROP_KEY}: default 30</li>
+ * <li>{@value #IDLE_SECONDS_PROP_KEY}: default 30</li>
+ * <li>{@value #MAX_CLIENTS_PROP_KEY}: the most clients kept for reuse, default 100</li>
+ * </ul>
+ * If javax.net.ssl.keyStore is set, HTTPS connections use that key store, as {@link ProxyUtils} always has.
+ *
+ * @author Geoff M. Granum
+ */
+@ThreadSafe
+public final class RestClientFactory implements Closeable {
+
+  public static final String MAX_TOTAL_PROP_KEY = "com.fetherbrik.restclient.pool.max_total";
+  public static final String MAX_PER_ROUTE_PROP_KEY = "com.fetherbrik.restclient.pool.max_per_route";
+  public static final String KEEP_ALIVE_SECONDS_PROP_KEY = "com.fetherbrik.restclient.pool.keep_alive_seconds";
+  public static final String IDLE_SECONDS_PROP_KEY = "com.fetherbrik.restclient.pool.idle_seconds";
+  public static final String MAX_CLIENTS_PROP_KEY = "com.fetherbrik.restclient.max_clients";
+  public static final String METRICS_SOURCE_NAME = "restclient.pool";
+
+  private static volatile RestClientFactory shared;
+
+  private final PoolingHttpClientConnectionManager connectionManager;
+  private final IdleConnectionEvictor evictor;
+  private final ConnectionKeepAliveStrategy keepAliveStrategy;
+  private final Cache<ClientKey, PooledClient> clients;
+  private final HashFunction credentialHash;
+  private final Thread shutdownHook = new Thread(this::close, "fetherbrik-restclient-shutdown");
+  private volatile MetricSources metricSources;
+  private volatile boolean closed;
+
+  public RestClientFactory() {
+    this(Integer.getInteger(MAX_TOTAL_PROP_KEY, 200),
+        Integer.getInteger(MAX_PER_ROUTE_PROP_KEY, 20),
+        Long.getLong(KEEP_ALIVE_SECONDS_PROP_KEY, 30L),
+        Long.getLong(IDLE_SECONDS_PROP_KEY, 30L),
+        Integer.getInteger(MAX_CLIENTS_PROP_KEY, 100),
+        provideSSLContextIfKeyStoreIsAvailable());
+  }
+
+  public RestClientFactory(int maxTotal,
+                           int maxPerRoute,
+                           long keepAliveSeconds,
+                           long idleSeconds,
+                           int maxClients,
+                           Optional<SSLContext> sslContext) {
+    Verify.isTrue(maxPerRoute > 0 && maxPerRoute <= maxTotal,
+        "Connections per route must be between 1 and the total of %s, but was %s.",
+        maxTotal,
+        maxPerRoute);
+    Registry<ConnectionSocketFactory> socketFactories = RegistryBuilder.<ConnectionSocketFactory>create()
+        .register("http", PlainConnectionSocketFactory.getSocketFactory())
+        .register("https", new SSLConnectionSocketFactory(sslContext.orElseGet(SSLContexts::createDefault)))
+        .build();
+    this.connectionManager = new PoolingHttpClientConnectionManager(socketFactories);
+    this.connectionManager.setMaxTotal(maxTotal);
+    this.connectionManager.setDefaultMaxPerRoute(maxPerRoute);
+    // Check a connection that has sat idle before reusing it, rather than failing the request it is leased for.
+    this.connectionManager.setValidateAfterInactivity(2000);
+    long keepAliveMillis = TimeUnit.SECONDS.toMillis(keepAliveSeconds);
+    this.keepAliveStrategy = (response, context) -> {
+      long fromServer = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+      return fromServer > 0 ? fromServer : keepAliveMillis;
+    };
+    this.evictor = new IdleConnectionEvictor(connectionManager, idleSeconds, TimeUnit.SECONDS);
+    this.evictor.start();
+    this.clients = CacheBuilder.newBuilder().maximumSize(maxClients).build();
+    byte[] secret = new byte[32];
+    new SecureRandom().nextBytes(secret);
+    this.credentialHash = Hashing.hmacSha256(secret);
+  }
+
+  /**
+   * The factory that {@link ProxyUtils} and {@link com.fetherbrik.restclient.util.ClientHelper} use, configured from
+   * system properties and closed when the JVM shuts down. Pass the application's MetricSources to
+   * {@link #registerMetrics(MetricSources)} to publish its pool.
+   */
+  public static RestClientFactory shared() {
+    RestClientFactory factory = shared;
+    if (factory == null) {
+      synchronized (RestClientFactory.class) {
+        factory = shared;
+        if (factory == null) {
+          factory = new RestClientFactory().registerShutdownHook();
+          shared = factory;
+        }
+      }
+    }
+    return factory;
+  }
+
+  /**
+   * Close this factory when the JVM shuts down.
+   */
+  public RestClientFactory registerShutdownHook() {
+    Runtime.getRuntime().addShutdownHook(shutdownHook);
+    return this;
+  }
+
+  public Client client(RestClientConfig config) {
+    return client(config.serviceUri(), config.username(), config.password(), false);
+  }
+
+  /**
+   * @param captureResponses Log response bodies with a {@link CapturingClientResponseFilter}.
+   */
+  public Client client(String baseUri, String username, String password, boolean captureResponses) {
+    return pooledClient(baseUri, username, password, captureResponses).client;
+  }
+
+  public <T> T proxy(RestClientConfig config, Class<T> resourceToProxy) {
+    return proxy(config.serviceUri(), config.username(), config.password(), false, resourceToProxy);
+  }
+
+  /**
+   * @return The same proxy for every call with the same arguments.
+   */
+  public <T> T proxy(String baseUri,
+                     String username,
+                     String password,
+                     boolean captureResponses,
+                     Class<T> resourceToProxy) {
+    PooledClient pooled = pooledClient(baseUri, username, password, captureResponses);
+    return resourceToProxy.cast(pooled.proxies.computeIfAbsent(resourceToProxy, resource -> {
+      ResteasyWebTarget target = (ResteasyWebTarget) pooled.client.target(baseUri);
+      Log.debug(RestClientFactory.class, "Creating proxy for resource '%s', through the URI: '%s'.",
+          resource.getSimpleName(),
+          target.getUri());
+      return target.proxy(resource);
+    }));
+  }
+
+  /**
+   * @return The pool as a whole, followed by each route that has connections.
+   */
+  public List<ConnectionPoolSnapshot> poolSnapshots() {
+    List<ConnectionPoolSnapshot> snapshots = new ArrayList<>();
+    snapshots.add(new ConnectionPoolSnapshot("total", connectionManager.getTotalStats()));
+    for (HttpRoute route : connectionManager.getRoutes()) {
+      snapshots.add(new ConnectionPoolSnapshot(route.getTargetHost().toURI(), connectionManager.getStats(route)));
+    }
+    return snapshots;
+  }
+
+  /**
+   * Publish the {@link #poolSnapshots()} to `sources`, until this factory is closed.
+   */
+  public RestClientFactory registerMetrics(MetricSources sources) {
+    Verify.isFalse(closed, "This RestClientFactory has been closed.");
+    sources.register(METRICS_SOURCE_NAME, this::poolSnapshots);
+    metricSources = sources;
+    return this;
+  }
+
+  public long clientCount() {
+    return clients.size();
+  }
+
+  /**
+   * Close every client and connection. Proxies handed out before this fail on their next call.
+   */
+  @Override
+  public void close() {
+    synchronized (this) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+    }
+    if (Thread.currentThread() != shutdownHook) {
+      try {
+        Runtime.getRuntime().removeShutdownHook(shutdownHook);
+      } catch (IllegalStateException e) {
+        // Already shutting down.
+      }
+    }
+    MetricSources sources = metricSources;
+    if (sources != null) {
+      sources.unregister(METRICS_SOURCE_NAME);
+    }
+    for (PooledClient pooled : clients.asMap().values()) {
+      pooled.client.close();
+    }
+    clients.invalidateAll();
+    evictor.shutdown();
+    connectionManager.shutdown();
+  }
+
+  private PooledClient pooledClient(String baseUri, String username, String password, boolean captureResponses) {
+    Verify.isFalse(closed, "This RestClientFactory has been closed.");
+    HashCode passwordHash = password == null ? null : credentialHash.hashString(password, StandardCharsets.UTF_8);
+    ClientKey key = new ClientKey(baseUri, username, passwordHash, captureResponses);
+    try {
+      return clients.get(key, () -> newClient(username, password, captureResponses));
+    } catch (ExecutionException | UncheckedExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new IllegalStateException(e.getCause());
+    }
+  }
+
+  private PooledClient newClient(String username, String password, boolean captureResponses) {
+    HttpClient httpClient = HttpClientBuilder.create()
+                                             .setConnectionManager(connectionManager)
+                                             .setConnectionManagerShared(true)
+                                             .setKeepAliveStrategy(keepAliveStrategy)
+                                             .build();
+    Client client = ((ResteasyClientBuilder) ClientBuilder.newBuilder())
+        .httpEngine(new ApacheHttpClient43Engine(httpClient, true))
+        .build();
+    client.register(new AddAuthHeadersRequestFilter(username, password));
+    if (captureResponses) {
+      client.register(new CapturingClientResponseFilter());
+    }
+    return new PooledClient(client);
+  }
+
+  private static Optional<SSLContext> provideSSLContextIfKeyStoreIsAvailable() {
+    try {
+      Optional<SSLContext> sslContextOptional = Optional.empty();
+      if (System.getProperty("javax.net.ssl.keyStore") != null) {
+        TrustManagerFactory tmFactory = TrustManagerFactory.getInstance("PKIX");
+
+        KeyStore ks = KeyStore.getInstance("JKS");
+        ks.load(new FileInputStream(System.getProperty("javax.net.ssl.keyStore")),
+            System.getProperty("javax.net.ssl.keyStorePassword").toCharArray()
+        );
+        tmFactory.init(ks);
+
+        // Set up key manager factory to use our key store
+        KeyManagerFactory kmf = KeyManagerFactory.getInstance("SunX509");
+        kmf.init(ks, System.getProperty("javax.net.ssl.keyStorePassword").toCharArray());
+
+        KeyManager[] km = kmf.getKeyManagers();
+        TrustManager[] tm = tmFactory.getTrustManagers();
+
+        SSLContext sslContext = SSLContext.getInstance("TLSv1.2");
+
+        sslContext.init(km, tm, null);
+        SSLContext.setDefault(sslContext);
+
+        String[] protocols = System.getProperty("https.protocols").split(",");
+        String[] ciphers = System.getProperty("https.cipherSuites").split(",");
+        SSLParameters sslParameters = sslContext.getSupportedSSLParameters();
+        sslParameters.setProtocols(protocols);
+        sslParameters.setCipherSuites(ciphers);
+
+        sslContextOptional = Optional.of(sslContext);
+      }
+      return sslContextOptional;
+    } catch (Exception e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static final class PooledClient {
+
+    final Client client;
+    final ConcurrentMap<Class<?>, Object> proxies = new ConcurrentHashMap<>();
+
+    PooledClient(Client client) {
+      this.client = client;
+    }
+  }
+
+  private static final class ClientKey {
+
+    final String baseUri;
+    final String username;
+    final HashCode passwordHash;
+    final boolean captureResponses;
+
+    ClientKey(String baseUri, String username, HashCode passwordHash, boolean captureResponses) {
+      this.baseUri = Verify.isNotNull(baseUri, "Base URI is required.");
+      this.username = username;
+      this.passwordHash = passwordHash;
+      this.captureResponses = captureResponses;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      ClientKey key = (ClientKey) o;
+      return captureResponses == key.captureResponses
+             && baseUri.equals(key.baseUri)
+             && Objects.equals(username, key.username)
+             && Objects.equals(passwordHash, key.passwordHash);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(baseUri, username, passwordHash, captureResponses);
+    }
+  }
+}
@@ -6,7 +6,7 @@
 
 package com.fetherbrik.restclient.util;
 
-import com.fetherbrik.restclient.CapturingClientResponseFilter;
+import com.fetherbrik.restclient.RestClientFactory;
 import com.fetherbrik.restclient.security.AddAuthHeadersRequestFilter;
 import javax.ws.rs.client.Client;
 import javax.ws.rs.client.ClientBuilder;
@@ -21,12 +21,16 @@ public class ClientHelper {
     return createResource(baseUri, resourceClass, "", "");
   }
 
+  /**
+   * @return A proxy from the {@link RestClientFactory#shared() shared factory}, which logs response bodies at debug.
+   */
   public static <T> T createResource(String baseUri, Class<T> resourceClass, String userName, String password) {
-    Client client = createClient(userName, password);
-    client.register(new CapturingClientResponseFilter());
-    return proxyResource(client, baseUri, resourceClass);
+    return RestClientFactory.shared().proxy(baseUri, userName, password, true, resourceClass);
   }
 
+  /**
+   * @return A new client, with its own connections, for the caller to configure and close.
+   */
   public static Client createClient(String username, String password) {
     Client client = ClientBuilder.newClient();
     client.register(new AddAuthHeadersRequestFilter(username, password));
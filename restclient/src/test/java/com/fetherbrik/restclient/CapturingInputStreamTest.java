@@ -0,0 +1,145 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+
+package com.fetherbrik.restclient;
+
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * @author ggranum
+ */
+public class CapturingInputStreamTest {
+
+  private final CaptureBufferPool pool = new CaptureBufferPool(8, 2);
+  private final List<Capture> captures = new ArrayList<>();
+
+  @Test
+  public void testCapturesAShortBodyWhole() throws IOException {
+    try (InputStream in = capturing("hello")) {
+      assertThat(readAll(in, 64), is("hello"));
+    }
+    assertThat(captures, contains(new Capture("hello", 5, false)));
+  }
+
+  @Test
+  public void testTruncatesAtTheCaptureLimit() throws IOException {
+    try (InputStream in = capturing("0123456789abcdef")) {
+      assertThat("The reader still gets every byte.", readAll(in, 5), is("0123456789abcdef"));
+    }
+    assertThat(captures, contains(new Capture("01234567", 16, true)));
+  }
+
+  @Test
+  public void testTruncatesAtTheCaptureLimitWhenReadAByteAtATime() throws IOException {
+    try (InputStream in = capturing("0123456789")) {
+      while (in.read() >= 0) {
+        // Read to the end.
+      }
+    }
+    assertThat(captures, contains(new Capture("01234567", 10, true)));
+  }
+
+  @Test
+  public void testStopsCapturingAtTheFirstSkip() throws IOException {
+    try (InputStream in = capturing("0123456789")) {
+      byte[] start = new byte[2];
+      assertThat(in.read(start), is(2));
+      assertThat(in.skip(3), is(3L));
+      assertThat(readAll(in, 64), is("56789"));
+    }
+    assertThat("The prefix stays contiguous.", captures, contains(new Capture("01", 10, true)));
+  }
+
+  @Test
+  public void testReportsWhatWasReadWhenClosedBeforeTheEnd() throws IOException {
+    InputStream in = capturing("0123456789");
+    assertThat(in.read(new byte[3]), is(3));
+    in.close();
+    in.close();
+    assertThat("Reported once.", captures, contains(new Capture("012", 3, false)));
+  }
+
+  @Test
+  public void testReturnsItsBufferToThePoolAtTheEnd() throws IOException {
+    byte[] pooled = new byte[8];
+    pool.give(pooled);
+    InputStream in = capturing("0123");
+    readAll(in, 64);
+
+    assertThat("Returned at the end of the stream, before the stream is closed.", pool.take(), sameInstance(pooled));
+    in.close();
+    assertThat(captures.size(), is(1));
+  }
+
+  @Test
+  public void testNeverTakesABufferForAnEmptyBody() throws IOException {
+    byte[] pooled = new byte[8];
+    pool.give(pooled);
+    try (InputStream in = capturing("")) {
+      assertThat(in.read(), is(-1));
+    }
+    assertThat(captures, contains(new Capture("", 0, false)));
+    assertThat(pool.take(), sameInstance(pooled));
+  }
+
+  private InputStream capturing(String body) {
+    return new CapturingInputStream(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)),
+        pool,
+        (prefix, totalRead, truncated) -> captures.add(new Capture(prefix, totalRead, truncated)));
+  }
+
+  private static String readAll(InputStream in, int chunk) throws IOException {
+    StringBuilder read = new StringBuilder();
+    byte[] buffer = new byte[chunk];
+    int count;
+    while ((count = in.read(buffer, 0, chunk)) >= 0) {
+      read.append(new String(buffer, 0, count, StandardCharsets.UTF_8));
+    }
+    return read.toString();
+  }
+
+  private static final class Capture {
+
+    final String prefix;
+    final long totalRead;
+    final boolean truncated;
+
+    Capture(String prefix, long totalRead, boolean truncated) {
+      this.prefix = prefix;
+      this.totalRead = totalRead;
+      this.truncated = truncated;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Capture)) {
+        return false;
+      }
+      Capture other = (Capture) o;
+      return prefix.equals(other.prefix) && totalRead == other.totalRead && truncated == other.truncated;
+    }
+
+    @Override
+    public int hashCode() {
+      return prefix.hashCode();
+    }
+
+    @Override
+    public String toString() {
+      return "'" + prefix + "' of " + totalRead + (truncated ? ", truncated" : "");
+    }
+  }
+}
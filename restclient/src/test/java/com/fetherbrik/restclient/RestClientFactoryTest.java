@@ -0,0 +1,89 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+
+package com.fetherbrik.restclient;
+
+import com.fetherbrik.core.metrics.MetricSources;
+import org.testng.annotations.Test;
+
+import javax.ws.rs.client.Client;
+import java.util.List;
+import java.util.Optional;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.testng.Assert.fail;
+
+/**
+ * @author ggranum
+ */
+public class RestClientFactoryTest {
+
+  private static final String Uri = "http://localhost:8080/api";
+
+  @Test
+  public void testReusesTheClientAndProxyForTheSameCredentials() {
+    try (RestClientFactory factory = newFactory(10)) {
+      Client client = factory.client(Uri, "alice", "secret", false);
+      assertThat(factory.client(Uri, "alice", "secret", false), sameInstance(client));
+      assertThat(factory.client(Uri, "alice", "other", false), not(sameInstance(client)));
+      assertThat(factory.client(Uri, "alice", null, false), not(sameInstance(client)));
+      assertThat(factory.clientCount(), is(3L));
+
+      Resource proxy = factory.proxy(Uri, "alice", "secret", false, Resource.class);
+      assertThat(factory.proxy(Uri, "alice", "secret", false, Resource.class), sameInstance(proxy));
+    }
+  }
+
+  @Test
+  public void testKeepsNoMoreThanTheMaximumNumberOfClients() {
+    try (RestClientFactory factory = newFactory(2)) {
+      for (int i = 0; i < 10; i++) {
+        factory.client(Uri, "user-" + i, "secret", false);
+      }
+      assertThat(factory.clientCount(), lessThanOrEqualTo(2L));
+    }
+  }
+
+  @Test
+  public void testPublishesPoolStatisticsUntilClosed() {
+    MetricSources sources = new MetricSources();
+    RestClientFactory factory = newFactory(10).registerMetrics(sources);
+
+    @SuppressWarnings("unchecked")
+    List<ConnectionPoolSnapshot> snapshots =
+        (List<ConnectionPoolSnapshot>) sources.snapshot(RestClientFactory.METRICS_SOURCE_NAME).get();
+    assertThat(snapshots.get(0).name, is("total"));
+    assertThat(snapshots.get(0).max, is(20));
+    assertThat(snapshots.get(0).leased, is(0));
+
+    factory.close();
+    assertThat(sources.names(), is(empty()));
+  }
+
+  @Test
+  public void testRefusesClientsOnceClosed() {
+    RestClientFactory factory = newFactory(10);
+    factory.client(Uri, "alice", "secret", false);
+    factory.close();
+    assertThat(factory.clientCount(), is(0L));
+    try {
+      factory.client(Uri, "alice", "secret", false);
+      fail("Expected a closed factory to refuse.");
+    } catch (IllegalArgumentException expected) {
+      assertThat(expected.getMessage(), containsString("closed"));
+    }
+  }
+
+  private static RestClientFactory newFactory(int maxClients) {
+    return new RestClientFactory(20, 5, 30, 30, maxClients, Optional.empty());
+  }
+
+  interface Resource {
+
+    String get();
+  }
+}
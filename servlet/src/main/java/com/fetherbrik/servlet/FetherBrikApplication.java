@@ -9,17 +9,30 @@ package com.fetherbrik.servlet;
 import com.fetherbrik.core.log.Log;
 import com.fetherbrik.servlet.bootstrap.Bootstrap;
 import com.fetherbrik.servlet.bootstrap.BootstrapConfiguration;
+import com.fetherbrik.servlet.bootstrap.ExecutionMode;
 import com.fetherbrik.servlet.event.*;
+import com.fetherbrik.servlet.execution.BlockingExecutor;
+import com.fetherbrik.servlet.execution.VirtualThreadPool;
 import com.google.common.eventbus.EventBus;
+import org.eclipse.jetty.alpn.server.ALPNServerConnectionFactory;
+import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.http2.HTTP2Cipher;
+import org.eclipse.jetty.http2.server.AbstractHTTP2ServerConnectionFactory;
+import org.eclipse.jetty.http2.server.HTTP2CServerConnectionFactory;
+import org.eclipse.jetty.http2.server.HTTP2ServerConnectionFactory;
 import org.eclipse.jetty.server.*;
 import org.eclipse.jetty.server.handler.*;
+import org.eclipse.jetty.server.handler.gzip.GzipHandler;
 import org.eclipse.jetty.servlet.DefaultServlet;
+import org.eclipse.jetty.servlet.FilterHolder;
 import org.eclipse.jetty.servlet.ServletContextHandler;
 import org.eclipse.jetty.util.component.LifeCycle;
 import org.eclipse.jetty.util.component.LifeCycle.Listener;
+import org.eclipse.jetty.util.compression.DeflaterPool;
 import org.eclipse.jetty.util.ssl.SslContextFactory;
 import org.eclipse.jetty.util.thread.QueuedThreadPool;
 import org.eclipse.jetty.util.thread.ScheduledExecutorScheduler;
+import org.eclipse.jetty.util.thread.ThreadPool;
 
 import javax.servlet.DispatcherType;
 import java.io.File;
@@ -28,9 +41,11 @@ import java.io.FileNotFoundException;
 import java.util.EnumSet;
 import java.util.Properties;
 
-import static org.eclipse.jetty.server.CustomRequestLog.EXTENDED_NCSA_FORMAT;
-
 /**
+ * Configures and runs the Jetty server. Requests run as {@link BootstrapConfiguration#executionMode()} describes. Unless
+ * {@link BootstrapConfiguration#http2Enabled()} is false, both connectors serve HTTP/2 as well as HTTP/1.1: the HTTPS
+ * connector negotiates it with ALPN, and the HTTP connector accepts cleartext h2c, by prior knowledge or by upgrade.
+ *
  * @author ggranum
  */
 public abstract class FetherBrikApplication {
@@ -60,11 +75,8 @@ public abstract class FetherBrikApplication {
           ksProps.getAbsolutePath());
     }
 
-    QueuedThreadPool threadPool = new QueuedThreadPool();
-    threadPool.setMaxThreads(500);
-
     // Server
-    Server server = new Server(threadPool);
+    Server server = new Server(createThreadPool());
 
     // Scheduler
     server.addBean(new ScheduledExecutorScheduler());
@@ -83,7 +95,11 @@ public abstract class FetherBrikApplication {
     server.setStopAtShutdown(true);
 
     // === jetty-http.xml ===
-    ServerConnector http = new ServerConnector(server, new HttpConnectionFactory(httpConfig));
+    ServerConnector http = baseConfig.http2Enabled()
+        ? new ServerConnector(server,
+        new HttpConnectionFactory(httpConfig),
+        configureHttp2(new HTTP2CServerConnectionFactory(httpConfig)))
+        : new ServerConnector(server, new HttpConnectionFactory(httpConfig));
     http.setPort(baseConfig.httpPort());
     http.setIdleTimeout(30000);
     server.addConnector(http);
@@ -98,22 +114,23 @@ public abstract class FetherBrikApplication {
     sslConnector.setHost("fakedomain");
     server.addConnector(sslConnector);
 
+    // Added before the chain is wrapped, so that gzip and stats see the servlet context's responses.
+    ServletContextHandler root = createServletContext();
+    contexts.addHandler(root);
+
+    // === jetty-gzip.xml ===
+    if (baseConfig.compressionEnabled()) {
+      server.setHandler(createGzipHandler(server.getHandler()));
+    }
+
     // === jetty-stats.xml ===
     StatisticsHandler stats = new StatisticsHandler();
     stats.setHandler(server.getHandler());
     server.setHandler(stats);
 
     // === jetty-requestlog.xml ===
-    //    CustomRequestLog#EXTENDED_NCSA_FORMAT} with a {@link RequestLogWriter
-    RequestLogWriter logWriter = new RequestLogWriter(jettyHomeDir.getPath() + "/log/yyyy_mm_dd.request.log");
-    logWriter.setFilenameDateFormat("yyyy_MM_dd");
-    logWriter.setRetainDays(90);
-    logWriter.setAppend(true);
-    logWriter.setTimeZone("GMT");
-    CustomRequestLog requestLog = new CustomRequestLog(logWriter, EXTENDED_NCSA_FORMAT);
-    RequestLogHandler requestLogHandler = new RequestLogHandler();
-    requestLogHandler.setRequestLog(requestLog);
-    handlers.addHandler(requestLogHandler);
+    // Entries are queued on the request thread and written in batches by the request log's own thread.
+    server.setRequestLog(bootstrap.requestLog());
 
     // === jetty-lowresources.xml ===
     LowResourceMonitor lowResourcesMonitor = new LowResourceMonitor(server);
@@ -122,19 +139,53 @@ public abstract class FetherBrikApplication {
     lowResourcesMonitor.setMonitorThreads(true);
     lowResourcesMonitor.setMaxMemory(0);
     lowResourcesMonitor.setMaxLowResourcesTime(5000);
+    lowResourcesMonitor.addLowResourceCheck(new BlockingExecutorCheck(bootstrap.blockingExecutor()));
     server.addBean(lowResourcesMonitor);
-    server.addBean(new ConnectionLimit(5000, server));
-
-    ServletContextHandler root = addServletContext(server);
+    server.addBean(new ConnectionLimit(baseConfig.maxConnections(), server));
 
     // Start the server
     doStart(server, root);
   }
 
-  private ServletContextHandler addServletContext(Server server) {
-    ServletContextHandler root = new ServletContextHandler(server, "/", ServletContextHandler.SESSIONS);
+  /**
+   * In VIRTUAL mode the pool reports itself low on threads at {@link BootstrapConfiguration#maxConcurrentRequests()}
+   * running requests, so the LowResourceMonitor behaves as it does for a bounded pool.
+   */
+  protected ThreadPool createThreadPool() {
+    ExecutionMode mode = baseConfig.executionMode();
+    if (mode.effective() != mode) {
+      Log.warn(getClass(), "Virtual threads require Java 21 or later. Running in %s mode.", mode.effective());
+    }
+    if (mode.effective() == ExecutionMode.VIRTUAL) {
+      return new VirtualThreadPool("fetherbrik-http-", baseConfig.maxConcurrentRequests());
+    }
+    return new QueuedThreadPool(baseConfig.maxThreads());
+  }
+
+  /**
+   * Gzips responses of the configured types and sizes, for GET and POST requests, borrowing Deflaters from the
+   * bootstrap's {@link com.fetherbrik.servlet.compression.MeteredDeflaterPool}. There is no pure Java Brotli encoder,
+   * so Brotli is not offered.
+   */
+  protected GzipHandler createGzipHandler(Handler handler) {
+    return createGzipHandler(baseConfig, bootstrap.deflaterPool(), handler);
+  }
+
+  static GzipHandler createGzipHandler(BootstrapConfiguration config, DeflaterPool deflaterPool, Handler handler) {
+    GzipHandler gzip = new GzipHandler();
+    gzip.setDeflaterPool(deflaterPool);
+    gzip.setMinGzipSize(config.compressionMinSize());
+    gzip.setIncludedMimeTypes(config.compressionMimeTypes().toArray(new String[0]));
+    gzip.setIncludedMethods("GET", "POST");
+    gzip.setHandler(handler);
+    return gzip;
+  }
+
+  private ServletContextHandler createServletContext() {
+    ServletContextHandler root = new ServletContextHandler(ServletContextHandler.SESSIONS);
+    root.setContextPath("/");
 
-    root.addFilter(LoggingGuiceFilter.class, "/*",
+    root.addFilter(new FilterHolder(new LoggingGuiceFilter(bootstrap.requestTracer())), "/*",
         EnumSet.of(DispatcherType.FORWARD,
             DispatcherType.INCLUDE,
             DispatcherType.REQUEST,
@@ -199,14 +250,35 @@ public abstract class FetherBrikApplication {
     httpsConfig.addCustomizer(new SecureRequestCustomizer());
 
     // SSL Connector
-    SslConnectionFactory factory = new SslConnectionFactory(sslContextFactory, "http/1.1");
-    ServerConnector sslConnector = new ServerConnector(server,
-        factory,
-        new HttpConnectionFactory(httpsConfig));
+    ServerConnector sslConnector;
+    if (baseConfig.http2Enabled()) {
+      // HTTP/2 forbids many suites that HTTP/1.1 allows; prefer those it accepts, so ALPN can select h2.
+      sslContextFactory.setCipherComparator(HTTP2Cipher.COMPARATOR);
+      sslContextFactory.setUseCipherSuitesOrder(true);
+      ALPNServerConnectionFactory alpn = new ALPNServerConnectionFactory("h2", HttpVersion.HTTP_1_1.asString());
+      alpn.setDefaultProtocol(HttpVersion.HTTP_1_1.asString());
+      sslConnector = new ServerConnector(server,
+          new SslConnectionFactory(sslContextFactory, alpn.getProtocol()),
+          alpn,
+          configureHttp2(new HTTP2ServerConnectionFactory(httpsConfig)),
+          new HttpConnectionFactory(httpsConfig));
+    } else {
+      sslConnector = new ServerConnector(server,
+          new SslConnectionFactory(sslContextFactory, HttpVersion.HTTP_1_1.asString()),
+          new HttpConnectionFactory(httpsConfig));
+    }
     sslConnector.setPort(httpsPort);
     return sslConnector;
   }
 
+  private <T extends AbstractHTTP2ServerConnectionFactory> T configureHttp2(T factory) {
+    factory.setMaxConcurrentStreams(baseConfig.http2MaxConcurrentStreams());
+    factory.setInitialStreamRecvWindow(baseConfig.http2StreamWindow());
+    factory.setInitialSessionRecvWindow(baseConfig.http2SessionWindow());
+    factory.setMaxDynamicTableSize(baseConfig.http2HeaderTableSize());
+    return factory;
+  }
+
   private void doStart(final Server server, final ServletContextHandler context) {
     try {
       server.setStopAtShutdown(true);
@@ -228,6 +300,7 @@ public abstract class FetherBrikApplication {
         }
 
         @Override public void lifeCycleStopped(LifeCycle event) {
+          bootstrap.blockingExecutor().shutdown();
           appBus.post(new ServerStoppedEvent(event));
         }
       });
@@ -255,4 +328,32 @@ public abstract class FetherBrikApplication {
       }
     }
   }
+
+  /**
+   * Counts a saturated blocking pool as low resources: requests are waiting on it, even though the threads serving
+   * them are free.
+   */
+  private static final class BlockingExecutorCheck implements LowResourceMonitor.LowResourceCheck {
+
+    private final BlockingExecutor executor;
+
+    private BlockingExecutorCheck(BlockingExecutor executor) {
+      this.executor = executor;
+    }
+
+    @Override
+    public boolean isLowOnResources() {
+      return executor.isSaturated();
+    }
+
+    @Override
+    public String getReason() {
+      return "Blocking executor is saturated";
+    }
+
+    @Override
+    public String toString() {
+      return "Check if the blocking executor is saturated";
+    }
+  }
 }
@@ -6,6 +6,9 @@
 package com.fetherbrik.servlet;
 
 import com.fetherbrik.servlet.exception.ServiceExceptionMapper;
+import com.fetherbrik.servlet.metrics.MethodMetricsServlet;
+import com.fetherbrik.servlet.metrics.MetricsServlet;
+import com.fetherbrik.servlet.trace.TracingProvider;
 import com.fetherbrik.core.log.Log;
 import com.google.common.collect.Maps;
 import com.google.inject.servlet.ServletModule;
@@ -13,7 +16,6 @@ import java.util.Map;
 import java.util.Optional;
 import javax.servlet.Filter;
 import org.jboss.resteasy.jsapi.JSAPIServlet;
-import org.jboss.resteasy.plugins.server.servlet.HttpServletDispatcher;
 
 public abstract class GuiceResteasyServletModule extends ServletModule {
 
@@ -52,14 +54,16 @@ public abstract class GuiceResteasyServletModule extends ServletModule {
     //        bind(ResteasyJaxbJsonProvider.class);
     bind(GuiceResteasyBootstrap.class).asEagerSingleton();
 
-    // In the unlikely event that you need servlet debug logging, swap the following two lines and update 'serve' call:
-    //bind(LoggingHttpServletDispatcher.class).asEagerSingleton();
-    bind(HttpServletDispatcher.class).asEagerSingleton();
+    // Times the DISPATCH span of traced requests; otherwise behaves exactly as HttpServletDispatcher.
+    bind(LoggingHttpServletDispatcher.class).asEagerSingleton();
+    bind(TracingProvider.class).asEagerSingleton();
 
     Map<String, String> initParams = getInitParams();
     Log.debug(getClass(), "Serving %s with RestEasy.", initParams.get("resteasy.servlet.mapping.prefix"));
     configureRestEasyJavascriptApiServlet();
-    serve(getUrlPattern()).with(HttpServletDispatcher.class, initParams);
+    configureMethodMetricsServlet();
+    configureMetricsServlet();
+    serve(getUrlPattern()).with(LoggingHttpServletDispatcher.class, initParams);
   }
 
   public Map<String, String> getInitParams() {
@@ -87,6 +91,32 @@ public abstract class GuiceResteasyServletModule extends ServletModule {
     return REST_SERVLET_PATH_ROOT;
   }
 
+  /**
+   * Override to serve the @Logged(perf = true) method metrics at the returned path. The LoggingInterceptionModule must
+   * be installed, in PerfMode.METRICS mode if the metrics are to have anything in them.
+   */
+  public Optional<String> getMethodMetricsPath() {
+    return Optional.empty();
+  }
+
+  private void configureMethodMetricsServlet() {
+    getMethodMetricsPath().ifPresent(path -> serve(path).with(MethodMetricsServlet.class));
+  }
+
+  /**
+   * Override to serve the registered {@link com.fetherbrik.core.metrics.MetricSources}, such as the request log's
+   * counts, the bytes saved by compression and the latencies of traced routes, at the returned path, and each source
+   * alone at the path followed by its name. The method metrics path may sit beneath it, e.g. /metrics and
+   * /metrics/methods; it is served first.
+   */
+  public Optional<String> getMetricsPath() {
+    return Optional.empty();
+  }
+
+  private void configureMetricsServlet() {
+    getMetricsPath().ifPresent(path -> serve(path, path + "/*").with(MetricsServlet.class));
+  }
+
   private void configureRestEasyJavascriptApiServlet() {
     if(restJsPath.isPresent()) {
       bind(JSAPIServlet.class).asEagerSingleton();
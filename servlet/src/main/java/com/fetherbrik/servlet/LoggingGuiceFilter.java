@@ -6,55 +6,94 @@
 package com.fetherbrik.servlet;
 
 import com.fetherbrik.core.log.Log;
+import com.fetherbrik.core.trace.Span;
+import com.fetherbrik.core.trace.TraceContext;
+import com.fetherbrik.servlet.trace.RequestTracer;
 import com.google.inject.servlet.GuiceFilter;
-import org.apache.commons.lang3.StringUtils;
 
 import java.io.IOException;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.DispatcherType;
 import javax.servlet.FilterChain;
 import javax.servlet.FilterConfig;
 import javax.servlet.ServletException;
 import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.ws.rs.NotFoundException;
 
+/**
+ * The outermost filter: starts each request's trace, when tracing is enabled, and finishes it once the response is
+ * complete, which for an async request is after this filter has returned. The trace is attached to the request thread
+ * while the request runs, so that the rest client passes its trace id on.
+ * <p>
+ * With tracing disabled, and trace logging off, a request costs this filter one boolean and one level check.
+ */
 public class LoggingGuiceFilter extends GuiceFilter {
 
+  private final RequestTracer tracer;
+
   public LoggingGuiceFilter() {
+    this(new RequestTracer(false));
+  }
+
+  public LoggingGuiceFilter(RequestTracer tracer) {
     super();
+    this.tracer = tracer;
   }
 
   @Override
   public void doFilter(ServletRequest servletRequest, ServletResponse servletResponse, FilterChain filterChain) throws
       IOException, ServletException {
+    HttpServletRequest request = (HttpServletRequest) servletRequest;
+    HttpServletResponse response = (HttpServletResponse) servletResponse;
+    if (!tracer.isEnabled()) {
+      filter(request, response, filterChain);
+      return;
+    }
+    // Forwards, includes, and async and error dispatches continue the trace the original request started.
+    boolean initial = request.getDispatcherType() == DispatcherType.REQUEST;
+    TraceContext trace = initial ? tracer.start(request) : RequestTracer.of(request);
+    if (trace == null) {
+      filter(request, response, filterChain);
+      return;
+    }
+    if (initial) {
+      response.setHeader(TraceContext.HEADER, trace.traceId());
+    }
+    TraceContext previous = trace.attach();
     try {
-      String query = ((HttpServletRequest) servletRequest).getQueryString();
-      if (StringUtils.isNotBlank(query)) {
-        Log.trace(getClass(), "Filtering request: %s?%s", ((HttpServletRequest) servletRequest).getRequestURL(), query);
-      } else {
-        Log.trace(getClass(), "Filtering request: %s", ((HttpServletRequest)servletRequest).getRequestURL());
+      filter(request, response, filterChain);
+    } finally {
+      TraceContext.restore(previous);
+      if (initial) {
+        trace.end(Span.FILTER);
+        if (request.isAsyncStarted()) {
+          request.getAsyncContext().addListener(new FinishTraceListener(trace, response));
+        } else {
+          tracer.finish(trace, response.getStatus());
+        }
       }
-    } catch (Exception e) {
-      Log.error(getClass(), e, "Bad Log. No donut.");
+    }
+  }
+
+  private void filter(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws
+      IOException, ServletException {
+    if (Log.traceEnabled(getClass())) {
+      Log.trace(getClass(), "Filtering request: %s %s", request.getMethod(), request.getRequestURI());
     }
     try {
-      super.doFilter(servletRequest, servletResponse, filterChain);
+      super.doFilter(request, response, filterChain);
     } catch (IOException | ServletException e) {
       Log.error(getClass(), e, "Error filtering request. ");
       throw e;
     } catch (NotFoundException e) {
       throw new NotFoundException("Did you forget to add a binding in your servlet module? " + e.getMessage(), e);
     }
-
-    try {
-      String query = ((HttpServletRequest) servletRequest).getQueryString();
-      if (StringUtils.isNotBlank(query)) {
-        Log.trace(getClass(), "Request filtered: %s?%s", ((HttpServletRequest) servletRequest).getRequestURL(), query);
-      } else {
-        Log.trace(getClass(), "Request filtered: %s", ((HttpServletRequest)servletRequest).getRequestURL());
-      }
-    } catch (Exception e) {
-      Log.error(getClass(), e, "Bad Log. No donut.");
+    if (Log.traceEnabled(getClass())) {
+      Log.trace(getClass(), "Request filtered: %s %s", request.getMethod(), request.getRequestURI());
     }
   }
 
@@ -81,5 +120,33 @@ public class LoggingGuiceFilter extends GuiceFilter {
     }
     Log.trace(getClass(), "Filter destroyed.");
   }
+
+  private final class FinishTraceListener implements AsyncListener {
+
+    private final TraceContext trace;
+    private final HttpServletResponse response;
+
+    private FinishTraceListener(TraceContext trace, HttpServletResponse response) {
+      this.trace = trace;
+      this.response = response;
+    }
+
+    @Override
+    public void onComplete(AsyncEvent event) {
+      tracer.finish(trace, response.getStatus());
+    }
+
+    @Override
+    public void onTimeout(AsyncEvent event) {
+    }
+
+    @Override
+    public void onError(AsyncEvent event) {
+    }
+
+    @Override
+    public void onStartAsync(AsyncEvent event) {
+      event.getAsyncContext().addListener(this);
+    }
+  }
 }
- 
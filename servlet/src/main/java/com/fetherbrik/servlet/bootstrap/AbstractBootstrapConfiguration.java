@@ -0,0 +1,247 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+
+package com.fetherbrik.servlet.bootstrap;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import javax.validation.constraints.Min;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * The execution, connection, HTTP/2, compression and tracing settings of a {@link BootstrapConfiguration}, each
+ * falling back to the interface's default when it isn't set. Extend it, and its Builder, rather than copying them into
+ * each configuration.
+ *
+ * @author ggranum
+ */
+public abstract class AbstractBootstrapConfiguration implements BootstrapConfiguration {
+
+  public final Optional<ExecutionMode> executionMode;
+  public final @Min(1) Optional<Integer> maxThreads;
+  public final @Min(1) Optional<Integer> maxConcurrentRequests;
+  public final @Min(1) Optional<Integer> blockingThreads;
+  public final @Min(1) Optional<Integer> blockingQueueSize;
+  public final @Min(1) Optional<Integer> maxConnections;
+  public final Optional<Boolean> http2Enabled;
+  public final @Min(1) Optional<Integer> http2MaxConcurrentStreams;
+  public final @Min(1) Optional<Integer> http2StreamWindow;
+  public final @Min(1) Optional<Integer> http2SessionWindow;
+  public final @Min(1) Optional<Integer> http2HeaderTableSize;
+  public final Optional<Boolean> compressionEnabled;
+  public final @Min(1) Optional<Integer> compressionMinSize;
+  public final Optional<List<String>> compressionMimeTypes;
+  public final @Min(1) Optional<Integer> deflaterPoolSize;
+  public final Optional<Boolean> tracingEnabled;
+
+  protected AbstractBootstrapConfiguration(Builder<?> builder) {
+    executionMode = Optional.ofNullable(builder.executionMode);
+    maxThreads = Optional.ofNullable(builder.maxThreads);
+    maxConcurrentRequests = Optional.ofNullable(builder.maxConcurrentRequests);
+    blockingThreads = Optional.ofNullable(builder.blockingThreads);
+    blockingQueueSize = Optional.ofNullable(builder.blockingQueueSize);
+    maxConnections = Optional.ofNullable(builder.maxConnections);
+    http2Enabled = Optional.ofNullable(builder.http2Enabled);
+    http2MaxConcurrentStreams = Optional.ofNullable(builder.http2MaxConcurrentStreams);
+    http2StreamWindow = Optional.ofNullable(builder.http2StreamWindow);
+    http2SessionWindow = Optional.ofNullable(builder.http2SessionWindow);
+    http2HeaderTableSize = Optional.ofNullable(builder.http2HeaderTableSize);
+    compressionEnabled = Optional.ofNullable(builder.compressionEnabled);
+    compressionMinSize = Optional.ofNullable(builder.compressionMinSize);
+    compressionMimeTypes = Optional.ofNullable(builder.compressionMimeTypes);
+    deflaterPoolSize = Optional.ofNullable(builder.deflaterPoolSize);
+    tracingEnabled = Optional.ofNullable(builder.tracingEnabled);
+  }
+
+  @Override
+  public ExecutionMode executionMode() {
+    return executionMode.orElse(BootstrapConfiguration.super.executionMode());
+  }
+
+  @Override
+  public int maxThreads() {
+    return maxThreads.orElse(BootstrapConfiguration.super.maxThreads());
+  }
+
+  @Override
+  public int maxConcurrentRequests() {
+    return maxConcurrentRequests.orElse(BootstrapConfiguration.super.maxConcurrentRequests());
+  }
+
+  @Override
+  public int blockingThreads() {
+    return blockingThreads.orElse(BootstrapConfiguration.super.blockingThreads());
+  }
+
+  @Override
+  public int blockingQueueSize() {
+    return blockingQueueSize.orElse(BootstrapConfiguration.super.blockingQueueSize());
+  }
+
+  @Override
+  public int maxConnections() {
+    return maxConnections.orElse(BootstrapConfiguration.super.maxConnections());
+  }
+
+  @Override
+  public boolean http2Enabled() {
+    return http2Enabled.orElse(BootstrapConfiguration.super.http2Enabled());
+  }
+
+  @Override
+  public int http2MaxConcurrentStreams() {
+    return http2MaxConcurrentStreams.orElse(BootstrapConfiguration.super.http2MaxConcurrentStreams());
+  }
+
+  @Override
+  public int http2StreamWindow() {
+    return http2StreamWindow.orElse(BootstrapConfiguration.super.http2StreamWindow());
+  }
+
+  @Override
+  public int http2SessionWindow() {
+    return http2SessionWindow.orElse(BootstrapConfiguration.super.http2SessionWindow());
+  }
+
+  @Override
+  public int http2HeaderTableSize() {
+    return http2HeaderTableSize.orElse(BootstrapConfiguration.super.http2HeaderTableSize());
+  }
+
+  @Override
+  public boolean compressionEnabled() {
+    return compressionEnabled.orElse(BootstrapConfiguration.super.compressionEnabled());
+  }
+
+  @Override
+  public int compressionMinSize() {
+    return compressionMinSize.orElse(BootstrapConfiguration.super.compressionMinSize());
+  }
+
+  @Override
+  public List<String> compressionMimeTypes() {
+    return compressionMimeTypes.orElse(BootstrapConfiguration.super.compressionMimeTypes());
+  }
+
+  @Override
+  public int deflaterPoolSize() {
+    return deflaterPoolSize.orElse(BootstrapConfiguration.super.deflaterPoolSize());
+  }
+
+  @Override
+  public boolean tracingEnabled() {
+    return tracingEnabled.orElse(BootstrapConfiguration.super.tracingEnabled());
+  }
+
+  /**
+   * @param <B> The concrete builder, returned from each setter.
+   */
+  public abstract static class Builder<B extends Builder<B>> {
+
+    @JsonProperty private ExecutionMode executionMode;
+    @JsonProperty private @Min(1) Integer maxThreads;
+    @JsonProperty private @Min(1) Integer maxConcurrentRequests;
+    @JsonProperty private @Min(1) Integer blockingThreads;
+    @JsonProperty private @Min(1) Integer blockingQueueSize;
+    @JsonProperty private @Min(1) Integer maxConnections;
+    @JsonProperty private Boolean http2Enabled;
+    @JsonProperty private @Min(1) Integer http2MaxConcurrentStreams;
+    @JsonProperty private @Min(1) Integer http2StreamWindow;
+    @JsonProperty private @Min(1) Integer http2SessionWindow;
+    @JsonProperty private @Min(1) Integer http2HeaderTableSize;
+    @JsonProperty private Boolean compressionEnabled;
+    @JsonProperty private @Min(1) Integer compressionMinSize;
+    @JsonProperty private List<String> compressionMimeTypes;
+    @JsonProperty private @Min(1) Integer deflaterPoolSize;
+    @JsonProperty private Boolean tracingEnabled;
+
+    protected Builder() {
+    }
+
+    protected abstract B self();
+
+    public B executionMode(ExecutionMode executionMode) {
+      this.executionMode = executionMode;
+      return self();
+    }
+
+    public B maxThreads(int maxThreads) {
+      this.maxThreads = maxThreads;
+      return self();
+    }
+
+    public B maxConcurrentRequests(int maxConcurrentRequests) {
+      this.maxConcurrentRequests = maxConcurrentRequests;
+      return self();
+    }
+
+    public B blockingThreads(int blockingThreads) {
+      this.blockingThreads = blockingThreads;
+      return self();
+    }
+
+    public B blockingQueueSize(int blockingQueueSize) {
+      this.blockingQueueSize = blockingQueueSize;
+      return self();
+    }
+
+    public B maxConnections(int maxConnections) {
+      this.maxConnections = maxConnections;
+      return self();
+    }
+
+    public B http2Enabled(boolean http2Enabled) {
+      this.http2Enabled = http2Enabled;
+      return self();
+    }
+
+    public B http2MaxConcurrentStreams(int http2MaxConcurrentStreams) {
+      this.http2MaxConcurrentStreams = http2MaxConcurrentStreams;
+      return self();
+    }
+
+    public B http2StreamWindow(int http2StreamWindow) {
+      this.http2StreamWindow = http2StreamWindow;
+      return self();
+    }
+
+    public B http2SessionWindow(int http2SessionWindow) {
+      this.http2SessionWindow = http2SessionWindow;
+      return self();
+    }
+
+    public B http2HeaderTableSize(int http2HeaderTableSize) {
+      this.http2HeaderTableSize = http2HeaderTableSize;
+      return self();
+    }
+
+    public B compressionEnabled(boolean compressionEnabled) {
+      this.compressionEnabled = compressionEnabled;
+      return self();
+    }
+
+    public B compressionMinSize(int compressionMinSize) {
+      this.compressionMinSize = compressionMinSize;
+      return self();
+    }
+
+    public B compressionMimeTypes(List<String> compressionMimeTypes) {
+      this.compressionMimeTypes = compressionMimeTypes;
+      return self();
+    }
+
+    public B deflaterPoolSize(int deflaterPoolSize) {
+      this.deflaterPoolSize = deflaterPoolSize;
+      return self();
+    }
+
+    public B tracingEnabled(boolean tracingEnabled) {
+      this.tracingEnabled = tracingEnabled;
+      return self();
+    }
+  }
+}
@@ -11,11 +11,16 @@ import com.fetherbrik.core.base.VersionInfo;
 import com.fetherbrik.core.exception.FatalException;
 import com.fetherbrik.core.json.DefaultObjectMapperProvider;
 import com.fetherbrik.core.log.Log;
+import com.fetherbrik.core.metrics.MetricSources;
 import com.fetherbrik.servlet.FetherBrikApplication;
 import com.fetherbrik.servlet.FetherBrikServletContextListener;
+import com.fetherbrik.servlet.compression.MeteredDeflaterPool;
 import com.fetherbrik.servlet.exception.InvalidCommandLineException;
+import com.fetherbrik.servlet.execution.BlockingExecutor;
 import com.fetherbrik.servlet.initialization.InitializationChain;
 import com.fetherbrik.servlet.initialization.InitializationException;
+import com.fetherbrik.servlet.requestlog.AsyncRequestLog;
+import com.fetherbrik.servlet.trace.RequestTracer;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Maps;
 import com.google.inject.Guice;
@@ -85,6 +90,11 @@ public final class Bootstrap {
   private EnvSources envSources;
   private Injector injector;
   private BootstrapConfiguration baseConfiguration;
+  private BlockingExecutor blockingExecutor;
+  private MetricSources metricSources;
+  private AsyncRequestLog requestLog;
+  private MeteredDeflaterPool deflaterPool;
+  private RequestTracer requestTracer;
 
   private Bootstrap(Builder builder) {
     appName = builder.appName;
@@ -116,6 +126,14 @@ public final class Bootstrap {
   private void init() {
     this.envSources = EnvReader.determineEnvironment(commandLineArgs, environmentPrefix, basePath);
     this.baseConfiguration = buildConfiguration(envSources.selectedEnv, bootstrapConfigurationClass);
+    this.blockingExecutor = BlockingExecutor.create(baseConfiguration);
+    this.metricSources = new MetricSources();
+    this.requestLog = new AsyncRequestLog.Builder().directory(new File(baseConfiguration.jettyHome(), "log")).build();
+    metricSources.register(AsyncRequestLog.METRICS_SOURCE_NAME, requestLog::metrics);
+    this.deflaterPool = new MeteredDeflaterPool(baseConfiguration.deflaterPoolSize());
+    metricSources.register(MeteredDeflaterPool.METRICS_SOURCE_NAME, deflaterPool::metrics);
+    this.requestTracer = new RequestTracer(baseConfiguration.tracingEnabled());
+    metricSources.register(RequestTracer.METRICS_SOURCE_NAME, requestTracer::snapshot);
     ImmutableSet.Builder<Module> modules = initModules();
     injector = createInjector(modules.build());
 
@@ -186,6 +204,44 @@ public final class Bootstrap {
     return (T) this.baseConfiguration;
   }
 
+  /**
+   * Bound in the injector, for resources to offload blocking work onto. Shut down when the server stops.
+   */
+  public BlockingExecutor blockingExecutor() {
+    return blockingExecutor;
+  }
+
+  /**
+   * Bound in the injector. Holds the metrics of the bootstrap's own components; applications register theirs too.
+   */
+  public MetricSources metricSources() {
+    return metricSources;
+  }
+
+  /**
+   * Bound in the injector. Started and stopped with the server; its metrics are the
+   * {@value AsyncRequestLog#METRICS_SOURCE_NAME} source.
+   */
+  public AsyncRequestLog requestLog() {
+    return requestLog;
+  }
+
+  /**
+   * Bound in the injector. Used by the server's GzipHandler when compression is enabled; its metrics are the
+   * {@value MeteredDeflaterPool#METRICS_SOURCE_NAME} source.
+   */
+  public MeteredDeflaterPool deflaterPool() {
+    return deflaterPool;
+  }
+
+  /**
+   * Bound in the injector. Used by the server's LoggingGuiceFilter to trace requests; its route metrics are the
+   * {@value RequestTracer#METRICS_SOURCE_NAME} source.
+   */
+  public RequestTracer requestTracer() {
+    return requestTracer;
+  }
+
   private <T extends BootstrapConfiguration> T buildConfiguration(Env env, Class<T> configurationClass) {
     EnvOrFileSourcedConfigurationReader<T> reader =
         new EnvOrFileSourcedConfigurationReader<>(bootstrapConfigFileName,
@@ -8,7 +8,12 @@ package com.fetherbrik.servlet.bootstrap;
 
 import com.fetherbrik.servlet.util.StaticFromJson;
 
+import java.util.List;
+
 /**
+ * The settings every application needs before it can start. The execution settings have defaults, so configurations
+ * only declare the ones they want to change.
+ *
  * @author ggranum
  */
 public interface BootstrapConfiguration extends StaticFromJson {
@@ -21,4 +26,125 @@ public interface BootstrapConfiguration extends StaticFromJson {
 
   String jettyHome();
 
+  /**
+   * How requests and offloaded blocking work are run. Default BOUNDED.
+   */
+  default ExecutionMode executionMode() {
+    return ExecutionMode.BOUNDED;
+  }
+
+  /**
+   * In BOUNDED mode, the most threads serving requests. Default 500.
+   */
+  default int maxThreads() {
+    return 500;
+  }
+
+  /**
+   * In VIRTUAL mode, the number of running requests at which the server reports itself low on threads; requests beyond
+   * it still run. Default 10,000.
+   */
+  default int maxConcurrentRequests() {
+    return 10000;
+  }
+
+  /**
+   * In BOUNDED mode, the threads of the {@link com.fetherbrik.servlet.execution.BlockingExecutor}. Default 64.
+   */
+  default int blockingThreads() {
+    return 64;
+  }
+
+  /**
+   * In BOUNDED mode, the jobs the {@link com.fetherbrik.servlet.execution.BlockingExecutor} queues before callers run
+   * them themselves. Default 1024.
+   */
+  default int blockingQueueSize() {
+    return 1024;
+  }
+
+  /**
+   * The most open connections, across all connectors. Default 5,000.
+   */
+  default int maxConnections() {
+    return 5000;
+  }
+
+  /**
+   * Serve HTTP/2: negotiated with ALPN on the HTTPS port, and as cleartext h2c on the HTTP port. HTTP/1.1 is still
+   * served on both. Default true.
+   */
+  default boolean http2Enabled() {
+    return true;
+  }
+
+  /**
+   * The most streams a client may have open on one HTTP/2 connection. Default 128.
+   */
+  default int http2MaxConcurrentStreams() {
+    return 128;
+  }
+
+  /**
+   * The bytes a client may send on one HTTP/2 stream before the server reads them. Default 512KiB.
+   */
+  default int http2StreamWindow() {
+    return 512 * 1024;
+  }
+
+  /**
+   * The bytes a client may send across all streams of one HTTP/2 connection before the server reads them. Default
+   * 1MiB.
+   */
+  default int http2SessionWindow() {
+    return 1024 * 1024;
+  }
+
+  /**
+   * The size of the HPACK dynamic table the server keeps for each connection's request headers. Default 4096.
+   */
+  default int http2HeaderTableSize() {
+    return 4096;
+  }
+
+  /**
+   * Gzip responses for clients that accept it. Default false.
+   */
+  default boolean compressionEnabled() {
+    return false;
+  }
+
+  /**
+   * Responses known to be smaller than this many bytes are sent uncompressed. Default 1024.
+   */
+  default int compressionMinSize() {
+    return 1024;
+  }
+
+  /**
+   * The content types that are compressed. Default JSON, JavaScript, SVG, HTML, CSS and plain text.
+   */
+  default List<String> compressionMimeTypes() {
+    return List.of("application/json",
+        "application/javascript",
+        "image/svg+xml",
+        "text/html",
+        "text/css",
+        "text/plain");
+  }
+
+  /**
+   * The most idle Deflaters kept for reuse. Default 64.
+   */
+  default int deflaterPoolSize() {
+    return 64;
+  }
+
+  /**
+   * Time each request's filter, dispatch, resource and serialization stages, per route, and give it a trace id that is
+   * passed on to the rest client. Default false, in which case no trace state is created at all.
+   */
+  default boolean tracingEnabled() {
+    return false;
+  }
 }
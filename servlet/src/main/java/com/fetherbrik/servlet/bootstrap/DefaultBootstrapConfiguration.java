@@ -24,7 +24,7 @@ import java.util.Optional;
  * @author ggranum
  */
 @JsonDeserialize(builder = DefaultBootstrapConfiguration.Builder.class)
-public final class DefaultBootstrapConfiguration implements BootstrapConfiguration {
+public final class DefaultBootstrapConfiguration extends AbstractBootstrapConfiguration {
 
   public final @NotNull @Size(min = 1) String env;
   public final @Min(1) @Max(65535) int httpPort;
@@ -33,6 +33,7 @@ public final class DefaultBootstrapConfiguration implements BootstrapConfigurati
   private Optional<String> hostName;
 
   private DefaultBootstrapConfiguration(Builder builder) {
+    super(builder);
     env = builder.env;
     httpPort = builder.httpPort;
     httpsPort = builder.httpsPort;
@@ -76,7 +77,7 @@ public final class DefaultBootstrapConfiguration implements BootstrapConfigurati
     }
   }
 
-  public static final class Builder {
+  public static final class Builder extends AbstractBootstrapConfiguration.Builder<Builder> {
 
     @JsonProperty private String hostName;
     @JsonProperty private @NotNull @Size(min = 1) String env;
@@ -87,6 +88,11 @@ public final class DefaultBootstrapConfiguration implements BootstrapConfigurati
     public Builder() {
     }
 
+    @Override
+    protected Builder self() {
+      return this;
+    }
+
     public Builder env(String env) {
       this.env = env;
       return this;
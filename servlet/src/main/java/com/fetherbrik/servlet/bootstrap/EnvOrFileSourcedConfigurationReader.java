@@ -22,7 +22,9 @@ import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -61,8 +63,12 @@ public class EnvOrFileSourcedConfigurationReader<T extends BootstrapConfiguratio
     this.model = model;
     this.mapper = mapper;
 
-    Set<String> fields = Lists.newArrayList(
-            model.getDeclaredFields())
+    // Include the fields a configuration inherits, such as those of AbstractBootstrapConfiguration.
+    List<Field> declared = Lists.newArrayList();
+    for (Class<?> type = model; type != null && type != Object.class; type = type.getSuperclass()) {
+      declared.addAll(Arrays.asList(type.getDeclaredFields()));
+    }
+    Set<String> fields = declared
         .stream()
         .filter(field -> isPublicFinal(field))
         .map(field -> field.getName())
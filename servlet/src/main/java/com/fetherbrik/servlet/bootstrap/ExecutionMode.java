@@ -0,0 +1,37 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+
+package com.fetherbrik.servlet.bootstrap;
+
+import com.fetherbrik.servlet.execution.VirtualThreads;
+
+/**
+ * How Jetty runs requests, and what {@link com.fetherbrik.servlet.execution.BlockingExecutor} runs offloaded work on.
+ *
+ * @author ggranum
+ */
+public enum ExecutionMode {
+
+  /**
+   * Requests run on a platform thread pool of {@link BootstrapConfiguration#maxThreads()} threads. Blocking work can be
+   * handed to a separate pool of {@link BootstrapConfiguration#blockingThreads()} threads, so that slow repositories
+   * and remote calls don't hold the threads that serve requests.
+   */
+  BOUNDED,
+
+  /**
+   * Requests and offloaded work each run on a virtual thread of their own. Requires Java 21 or later; on older
+   * runtimes this behaves as {@link #BOUNDED}.
+   */
+  VIRTUAL;
+
+  /**
+   * @return This mode, or BOUNDED if this mode is VIRTUAL and the runtime has no virtual threads.
+   */
+  public ExecutionMode effective() {
+    return this == VIRTUAL && !VirtualThreads.isSupported() ? BOUNDED : this;
+  }
+}
@@ -9,7 +9,12 @@ package com.fetherbrik.servlet.bootstrap;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fetherbrik.core.base.Initializer;
 import com.fetherbrik.core.base.VersionInfo;
+import com.fetherbrik.core.metrics.MetricSources;
+import com.fetherbrik.servlet.compression.MeteredDeflaterPool;
+import com.fetherbrik.servlet.execution.BlockingExecutor;
 import com.fetherbrik.servlet.initialization.InitializationChain;
+import com.fetherbrik.servlet.requestlog.AsyncRequestLog;
+import com.fetherbrik.servlet.trace.RequestTracer;
 import com.google.inject.AbstractModule;
 import com.google.inject.Scopes;
 
@@ -39,6 +44,11 @@ public final class FetherBrikBootstrapModule extends AbstractModule {
     bind(Bootstrap.class).toInstance(bootstrap);
     bind(VersionInfo.class).toInstance(applicationVersion);
     bind(bootstrap.bootstrapConfigurationClass).toInstance(bootstrap.baseConfiguration());
+    bind(BlockingExecutor.class).toInstance(bootstrap.blockingExecutor());
+    bind(MetricSources.class).toInstance(bootstrap.metricSources());
+    bind(AsyncRequestLog.class).toInstance(bootstrap.requestLog());
+    bind(MeteredDeflaterPool.class).toInstance(bootstrap.deflaterPool());
+    bind(RequestTracer.class).toInstance(bootstrap.requestTracer());
     bind(ObjectMapper.class).toProvider(bootstrap.mapperProvider).asEagerSingleton();
     this.bindInit();
   }
@@ -0,0 +1,41 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+
+package com.fetherbrik.servlet.compression;
+
+/**
+ * Compression totals since the server started. Precompressed assets cost nothing at runtime and are not counted.
+ *
+ * @author ggranum
+ */
+public final class CompressionMetricsSnapshot {
+
+  /**
+   * Responses compressed.
+   */
+  public final long responses;
+  /**
+   * Uncompressed bytes given to the compressor.
+   */
+  public final long bytesIn;
+  /**
+   * Compressed bytes it produced, not counting the gzip header and trailer.
+   */
+  public final long bytesOut;
+  public final long bytesSaved;
+  /**
+   * Time spent compressing, in nanoseconds.
+   */
+  public final long deflateNanos;
+
+  CompressionMetricsSnapshot(long responses, long bytesIn, long bytesOut, long deflateNanos) {
+    this.responses = responses;
+    this.bytesIn = bytesIn;
+    this.bytesOut = bytesOut;
+    this.bytesSaved = bytesIn - bytesOut;
+    this.deflateNanos = deflateNanos;
+  }
+}
@@ -0,0 +1,76 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+
+package com.fetherbrik.servlet.compression;
+
+import org.eclipse.jetty.util.compression.DeflaterPool;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.Deflater;
+
+/**
+ * The pool GzipHandler borrows its Deflaters from. Each Deflater is used for one response and returned; before it is
+ * reset for the next, the bytes it read and wrote and the time it spent compressing are added to the totals reported
+ * by {@link #metrics()}, which the Bootstrap registers as the {@value #METRICS_SOURCE_NAME} metrics source.
+ *
+ * @author ggranum
+ */
+public final class MeteredDeflaterPool extends DeflaterPool {
+
+  public static final String METRICS_SOURCE_NAME = "compression";
+
+  private final int level;
+  private final LongAdder responses = new LongAdder();
+  private final LongAdder bytesIn = new LongAdder();
+  private final LongAdder bytesOut = new LongAdder();
+  private final LongAdder deflateNanos = new LongAdder();
+
+  /**
+   * @param capacity The most idle Deflaters kept; any more are ended when they are returned.
+   */
+  public MeteredDeflaterPool(int capacity) {
+    this(capacity, Deflater.DEFAULT_COMPRESSION);
+  }
+
+  public MeteredDeflaterPool(int capacity, int level) {
+    super(capacity, level, true);
+    this.level = level;
+  }
+
+  @Override
+  protected Deflater newPooled() {
+    return new TimedDeflater(level);
+  }
+
+  @Override
+  protected void reset(Deflater deflater) {
+    record(deflater);
+    super.reset(deflater);
+  }
+
+  @Override
+  protected void end(Deflater deflater) {
+    record(deflater);
+    super.end(deflater);
+  }
+
+  public CompressionMetricsSnapshot metrics() {
+    return new CompressionMetricsSnapshot(responses.sum(), bytesIn.sum(), bytesOut.sum(), deflateNanos.sum());
+  }
+
+  private void record(Deflater deflater) {
+    long read = deflater.getBytesRead();
+    if (read == 0) {
+      return;
+    }
+    responses.increment();
+    bytesIn.add(read);
+    bytesOut.add(deflater.getBytesWritten());
+    if (deflater instanceof TimedDeflater) {
+      deflateNanos.add(((TimedDeflater) deflater).deflateNanos());
+    }
+  }
+}
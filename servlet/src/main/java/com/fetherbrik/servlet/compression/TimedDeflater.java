@@ -0,0 +1,59 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+
+package com.fetherbrik.servlet.compression;
+
+import java.nio.ByteBuffer;
+import java.util.zip.Deflater;
+
+/**
+ * A Deflater that adds up the time spent compressing. Deflate is CPU bound and runs on the calling thread, so the
+ * elapsed time of each call stands in for its CPU time. Like any Deflater, used by one thread at a time.
+ *
+ * @author ggranum
+ */
+final class TimedDeflater extends Deflater {
+
+  private long deflateNanos;
+
+  TimedDeflater(int level) {
+    // Jetty writes the gzip header and trailer itself.
+    super(level, true);
+  }
+
+  /**
+   * The other byte array overloads delegate to this one.
+   */
+  @Override
+  public int deflate(byte[] output, int off, int len, int flush) {
+    long start = System.nanoTime();
+    try {
+      return super.deflate(output, off, len, flush);
+    } finally {
+      deflateNanos += System.nanoTime() - start;
+    }
+  }
+
+  @Override
+  public int deflate(ByteBuffer output, int flush) {
+    long start = System.nanoTime();
+    try {
+      return super.deflate(output, flush);
+    } finally {
+      deflateNanos += System.nanoTime() - start;
+    }
+  }
+
+  long deflateNanos() {
+    return deflateNanos;
+  }
+
+  @Override
+  public void reset() {
+    super.reset();
+    deflateNanos = 0;
+  }
+}
@@ -0,0 +1,81 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+
+package com.fetherbrik.servlet.execution;
+
+import com.fetherbrik.core.trace.TraceContext;
+import com.fetherbrik.servlet.bootstrap.BootstrapConfiguration;
+import com.fetherbrik.servlet.bootstrap.ExecutionMode;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Where resources send work that blocks, such as repository lookups and remote calls, so that it doesn't hold one of
+ * the threads serving requests. Return the result as a CompletionStage, e.g.
+ * {@code CompletableFuture.supplyAsync(() -> repository.find(id), blockingExecutor)}.
+ * <p>
+ * In {@link ExecutionMode#BOUNDED} mode this is a pool of {@link BootstrapConfiguration#blockingThreads()} platform
+ * threads with a queue of {@link BootstrapConfiguration#blockingQueueSize()} jobs; when both are full the caller runs
+ * the job itself. In {@link ExecutionMode#VIRTUAL} mode every job gets a virtual thread of its own.
+ *
+ * @author ggranum
+ */
+public final class BlockingExecutor implements Executor {
+
+  private final ExecutorService executor;
+  private final int threads;
+
+  private BlockingExecutor(ExecutorService executor, int threads) {
+    this.executor = executor;
+    this.threads = threads;
+  }
+
+  public static BlockingExecutor create(BootstrapConfiguration config) {
+    if (config.executionMode().effective() == ExecutionMode.VIRTUAL) {
+      return new BlockingExecutor(VirtualThreads.newExecutor("fetherbrik-blocking-"), 0);
+    }
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(config.blockingThreads(),
+        config.blockingThreads(),
+        60,
+        TimeUnit.SECONDS,
+        new ArrayBlockingQueue<>(config.blockingQueueSize()),
+        new ThreadFactoryBuilder().setNameFormat("fetherbrik-blocking-%d").setDaemon(true).build(),
+        new ThreadPoolExecutor.CallerRunsPolicy());
+    executor.allowCoreThreadTimeOut(true);
+    return new BlockingExecutor(executor, config.blockingThreads());
+  }
+
+  /**
+   * Runs `command` with the submitting thread's {@link TraceContext}, if it has one, so that rest client calls made
+   * from the job carry the request's trace id.
+   */
+  @Override
+  public void execute(Runnable command) {
+    TraceContext trace = TraceContext.current();
+    executor.execute(trace == null ? command : trace.wrap(command));
+  }
+
+  /**
+   * True when every thread is busy and the queue is full, so that new jobs run on the calling thread. Never true for
+   * virtual threads.
+   */
+  public boolean isSaturated() {
+    if (executor instanceof ThreadPoolExecutor) {
+      ThreadPoolExecutor pool = (ThreadPoolExecutor) executor;
+      return pool.getActiveCount() >= threads && pool.getQueue().remainingCapacity() == 0;
+    }
+    return false;
+  }
+
+  public void shutdown() {
+    executor.shutdown();
+  }
+}
@@ -0,0 +1,109 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+
+package com.fetherbrik.servlet.execution;
+
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+import org.eclipse.jetty.util.thread.ThreadPool;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A Jetty thread pool that runs every job on a new virtual thread. There is no limit on the number of jobs running at
+ * once. Instead the pool counts them, and reports itself low on threads once {@code lowThreshold} are running, so
+ * that LowResourceMonitor still shortens idle timeouts and sheds idle connections when the server is overloaded.
+ * <p>
+ * Jetty's acceptor and selector jobs run here too, and count towards the threshold for as long as the server is up.
+ *
+ * @author ggranum
+ */
+public final class VirtualThreadPool extends AbstractLifeCycle implements ThreadPool {
+
+  private static final long StopTimeoutMillis = 10000L;
+
+  private final String namePrefix;
+  private final int lowThreshold;
+  private final AtomicInteger running = new AtomicInteger();
+  private volatile ExecutorService executor;
+
+  public VirtualThreadPool(String namePrefix, int lowThreshold) {
+    this.namePrefix = namePrefix;
+    this.lowThreshold = lowThreshold;
+  }
+
+  @Override
+  protected void doStart() throws Exception {
+    executor = VirtualThreads.newExecutor(namePrefix);
+    super.doStart();
+  }
+
+  @Override
+  protected void doStop() throws Exception {
+    super.doStop();
+    executor.shutdown();
+    if (!executor.awaitTermination(StopTimeoutMillis, TimeUnit.MILLISECONDS)) {
+      executor.shutdownNow();
+    }
+  }
+
+  @Override
+  public void execute(Runnable job) {
+    ExecutorService executor = this.executor;
+    if (executor == null) {
+      throw new RejectedExecutionException("Thread pool is not started.");
+    }
+    running.incrementAndGet();
+    try {
+      executor.execute(() -> {
+        try {
+          job.run();
+        } finally {
+          running.decrementAndGet();
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      running.decrementAndGet();
+      throw e;
+    }
+  }
+
+  @Override
+  public void join() throws InterruptedException {
+    ExecutorService executor = this.executor;
+    if (executor != null) {
+      executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * @return The number of jobs running.
+   */
+  @Override
+  public int getThreads() {
+    return running.get();
+  }
+
+  /**
+   * @return The number of jobs that can start before the pool reports itself low on threads.
+   */
+  @Override
+  public int getIdleThreads() {
+    return Math.max(0, lowThreshold - running.get());
+  }
+
+  @Override
+  public boolean isLowOnThreads() {
+    return running.get() >= lowThreshold;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%s{%s, running=%d, low=%d}", namePrefix, getState(), running.get(), lowThreshold);
+  }
+}
@@ -0,0 +1,75 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+
+package com.fetherbrik.servlet.execution;
+
+import com.fetherbrik.core.log.Log;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Creates virtual thread executors on runtimes that have them. We build for Java 11, so the Java 21 API is looked up
+ * reflectively, once.
+ *
+ * @author ggranum
+ */
+public final class VirtualThreads {
+
+  private static final Method OfVirtual;
+  private static final Method Name;
+  private static final Method Factory;
+  private static final Method NewThreadPerTaskExecutor;
+
+  static {
+    Method ofVirtual = null;
+    Method name = null;
+    Method factory = null;
+    Method newThreadPerTaskExecutor = null;
+    try {
+      Class<?> ofVirtualClass = Class.forName("java.lang.Thread$Builder$OfVirtual");
+      ofVirtual = Thread.class.getMethod("ofVirtual");
+      name = ofVirtualClass.getMethod("name", String.class, long.class);
+      factory = Class.forName("java.lang.Thread$Builder").getMethod("factory");
+      newThreadPerTaskExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+      // Java 19 and 20 have the methods, but throw unless preview features are enabled.
+      ofVirtual.invoke(null);
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      Log.debug(VirtualThreads.class, "Virtual threads are not available: %s", e.toString());
+      ofVirtual = null;
+    }
+    OfVirtual = ofVirtual;
+    Name = name;
+    Factory = factory;
+    NewThreadPerTaskExecutor = newThreadPerTaskExecutor;
+  }
+
+  private VirtualThreads() {
+  }
+
+  public static boolean isSupported() {
+    return OfVirtual != null;
+  }
+
+  /**
+   * @param namePrefix Threads are named namePrefix followed by a counter.
+   * @throws UnsupportedOperationException if the runtime has no virtual threads.
+   */
+  public static ExecutorService newExecutor(String namePrefix) {
+    if (!isSupported()) {
+      throw new UnsupportedOperationException("Virtual threads require Java 21 or later.");
+    }
+    try {
+      Object builder = Name.invoke(OfVirtual.invoke(null), namePrefix, 0L);
+      ThreadFactory factory = (ThreadFactory) Factory.invoke(builder);
+      return (ExecutorService) NewThreadPerTaskExecutor.invoke(null, factory);
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException("Could not create a virtual thread executor.", e);
+    }
+  }
+}
@@ -0,0 +1,44 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+package com.fetherbrik.servlet.metrics;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fetherbrik.core.log.intercept.MethodMetricsRegistry;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Serves a JSON array of the current {@link com.fetherbrik.core.log.intercept.MethodMetricsSnapshot}s, for scraping.
+ * Served by GuiceResteasyServletModule when {@link com.fetherbrik.servlet.GuiceResteasyServletModule#getMethodMetricsPath()}
+ * is overridden, which requires that the LoggingInterceptionModule is installed.
+ *
+ * @author Geoff M. Granum
+ */
+@Singleton
+public class MethodMetricsServlet extends HttpServlet {
+
+  private final MethodMetricsRegistry registry;
+  private final ObjectMapper mapper;
+
+  @Inject
+  public MethodMetricsServlet(MethodMetricsRegistry registry, ObjectMapper mapper) {
+    this.registry = registry;
+    this.mapper = mapper;
+  }
+
+  @Override
+  protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+    resp.setContentType("application/json");
+    resp.setCharacterEncoding("UTF-8");
+    resp.setHeader("Cache-Control", "no-store");
+    mapper.writeValue(resp.getOutputStream(), registry.snapshot());
+  }
+}
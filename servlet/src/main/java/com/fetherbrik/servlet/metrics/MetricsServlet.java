@@ -0,0 +1,58 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+package com.fetherbrik.servlet.metrics;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fetherbrik.core.metrics.MetricSources;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Optional;
+
+/**
+ * Serves the {@link MetricSources} as JSON, for scraping: a fresh snapshot of every source, by name, at the path
+ * itself, or of a single source at the path followed by its name, e.g. /metrics/requestlog. Served by
+ * GuiceResteasyServletModule when {@link com.fetherbrik.servlet.GuiceResteasyServletModule#getMetricsPath()} is
+ * overridden.
+ *
+ * @author Geoff M. Granum
+ */
+@Singleton
+public class MetricsServlet extends HttpServlet {
+
+  private final MetricSources sources;
+  private final ObjectMapper mapper;
+
+  @Inject
+  public MetricsServlet(MetricSources sources, ObjectMapper mapper) {
+    this.sources = sources;
+    this.mapper = mapper;
+  }
+
+  @Override
+  protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+    String pathInfo = req.getPathInfo();
+    Object snapshot;
+    if (pathInfo == null || pathInfo.equals("/")) {
+      snapshot = sources.snapshot();
+    } else {
+      Optional<Object> source = sources.snapshot(pathInfo.substring(1));
+      if (!source.isPresent()) {
+        resp.sendError(HttpServletResponse.SC_NOT_FOUND);
+        return;
+      }
+      snapshot = source.get();
+    }
+    resp.setContentType("application/json");
+    resp.setCharacterEncoding("UTF-8");
+    resp.setHeader("Cache-Control", "no-store");
+    mapper.writeValue(resp.getOutputStream(), snapshot);
+  }
+}
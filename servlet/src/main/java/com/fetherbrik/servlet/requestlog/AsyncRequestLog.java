@@ -0,0 +1,316 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+
+package com.fetherbrik.servlet.requestlog;
+
+import com.fetherbrik.core.base.Verify;
+import com.fetherbrik.core.collections.RingBuffer;
+import com.fetherbrik.core.log.Log;
+import com.fetherbrik.core.log.OverflowPolicy;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.RequestLog;
+import org.eclipse.jetty.server.Response;
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * A Jetty RequestLog that keeps formatting and disk writes off the request thread. The request thread copies a few
+ * references into a preallocated entry in a {@link RingBuffer}; a single writer thread encodes entries in batches and
+ * writes each batch to the day's file with one FileChannel write. No locks are taken and nothing is allocated on the
+ * request thread.
+ * <p>
+ * When the buffer is full, the {@link OverflowPolicy} decides: DROP discards the entry and counts it, BLOCK makes the
+ * request thread wait for room and counts the wait. CALLER_RUNS is not supported, as the file belongs to the writer
+ * thread. See {@link #metrics()} for the counts, which the Bootstrap registers as the
+ * {@value #METRICS_SOURCE_NAME} metrics source.
+ * <p>
+ * The builder's defaults come from the system properties:
+ * <ul>
+ * <li>{@value #BUFFER_SIZE_PROP_KEY}: entries in the ring buffer, rounded up to a power of two. Default 8192</li>
+ * <li>{@value #OVERFLOW_POLICY_PROP_KEY}: DROP or BLOCK. Default DROP</li>
+ * <li>{@value #FORMAT_PROP_KEY}: ncsa, json or binary; see {@link NcsaEncoder}, {@link JsonLinesEncoder} and
+ * {@link BinaryEncoder}. Default ncsa</li>
+ * <li>{@value #MEMORY_MAPPED_PROP_KEY}: write through a memory mapped region rather than FileChannel writes. Default
+ * false</li>
+ * <li>{@value #RETAIN_DAYS_PROP_KEY}: days of files to keep. Default 90</li>
+ * </ul>
+ *
+ * @author ggranum
+ */
+public final class AsyncRequestLog extends AbstractLifeCycle implements RequestLog {
+
+  public static final String BUFFER_SIZE_PROP_KEY = "com.fetherbrik.servlet.requestlog.buffer_size";
+  public static final String OVERFLOW_POLICY_PROP_KEY = "com.fetherbrik.servlet.requestlog.overflow_policy";
+  public static final String FORMAT_PROP_KEY = "com.fetherbrik.servlet.requestlog.format";
+  public static final String MEMORY_MAPPED_PROP_KEY = "com.fetherbrik.servlet.requestlog.memory_mapped";
+  public static final String RETAIN_DAYS_PROP_KEY = "com.fetherbrik.servlet.requestlog.retain_days";
+  public static final String METRICS_SOURCE_NAME = "requestlog";
+
+  private static final int MaxBatchSize = 1024;
+  private static final int WriteBufferSize = 256 * 1024;
+  private static final long IdleParkNanos = TimeUnit.MILLISECONDS.toNanos(100);
+  private static final long FullParkNanos = TimeUnit.MICROSECONDS.toNanos(50);
+  private static final long StopTimeoutMillis = 10000L;
+
+  private final RingBuffer<RequestLogEntry> ring;
+  private final Consumer<RequestLogEntry> appender = this::append;
+  private final OverflowPolicy overflowPolicy;
+  private final RequestLogEncoder encoder;
+  private final RequestLogFile file;
+  private final LongAdder dropped = new LongAdder();
+  private final LongAdder blocked = new LongAdder();
+
+  /**
+   * Only used by the writer thread.
+   */
+  private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(WriteBufferSize);
+  private boolean failing;
+
+  /**
+   * Only written by the writer thread.
+   */
+  private volatile long written;
+  private volatile long bytesWritten;
+  private volatile long writes;
+  private volatile long writeErrors;
+
+  private volatile boolean running;
+  private volatile boolean workerIdle;
+  private volatile Thread worker;
+
+  private AsyncRequestLog(Builder builder) {
+    ring = new RingBuffer<>(builder.bufferSize, RequestLogEntry::new);
+    overflowPolicy = builder.overflowPolicy;
+    encoder = builder.encoder;
+    file = new RequestLogFile(builder.directory, encoder, builder.memoryMapped, builder.retainDays);
+  }
+
+  @Override
+  protected void doStart() throws Exception {
+    running = true;
+    Thread worker = new Thread(this::run, "fetherbrik-request-log");
+    worker.setDaemon(true);
+    this.worker = worker;
+    worker.start();
+    super.doStart();
+  }
+
+  /**
+   * Write everything already queued, then close the file.
+   */
+  @Override
+  protected void doStop() throws Exception {
+    super.doStop();
+    running = false;
+    Thread worker = this.worker;
+    if (worker != null) {
+      LockSupport.unpark(worker);
+      worker.join(StopTimeoutMillis);
+    }
+  }
+
+  @Override
+  public void log(Request request, Response response) {
+    long now = System.currentTimeMillis();
+    while (running) {
+      long seq = ring.tryClaim();
+      if (seq >= 0) {
+        ring.slot(seq).set(request, response, now);
+        ring.publish(seq);
+        if (workerIdle) {
+          LockSupport.unpark(worker);
+        }
+        return;
+      }
+      if (overflowPolicy == OverflowPolicy.DROP) {
+        break;
+      }
+      blocked.increment();
+      LockSupport.unpark(worker);
+      LockSupport.parkNanos(this, FullParkNanos);
+    }
+    dropped.increment();
+  }
+
+  public RequestLogMetricsSnapshot metrics() {
+    return new RequestLogMetricsSnapshot(written,
+        dropped.sum(),
+        blocked.sum(),
+        ring.pending(),
+        ring.capacity(),
+        bytesWritten,
+        writes,
+        writeErrors);
+  }
+
+  private void run() {
+    while (running || ring.pending() > 0) {
+      if (drain() == 0) {
+        workerIdle = true;
+        // Re-check after advertising that we're idle, so a publish that raced with us can't be left waiting.
+        if (!ring.hasPublished() && running) {
+          LockSupport.parkNanos(this, IdleParkNanos);
+        }
+        workerIdle = false;
+      }
+    }
+    try {
+      file.close();
+    } catch (IOException e) {
+      Log.error(getClass(), e, "Could not close the request log.");
+    }
+  }
+
+  private int drain() {
+    int count = ring.drain(MaxBatchSize, appender);
+    if (count > 0) {
+      flush();
+    }
+    return count;
+  }
+
+  private void append(RequestLogEntry entry) {
+    try {
+      encode(entry);
+    } finally {
+      entry.clear();
+    }
+  }
+
+  private void encode(RequestLogEntry entry) {
+    long loggedAt = entry.timeStamp() + entry.latencyMillis();
+    if (!file.isOpenFor(loggedAt)) {
+      flush();
+      try {
+        file.rollTo(loggedAt);
+      } catch (IOException e) {
+        writeFailed(e);
+        dropped.increment();
+        return;
+      }
+    }
+    int start = writeBuffer.position();
+    try {
+      encoder.encode(entry, writeBuffer);
+    } catch (BufferOverflowException e) {
+      writeBuffer.position(start);
+      flush();
+      try {
+        encoder.encode(entry, writeBuffer);
+      } catch (BufferOverflowException tooLarge) {
+        writeBuffer.clear();
+        dropped.increment();
+        return;
+      }
+    }
+    written++;
+  }
+
+  private void flush() {
+    writeBuffer.flip();
+    int length = writeBuffer.remaining();
+    if (length > 0) {
+      try {
+        file.write(writeBuffer);
+        bytesWritten += length;
+        writes++;
+        failing = false;
+      } catch (IOException e) {
+        writeFailed(e);
+      }
+    }
+    writeBuffer.clear();
+  }
+
+  /**
+   * Logs the first failure of a run; the rest are only counted, so a full disk doesn't flood the application log.
+   */
+  private void writeFailed(IOException e) {
+    writeErrors++;
+    if (!failing) {
+      failing = true;
+      Log.error(getClass(), e, "Could not write the request log. Further failures are counted in its metrics.");
+    }
+  }
+
+  public static final class Builder {
+
+    private File directory;
+    private int bufferSize = Integer.getInteger(BUFFER_SIZE_PROP_KEY, 8192);
+    private OverflowPolicy overflowPolicy =
+        OverflowPolicy.valueOf(System.getProperty(OVERFLOW_POLICY_PROP_KEY, "DROP").toUpperCase());
+    private RequestLogEncoder encoder = encoderNamed(System.getProperty(FORMAT_PROP_KEY, "ncsa"));
+    private boolean memoryMapped = Boolean.getBoolean(MEMORY_MAPPED_PROP_KEY);
+    private int retainDays = Integer.getInteger(RETAIN_DAYS_PROP_KEY, 90);
+
+    public Builder() {
+    }
+
+    public Builder directory(File directory) {
+      this.directory = directory;
+      return this;
+    }
+
+    public Builder bufferSize(int bufferSize) {
+      this.bufferSize = bufferSize;
+      return this;
+    }
+
+    public Builder overflowPolicy(OverflowPolicy overflowPolicy) {
+      this.overflowPolicy = overflowPolicy;
+      return this;
+    }
+
+    public Builder encoder(RequestLogEncoder encoder) {
+      this.encoder = encoder;
+      return this;
+    }
+
+    public Builder memoryMapped(boolean memoryMapped) {
+      this.memoryMapped = memoryMapped;
+      return this;
+    }
+
+    public Builder retainDays(int retainDays) {
+      this.retainDays = retainDays;
+      return this;
+    }
+
+    /**
+     * @param format ncsa, json or binary, in any case.
+     */
+    public static RequestLogEncoder encoderNamed(String format) {
+      switch (format.toLowerCase()) {
+        case "ncsa":
+          return new NcsaEncoder();
+        case "json":
+          return new JsonLinesEncoder();
+        case "binary":
+          return new BinaryEncoder();
+        default:
+          throw new IllegalArgumentException(
+              "Unknown request log format '" + format + "'. Expected ncsa, json or binary.");
+      }
+    }
+
+    public AsyncRequestLog build() {
+      Verify.isNotNull(directory, "A request log directory is required.");
+      Verify.isNotNull(encoder, "A request log encoder is required.");
+      Verify.isTrue(overflowPolicy != OverflowPolicy.CALLER_RUNS,
+          "The request log supports the DROP and BLOCK overflow policies, not %s.",
+          overflowPolicy);
+      return new AsyncRequestLog(this);
+    }
+  }
+}
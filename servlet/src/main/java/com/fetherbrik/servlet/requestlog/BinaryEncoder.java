@@ -0,0 +1,89 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+
+package com.fetherbrik.servlet.requestlog;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Compact, length-prefixed records, for logs that are read by tools rather than people. Each record, big-endian:
+ * <ol>
+ * <li>int: the length of the rest of the record, in bytes</li>
+ * <li>long: time, in milliseconds since the epoch</li>
+ * <li>long: latency, in milliseconds</li>
+ * <li>short: status</li>
+ * <li>long: bytes written</li>
+ * <li>remoteAddr, remoteUser, method, uri, protocol, referer and userAgent, each as an int byte count followed by
+ * that many bytes of UTF-8. A count of -1 means null.</li>
+ * </ol>
+ * A record length of zero, or one that runs past the end of the file, marks the end of what was written.
+ *
+ * @author ggranum
+ */
+public final class BinaryEncoder implements RequestLogEncoder {
+
+  private static final long MaxWindowSize = 1L << 30;
+
+  @Override
+  public String fileExtension() {
+    return "bin";
+  }
+
+  @Override
+  public void encode(RequestLogEntry entry, ByteBuffer out) {
+    int start = out.position();
+    out.putInt(0);
+    out.putLong(entry.timeStamp());
+    out.putLong(entry.latencyMillis());
+    out.putShort((short) entry.status());
+    out.putLong(entry.bytesWritten());
+    putString(out, entry.remoteAddr());
+    putString(out, entry.remoteUser());
+    putString(out, entry.method());
+    putString(out, entry.uri());
+    putString(out, entry.protocol());
+    putString(out, entry.referer());
+    putString(out, entry.userAgent());
+    out.putInt(start, out.position() - start - Integer.BYTES);
+  }
+
+  /**
+   * Walks the records from the start of the file, through read only mapped windows of up to a gigabyte.
+   */
+  @Override
+  public long recoveredLength(FileChannel channel) throws IOException {
+    long size = channel.size();
+    long position = 0;
+    long windowStart = 0;
+    MappedByteBuffer window = null;
+    while (size - position >= Integer.BYTES) {
+      if (window == null || position + Integer.BYTES > windowStart + window.limit()) {
+        windowStart = position;
+        window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(size - position, MaxWindowSize));
+      }
+      int length = window.getInt((int) (position - windowStart));
+      if (length <= 0 || length > size - position - Integer.BYTES) {
+        break;
+      }
+      position += Integer.BYTES + length;
+    }
+    return position;
+  }
+
+  private static void putString(ByteBuffer out, String value) {
+    if (value == null) {
+      out.putInt(-1);
+      return;
+    }
+    int start = out.position();
+    out.putInt(0);
+    Utf8.put(out, value);
+    out.putInt(start, out.position() - start - Integer.BYTES);
+  }
+}
@@ -0,0 +1,54 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+
+package com.fetherbrik.servlet.requestlog;
+
+import java.nio.ByteBuffer;
+
+/**
+ * One JSON object per line, e.g.
+ * <pre>
+ * {"time":1571443200000,"remoteAddr":"10.0.0.1","remoteUser":null,"method":"GET","uri":"/hello/world",
+ * "protocol":"HTTP/1.1","status":200,"bytes":11,"millis":2,"referer":null,"userAgent":"curl/7.64.1"}
+ * </pre>
+ * (wrapped here for width).
+ *
+ * @author ggranum
+ */
+public final class JsonLinesEncoder implements RequestLogEncoder {
+
+  @Override
+  public String fileExtension() {
+    return "jsonl";
+  }
+
+  @Override
+  public void encode(RequestLogEntry entry, ByteBuffer out) {
+    Utf8.putAscii(out, "{\"time\":");
+    Utf8.putDecimal(out, entry.timeStamp());
+    Utf8.putAscii(out, ",\"remoteAddr\":");
+    Utf8.putJson(out, entry.remoteAddr());
+    Utf8.putAscii(out, ",\"remoteUser\":");
+    Utf8.putJson(out, entry.remoteUser());
+    Utf8.putAscii(out, ",\"method\":");
+    Utf8.putJson(out, entry.method());
+    Utf8.putAscii(out, ",\"uri\":");
+    Utf8.putJson(out, entry.uri());
+    Utf8.putAscii(out, ",\"protocol\":");
+    Utf8.putJson(out, entry.protocol());
+    Utf8.putAscii(out, ",\"status\":");
+    Utf8.putDecimal(out, entry.status());
+    Utf8.putAscii(out, ",\"bytes\":");
+    Utf8.putDecimal(out, entry.bytesWritten());
+    Utf8.putAscii(out, ",\"millis\":");
+    Utf8.putDecimal(out, entry.latencyMillis());
+    Utf8.putAscii(out, ",\"referer\":");
+    Utf8.putJson(out, entry.referer());
+    Utf8.putAscii(out, ",\"userAgent\":");
+    Utf8.putJson(out, entry.userAgent());
+    Utf8.putAscii(out, "}\n");
+  }
+}
@@ -0,0 +1,73 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+
+package com.fetherbrik.servlet.requestlog;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+
+/**
+ * The extended NCSA format that Apache, Jetty's own request logs and most log tools speak, e.g.
+ * <pre>
+ * 10.0.0.1 - - [19/Oct/2019:00:00:00 +0000] "GET /hello/world HTTP/1.1" 200 11 "-" "curl/7.64.1"
+ * </pre>
+ * Times are when the request arrived, in UTC. A missing value is written as "-".
+ *
+ * @author ggranum
+ */
+public final class NcsaEncoder implements RequestLogEncoder {
+
+  private static final DateTimeFormatter TimeFormat =
+      DateTimeFormatter.ofPattern("dd/MMM/yyyy:HH:mm:ss Z", Locale.US).withZone(ZoneOffset.UTC);
+
+  /**
+   * Requests arrive many to the second, so the formatted time is kept until the second changes.
+   */
+  private long cachedSecond = Long.MIN_VALUE;
+  private byte[] cachedTime;
+
+  @Override
+  public String fileExtension() {
+    return "log";
+  }
+
+  @Override
+  public void encode(RequestLogEntry entry, ByteBuffer out) {
+    Utf8.putNcsa(out, entry.remoteAddr());
+    Utf8.putAscii(out, " - ");
+    Utf8.putNcsa(out, entry.remoteUser());
+    Utf8.putAscii(out, " [");
+    out.put(time(entry.timeStamp()));
+    Utf8.putAscii(out, "] \"");
+    Utf8.putNcsa(out, entry.method());
+    out.put((byte) ' ');
+    Utf8.putNcsa(out, entry.uri());
+    out.put((byte) ' ');
+    Utf8.putNcsa(out, entry.protocol());
+    Utf8.putAscii(out, "\" ");
+    Utf8.putDecimal(out, entry.status());
+    out.put((byte) ' ');
+    Utf8.putDecimal(out, entry.bytesWritten());
+    Utf8.putAscii(out, " \"");
+    Utf8.putNcsa(out, entry.referer());
+    Utf8.putAscii(out, "\" \"");
+    Utf8.putNcsa(out, entry.userAgent());
+    Utf8.putAscii(out, "\"\n");
+  }
+
+  private byte[] time(long timeStamp) {
+    long second = Math.floorDiv(timeStamp, 1000L);
+    if (second != cachedSecond) {
+      cachedTime = TimeFormat.format(Instant.ofEpochSecond(second)).getBytes(StandardCharsets.US_ASCII);
+      cachedSecond = second;
+    }
+    return cachedTime;
+  }
+}
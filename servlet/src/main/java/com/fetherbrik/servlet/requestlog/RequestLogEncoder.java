@@ -0,0 +1,60 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+
+package com.fetherbrik.servlet.requestlog;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Turns entries into the bytes of a request log file. Called only from the writer thread, so implementations may keep
+ * scratch state, but they must not keep the entry itself.
+ *
+ * @author ggranum
+ */
+public interface RequestLogEncoder {
+
+  /**
+   * @return The extension of the files this encoder writes, without the dot, e.g. "jsonl".
+   */
+  String fileExtension();
+
+  /**
+   * Append one entry to {@code out}.
+   *
+   * @throws java.nio.BufferOverflowException if the entry doesn't fit in what remains of {@code out}. The writer will
+   *                                          reset the buffer's position, flush it, and try again with an empty one.
+   */
+  void encode(RequestLogEntry entry, ByteBuffer out);
+
+  /**
+   * Find where the last whole entry of an existing file ends, so that anything after it can be cut off before the file
+   * is appended to. A process that died mid-write leaves a partial entry, and one that wrote through a memory mapped
+   * region leaves up to a chunk of zeros, past the end of its last entry.
+   * <p>
+   * The default suits formats that end every entry with a newline: the length up to and including the last one.
+   */
+  default long recoveredLength(FileChannel channel) throws IOException {
+    ByteBuffer chunk = ByteBuffer.allocate(8192);
+    long end = channel.size();
+    while (end > 0) {
+      long start = Math.max(0, end - chunk.capacity());
+      chunk.clear();
+      chunk.limit((int) (end - start));
+      while (chunk.hasRemaining() && channel.read(chunk, start + chunk.position()) >= 0) {
+        // Read the whole chunk.
+      }
+      for (int i = chunk.position() - 1; i >= 0; i--) {
+        if (chunk.get(i) == '\n') {
+          return start + i + 1;
+        }
+      }
+      end = start;
+    }
+    return 0;
+  }
+}
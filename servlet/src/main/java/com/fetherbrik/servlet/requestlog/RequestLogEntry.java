@@ -0,0 +1,141 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+
+package com.fetherbrik.servlet.requestlog;
+
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+
+import javax.annotation.Nullable;
+
+/**
+ * One request, as it waits in the {@link AsyncRequestLog}'s ring buffer. Entries are preallocated and reused: the
+ * request thread copies references into one and the writer thread encodes it. Encoders must not keep an entry past
+ * the call to {@link RequestLogEncoder#encode}.
+ *
+ * @author ggranum
+ */
+public final class RequestLogEntry {
+
+  private long timeStamp;
+  private long latencyMillis;
+  private int status;
+  private long bytesWritten;
+  private String remoteAddr;
+  private String remoteUser;
+  private String method;
+  private String uri;
+  private String protocol;
+  private String referer;
+  private String userAgent;
+
+  RequestLogEntry() {
+  }
+
+  void set(Request request, Response response, long now) {
+    timeStamp = request.getTimeStamp();
+    latencyMillis = now - timeStamp;
+    status = response.getCommittedMetaData().getStatus();
+    bytesWritten = response.getHttpChannel().getBytesWritten();
+    remoteAddr = request.getRemoteAddr();
+    remoteUser = request.getRemoteUser();
+    method = request.getMethod();
+    uri = request.getOriginalURI();
+    protocol = request.getProtocol();
+    referer = request.getHeader("Referer");
+    userAgent = request.getHeader("User-Agent");
+  }
+
+  void set(long timeStamp,
+           long latencyMillis,
+           int status,
+           long bytesWritten,
+           String remoteAddr,
+           String remoteUser,
+           String method,
+           String uri,
+           String protocol,
+           String referer,
+           String userAgent) {
+    this.timeStamp = timeStamp;
+    this.latencyMillis = latencyMillis;
+    this.status = status;
+    this.bytesWritten = bytesWritten;
+    this.remoteAddr = remoteAddr;
+    this.remoteUser = remoteUser;
+    this.method = method;
+    this.uri = uri;
+    this.protocol = protocol;
+    this.referer = referer;
+    this.userAgent = userAgent;
+  }
+
+  /**
+   * Drop references, so a quiet ring buffer doesn't keep old requests' strings alive.
+   */
+  void clear() {
+    remoteAddr = null;
+    remoteUser = null;
+    method = null;
+    uri = null;
+    protocol = null;
+    referer = null;
+    userAgent = null;
+  }
+
+  /**
+   * @return When the request arrived, in milliseconds since the epoch.
+   */
+  public long timeStamp() {
+    return timeStamp;
+  }
+
+  public long latencyMillis() {
+    return latencyMillis;
+  }
+
+  public int status() {
+    return status;
+  }
+
+  public long bytesWritten() {
+    return bytesWritten;
+  }
+
+  public String remoteAddr() {
+    return remoteAddr;
+  }
+
+  @Nullable
+  public String remoteUser() {
+    return remoteUser;
+  }
+
+  public String method() {
+    return method;
+  }
+
+  /**
+   * @return The path and query, as the client sent them.
+   */
+  public String uri() {
+    return uri;
+  }
+
+  public String protocol() {
+    return protocol;
+  }
+
+  @Nullable
+  public String referer() {
+    return referer;
+  }
+
+  @Nullable
+  public String userAgent() {
+    return userAgent;
+  }
+}
@@ -0,0 +1,134 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+
+package com.fetherbrik.servlet.requestlog;
+
+import com.fetherbrik.core.log.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The day's request log file, named yyyy_MM_dd.request.{extension} in UTC. Only used from the writer thread.
+ * <p>
+ * Written either through the FileChannel, or, when memory mapped, by copying into a mapped region that is extended a
+ * chunk at a time. A mapped file is truncated to what was actually written when it is closed; until then its tail is
+ * zeros. If the process dies before then, the zeros, and any entry cut short, are truncated away by
+ * {@link RequestLogEncoder#recoveredLength} when the file is next opened.
+ *
+ * @author ggranum
+ */
+final class RequestLogFile {
+
+  private static final DateTimeFormatter DayFormat = DateTimeFormatter.ofPattern("yyyy_MM_dd");
+  private static final long MapChunkSize = 16L * 1024 * 1024;
+  private static final long MillisPerDay = 24L * 60 * 60 * 1000;
+
+  private final File directory;
+  private final RequestLogEncoder encoder;
+  private final String extension;
+  private final boolean memoryMapped;
+  private final int retainDays;
+  private final Pattern fileNames;
+
+  private long day = Long.MIN_VALUE;
+  private FileChannel channel;
+  private MappedByteBuffer mapped;
+  private long position;
+
+  RequestLogFile(File directory, RequestLogEncoder encoder, boolean memoryMapped, int retainDays) {
+    this.directory = directory;
+    this.encoder = encoder;
+    this.extension = encoder.fileExtension();
+    this.memoryMapped = memoryMapped;
+    this.retainDays = retainDays;
+    this.fileNames = Pattern.compile("(\\d{4}_\\d{2}_\\d{2})\\.request\\." + Pattern.quote(extension));
+  }
+
+  /**
+   * @return True if entries logged at {@code timeStamp} belong in the open file.
+   */
+  boolean isOpenFor(long timeStamp) {
+    return channel != null && Math.floorDiv(timeStamp, MillisPerDay) == day;
+  }
+
+  /**
+   * Close the open file, if any, and open the one for the day containing {@code timeStamp}.
+   */
+  void rollTo(long timeStamp) throws IOException {
+    long entryDay = Math.floorDiv(timeStamp, MillisPerDay);
+    close();
+    day = entryDay;
+    LocalDate date = LocalDate.ofEpochDay(entryDay);
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("Could not create request log directory " + directory.getAbsolutePath());
+    }
+    File file = new File(directory, DayFormat.format(date) + ".request." + extension);
+    channel = FileChannel.open(file.toPath(),
+        StandardOpenOption.CREATE,
+        StandardOpenOption.READ,
+        StandardOpenOption.WRITE);
+    position = encoder.recoveredLength(channel);
+    if (position < channel.size()) {
+      Log.warn(getClass(), "Truncating %s from %s to %s bytes, the end of its last whole entry.",
+          file.getAbsolutePath(), channel.size(), position);
+      channel.truncate(position);
+    }
+    deleteExpired(date);
+  }
+
+  void write(ByteBuffer src) throws IOException {
+    if (memoryMapped) {
+      if (mapped == null || mapped.remaining() < src.remaining()) {
+        mapped = channel.map(FileChannel.MapMode.READ_WRITE, position, Math.max(MapChunkSize, src.remaining()));
+      }
+      position += src.remaining();
+      mapped.put(src);
+    } else {
+      while (src.hasRemaining()) {
+        position += channel.write(src, position);
+      }
+    }
+  }
+
+  void close() throws IOException {
+    if (channel == null) {
+      return;
+    }
+    try {
+      if (mapped != null) {
+        mapped.force();
+        mapped = null;
+        channel.truncate(position);
+      }
+    } finally {
+      channel.close();
+      channel = null;
+    }
+  }
+
+  private void deleteExpired(LocalDate today) {
+    File[] files = directory.listFiles();
+    if (files == null) {
+      return;
+    }
+    LocalDate oldest = today.minusDays(retainDays);
+    for (File file : files) {
+      Matcher matcher = fileNames.matcher(file.getName());
+      if (matcher.matches() && LocalDate.parse(matcher.group(1), DayFormat).isBefore(oldest) && !file.delete()) {
+        Log.warn(getClass(), "Could not delete expired request log %s", file.getAbsolutePath());
+      }
+    }
+  }
+}
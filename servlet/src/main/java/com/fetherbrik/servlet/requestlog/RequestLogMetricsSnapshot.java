@@ -0,0 +1,60 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+
+package com.fetherbrik.servlet.requestlog;
+
+/**
+ * The counters of an {@link AsyncRequestLog}, at one moment. Counts are totals since the log started.
+ *
+ * @author ggranum
+ */
+public final class RequestLogMetricsSnapshot {
+
+  /**
+   * Entries encoded and handed to the file.
+   */
+  public final long written;
+  /**
+   * Entries discarded because the ring buffer was full, the entry was too large to encode, or the log was stopped.
+   */
+  public final long dropped;
+  /**
+   * Times a request thread waited for room in the ring buffer, under the BLOCK overflow policy.
+   */
+  public final long blocked;
+  /**
+   * Entries in the ring buffer, waiting for the writer thread.
+   */
+  public final int pending;
+  /**
+   * The number of entries the ring buffer holds.
+   */
+  public final int capacity;
+  public final long bytesWritten;
+  /**
+   * Batches written to the file.
+   */
+  public final long writes;
+  public final long writeErrors;
+
+  RequestLogMetricsSnapshot(long written,
+                            long dropped,
+                            long blocked,
+                            int pending,
+                            int capacity,
+                            long bytesWritten,
+                            long writes,
+                            long writeErrors) {
+    this.written = written;
+    this.dropped = dropped;
+    this.blocked = blocked;
+    this.pending = pending;
+    this.capacity = capacity;
+    this.bytesWritten = bytesWritten;
+    this.writes = writes;
+    this.writeErrors = writeErrors;
+  }
+}
@@ -0,0 +1,134 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+
+package com.fetherbrik.servlet.requestlog;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Writes text and numbers straight into a ByteBuffer, without the intermediate strings and byte arrays that
+ * String.getBytes and Long.toString would allocate for every field of every request.
+ *
+ * @author ggranum
+ */
+final class Utf8 {
+
+  private static final byte[] Hex = "0123456789abcdef".getBytes();
+  private static final byte[] Null = "null".getBytes();
+  private static final byte[] MinLong = Long.toString(Long.MIN_VALUE).getBytes();
+
+  private Utf8() {
+  }
+
+  static void put(ByteBuffer out, String value) {
+    put(out, value, 0, value.length());
+  }
+
+  /**
+   * Write the chars of {@code value} from {@code from}, inclusive, to {@code to}, exclusive.
+   */
+  static void put(ByteBuffer out, String value, int from, int to) {
+    for (int i = from; i < to; i++) {
+      char c = value.charAt(i);
+      if (c < 0x80) {
+        out.put((byte) c);
+      } else if (c < 0x800) {
+        out.put((byte) (0xC0 | (c >> 6)));
+        out.put((byte) (0x80 | (c & 0x3F)));
+      } else if (Character.isHighSurrogate(c) && i + 1 < to && Character.isLowSurrogate(value.charAt(i + 1))) {
+        int codePoint = Character.toCodePoint(c, value.charAt(++i));
+        out.put((byte) (0xF0 | (codePoint >> 18)));
+        out.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+        out.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+        out.put((byte) (0x80 | (codePoint & 0x3F)));
+      } else if (Character.isSurrogate(c)) {
+        out.put((byte) '?');
+      } else {
+        out.put((byte) (0xE0 | (c >> 12)));
+        out.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+        out.put((byte) (0x80 | (c & 0x3F)));
+      }
+    }
+  }
+
+  static void putAscii(ByteBuffer out, String value) {
+    for (int i = 0; i < value.length(); i++) {
+      out.put((byte) value.charAt(i));
+    }
+  }
+
+  /**
+   * Write {@code value} as a quoted JSON string, or as null.
+   */
+  static void putJson(ByteBuffer out, String value) {
+    if (value == null) {
+      out.put(Null);
+      return;
+    }
+    out.put((byte) '"');
+    int start = 0;
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '"' || c == '\\' || c < 0x20) {
+        put(out, value, start, i);
+        out.put((byte) '\\');
+        if (c == '"' || c == '\\') {
+          out.put((byte) c);
+        } else {
+          out.put((byte) 'u').put((byte) '0').put((byte) '0').put(Hex[c >> 4]).put(Hex[c & 0xF]);
+        }
+        start = i + 1;
+      }
+    }
+    put(out, value, start, value.length());
+    out.put((byte) '"');
+  }
+
+  /**
+   * Write {@code value} as a field of an NCSA log line, or "-" for null. Quotes, backslashes and control characters are
+   * escaped as Apache's logs escape them, \" \\ and \xhh, so a request can't forge a line or end a field early.
+   */
+  static void putNcsa(ByteBuffer out, String value) {
+    if (value == null) {
+      out.put((byte) '-');
+      return;
+    }
+    int start = 0;
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '"' || c == '\\' || c < 0x20 || c == 0x7F) {
+        put(out, value, start, i);
+        out.put((byte) '\\');
+        if (c == '"' || c == '\\') {
+          out.put((byte) c);
+        } else {
+          out.put((byte) 'x').put(Hex[c >> 4]).put(Hex[c & 0xF]);
+        }
+        start = i + 1;
+      }
+    }
+    put(out, value, start, value.length());
+  }
+
+  static void putDecimal(ByteBuffer out, long value) {
+    if (value == Long.MIN_VALUE) {
+      out.put(MinLong);
+      return;
+    }
+    if (value < 0) {
+      out.put((byte) '-');
+      value = -value;
+    }
+    long divisor = 1;
+    while (divisor <= value / 10) {
+      divisor *= 10;
+    }
+    while (divisor > 0) {
+      out.put((byte) ('0' + (value / divisor) % 10));
+      divisor /= 10;
+    }
+  }
+}
@@ -0,0 +1,88 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+
+package com.fetherbrik.servlet.trace;
+
+import com.fetherbrik.core.trace.Span;
+import com.fetherbrik.core.trace.TraceContext;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+import javax.servlet.ServletRequest;
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Starts and finishes request traces, and holds the {@link RouteMetrics} they are recorded into. Created by the
+ * Bootstrap, enabled by {@link com.fetherbrik.servlet.bootstrap.BootstrapConfiguration#tracingEnabled()}.
+ * <p>
+ * A trace is kept in a request attribute, so that every stage of the request finds it, whichever thread the stage runs
+ * on. When tracing is disabled, {@link #start} returns null and nothing else is created.
+ * <p>
+ * The Bootstrap registers {@link #snapshot()} as the {@value #METRICS_SOURCE_NAME} metrics source.
+ *
+ * @author ggranum
+ */
+public final class RequestTracer {
+
+  public static final String ATTRIBUTE = TraceContext.class.getName();
+  public static final String UNMATCHED_ROUTE = "UNMATCHED";
+  public static final String METRICS_SOURCE_NAME = "routes";
+
+  private final boolean enabled;
+  private final ConcurrentMap<String, RouteMetrics> routes = new ConcurrentHashMap<>();
+
+  public RequestTracer(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * @return A new trace for `request`, using the caller's trace id if it sent one, or null if tracing is disabled.
+   */
+  public TraceContext start(HttpServletRequest request) {
+    if (!enabled) {
+      return null;
+    }
+    TraceContext trace = TraceContext.start(request.getHeader(TraceContext.HEADER));
+    request.setAttribute(ATTRIBUTE, trace);
+    return trace;
+  }
+
+  /**
+   * @return The trace of `request`, or null if it isn't being traced.
+   */
+  public static TraceContext of(ServletRequest request) {
+    return (TraceContext) request.getAttribute(ATTRIBUTE);
+  }
+
+  /**
+   * Record the trace against its route, once the response is complete. The total is the time since the trace
+   * started; the FILTER span should have ended when the request's first pass through the filters did.
+   */
+  public void finish(TraceContext trace, int status) {
+    trace.end(Span.FILTER);
+    long totalNanos = System.nanoTime() - trace.startNanos();
+    String route = trace.route() == null ? UNMATCHED_ROUTE : trace.route();
+    routes.computeIfAbsent(route, RouteMetrics::new).record(trace, totalNanos, status >= 500);
+  }
+
+  /**
+   * @return A snapshot of every route, ordered by route.
+   */
+  public List<RouteMetricsSnapshot> snapshot() {
+    return routes.values()
+                 .stream()
+                 .map(RouteMetrics::snapshot)
+                 .sorted(Comparator.comparing(s -> s.route))
+                 .collect(Collectors.toList());
+  }
+}
@@ -0,0 +1,68 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+
+package com.fetherbrik.servlet.trace;
+
+import com.fetherbrik.core.metrics.Histogram;
+import com.fetherbrik.core.trace.Span;
+import com.fetherbrik.core.trace.TraceContext;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histograms for a single route: the whole request, and the time spent in each stage exclusive of the stages
+ * within it.
+ *
+ * @author ggranum
+ */
+public final class RouteMetrics {
+
+  public final String route;
+  private final Histogram totalNanos = new Histogram();
+  private final Histogram filterNanos = new Histogram();
+  private final Histogram dispatchNanos = new Histogram();
+  private final Histogram resourceNanos = new Histogram();
+  private final Histogram serializationNanos = new Histogram();
+  private final LongAdder errors = new LongAdder();
+
+  RouteMetrics(String route) {
+    this.route = route;
+  }
+
+  /**
+   * The FILTER and DISPATCH spans both cover only the request's first pass, so the filters' own time is the same
+   * whether or not the request is async. The time an async request spends waiting for its resource's CompletionStage
+   * is in the total alone.
+   *
+   * @param totalNanos From the start of the trace until the response was complete.
+   * @param error      True if the response was a server error.
+   */
+  void record(TraceContext trace, long totalNanos, boolean error) {
+    long filter = trace.spanNanos(Span.FILTER);
+    long dispatch = trace.spanNanos(Span.DISPATCH);
+    long resource = trace.spanNanos(Span.RESOURCE);
+    long serialization = trace.spanNanos(Span.SERIALIZATION);
+    this.totalNanos.record(totalNanos);
+    filterNanos.record(filter - dispatch);
+    // An async request's dispatch returns before its resource completes, so this may be negative; it's recorded as 0.
+    dispatchNanos.record(dispatch - resource - serialization);
+    resourceNanos.record(resource);
+    serializationNanos.record(serialization);
+    if (error) {
+      errors.increment();
+    }
+  }
+
+  public RouteMetricsSnapshot snapshot() {
+    return new RouteMetricsSnapshot(route,
+        errors.sum(),
+        totalNanos.snapshot(),
+        filterNanos.snapshot(),
+        dispatchNanos.snapshot(),
+        resourceNanos.snapshot(),
+        serializationNanos.snapshot());
+  }
+}
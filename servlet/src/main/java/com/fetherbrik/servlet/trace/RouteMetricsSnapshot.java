@@ -0,0 +1,57 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+
+package com.fetherbrik.servlet.trace;
+
+import com.fetherbrik.core.metrics.HistogramSnapshot;
+
+/**
+ * The latencies of one route, at one moment. Each stage is its own time, without the stages inside it, so for a
+ * synchronous request the four stages add up to the total.
+ *
+ * @author ggranum
+ */
+public final class RouteMetricsSnapshot {
+
+  /**
+   * The method and path template, such as "GET /hello/blocking/{millis}", or {@value RequestTracer#UNMATCHED_ROUTE}
+   * for requests no resource matched, such as static files and 404s.
+   */
+  public final String route;
+  public final long count;
+  /**
+   * Responses with a 5xx status.
+   */
+  public final long errors;
+  public final HistogramSnapshot totalNanos;
+  /**
+   * Servlet filters. For an async request, the wait for the resource's CompletionStage is counted in the total only.
+   */
+  public final HistogramSnapshot filterNanos;
+  /**
+   * Routing and the other work of the REST dispatcher.
+   */
+  public final HistogramSnapshot dispatchNanos;
+  public final HistogramSnapshot resourceNanos;
+  public final HistogramSnapshot serializationNanos;
+
+  RouteMetricsSnapshot(String route,
+                       long errors,
+                       HistogramSnapshot totalNanos,
+                       HistogramSnapshot filterNanos,
+                       HistogramSnapshot dispatchNanos,
+                       HistogramSnapshot resourceNanos,
+                       HistogramSnapshot serializationNanos) {
+    this.route = route;
+    this.count = totalNanos.count;
+    this.errors = errors;
+    this.totalNanos = totalNanos;
+    this.filterNanos = filterNanos;
+    this.dispatchNanos = dispatchNanos;
+    this.resourceNanos = resourceNanos;
+    this.serializationNanos = serializationNanos;
+  }
+}
@@ -0,0 +1,108 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+
+package com.fetherbrik.servlet.trace;
+
+import com.fetherbrik.core.trace.Span;
+import com.fetherbrik.core.trace.TraceContext;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.Path;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.container.ResourceInfo;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.ext.Provider;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+
+/**
+ * Names the route of a traced request and times its RESOURCE and SERIALIZATION spans. Requests that aren't being
+ * traced pass through after a single request attribute lookup.
+ *
+ * @author ggranum
+ */
+@Provider
+public class TracingProvider implements ContainerRequestFilter, ContainerResponseFilter, WriterInterceptor {
+
+  private final ConcurrentMap<Method, String> routes = new ConcurrentHashMap<>();
+
+  @Context
+  private ResourceInfo resourceInfo;
+
+  @Override
+  public void filter(ContainerRequestContext requestContext) {
+    TraceContext trace = (TraceContext) requestContext.getProperty(RequestTracer.ATTRIBUTE);
+    if (trace != null) {
+      Method method = resourceInfo.getResourceMethod();
+      if (method != null) {
+        trace.route(routes.computeIfAbsent(method, m -> routeOf(resourceInfo.getResourceClass(), m)));
+      }
+      trace.begin(Span.RESOURCE);
+    }
+  }
+
+  @Override
+  public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) {
+    TraceContext trace = (TraceContext) requestContext.getProperty(RequestTracer.ATTRIBUTE);
+    if (trace != null) {
+      trace.end(Span.RESOURCE);
+    }
+  }
+
+  @Override
+  public void aroundWriteTo(WriterInterceptorContext context) throws IOException {
+    TraceContext trace = (TraceContext) context.getProperty(RequestTracer.ATTRIBUTE);
+    if (trace == null) {
+      context.proceed();
+      return;
+    }
+    trace.begin(Span.SERIALIZATION);
+    try {
+      context.proceed();
+    } finally {
+      trace.end(Span.SERIALIZATION);
+    }
+  }
+
+  /**
+   * @return E.g. "GET /hello/blocking/{millis}".
+   */
+  private static String routeOf(Class<?> resourceClass, Method method) {
+    StringBuilder route = new StringBuilder();
+    for (Annotation annotation : method.getAnnotations()) {
+      HttpMethod httpMethod = annotation.annotationType().getAnnotation(HttpMethod.class);
+      if (httpMethod != null) {
+        route.append(httpMethod.value()).append(' ');
+        break;
+      }
+    }
+    appendPath(route, resourceClass.getAnnotation(Path.class));
+    appendPath(route, method.getAnnotation(Path.class));
+    if (route.length() == 0 || route.charAt(route.length() - 1) == ' ') {
+      route.append('/');
+    }
+    return route.toString();
+  }
+
+  private static void appendPath(StringBuilder route, Path path) {
+    if (path == null) {
+      return;
+    }
+    String value = path.value();
+    if (!value.startsWith("/")) {
+      route.append('/');
+    }
+    route.append(value.endsWith("/") ? value.substring(0, value.length() - 1) : value);
+  }
+}
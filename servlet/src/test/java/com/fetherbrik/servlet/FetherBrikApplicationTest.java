@@ -0,0 +1,108 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+
+package com.fetherbrik.servlet;
+
+import com.fetherbrik.servlet.bootstrap.DefaultBootstrapConfiguration;
+import com.fetherbrik.servlet.compression.MeteredDeflaterPool;
+import com.google.common.base.Strings;
+import com.google.common.io.ByteStreams;
+import org.eclipse.jetty.http.HttpTester;
+import org.eclipse.jetty.server.LocalConnector;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * @author ggranum
+ */
+public class FetherBrikApplicationTest {
+
+  private static final String Large = Strings.repeat("Hello, World. ", 200);
+  private static final String Small = "Hello, World.";
+
+  private Server server;
+  private LocalConnector connector;
+
+  @BeforeMethod
+  public void setUp() throws Exception {
+    DefaultBootstrapConfiguration config = new DefaultBootstrapConfiguration.Builder()
+        .env("test")
+        .httpPort(8080)
+        .httpsPort(8443)
+        .compressionEnabled(true)
+        .compressionMinSize(1024)
+        .build();
+    server = new Server();
+    connector = new LocalConnector(server);
+    server.addConnector(connector);
+    server.setHandler(FetherBrikApplication.createGzipHandler(config, new MeteredDeflaterPool(4), new TextHandler()));
+    server.start();
+  }
+
+  @AfterMethod
+  public void tearDown() throws Exception {
+    server.stop();
+  }
+
+  @Test
+  public void testGzipsTextOverTheMinimumSize() throws Exception {
+    HttpTester.Response response = get("/large", "gzip");
+
+    assertThat(response.getStatus(), is(200));
+    assertThat(response.get("Content-Encoding"), is("gzip"));
+    assertThat(gunzip(response.getContentBytes()), is(Large));
+  }
+
+  @Test
+  public void testSendsSmallResponsesAndUnwillingClientsPlainText() throws Exception {
+    HttpTester.Response small = get("/small", "gzip");
+    assertThat(small.get("Content-Encoding"), is(nullValue()));
+    assertThat(small.getContent(), is(Small));
+
+    HttpTester.Response identity = get("/large", "identity");
+    assertThat(identity.get("Content-Encoding"), is(nullValue()));
+    assertThat(identity.getContent(), is(Large));
+  }
+
+  private HttpTester.Response get(String path, String acceptEncoding) throws Exception {
+    return HttpTester.parseResponse(connector.getResponse("GET " + path + " HTTP/1.1\r\n"
+        + "Host: localhost\r\n"
+        + "Accept-Encoding: " + acceptEncoding + "\r\n"
+        + "Connection: close\r\n"
+        + "\r\n"));
+  }
+
+  private static String gunzip(byte[] content) throws IOException {
+    try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(content))) {
+      return new String(ByteStreams.toByteArray(in), StandardCharsets.UTF_8);
+    }
+  }
+
+  private static final class TextHandler extends AbstractHandler {
+
+    @Override
+    public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response)
+        throws IOException {
+      response.setContentType("text/plain;charset=utf-8");
+      response.getOutputStream().write((target.equals("/large") ? Large : Small).getBytes(StandardCharsets.UTF_8));
+      baseRequest.setHandled(true);
+    }
+  }
+}
@@ -44,6 +44,31 @@ public class EnvOrFileSourcedConfigurationReaderTest {
     assertThat(cfg.httpsPort, is(8043));
   }
 
+  @Test
+  public void testReadsTheSettingsAConfigurationInherits() {
+    EnvOrFileSourcedConfigurationReader<DefaultBootstrapConfiguration> fetherBrik = new EnvOrFileSourcedConfigurationReader<>(
+        "fetherBrik",
+        "json5",
+        Env.DEVELOPMENT,
+        "./config",
+        "fetherBrik",
+        DefaultBootstrapConfiguration.class,
+        DefaultObjectMapperProvider.mapper());
+
+    Map<String, String> values = ImmutableMap.<String, String>builder()
+        .put("httpPort", "8080")
+        .put("httpsPort", "8043")
+        .put("env", "\"dev\"")
+        .put("executionMode", "\"VIRTUAL\"")
+        .put("maxThreads", "64")
+        .build();
+    DefaultBootstrapConfiguration cfg = fetherBrik.from(values);
+    assertThat(cfg.executionMode(), is(ExecutionMode.VIRTUAL));
+    assertThat(cfg.maxThreads(), is(64));
+    assertThat("Unset, so the default.", cfg.blockingThreads(), is(64));
+    assertThat(cfg.tracingEnabled(), is(false));
+  }
+
   @Test(expectedExceptions = ValidationException.class)
   public void testConfigurationEnforcesConstraints() {
     EnvOrFileSourcedConfigurationReader<DefaultBootstrapConfiguration> fetherBrik = new EnvOrFileSourcedConfigurationReader<>(
@@ -0,0 +1,107 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+
+package com.fetherbrik.servlet.requestlog;
+
+import org.testng.annotations.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * @author ggranum
+ */
+public class RequestLogEncoderTest {
+
+  /**
+   * 2019-10-19T00:00:00Z
+   */
+  private static final long Time = 1571443200000L;
+
+  @Test
+  public void testWritesExtendedNcsaLines() {
+    RequestLogEntry entry = entry("GET", "/hello/world", null, "curl/7.64.1");
+
+    assertThat(encode(new NcsaEncoder(), entry),
+        is("10.0.0.1 - - [19/Oct/2019:00:00:00 +0000] \"GET /hello/world HTTP/1.1\" 200 11 \"-\" \"curl/7.64.1\"\n"));
+  }
+
+  @Test
+  public void testEscapesWhatCouldForgeAnNcsaLine() {
+    RequestLogEntry entry = entry("GET", "/a\"b\\c", "x\ny", "caf\u00e9");
+
+    assertThat(encode(new NcsaEncoder(), entry), containsString("\"GET /a\\\"b\\\\c HTTP/1.1\""));
+    assertThat(encode(new NcsaEncoder(), entry), containsString("\"x\\x0ay\" \"caf\u00e9\"\n"));
+  }
+
+  @Test
+  public void testReformatsTheNcsaTimeOnlyWhenTheSecondChanges() {
+    NcsaEncoder encoder = new NcsaEncoder();
+    RequestLogEntry entry = entry("GET", "/", null, null);
+    assertThat(encode(encoder, entry), containsString("[19/Oct/2019:00:00:00 +0000]"));
+
+    entry.set(Time + 999, 2, 200, 11, "10.0.0.1", null, "GET", "/", "HTTP/1.1", null, null);
+    assertThat(encode(encoder, entry), containsString("[19/Oct/2019:00:00:00 +0000]"));
+    entry.set(Time + 61_000, 2, 200, 11, "10.0.0.1", null, "GET", "/", "HTTP/1.1", null, null);
+    assertThat(encode(encoder, entry), containsString("[19/Oct/2019:00:01:01 +0000]"));
+  }
+
+  @Test
+  public void testWritesOneJsonObjectPerLine() {
+    RequestLogEntry entry = entry("POST", "/say?m=\"hi\"", "https://example.com/", null);
+
+    assertThat(encode(new JsonLinesEncoder(), entry),
+        is("{\"time\":1571443200000,\"remoteAddr\":\"10.0.0.1\",\"remoteUser\":null,\"method\":\"POST\","
+            + "\"uri\":\"/say?m=\\\"hi\\\"\",\"protocol\":\"HTTP/1.1\",\"status\":200,\"bytes\":11,\"millis\":2,"
+            + "\"referer\":\"https://example.com/\",\"userAgent\":null}\n"));
+  }
+
+  @Test
+  public void testWritesLengthPrefixedBinaryRecords() {
+    ByteBuffer out = ByteBuffer.allocate(1024);
+    new BinaryEncoder().encode(entry("GET", "/caf\u00e9", null, "curl/7.64.1"), out);
+    out.flip();
+
+    assertThat(out.getInt(), is(out.remaining()));
+    assertThat(out.getLong(), is(Time));
+    assertThat(out.getLong(), is(2L));
+    assertThat(out.getShort(), is((short) 200));
+    assertThat(out.getLong(), is(11L));
+    assertThat(string(out), is("10.0.0.1"));
+    assertThat(string(out), is(nullValue()));
+    assertThat(string(out), is("GET"));
+    assertThat(string(out), is("/caf\u00e9"));
+    assertThat(string(out), is("HTTP/1.1"));
+    assertThat(string(out), is(nullValue()));
+    assertThat(string(out), is("curl/7.64.1"));
+    assertThat(out.hasRemaining(), is(false));
+  }
+
+  static RequestLogEntry entry(String method, String uri, String referer, String userAgent) {
+    RequestLogEntry entry = new RequestLogEntry();
+    entry.set(Time, 2, 200, 11, "10.0.0.1", null, method, uri, "HTTP/1.1", referer, userAgent);
+    return entry;
+  }
+
+  private static String encode(RequestLogEncoder encoder, RequestLogEntry entry) {
+    ByteBuffer out = ByteBuffer.allocate(1024);
+    encoder.encode(entry, out);
+    return new String(out.array(), 0, out.position(), StandardCharsets.UTF_8);
+  }
+
+  private static String string(ByteBuffer in) {
+    int length = in.getInt();
+    if (length < 0) {
+      return null;
+    }
+    byte[] bytes = new byte[length];
+    in.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,139 @@
+/*
+ * This software is licensed under the MIT License.
+ *
+ * Copyright (c) 2019 Geoff M. Granum
+ */
+
+package com.fetherbrik.servlet.requestlog;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * @author ggranum
+ */
+public class RequestLogFileTest {
+
+  /**
+   * 2019-10-19T00:00:00Z
+   */
+  private static final long Time = 1571443200000L;
+  private static final long Day = 24L * 60 * 60 * 1000;
+
+  private File directory;
+
+  @BeforeMethod
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("request-log").toFile();
+  }
+
+  @AfterMethod
+  public void tearDown() throws IOException {
+    try (Stream<Path> paths = Files.walk(directory.toPath())) {
+      paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+    }
+  }
+
+  @Test
+  public void testRollsToANewFileEachDay() throws IOException {
+    RequestLogFile file = new RequestLogFile(directory, new NcsaEncoder(), false, 90);
+    assertThat(file.isOpenFor(Time), is(false));
+
+    file.rollTo(Time);
+    file.write(ascii("first\n"));
+    assertThat(file.isOpenFor(Time + Day - 1), is(true));
+    assertThat(file.isOpenFor(Time + Day), is(false));
+    file.rollTo(Time + Day);
+    file.write(ascii("second\n"));
+    file.close();
+
+    assertThat(read("2019_10_19.request.log"), is("first\n"));
+    assertThat(read("2019_10_20.request.log"), is("second\n"));
+  }
+
+  @Test
+  public void testDeletesOnlyItsOwnExpiredFiles() throws IOException {
+    write("2019_10_15.request.log", "expired\n");
+    write("2019_10_16.request.log", "kept\n");
+    write("2019_10_15.request.jsonl", "another format\n");
+
+    RequestLogFile file = new RequestLogFile(directory, new NcsaEncoder(), false, 3);
+    file.rollTo(Time);
+    file.close();
+
+    assertThat(new File(directory, "2019_10_15.request.log").exists(), is(false));
+    assertThat(new File(directory, "2019_10_16.request.log").exists(), is(true));
+    assertThat(new File(directory, "2019_10_15.request.jsonl").exists(), is(true));
+  }
+
+  @Test
+  public void testTruncatesTheZerosAMappedFileLeftWhenReopened() throws IOException {
+    RequestLogFile crashed = new RequestLogFile(directory, new NcsaEncoder(), true, 90);
+    crashed.rollTo(Time);
+    crashed.write(ascii("first\n"));
+    // Never closed, as if the process had died: the rest of the mapped chunk is zeros.
+    assertThat(new File(directory, "2019_10_19.request.log").length(), is(greaterThan(6L)));
+
+    RequestLogFile reopened = new RequestLogFile(directory, new NcsaEncoder(), true, 90);
+    reopened.rollTo(Time);
+    reopened.write(ascii("second\n"));
+    reopened.close();
+
+    assertThat(read("2019_10_19.request.log"), is("first\nsecond\n"));
+  }
+
+  @Test
+  public void testTruncatesAPartialLineWhenReopened() throws IOException {
+    write("2019_10_19.request.log", "first\nsec");
+
+    RequestLogFile file = new RequestLogFile(directory, new NcsaEncoder(), false, 90);
+    file.rollTo(Time);
+    file.write(ascii("second\n"));
+    file.close();
+
+    assertThat(read("2019_10_19.request.log"), is("first\nsecond\n"));
+  }
+
+  @Test
+  public void testTruncatesAPartialBinaryRecordWhenReopened() throws IOException {
+    ByteBuffer records = ByteBuffer.allocate(1024);
+    BinaryEncoder encoder = new BinaryEncoder();
+    encoder.encode(RequestLogEncoderTest.entry("GET", "/first", null, null), records);
+    int whole = records.position();
+    encoder.encode(RequestLogEncoderTest.entry("GET", "/second", null, null), records);
+    Files.write(new File(directory, "2019_10_19.request.bin").toPath(),
+        Arrays.copyOf(records.array(), records.position() - 5));
+
+    RequestLogFile file = new RequestLogFile(directory, encoder, false, 90);
+    file.rollTo(Time);
+    file.close();
+
+    assertThat(new File(directory, "2019_10_19.request.bin").length(), is((long) whole));
+  }
+
+  private static ByteBuffer ascii(String value) {
+    return ByteBuffer.wrap(value.getBytes(StandardCharsets.US_ASCII));
+  }
+
+  private void write(String name, String content) throws IOException {
+    Files.write(new File(directory, name).toPath(), content.getBytes(StandardCharsets.US_ASCII));
+  }
+
+  private String read(String name) throws IOException {
+    return new String(Files.readAllBytes(new File(directory, name).toPath()), StandardCharsets.US_ASCII);
+  }
+}